@@ -1,14 +1,26 @@
 import os
+import time
 import logging
+import json
 from fastapi import FastAPI, HTTPException
+from fastapi.responses import StreamingResponse
 from fastapi.middleware.cors import CORSMiddleware
 from dotenv import load_dotenv
 
 from src.models.schemas import (
     ProcessDocumentRequest,
+    ProcessChunksRequest,
     ProcessDocumentResponse,
     QueryRequest,
     QueryResponse,
+    RetrieveRequest,
+    RetrieveResponse,
+    GenerateRequest,
+    GenerateResponse,
+    EmbedRequest,
+    EmbedResponse,
+    DeleteCollectionsRequest,
+    DeleteCollectionsResponse,
     HealthResponse
 )
 from src.services.rag_service import RAGService
@@ -82,6 +94,54 @@ async def process_document(request: ProcessDocumentRequest):
         logger.error(f"Error processing document: {e}")
         raise HTTPException(status_code=500, detail=f"Internal server error: {str(e)}")
 
+@app.post("/process-chunks", response_model=ProcessDocumentResponse)
+async def process_chunks(request: ProcessChunksRequest):
+    """
+    Embed and store chunks the backend already extracted into a chunk file
+    """
+    try:
+        logger.info(f"Processing chunks for document: {request.documentId}")
+        
+        result = rag_service.process_chunks(
+            document_id=request.documentId,
+            chunks_path=request.chunksPath
+        )
+        
+        return ProcessDocumentResponse(**result)
+        
+    except FileNotFoundError as e:
+        logger.error(f"Chunk file not found: {e}")
+        raise HTTPException(status_code=404, detail=str(e))
+    
+    except ValueError as e:
+        logger.error(f"Invalid chunk file: {e}")
+        raise HTTPException(status_code=400, detail=str(e))
+    
+    except Exception as e:
+        logger.error(f"Error processing chunks: {e}")
+        raise HTTPException(status_code=500, detail=f"Internal server error: {str(e)}")
+
+@app.post("/process-chunks/stream")
+async def process_chunks_stream(request: ProcessChunksRequest):
+    """
+    Embed and store an extracted chunk file, streaming progress as newline-delimited JSON events
+    """
+    logger.info(f"Processing chunks for document with progress: {request.documentId}")
+    
+    def events():
+        try:
+            for event in rag_service.process_chunks_stream(
+                document_id=request.documentId,
+                chunks_path=request.chunksPath,
+                include_embeddings=request.includeEmbeddings
+            ):
+                yield json.dumps(event) + "\n"
+        except Exception as e:
+            logger.error(f"Error processing chunks: {e}")
+            yield json.dumps({'type': 'error', 'text': str(e)}) + "\n"
+    
+    return StreamingResponse(events(), media_type="application/x-ndjson")
+
 @app.post("/query", response_model=QueryResponse)
 async def query_document(request: QueryRequest):
     """
@@ -93,7 +153,8 @@ async def query_document(request: QueryRequest):
         result = rag_service.query_document(
             document_id=request.documentId,
             query=request.query,
-            top_k=5
+            top_k=5,
+            collection_name=request.collectionName
         )
         
         return QueryResponse(**result)
@@ -102,6 +163,95 @@ async def query_document(request: QueryRequest):
         logger.error(f"Error querying document: {e}")
         raise HTTPException(status_code=500, detail=f"Internal server error: {str(e)}")
 
+@app.post("/retrieve", response_model=RetrieveResponse)
+async def retrieve(request: RetrieveRequest):
+    """
+    Retrieve the most relevant chunks of one document, without generating an answer
+    """
+    try:
+        start_time = time.time()
+        sources = rag_service.retrieve(
+            document_id=request.documentId,
+            query=request.query,
+            top_k=request.topK,
+            collection_name=request.collectionName
+        )
+        return RetrieveResponse(sources=sources, processingTime=time.time() - start_time)
+        
+    except Exception as e:
+        logger.error(f"Error retrieving from document: {e}")
+        raise HTTPException(status_code=500, detail=f"Internal server error: {str(e)}")
+
+@app.post("/generate", response_model=GenerateResponse)
+async def generate(request: GenerateRequest):
+    """
+    Answer a query from chunks the caller already retrieved and ranked
+    """
+    try:
+        result = rag_service.generate(
+            query=request.query,
+            contexts=[context.model_dump() for context in request.contexts]
+        )
+        return GenerateResponse(**result)
+        
+    except Exception as e:
+        logger.error(f"Error generating answer: {e}")
+        raise HTTPException(status_code=500, detail=f"Internal server error: {str(e)}")
+
+@app.post("/embed", response_model=EmbedResponse)
+async def embed(request: EmbedRequest):
+    """
+    Embed texts with the document embedding model, for callers that search vectors themselves
+    """
+    try:
+        start_time = time.time()
+        embeddings = rag_service.embed(request.texts)
+        return EmbedResponse(
+            embeddings=embeddings,
+            dimensions=len(embeddings[0]),
+            processingTime=time.time() - start_time
+        )
+        
+    except Exception as e:
+        logger.error(f"Error embedding texts: {e}")
+        raise HTTPException(status_code=500, detail=f"Internal server error: {str(e)}")
+
+@app.post("/collections/delete", response_model=DeleteCollectionsResponse)
+async def delete_collections(request: DeleteCollectionsRequest):
+    """
+    Drop the vector collections of deleted documents in one call
+    """
+    try:
+        start_time = time.time()
+        result = rag_service.delete_collections(request.collectionNames)
+        return DeleteCollectionsResponse(**result, processingTime=time.time() - start_time)
+        
+    except Exception as e:
+        logger.error(f"Error deleting collections: {e}")
+        raise HTTPException(status_code=500, detail=f"Internal server error: {str(e)}")
+
+@app.post("/query/stream")
+async def query_document_stream(request: QueryRequest):
+    """
+    Query a document, streaming the answer as newline-delimited JSON events
+    """
+    logger.info(f"Streaming query for document {request.documentId}: {request.query}")
+    
+    def events():
+        try:
+            for event in rag_service.query_document_stream(
+                document_id=request.documentId,
+                query=request.query,
+                top_k=5,
+                collection_name=request.collectionName
+            ):
+                yield json.dumps(event) + "\n"
+        except Exception as e:
+            logger.error(f"Error streaming query: {e}")
+            yield json.dumps({'type': 'error', 'text': str(e)}) + "\n"
+    
+    return StreamingResponse(events(), media_type="application/x-ndjson")
+
 if __name__ == "__main__":
     import uvicorn
     uvicorn.run(app, host="0.0.0.0", port=8000)
\ No newline at end of file
@@ -5,6 +5,11 @@ class ProcessDocumentRequest(BaseModel):
     documentId: str = Field(..., description="Unique document identifier")
     filePath: str = Field(..., description="Path to the document file")
 
+class ProcessChunksRequest(BaseModel):
+    documentId: str = Field(..., description="Unique document identifier")
+    chunksPath: str = Field(..., description="Path to the chunk file extracted by the backend")
+    includeEmbeddings: bool = Field(False, description="Also stream every chunk's embedding, for retrieval in the backend")
+
 class ProcessDocumentResponse(BaseModel):
     status: str
     chunkCount: int
@@ -14,12 +19,57 @@ class ProcessDocumentResponse(BaseModel):
 class QueryRequest(BaseModel):
     documentId: str = Field(..., description="Document ID to query")
     query: str = Field(..., min_length=1, description="User's question")
+    collectionName: Optional[str] = Field(None, description="Vector collection to search, defaults to the document's own")
 
 class Citation(BaseModel):
+    chunkId: Optional[str] = None
     page: int
     snippet: str
     relevance: float
 
+class RetrieveRequest(BaseModel):
+    documentId: str = Field(..., description="Document ID to search")
+    query: str = Field(..., min_length=1, description="User's question")
+    collectionName: Optional[str] = Field(None, description="Vector collection to search, defaults to the document's own")
+    topK: int = Field(5, ge=1, le=50, description="Number of chunks to return")
+
+class RetrievedChunk(Citation):
+    text: str
+
+class RetrieveResponse(BaseModel):
+    sources: List[RetrievedChunk]
+    processingTime: float
+
+class GenerateContext(BaseModel):
+    documentId: Optional[str] = None
+    chunkId: Optional[str] = None
+    page: Optional[int] = None
+    text: str
+
+class GenerateRequest(BaseModel):
+    query: str = Field(..., min_length=1, description="User's question")
+    contexts: List[GenerateContext] = Field(..., min_length=1, description="Chunks to answer from, most relevant first")
+
+class GenerateResponse(BaseModel):
+    answer: str
+    processingTime: float
+
+class EmbedRequest(BaseModel):
+    texts: List[str] = Field(..., min_length=1, max_length=64, description="Texts to embed, e.g. one query")
+
+class EmbedResponse(BaseModel):
+    embeddings: List[List[float]]
+    dimensions: int
+    processingTime: float
+
+class DeleteCollectionsRequest(BaseModel):
+    collectionNames: List[str] = Field(..., max_length=1000, description="Vector collections to drop")
+
+class DeleteCollectionsResponse(BaseModel):
+    deleted: int
+    missing: int
+    processingTime: float
+
 class QueryResponse(BaseModel):
     answer: str
     sources: List[Citation]
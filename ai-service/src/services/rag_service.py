@@ -1,7 +1,7 @@
 import os
 import time
 import logging
-from typing import List, Dict, Tuple
+from typing import List, Dict, Tuple, Iterator
 from pathlib import Path
 
 import chromadb
@@ -10,6 +10,7 @@ from sentence_transformers import SentenceTransformer
 from anthropic import Anthropic
 
 from src.services.document_processor import DocumentProcessor
+from src.utils.chunk_file import read_chunks
 
 logger = logging.getLogger(__name__)
 
@@ -64,59 +65,149 @@ class RAGService:
                 overlap=int(os.getenv('CHUNK_OVERLAP', 50))
             )
             
-            # Step 3: Generate embeddings
-            logger.info(f"Generating embeddings for {len(chunks)} chunks")
-            chunk_texts = [chunk['text'] for chunk in chunks]
-            embeddings = self.embedding_model.encode(chunk_texts).tolist()
+            return self._store_chunks(document_id, chunks, start_time, page_count)
             
-            # Step 4: Store in ChromaDB
-            collection_name = f"doc_{document_id}"
-            logger.info(f"Creating ChromaDB collection: {collection_name}")
-            
-            # Delete collection if it exists
-            try:
-                self.chroma_client.delete_collection(name=collection_name)
-            except:
-                pass
-            
-            collection = self.chroma_client.create_collection(name=collection_name)
-            
-            # Prepare data for ChromaDB
-            ids = [f"chunk_{i}" for i in range(len(chunks))]
-            metadatas = [
-                {
-                    'chunk_index': chunk['chunk_index'],
-                    'word_count': chunk['word_count'],
-                    'document_id': document_id
-                }
-                for chunk in chunks
-            ]
-            
-            # Add to collection
-            collection.add(
-                ids=ids,
-                embeddings=embeddings,
-                documents=chunk_texts,
-                metadatas=metadatas
-            )
-            
-            processing_time = time.time() - start_time
-            
-            logger.info(f"Document processed in {processing_time:.2f}s")
+        except Exception as e:
+            logger.error(f"Error processing document: {e}")
+            raise
+    
+    def process_chunks(self, document_id: str, chunks_path: str) -> Dict[str, any]:
+        """
+        Embed and store chunks already extracted by the backend, without
+        parsing the original file
+        
+        Returns:
+            Dict with processing statistics
+        """
+        start_time = time.time()
+        
+        try:
+            logger.info(f"Reading chunks from {chunks_path}")
+            chunks = read_chunks(chunks_path)
+            if not chunks:
+                raise ValueError(f"No chunks in {chunks_path}")
+            page_count = max(chunk['page_end'] for chunk in chunks)
             
-            return {
-                'status': 'success',
-                'chunkCount': len(chunks),
-                'processingTime': processing_time,
-                'pageCount': page_count,
-                'message': f'Successfully processed {len(chunks)} chunks'
-            }
+            return self._store_chunks(document_id, chunks, start_time, page_count)
             
         except Exception as e:
-            logger.error(f"Error processing document: {e}")
+            logger.error(f"Error processing chunks: {e}")
             raise
     
-    def query_document(self, document_id: str, query: str, top_k: int = 5) -> Dict[str, any]:
+    def process_chunks_stream(self, document_id: str, chunks_path: str,
+                              include_embeddings: bool = False) -> Iterator[Dict[str, any]]:
+        """
+        Like process_chunks, but yields progress events while embedding
+        
+        Yields:
+            {'type': 'progress', 'progress': 0..1} events, then
+            {'type': 'done', ...processing statistics}
+            With include_embeddings, also {'type': 'embeddings', 'start': i,
+            'embeddings': [...]} events carrying every chunk's vector in order
+        """
+        start_time = time.time()
+        
+        logger.info(f"Reading chunks from {chunks_path}")
+        chunks = read_chunks(chunks_path)
+        if not chunks:
+            raise ValueError(f"No chunks in {chunks_path}")
+        page_count = max(chunk['page_end'] for chunk in chunks)
+        
+        for event in self._store_chunks_stream(document_id, chunks, start_time, page_count, include_embeddings):
+            yield event
+    
+    def _store_chunks(self, document_id: str, chunks: List[Dict[str, any]], start_time: float,
+                      page_count: int) -> Dict[str, any]:
+        """Embed chunks and replace the document's collection with them"""
+        for event in self._store_chunks_stream(document_id, chunks, start_time, page_count):
+            if event['type'] == 'done':
+                result = dict(event)
+                del result['type']
+                return result
+    
+    def _store_chunks_stream(self, document_id: str, chunks: List[Dict[str, any]], start_time: float,
+                             page_count: int, include_embeddings: bool = False) -> Iterator[Dict[str, any]]:
+        """Embed chunks in batches, reporting progress, then replace the document's collection"""
+        # Step 3: Generate embeddings; embedding dominates ingestion time, so it is 0-90% of progress
+        logger.info(f"Generating embeddings for {len(chunks)} chunks")
+        chunk_texts = [chunk['text'] for chunk in chunks]
+        batch_size = int(os.getenv('EMBEDDING_BATCH_SIZE', 64))
+        embeddings = []
+        for start in range(0, len(chunk_texts), batch_size):
+            batch = self.embedding_model.encode(chunk_texts[start:start + batch_size]).tolist()
+            embeddings.extend(batch)
+            if include_embeddings:
+                for event in self._embedding_events(start, batch):
+                    yield event
+            yield {'type': 'progress', 'progress': round(0.9 * len(embeddings) / len(chunk_texts), 3)}
+        
+        # Step 4: Store in ChromaDB
+        collection_name = f"doc_{document_id}"
+        logger.info(f"Creating ChromaDB collection: {collection_name}")
+        
+        # Delete collection if it exists
+        try:
+            self.chroma_client.delete_collection(name=collection_name)
+        except:
+            pass
+        
+        collection = self.chroma_client.create_collection(name=collection_name)
+        
+        # Prepare data for ChromaDB
+        ids = [f"chunk_{i}" for i in range(len(chunks))]
+        metadatas = []
+        for chunk in chunks:
+            metadata = {
+                'chunk_index': chunk['chunk_index'],
+                'word_count': chunk['word_count'],
+                'document_id': document_id
+            }
+            if 'page_start' in chunk:
+                metadata['page_start'] = chunk['page_start']
+                metadata['page_end'] = chunk['page_end']
+            metadatas.append(metadata)
+        
+        # Add to collection
+        collection.add(
+            ids=ids,
+            embeddings=embeddings,
+            documents=chunk_texts,
+            metadatas=metadatas
+        )
+        
+        processing_time = time.time() - start_time
+        
+        logger.info(f"Document processed in {processing_time:.2f}s")
+        
+        yield {'type': 'progress', 'progress': 1.0}
+        yield {
+            'type': 'done',
+            'status': 'success',
+            'chunkCount': len(chunks),
+            'processingTime': processing_time,
+            'pageCount': page_count,
+            'message': f'Successfully processed {len(chunks)} chunks'
+        }
+    
+    def embed(self, texts: List[str]) -> List[List[float]]:
+        """Embed texts with the model used for chunks, e.g. a query for retrieval done elsewhere"""
+        return self.embedding_model.encode(texts, normalize_embeddings=True).tolist()
+    
+    @staticmethod
+    def _embedding_events(start: int, vectors: List[List[float]]) -> Iterator[Dict[str, any]]:
+        """Split vectors into events of about EMBEDDING_EVENT_FLOATS floats, which keeps each NDJSON line small"""
+        if not vectors:
+            return
+        rows = max(1, int(os.getenv('EMBEDDING_EVENT_FLOATS', 8192)) // len(vectors[0]))
+        for offset in range(0, len(vectors), rows):
+            yield {
+                'type': 'embeddings',
+                'start': start + offset,
+                # float32 precision is all the receiver keeps
+                'embeddings': [[round(value, 7) for value in vector] for vector in vectors[offset:offset + rows]]
+            }
+    
+    def query_document(self, document_id: str, query: str, top_k: int = 5, collection_name: str = None) -> Dict[str, any]:
         """
         Query a document using RAG pipeline
         
@@ -124,6 +215,7 @@ class RAGService:
             document_id: ID of the document to query
             query: User's question
             top_k: Number of chunks to retrieve
+            collection_name: Collection to search (shared by deduplicated documents)
         
         Returns:
             Dict with answer, sources, and metadata
@@ -131,46 +223,7 @@ class RAGService:
         start_time = time.time()
         
         try:
-            # Step 1: Get collection
-            collection_name = f"doc_{document_id}"
-            collection = self.chroma_client.get_collection(name=collection_name)
-            
-            # Step 2: Generate query embedding
-            logger.info(f"Generating query embedding for: {query}")
-            query_embedding = self.embedding_model.encode([query])[0].tolist()
-            
-            # Step 3: Retrieve relevant chunks
-            logger.info(f"Retrieving top {top_k} relevant chunks")
-            results = collection.query(
-                query_embeddings=[query_embedding],
-                n_results=top_k
-            )
-            
-            # Step 4: Build context from retrieved chunks
-            contexts = results['documents'][0]
-            metadatas = results['metadatas'][0]
-            distances = results['distances'][0]
-            
-            # Build prompt
-            context_text = "\n\n".join([
-                f"[Chunk {i+1}]\n{context}"
-                for i, context in enumerate(contexts)
-            ])
-            
-            prompt = f"""You are a helpful AI assistant that answers questions based strictly on the provided document context.
-
-Context from document:
-{context_text}
-
-Question: {query}
-
-Instructions:
-- Answer based ONLY on the information in the context above
-- If the context doesn't contain enough information to answer, say so
-- Be specific and cite which chunk(s) support your answer
-- Keep your answer concise and focused
-
-Answer:"""
+            prompt, sources = self._retrieve(document_id, query, top_k, collection_name)
             
             # Step 5: Call Claude API
             logger.info("Calling Claude API")
@@ -185,18 +238,6 @@ Answer:"""
             
             answer = message.content[0].text
             
-            # Step 6: Prepare response with citations
-            sources = []
-            for i, (metadata, distance) in enumerate(zip(metadatas, distances)):
-                # Convert distance to similarity score (lower distance = higher similarity)
-                similarity = 1 / (1 + distance)
-                
-                sources.append({
-                    'page': metadata.get('chunk_index', 0) + 1,  # Use chunk as "page"
-                    'snippet': contexts[i][:200] + "...",  # First 200 chars
-                    'relevance': round(similarity, 3)
-                })
-            
             processing_time = time.time() - start_time
             
             # Calculate confidence based on top similarity score
@@ -213,4 +254,161 @@ Answer:"""
             
         except Exception as e:
             logger.error(f"Error querying document: {e}")
-            raise
\ No newline at end of file
+            raise
+    
+    def query_document_stream(self, document_id: str, query: str, top_k: int = 5,
+                              collection_name: str = None) -> Iterator[Dict[str, any]]:
+        """
+        Query a document, yielding the answer as it is generated
+        
+        Yields one 'sources' event, then 'token' events with answer text,
+        then a final 'done' event.
+        """
+        start_time = time.time()
+        
+        prompt, sources = self._retrieve(document_id, query, top_k, collection_name)
+        yield {
+            'type': 'sources',
+            'sources': sources,
+            'confidence': sources[0]['relevance'] if sources else 0.0
+        }
+        
+        logger.info("Streaming from Claude API")
+        with self.anthropic_client.messages.stream(
+            model=self.claude_model,
+            max_tokens=int(os.getenv('MAX_TOKENS', 500)),
+            temperature=float(os.getenv('TEMPERATURE', 0.2)),
+            messages=[
+                {"role": "user", "content": prompt}
+            ]
+        ) as stream:
+            for text in stream.text_stream:
+                yield {'type': 'token', 'text': text}
+        
+        processing_time = time.time() - start_time
+        logger.info(f"Streamed query processed in {processing_time:.2f}s")
+        yield {'type': 'done', 'processingTime': processing_time}
+    
+    def retrieve(self, document_id: str, query: str, top_k: int = 5,
+                 collection_name: str = None) -> List[Dict[str, any]]:
+        """
+        Retrieve the most relevant chunks of a document without generating an answer
+        
+        Returns:
+            Citations with the full chunk 'text', most relevant first
+        """
+        # Step 1: Get collection
+        collection_name = collection_name or f"doc_{document_id}"
+        collection = self.chroma_client.get_collection(name=collection_name)
+        
+        # Step 2: Generate query embedding
+        logger.info(f"Generating query embedding for: {query}")
+        query_embedding = self.embedding_model.encode([query])[0].tolist()
+        
+        # Step 3: Retrieve relevant chunks
+        logger.info(f"Retrieving top {top_k} relevant chunks")
+        results = collection.query(
+            query_embeddings=[query_embedding],
+            n_results=top_k
+        )
+        
+        contexts = results['documents'][0]
+        metadatas = results['metadatas'][0]
+        distances = results['distances'][0]
+        
+        # Prepare citations
+        chunks = []
+        for i, (metadata, distance) in enumerate(zip(metadatas, distances)):
+            # Convert distance to similarity score (lower distance = higher similarity)
+            similarity = 1 / (1 + distance)
+            
+            chunks.append({
+                'chunkId': f"chunk_{metadata.get('chunk_index', 0)}",
+                # Real page for backend-extracted chunks, chunk number otherwise
+                'page': metadata.get('page_start', metadata.get('chunk_index', 0) + 1),
+                'snippet': contexts[i][:200] + "...",  # First 200 chars
+                'relevance': round(similarity, 3),
+                'text': contexts[i]
+            })
+        
+        return chunks
+    
+    def generate(self, query: str, contexts: List[Dict[str, any]]) -> Dict[str, any]:
+        """
+        Answer a query from chunks retrieved elsewhere, e.g. merged from several documents
+        
+        Returns:
+            Dict with answer and processing time
+        """
+        start_time = time.time()
+        
+        logger.info(f"Generating answer from {len(contexts)} chunks")
+        message = self.anthropic_client.messages.create(
+            model=self.claude_model,
+            max_tokens=int(os.getenv('MAX_TOKENS', 500)),
+            temperature=float(os.getenv('TEMPERATURE', 0.2)),
+            messages=[
+                {"role": "user", "content": self._build_prompt(query, contexts)}
+            ]
+        )
+        
+        processing_time = time.time() - start_time
+        logger.info(f"Answer generated in {processing_time:.2f}s")
+        
+        return {
+            'answer': message.content[0].text,
+            'processingTime': processing_time
+        }
+    
+    def delete_collections(self, collection_names: List[str]) -> Dict[str, int]:
+        """
+        Drop the vector collections of deleted documents
+        
+        Returns:
+            Dict with the number of collections deleted and already missing
+        """
+        deleted = 0
+        missing = 0
+        for name in set(collection_names):
+            try:
+                self.chroma_client.delete_collection(name=name)
+                deleted += 1
+            except ValueError:
+                # Never created (failed ingestion) or already removed by an earlier attempt
+                missing += 1
+        
+        logger.info(f"Deleted {deleted} collections, {missing} already missing")
+        return {'deleted': deleted, 'missing': missing}
+    
+    def _retrieve(self, document_id: str, query: str, top_k: int,
+                  collection_name: str = None) -> Tuple[str, List[Dict[str, any]]]:
+        """Retrieve relevant chunks and build the prompt and citations"""
+        chunks = self.retrieve(document_id, query, top_k, collection_name)
+        prompt = self._build_prompt(query, chunks)
+        
+        sources = [{key: value for key, value in chunk.items() if key != 'text'} for chunk in chunks]
+        return prompt, sources
+    
+    @staticmethod
+    def _build_prompt(query: str, contexts: List[Dict[str, any]]) -> str:
+        """Build the answer prompt from chunks, labelled by document when there are several"""
+        # Build context from retrieved chunks
+        context_text = "\n\n".join([
+            f"[Chunk {i+1}{' from ' + context['documentId'] if context.get('documentId') else ''}]\n{context['text']}"
+            for i, context in enumerate(contexts)
+        ])
+        
+        return f"""You are a helpful AI assistant that answers questions based strictly on the provided document context.
+
+Context from document:
+{context_text}
+
+Question: {query}
+
+Instructions:
+- Answer based ONLY on the information in the context above
+- If the context doesn't contain enough information to answer, say so
+- Be specific and cite which chunk(s) support your answer
+- Keep your answer concise and focused
+
+Answer:"""
@@ -0,0 +1,51 @@
+import mmap
+import struct
+from pathlib import Path
+from typing import List, Dict
+
+# Layout written by the backend's ChunkFile (big-endian):
+#   header   magic "DMCK" (int), version (int)
+#   text     UTF-8 text of every chunk, back to back
+#   index    per chunk: offset (long), length (int), start page, end page, word count (ints)
+#   trailer  index offset (long), chunk count (int), magic (int)
+MAGIC = 0x444D434B
+VERSION = 1
+HEADER = struct.Struct('>ii')
+ENTRY = struct.Struct('>qiiii')
+TRAILER = struct.Struct('>qii')
+
+
+def read_chunks(file_path: str) -> List[Dict[str, any]]:
+    """
+    Read the chunks extracted by the backend
+
+    Returns:
+        List of chunk dictionaries in the same shape as DocumentProcessor.chunk_text,
+        plus 'page_start' and 'page_end'
+    """
+    path = Path(file_path)
+    if not path.exists():
+        raise FileNotFoundError(f"Chunk file not found: {path}")
+
+    with open(path, 'rb') as file, mmap.mmap(file.fileno(), 0, access=mmap.ACCESS_READ) as data:
+        size = len(data)
+        if size < HEADER.size + TRAILER.size:
+            raise ValueError(f"Not a chunk file: {path}")
+
+        magic, version = HEADER.unpack_from(data, 0)
+        index_offset, count, trailer_magic = TRAILER.unpack_from(data, size - TRAILER.size)
+        if (magic != MAGIC or trailer_magic != MAGIC or version != VERSION
+                or index_offset + count * ENTRY.size != size - TRAILER.size):
+            raise ValueError(f"Incomplete or corrupt chunk file: {path}")
+
+        chunks = []
+        for i in range(count):
+            offset, length, page_start, page_end, word_count = ENTRY.unpack_from(data, index_offset + i * ENTRY.size)
+            chunks.append({
+                'chunk_index': i,
+                'text': data[offset:offset + length].decode('utf-8'),
+                'page_start': page_start,
+                'page_end': page_end,
+                'word_count': word_count
+            })
+        return chunks
@@ -0,0 +1,109 @@
+package com.example.DocumindAI.benchmarks;
+
+import com.example.DocumindAI.dto.QueryResponse;
+import com.example.DocumindAI.dto.QueryStreamEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (de)serialization of the payloads AIServiceClient exchanges with the
+ * AI service: the Map-based request body, the query response and the NDJSON
+ * stream events. Uses an ObjectMapper configured like the application's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AIServiceCodecBenchmark {
+
+    @Param({"1", "5", "20"})
+    private int sources;
+
+    @Param({"50", "500"})
+    private int answerWords;
+
+    private ObjectMapper objectMapper;
+    private ObjectReader responseReader;
+    private ObjectReader eventReader;
+    private Map<String, String> request;
+    private byte[] responseJson;
+    private List<byte[]> streamLines;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        responseReader = objectMapper.readerFor(QueryResponse.class);
+        eventReader = objectMapper.readerFor(QueryStreamEvent.class);
+
+        request = new HashMap<>();
+        request.put("documentId", "doc_0f8fad5b-d9cb-469f-a165-70867728950e");
+        request.put("query", "What are the termination conditions of the agreement?");
+        request.put("collectionName", "doc_0f8fad5b-d9cb-469f-a165-70867728950e");
+
+        QueryResponse response = new QueryResponse();
+        response.setAnswer("word ".repeat(answerWords).trim());
+        response.setConfidence(0.87);
+        response.setProcessingTime(1.25);
+        List<QueryResponse.Source> sourceList = new ArrayList<>();
+        for (int i = 0; i < sources; i++) {
+            QueryResponse.Source source = new QueryResponse.Source();
+            source.setChunkId("chunk_" + i);
+            source.setPage(i + 1);
+            source.setSnippet("snippet text ".repeat(15) + "...");
+            source.setRelevance(0.9 - i * 0.01);
+            sourceList.add(source);
+        }
+        response.setSources(sourceList);
+        responseJson = objectMapper.writeValueAsBytes(response);
+
+        // One sources event, one event per token, one done event
+        streamLines = new ArrayList<>();
+        QueryStreamEvent sourcesEvent = QueryStreamEvent.of("sources", null);
+        sourcesEvent.setSources(sourceList);
+        sourcesEvent.setConfidence(0.87);
+        streamLines.add(objectMapper.writeValueAsBytes(sourcesEvent));
+        for (int i = 0; i < answerWords; i++) {
+            streamLines.add(objectMapper.writeValueAsBytes(QueryStreamEvent.of("token", "word ")));
+        }
+        streamLines.add(objectMapper.writeValueAsBytes(QueryStreamEvent.of("done", null)));
+    }
+
+    @Benchmark
+    public byte[] encodeQueryRequest() throws IOException {
+        return objectMapper.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public QueryResponse decodeQueryResponse() throws IOException {
+        return responseReader.readValue(responseJson);
+    }
+
+    @Benchmark
+    public void decodeStreamEvents(Blackhole blackhole) throws IOException {
+        for (byte[] line : streamLines) {
+            blackhole.consume(eventReader.readValue(line));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.DocumindAI.benchmarks;
+
+import com.example.DocumindAI.DocumindAIApplication;
+import com.example.DocumindAI.EmbeddedMongoConfiguration;
+import com.example.DocumindAI.dto.QueryRequest;
+import com.example.DocumindAI.dto.QueryResponse;
+import com.example.DocumindAI.model.DocumentEntity;
+import com.example.DocumindAI.repository.DocumentRepository;
+import com.example.DocumindAI.service.QueryService;
+import com.example.DocumindAI.support.StubAiServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link QueryService#processQuery} end to end: document lookup, answer
+ * cache, AI service call over HTTP and history write, against the
+ * in-memory MongoDB stand-in and a local fake AI service. Each operation
+ * issues {@code concurrency} queries at once and waits for all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class QueryServiceBenchmark {
+
+    private static final String DOCUMENT_ID = "doc_benchmark";
+
+    @Param({"1", "8", "32"})
+    private int concurrency;
+
+    @Param({"miss", "hit"})
+    private String cache;
+
+    @Param({"0", "20"})
+    private int aiLatencyMillis;
+
+    private StubAiServer aiServer;
+    private ConfigurableApplicationContext context;
+    private QueryService queryService;
+    private Path dataDir;
+    private final AtomicLong queryCounter = new AtomicLong();
+
+    @Setup
+    public void setup() throws IOException {
+        aiServer = StubAiServer.start().withLatency(Duration.ofMillis(aiLatencyMillis));
+        dataDir = Files.createTempDirectory("documind-bench-");
+
+        // Command-line arguments take precedence over application.yml
+        context = new SpringApplicationBuilder(DocumindAIApplication.class, EmbeddedMongoConfiguration.class)
+            .web(WebApplicationType.NONE)
+            .run(
+                "--DocumindAI.ai-service.url=" + aiServer.getUrl(),
+                "--DocumindAI.upload-dir=" + dataDir.resolve("uploads"),
+                "--DocumindAI.processed-dir=" + dataDir.resolve("processed"),
+                "--DocumindAI.ingestion.recovery-initial-delay=3600000",
+                "--logging.level.root=WARN"
+            );
+        queryService = context.getBean(QueryService.class);
+
+        DocumentEntity document = new DocumentEntity();
+        document.setId(DOCUMENT_ID);
+        document.setUserId("benchmark");
+        document.setStatus("processed");
+        document.setChromaCollectionId("doc_" + DOCUMENT_ID);
+        document.setUpdatedAt(LocalDateTime.now().minusMinutes(1));
+        context.getBean(DocumentRepository.class).save(document);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        aiServer.close();
+        FileSystemUtils.deleteRecursively(dataDir);
+    }
+
+    @Benchmark
+    public List<QueryResponse> processQuery() {
+        List<CompletableFuture<QueryResponse>> futures = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            QueryRequest request = new QueryRequest();
+            request.setDocumentId(DOCUMENT_ID);
+            request.setQuery("hit".equals(cache)
+                ? "What is this document about?"
+                : "What is covered in section " + queryCounter.incrementAndGet() + "?");
+            futures.add(queryService.processQuery(request));
+        }
+
+        List<QueryResponse> responses = new ArrayList<>(concurrency);
+        for (CompletableFuture<QueryResponse> future : futures) {
+            responses.add(future.join());
+        }
+        return responses;
+    }
+}
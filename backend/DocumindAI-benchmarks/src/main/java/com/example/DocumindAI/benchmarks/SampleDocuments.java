@@ -0,0 +1,73 @@
+package com.example.DocumindAI.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Synthetic uploads of a given type and approximate size. The content is
+ * only realistic enough for type detection and streaming, not for parsing.
+ */
+final class SampleDocuments {
+
+    private static final String FILLER =
+        "DocuMind benchmark filler text covering retrieval, chunking and answer generation. ";
+
+    private SampleDocuments() {
+    }
+
+    static String fileName(String type) {
+        return "sample." + type;
+    }
+
+    static byte[] generate(String type, int size) {
+        return switch (type) {
+            case "pdf" -> pdf(size);
+            case "docx" -> docx(size);
+            case "txt" -> text(size);
+            default -> throw new IllegalArgumentException("Unknown sample type: " + type);
+        };
+    }
+
+    private static byte[] pdf(int size) {
+        StringBuilder pdf = new StringBuilder("%PDF-1.4\n");
+        int object = 1;
+        while (pdf.length() < size - 16) {
+            pdf.append(object++).append(" 0 obj\n(").append(FILLER).append(")\nendobj\n");
+        }
+        pdf.append("%%EOF\n");
+        return pdf.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] docx(int size) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(size + 1024);
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            // Stored rather than deflated so the archive is roughly the requested size
+            zip.setLevel(0);
+            zip.putNextEntry(new ZipEntry("[Content_Types].xml"));
+            zip.write(("<?xml version=\"1.0\"?><Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                + "<Override PartName=\"/word/document.xml\" ContentType=\""
+                + "application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/></Types>")
+                .getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("word/document.xml"));
+            zip.write(text(size));
+            zip.closeEntry();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] text(int size) {
+        byte[] filler = FILLER.getBytes(StandardCharsets.US_ASCII);
+        byte[] text = new byte[size];
+        for (int i = 0; i < size; i++) {
+            text[i] = filler[i % filler.length];
+        }
+        return text;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.DocumindAI.benchmarks;
+
+import com.example.DocumindAI.service.UploadPipeline;
+import com.example.DocumindAI.service.UploadPipeline.StoredUpload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload hot path: MIME detection on the content prefix, and the full
+ * single-pass store (detection, SHA-256, write to disk).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UploadPipelineBenchmark {
+
+    @Param({"pdf", "docx", "txt"})
+    private String type;
+
+    @Param({"65536", "1048576", "16777216"})
+    private int size;
+
+    private UploadPipeline pipeline;
+    private byte[] content;
+    private byte[] prefix;
+    private String fileName;
+    private Path directory;
+
+    @Setup
+    public void setup() throws IOException {
+        pipeline = new UploadPipeline();
+        ReflectionTestUtils.setField(pipeline, "maxFileSize", DataSize.ofMegabytes(512));
+        content = SampleDocuments.generate(type, size);
+        // Same prefix length the pipeline reads before detecting
+        prefix = Arrays.copyOf(content, Math.min(content.length, 64 * 1024));
+        fileName = SampleDocuments.fileName(type);
+        directory = Files.createTempDirectory("documind-bench-");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public String detectType() {
+        return pipeline.detectType(prefix, prefix.length, fileName);
+    }
+
+    @Benchmark
+    public String store() throws IOException {
+        StoredUpload upload = pipeline.store(new ByteArrayInputStream(content), directory, fileName);
+        Files.delete(upload.tempFile());
+        return upload.contentHash();
+    }
+}
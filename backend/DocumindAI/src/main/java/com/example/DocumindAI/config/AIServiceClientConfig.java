@@ -0,0 +1,97 @@
+package com.example.DocumindAI.config;
+
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * HTTP plumbing for the AI service: a pooled, keep-alive reactor-netty
+ * client plus the circuit breaker and bulkhead registries used by
+ * {@link com.example.DocumindAI.service.AIServiceClient}.
+ */
+@Configuration
+public class AIServiceClientConfig {
+    
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider aiServiceConnectionProvider(
+            @Value("${DocumindAI.ai-service.max-connections:100}") int maxConnections
+    ) {
+        return ConnectionProvider.builder("ai-service")
+            .maxConnections(maxConnections)
+            .pendingAcquireTimeout(Duration.ofSeconds(10))
+            .maxIdleTime(Duration.ofSeconds(30))
+            .evictInBackground(Duration.ofSeconds(60))
+            .build();
+    }
+    
+    @Bean
+    public WebClient aiServiceWebClient(
+            WebClient.Builder builder,
+            ConnectionProvider aiServiceConnectionProvider,
+            @Value("${DocumindAI.ai-service.url}") String aiServiceUrl
+    ) {
+        HttpClient httpClient = HttpClient.create(aiServiceConnectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10_000)
+            .keepAlive(true);
+        
+        return builder
+            .baseUrl(aiServiceUrl)
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .build();
+    }
+    
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry(
+            MeterRegistry meterRegistry,
+            @Value("${DocumindAI.ai-service.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+            @Value("${DocumindAI.ai-service.circuit-breaker.minimum-calls:20}") int minimumCalls,
+            @Value("${DocumindAI.ai-service.circuit-breaker.open-duration:30s}") Duration openDuration
+    ) {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+            .failureRateThreshold(failureRateThreshold)
+            .minimumNumberOfCalls(minimumCalls)
+            .slidingWindowSize(Math.max(minimumCalls, 50))
+            .waitDurationInOpenState(openDuration)
+            .permittedNumberOfCallsInHalfOpenState(5)
+            .recordException(AIServiceClientConfig::isServiceFailure)
+            .build();
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(config);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+        return registry;
+    }
+    
+    // Only failures of the service itself count; a burst of bad requests must not open the circuit for everyone
+    private static boolean isServiceFailure(Throwable error) {
+        if (error instanceof WebClientRequestException || error instanceof TimeoutException) {
+            return true;
+        }
+        if (error instanceof WebClientResponseException responseError) {
+            return responseError.getStatusCode().is5xxServerError();
+        }
+        return false;
+    }
+    
+    @Bean
+    public BulkheadRegistry bulkheadRegistry(MeterRegistry meterRegistry) {
+        BulkheadRegistry registry = BulkheadRegistry.of(BulkheadConfig.ofDefaults());
+        TaggedBulkheadMetrics.ofBulkheadRegistry(registry).bindTo(meterRegistry);
+        return registry;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.DocumindAI.config;
+
+import com.example.DocumindAI.service.TokenBucketRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Per-user rate limits in front of the expensive endpoints, each with its
+ * own rate (requests per second) and burst under
+ * {@code DocumindAI.rate-limit}. Batch queries carry up to a thousand
+ * queries each, so they get a much lower rate than single ones.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class RateLimitConfig implements WebMvcConfigurer {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${DocumindAI.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${DocumindAI.rate-limit.max-keys:100000}")
+    private long maxKeys;
+
+    @Value("${DocumindAI.rate-limit.query.rate:5}")
+    private double queryRate;
+
+    @Value("${DocumindAI.rate-limit.query.burst:20}")
+    private int queryBurst;
+
+    @Value("${DocumindAI.rate-limit.batch-query.rate:0.1}")
+    private double batchQueryRate;
+
+    @Value("${DocumindAI.rate-limit.batch-query.burst:2}")
+    private int batchQueryBurst;
+
+    @Value("${DocumindAI.rate-limit.upload.rate:1}")
+    private double uploadRate;
+
+    @Value("${DocumindAI.rate-limit.upload.burst:10}")
+    private int uploadBurst;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        registry.addInterceptor(interceptor("query", queryRate, queryBurst))
+            .addPathPatterns("/api/query", "/api/query/stream", "/api/query/multi");
+        registry.addInterceptor(interceptor("batch-query", batchQueryRate, batchQueryBurst))
+            .addPathPatterns("/api/query/batch");
+        // Starting a chunked upload counts, its chunks do not
+        registry.addInterceptor(interceptor("upload", uploadRate, uploadBurst))
+            .addPathPatterns("/api/documents/upload", "/api/documents/upload/*", "/api/documents/uploads");
+    }
+
+    private RateLimitInterceptor interceptor(String name, double rate, int burst) {
+        return new RateLimitInterceptor(new TokenBucketRateLimiter(name, rate, burst, maxKeys), meterRegistry);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.DocumindAI.config;
+
+import com.example.DocumindAI.service.TokenBucketRateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies one {@link TokenBucketRateLimiter} to the endpoints it is
+ * registered for, per user and client address. The user is the
+ * {@code userId} parameter, or the {@code X-User-Id} header for JSON
+ * endpoints whose user is only in the body; requests without one are
+ * limited per address alone.
+ * <p>
+ * The user id is whatever the client sends, as there is no authentication
+ * yet. Keying on the address as well keeps a client from spending another
+ * user's tokens, but a client that changes its user id on every request
+ * still gets a fresh bucket each time, and past {@code max-keys} pushes
+ * other users' buckets out (they start again full). Until requests carry an
+ * authenticated user, this limit is a guard against runaway clients, not
+ * against deliberate abuse. Every response carries
+ * {@code RateLimit-Limit}, {@code RateLimit-Remaining} and
+ * {@code RateLimit-Reset} (seconds until the bucket is full); rejected
+ * requests get a 429 with {@code Retry-After}.
+ */
+@Slf4j
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String USER_HEADER = "X-User-Id";
+
+    private final TokenBucketRateLimiter limiter;
+    private final Counter allowed;
+    private final Counter rejected;
+
+    public RateLimitInterceptor(TokenBucketRateLimiter limiter, MeterRegistry meterRegistry) {
+        this.limiter = limiter;
+        this.allowed = meterRegistry.counter("documind.ratelimit.requests", "limit", limiter.getName(), "result", "allowed");
+        this.rejected = meterRegistry.counter("documind.ratelimit.requests", "limit", limiter.getName(), "result", "rejected");
+        meterRegistry.gauge("documind.ratelimit.keys", Tags.of("limit", limiter.getName()),
+            limiter, TokenBucketRateLimiter::trackedKeys);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Async results are dispatched a second time; the request was already counted
+        if (request.getDispatcherType() == DispatcherType.ASYNC || CorsUtils.isPreFlightRequest(request)) {
+            return true;
+        }
+
+        String key = clientKey(request);
+        TokenBucketRateLimiter.Decision decision = limiter.tryAcquire(key);
+        response.setHeader("RateLimit-Limit", String.valueOf(decision.limit()));
+        response.setHeader("RateLimit-Remaining", String.valueOf(decision.remaining()));
+        response.setHeader("RateLimit-Reset", String.valueOf(seconds(decision.resetNanos())));
+        if (decision.allowed()) {
+            allowed.increment();
+            return true;
+        }
+
+        rejected.increment();
+        log.debug("Rate limit {} exceeded by {}", limiter.getName(), key);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(seconds(decision.retryAfterNanos())));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        return false;
+    }
+
+    private static String clientKey(HttpServletRequest request) {
+        String userId = request.getParameter("userId");
+        if (userId == null || userId.isBlank()) {
+            userId = request.getHeader(USER_HEADER);
+        }
+        if (userId == null || userId.isBlank()) {
+            return "addr:" + request.getRemoteAddr();
+        }
+        return "user:" + userId + "@" + request.getRemoteAddr();
+    }
+
+    // Whole seconds, rounded up so clients never retry too early
+    private static long seconds(long nanos) {
+        return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.DocumindAI.config;
+
+import com.example.DocumindAI.service.FileSystemObjectStore;
+import com.example.DocumindAI.service.ObjectStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Hot tier of {@link com.example.DocumindAI.service.DocumentStorage}. Plain
+ * files in {@code upload-dir} for now; an S3-compatible {@link ObjectStore}
+ * can be declared here instead.
+ */
+@Configuration
+public class StorageConfig {
+    
+    @Bean
+    public ObjectStore hotObjectStore(@Value("${DocumindAI.upload-dir}") String uploadDir) throws IOException {
+        return new FileSystemObjectStore(Paths.get(uploadDir));
+    }
+}
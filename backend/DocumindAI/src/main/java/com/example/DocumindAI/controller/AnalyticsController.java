@@ -0,0 +1,120 @@
+package com.example.DocumindAI.controller;
+
+import com.example.DocumindAI.dto.LatencyReport;
+import com.example.DocumindAI.dto.TopQuery;
+import com.example.DocumindAI.model.QueryHistory;
+import com.example.DocumindAI.service.QueryAnalyticsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Query usage and latency dashboards. Each report is scoped to a document
+ * ({@code documentId}), a user ({@code userId}) or, with neither, all
+ * queries, over [{@code from}, {@code to}) - the last 24 hours by default.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+    
+    private static final int MAX_LIMIT = 500;
+    
+    private final QueryAnalyticsService queryAnalyticsService;
+    
+    @GetMapping("/latency")
+    public ResponseEntity<LatencyReport> latency(
+            @RequestParam(value = "documentId", required = false) String documentId,
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "granularity", defaultValue = "hour") String granularity
+    ) {
+        Scope scope = Scope.of(documentId, userId);
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        try {
+            return ResponseEntity.ok(queryAnalyticsService.latency(
+                scope.name(), scope.key(), from != null ? from : end.minusDays(1), end, granularity
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error building latency report: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @GetMapping("/top-queries")
+    public ResponseEntity<List<TopQuery>> topQueries(
+            @RequestParam(value = "documentId", required = false) String documentId,
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "limit", defaultValue = "10") int limit
+    ) {
+        Scope scope = Scope.of(documentId, userId);
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        try {
+            return ResponseEntity.ok(queryAnalyticsService.topQueries(
+                scope.name(), scope.key(), from != null ? from : end.minusDays(1), end, clamp(limit)
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error building top queries: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    /**
+     * Raw history of one document or user, newest first; covers only the
+     * history retention period.
+     */
+    @GetMapping("/history")
+    public ResponseEntity<List<QueryHistory>> history(
+            @RequestParam(value = "documentId", required = false) String documentId,
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "limit", defaultValue = "50") int limit
+    ) {
+        Scope scope = Scope.of(documentId, userId);
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        try {
+            return ResponseEntity.ok(queryAnalyticsService.recentQueries(
+                scope.name(), scope.key(), from != null ? from : end.minusDays(1), end, clamp(limit)
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error reading query history: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    private static int clamp(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+    
+    private record Scope(String name, String key) {
+        static Scope of(String documentId, String userId) {
+            if (documentId != null) {
+                return new Scope(QueryAnalyticsService.SCOPE_DOCUMENT, documentId);
+            }
+            if (userId != null) {
+                return new Scope(QueryAnalyticsService.SCOPE_USER, userId);
+            }
+            return new Scope(QueryAnalyticsService.SCOPE_ALL, QueryAnalyticsService.SCOPE_ALL);
+        }
+    }
+}
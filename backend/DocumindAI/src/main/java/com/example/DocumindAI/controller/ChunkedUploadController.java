@@ -0,0 +1,123 @@
+package com.example.DocumindAI.controller;
+
+import com.example.DocumindAI.dto.InitiateUploadRequest;
+import com.example.DocumindAI.dto.UploadSessionResponse;
+import com.example.DocumindAI.exception.IngestionQueueFullException;
+import com.example.DocumindAI.exception.QuotaExceededException;
+import com.example.DocumindAI.service.ChunkedUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+
+/**
+ * Resumable chunked uploads: POST to start a session, PUT each chunk with its
+ * SHA-256 in {@code X-Chunk-SHA256}, then POST {@code /complete}. GET shows
+ * which chunks are still missing.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/documents/uploads")
+@RequiredArgsConstructor
+public class ChunkedUploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    @PostMapping
+    public ResponseEntity<UploadSessionResponse> initiateUpload(
+            @Valid @RequestBody InitiateUploadRequest request,
+            @RequestParam(value = "userId", defaultValue = "default_user") String userId
+    ) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED)
+                .body(UploadSessionResponse.of(chunkedUploadService.initiate(request, userId)));
+        } catch (QuotaExceededException e) {
+            log.warn("Upload rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(UploadSessionResponse.error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            log.error("Validation error: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(UploadSessionResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error starting upload: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PutMapping(value = "/{sessionId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadSessionResponse> uploadChunk(
+            @PathVariable String sessionId,
+            @PathVariable int index,
+            @RequestHeader(value = "X-Chunk-SHA256", required = false) String sha256,
+            HttpServletRequest request
+    ) {
+        try (InputStream content = request.getInputStream()) {
+            return ResponseEntity.ok(UploadSessionResponse.of(
+                chunkedUploadService.uploadChunk(sessionId, index, content, sha256)
+            ));
+        } catch (IllegalArgumentException e) {
+            log.warn("Chunk {} of {} rejected: {}", index, sessionId, e.getMessage());
+            return ResponseEntity.badRequest().body(UploadSessionResponse.error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(UploadSessionResponse.error(e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("Error writing chunk {} of {}: {}", index, sessionId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<UploadSessionResponse> getUpload(@PathVariable String sessionId) {
+        try {
+            return ResponseEntity.ok(UploadSessionResponse.of(chunkedUploadService.getSession(sessionId)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/{sessionId}/complete")
+    public ResponseEntity<UploadSessionResponse> completeUpload(@PathVariable String sessionId) {
+        try {
+            return ResponseEntity.ok(UploadSessionResponse.of(chunkedUploadService.complete(sessionId)));
+        } catch (IngestionQueueFullException e) {
+            log.warn("Upload completion rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(UploadSessionResponse.error(e.getMessage()));
+        } catch (QuotaExceededException e) {
+            log.warn("Upload completion rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(UploadSessionResponse.error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            log.error("Validation error: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(UploadSessionResponse.error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(UploadSessionResponse.error(e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("Error completing upload {}: {}", sessionId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String sessionId) {
+        try {
+            chunkedUploadService.abort(sessionId);
+            return ResponseEntity.noContent().build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("Error aborting upload {}: {}", sessionId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
@@ -1,16 +1,48 @@
 package com.example.DocumindAI.controller;
 
+import com.example.DocumindAI.dto.BulkDeleteRequest;
+import com.example.DocumindAI.dto.BulkDeleteResponse;
+import com.example.DocumindAI.dto.DocumentPage;
 import com.example.DocumindAI.dto.DocumentUploadResponse;
+import com.example.DocumindAI.dto.StorageUsage;
+import com.example.DocumindAI.exception.IngestionQueueFullException;
+import com.example.DocumindAI.exception.QuotaExceededException;
 import com.example.DocumindAI.model.DocumentEntity;
+import com.example.DocumindAI.service.DocumentEventBus;
+import com.example.DocumindAI.service.DocumentListingService;
+import com.example.DocumindAI.service.DocumentListingService.DocumentFilter;
 import com.example.DocumindAI.service.DocumentService;
+import com.example.DocumindAI.service.DocumentStorage;
+import com.example.DocumindAI.service.StorageQuotaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 
 @Slf4j
 @RestController
@@ -19,6 +51,14 @@ import java.util.List;
 public class DocumentController {
     
     private final DocumentService documentService;
+    private final DocumentListingService documentListingService;
+    private final DocumentEventBus documentEventBus;
+    private final DocumentStorage documentStorage;
+    private final StorageQuotaService storageQuotaService;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${DocumindAI.events.max-connection-age:30m}")
+    private Duration maxConnectionAge;
     
     @PostMapping("/upload")
     public ResponseEntity<DocumentUploadResponse> uploadDocument(
@@ -36,6 +76,15 @@ public class DocumentController {
             
             return ResponseEntity.ok(response);
             
+        } catch (IngestionQueueFullException e) {
+            log.warn("Upload rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(new DocumentUploadResponse(null, "error", e.getMessage()));
+        } catch (QuotaExceededException e) {
+            log.warn("Upload rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(new DocumentUploadResponse(null, "error", e.getMessage()));
         } catch (IllegalArgumentException e) {
             log.error("Validation error: {}", e.getMessage());
             return ResponseEntity.badRequest().body(
@@ -49,6 +98,136 @@ public class DocumentController {
         }
     }
     
+    /**
+     * Uploads many files in one request. Results are streamed back as
+     * newline-delimited JSON as each file is stored, one
+     * {@code BatchUploadResult} per line.
+     */
+    @PostMapping("/upload/batch")
+    public ResponseEntity<ResponseBodyEmitter> uploadDocuments(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "userId", defaultValue = "default_user") String userId
+    ) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(0L);
+        
+        try {
+            documentService.uploadDocuments(files, userId, result -> {
+                try {
+                    emitter.send(objectMapper.writeValueAsString(result) + "\n", MediaType.TEXT_PLAIN);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    log.error("Batch upload stream aborted: {}", error.getMessage());
+                    emitter.completeWithError(error);
+                } else {
+                    emitter.complete();
+                }
+            });
+        } catch (IngestionQueueFullException e) {
+            log.warn("Batch upload rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .build();
+        }
+        
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(emitter);
+    }
+    
+    /**
+     * Raw-body upload that bypasses multipart buffering entirely; the request
+     * stream is piped straight through the upload pipeline to disk.
+     */
+    @PostMapping(value = "/upload/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<DocumentUploadResponse> uploadDocumentStream(
+            HttpServletRequest request,
+            @RequestParam("fileName") String fileName,
+            @RequestParam(value = "userId", defaultValue = "default_user") String userId
+    ) {
+        try (InputStream content = request.getInputStream()) {
+            DocumentEntity document = documentService.uploadDocument(content, fileName, userId);
+            
+            DocumentUploadResponse response = new DocumentUploadResponse(
+                document.getId(),
+                document.getStatus(),
+                "Document uploaded successfully and is being processed"
+            );
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (IngestionQueueFullException e) {
+            log.warn("Upload rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(new DocumentUploadResponse(null, "error", e.getMessage()));
+        } catch (QuotaExceededException e) {
+            log.warn("Upload rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(new DocumentUploadResponse(null, "error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            log.error("Validation error: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(
+                new DocumentUploadResponse(null, "error", e.getMessage())
+            );
+        } catch (Exception e) {
+            log.error("Error uploading document: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                new DocumentUploadResponse(null, "error", "Failed to upload document")
+            );
+        }
+    }
+    
+    /**
+     * Pushes status transitions and ingestion progress of the user's
+     * documents (or only {@code documentId}s) as Server-Sent Events, instead
+     * of clients polling each document. Idle connections hold no thread and
+     * get a keep-alive comment every heartbeat; they are closed after
+     * {@code DocumindAI.events.max-connection-age}, and EventSource clients
+     * reconnect on their own.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(
+            @RequestParam(value = "userId", defaultValue = "default_user") String userId,
+            @RequestParam(value = "documentId", required = false) List<String> documentIds
+    ) {
+        SseEmitter emitter = new SseEmitter(maxConnectionAge.toMillis());
+        
+        Flux<SseEmitter.SseEventBuilder> events = Flux.merge(
+            documentEventBus.subscribe(userId, documentIds == null ? Set.of() : Set.copyOf(documentIds))
+                .map(event -> SseEmitter.event().name(event.getType()).data(event)),
+            documentEventBus.heartbeat()
+                .map(tick -> SseEmitter.event().comment("keep-alive"))
+        );
+        // Writes may block on a slow client, so never on the publishing thread
+        Disposable subscription = events
+            .publishOn(Schedulers.boundedElastic())
+            .subscribe(event -> {
+                try {
+                    emitter.send(event);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, emitter::completeWithError, emitter::complete);
+        
+        emitter.onCompletion(subscription::dispose);
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(error -> subscription.dispose());
+        return emitter;
+    }
+    
+    /**
+     * The user's stored bytes and documents against their storage quota.
+     */
+    @GetMapping("/usage")
+    public ResponseEntity<StorageUsage> getUsage(
+            @RequestParam(value = "userId", defaultValue = "default_user") String userId
+    ) {
+        return ResponseEntity.ok(storageQuotaService.usage(userId));
+    }
+    
     @GetMapping("/{documentId}")
     public ResponseEntity<DocumentEntity> getDocument(@PathVariable String documentId) {
         try {
@@ -59,6 +238,93 @@ public class DocumentController {
         }
     }
     
+    /**
+     * Streams the original upload. Originals kept gzipped in cold storage are
+     * sent as stored, with {@code Content-Encoding: gzip}, to clients that
+     * accept it.
+     */
+    @GetMapping("/{documentId}/content")
+    public ResponseEntity<StreamingResponseBody> downloadDocument(
+            @PathVariable String documentId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        DocumentEntity document;
+        DocumentStorage.StoredObject stored;
+        try {
+            document = documentService.getDocument(documentId);
+            stored = documentStorage.stat(document.getFileName()).orElse(null);
+        } catch (IOException e) {
+            log.error("Error reading original of {}: {}", documentId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+        if (stored == null) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        boolean gzip = stored.gzipped() && acceptEncoding != null && acceptEncoding.contains("gzip");
+        StreamingResponseBody body = output ->
+            documentStorage.transferTo(document.getFileName(), Channels.newChannel(output), gzip);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(document.getFileType()))
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(document.getOriginalFileName())
+                .build()
+                .toString());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        } else {
+            response.contentLength(stored.size());
+        }
+        return response.body(body);
+    }
+    
+    /**
+     * Paginated listing of summaries. Pass the returned {@code nextCursor}
+     * as {@code cursor} to fetch the next page.
+     */
+    @GetMapping
+    public ResponseEntity<DocumentPage> listDocumentPage(
+            @RequestParam(value = "userId", defaultValue = "default_user") String userId,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "fileType", required = false) String fileType,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "50") int limit
+    ) {
+        try {
+            DocumentFilter filter = new DocumentFilter(userId, status, fileType, from, to);
+            return ResponseEntity.ok(documentListingService.listDocuments(filter, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * Streams every matching summary as a JSON array, for exports too large
+     * to page through.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportDocuments(
+            @RequestParam(value = "userId", defaultValue = "default_user") String userId,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "fileType", required = false) String fileType,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
+    ) {
+        DocumentFilter filter = new DocumentFilter(userId, status, fileType, from, to);
+        StreamingResponseBody body = output -> documentListingService.exportDocuments(filter, output);
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"documents.json\"")
+            .body(body);
+    }
+    
+    /**
+     * Full, unpaginated list. Kept for existing clients; prefer the paginated
+     * listing above for users with many documents.
+     */
     @GetMapping("/list")
     public ResponseEntity<List<DocumentEntity>> listDocuments(
             @RequestParam(value = "userId", defaultValue = "default_user") String userId
@@ -67,6 +333,31 @@ public class DocumentController {
         return ResponseEntity.ok(documents);
     }
     
+    @PutMapping("/{documentId}/tags")
+    public ResponseEntity<DocumentEntity> setTags(@PathVariable String documentId, @RequestBody List<String> tags) {
+        try {
+            return ResponseEntity.ok(documentService.setTags(documentId, tags));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @PostMapping("/{documentId}/reprocess")
+    public ResponseEntity<DocumentEntity> reprocessDocument(@PathVariable String documentId) {
+        try {
+            return ResponseEntity.accepted().body(documentService.reprocessDocument(documentId));
+        } catch (IngestionQueueFullException e) {
+            log.warn("Reprocessing rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
     @DeleteMapping("/{documentId}")
     public ResponseEntity<Void> deleteDocument(@PathVariable String documentId) {
         try {
@@ -76,4 +367,19 @@ public class DocumentController {
             return ResponseEntity.notFound().build();
         }
     }
+    
+    /**
+     * Deletes many documents of one user at once, e.g. to purge an account.
+     * Documents disappear immediately; storage is reclaimed in the background.
+     */
+    @PostMapping("/bulk-delete")
+    public ResponseEntity<BulkDeleteResponse> deleteDocuments(@Valid @RequestBody BulkDeleteRequest request) {
+        try {
+            long deleted = documentService.deleteDocuments(request.getUserId(), request.getDocumentIds());
+            return ResponseEntity.accepted().body(new BulkDeleteResponse(deleted));
+        } catch (Exception e) {
+            log.error("Error deleting documents of {}: {}", request.getUserId(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
 }
\ No newline at end of file
@@ -1,14 +1,29 @@
 package com.example.DocumindAI.controller;
 
+import com.example.DocumindAI.dto.BatchQueryRequest;
+import com.example.DocumindAI.dto.MultiQueryRequest;
+import com.example.DocumindAI.dto.MultiQueryResponse;
 import com.example.DocumindAI.dto.QueryRequest;
 import com.example.DocumindAI.dto.QueryResponse;
+import com.example.DocumindAI.dto.QueryStreamEvent;
+import com.example.DocumindAI.model.DocumentEntity;
 import com.example.DocumindAI.service.QueryService;
 import jakarta.validation.Valid;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @RestController
@@ -17,20 +32,105 @@ import org.springframework.web.bind.annotation.*;
 public class QueryController {
     
     private final QueryService queryService;
+    private final ObjectMapper objectMapper;
     
     @PostMapping
-    public ResponseEntity<QueryResponse> query(@Valid @RequestBody QueryRequest request) {
+    public CompletableFuture<ResponseEntity<QueryResponse>> query(@Valid @RequestBody QueryRequest request) {
+        return queryService.processQuery(request)
+            .thenApply(ResponseEntity::ok)
+            .exceptionally(error -> {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                
+                if (cause instanceof IllegalStateException) {
+                    log.error("Document not ready: {}", cause.getMessage());
+                    return ResponseEntity.status(HttpStatus.CONFLICT).build();
+                }
+                
+                log.error("Error processing query: {}", cause.getMessage());
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            });
+    }
+    
+    /**
+     * Answers one query across a list of documents, a tag or the user's whole
+     * library, with sources from all of them ranked together.
+     */
+    @PostMapping("/multi")
+    public CompletableFuture<ResponseEntity<MultiQueryResponse>> multiQuery(@Valid @RequestBody MultiQueryRequest request) {
+        return queryService.processMultiQuery(request)
+            .thenApply(ResponseEntity::ok)
+            .exceptionally(error -> {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                
+                if (cause instanceof IllegalArgumentException) {
+                    log.error("Validation error: {}", cause.getMessage());
+                    return ResponseEntity.badRequest().build();
+                }
+                if (cause instanceof IllegalStateException) {
+                    log.error("No documents to query: {}", cause.getMessage());
+                    return ResponseEntity.status(HttpStatus.CONFLICT).build();
+                }
+                
+                log.error("Error processing multi-document query: {}", cause.getMessage());
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            });
+    }
+    
+    /**
+     * Answers many queries in one request. Results are streamed back as
+     * newline-delimited JSON in completion order, one {@code BatchQueryResult}
+     * per line.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<ResponseBodyEmitter> batchQuery(@Valid @RequestBody BatchQueryRequest request) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(0L);
+        
+        queryService.processBatch(request.getQueries(), result -> {
+            try {
+                emitter.send(objectMapper.writeValueAsString(result) + "\n", MediaType.TEXT_PLAIN);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((ignored, error) -> {
+            if (error != null) {
+                log.error("Batch query stream aborted: {}", error.getMessage());
+                emitter.completeWithError(error);
+            } else {
+                emitter.complete();
+            }
+        });
+        
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(emitter);
+    }
+    
+    /**
+     * Streams the answer as Server-Sent Events while it is generated. The
+     * stream is relayed without buffering and does not hold a servlet thread.
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<QueryStreamEvent>>> streamQuery(
+            @Valid @RequestBody QueryRequest request
+    ) {
+        DocumentEntity document;
         try {
-            QueryResponse response = queryService.processQuery(request);
-            return ResponseEntity.ok(response);
-            
+            document = queryService.requireProcessedDocument(request.getDocumentId());
         } catch (IllegalStateException e) {
             log.error("Document not ready: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.CONFLICT).build();
-            
         } catch (RuntimeException e) {
-            log.error("Error processing query: {}", e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            return ResponseEntity.notFound().build();
         }
+        
+        Flux<ServerSentEvent<QueryStreamEvent>> events = queryService.streamQuery(document, request)
+            .map(event -> ServerSentEvent.builder(event).event(event.getType()).build())
+            .onErrorResume(error -> {
+                log.error("Error streaming query: {}", error.getMessage());
+                QueryStreamEvent event = QueryStreamEvent.of("error", "Failed to process query");
+                return Flux.just(ServerSentEvent.builder(event).event("error").build());
+            });
+        
+        return ResponseEntity.ok(events);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package com.example.DocumindAI.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchQueryRequest {
+    
+    @NotEmpty(message = "At least one query is required")
+    @Size(max = 1000, message = "At most 1000 queries per batch")
+    private List<@Valid QueryRequest> queries;
+}
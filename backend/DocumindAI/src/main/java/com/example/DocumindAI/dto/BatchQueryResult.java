@@ -0,0 +1,18 @@
+package com.example.DocumindAI.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One line of a streamed batch query response. {@code index} is the
+ * position of the query in the request, since results arrive out of order.
+ */
+@Data
+@AllArgsConstructor
+public class BatchQueryResult {
+    private int index;
+    private String documentId;
+    private String status; // ok, not_ready, error
+    private QueryResponse response;
+    private String error;
+}
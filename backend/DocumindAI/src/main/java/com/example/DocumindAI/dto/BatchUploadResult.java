@@ -0,0 +1,18 @@
+package com.example.DocumindAI.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One line of a streamed batch upload response. {@code index} is the
+ * position of the file in the request, since results arrive out of order.
+ */
+@Data
+@AllArgsConstructor
+public class BatchUploadResult {
+    private int index;
+    private String fileName;
+    private String documentId;
+    private String status; // uploaded, processed, error
+    private String message;
+}
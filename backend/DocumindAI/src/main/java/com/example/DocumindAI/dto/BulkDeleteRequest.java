@@ -0,0 +1,19 @@
+package com.example.DocumindAI.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Deletes the given documents of a user, or all of the user's documents
+ * when {@code documentIds} is omitted.
+ */
+@Data
+public class BulkDeleteRequest {
+    
+    @NotBlank(message = "User ID is required")
+    private String userId;
+    
+    private List<String> documentIds;
+}
@@ -0,0 +1,10 @@
+package com.example.DocumindAI.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BulkDeleteResponse {
+    private long deleted;
+}
@@ -0,0 +1,17 @@
+package com.example.DocumindAI.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of a document listing. {@code nextCursor} is passed back as
+ * {@code cursor} to fetch the following page and is null on the last one.
+ */
+@Data
+@AllArgsConstructor
+public class DocumentPage {
+    private List<DocumentSummary> documents;
+    private String nextCursor;
+}
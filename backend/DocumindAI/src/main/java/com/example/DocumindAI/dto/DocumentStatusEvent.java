@@ -0,0 +1,52 @@
+package com.example.DocumindAI.dto;
+
+import com.example.DocumindAI.model.DocumentEntity;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * A change pushed to document event subscribers: "status" (a status
+ * transition) or "progress" (percent of ingestion done, while processing).
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DocumentStatusEvent {
+    private String type;
+    private String documentId;
+    private String status;
+    private Integer progress;
+    private LocalDateTime timestamp;
+    
+    // Routing key; subscribers only ever see their own documents
+    @JsonIgnore
+    private String userId;
+    
+    public static DocumentStatusEvent status(DocumentEntity document) {
+        return status(document.getId(), document.getUserId(), document.getStatus());
+    }
+    
+    public static DocumentStatusEvent status(String documentId, String userId, String status) {
+        DocumentStatusEvent event = new DocumentStatusEvent();
+        event.setType("status");
+        event.setDocumentId(documentId);
+        event.setUserId(userId);
+        event.setStatus(status);
+        event.setTimestamp(LocalDateTime.now());
+        return event;
+    }
+    
+    public static DocumentStatusEvent progress(DocumentEntity document, int percent) {
+        DocumentStatusEvent event = status(document.getId(), document.getUserId(), "processing");
+        event.setType("progress");
+        event.setProgress(percent);
+        return event;
+    }
+    
+    @JsonIgnore
+    public boolean isTerminal() {
+        return "status".equals(type) && !"uploaded".equals(status) && !"processing".equals(status);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.DocumindAI.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lightweight projection of a document for listings and exports.
+ */
+@Data
+public class DocumentSummary {
+    private String id;
+    private String originalFileName;
+    private Long fileSize;
+    private String fileType;
+    private String status;
+    private LocalDateTime uploadedAt;
+}
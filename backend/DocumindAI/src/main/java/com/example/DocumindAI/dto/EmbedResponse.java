@@ -0,0 +1,15 @@
+package com.example.DocumindAI.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Embeddings from the AI service's /embed, one per input text.
+ */
+@Data
+public class EmbedResponse {
+    private List<float[]> embeddings;
+    private Integer dimensions;
+    private Double processingTime;
+}
@@ -0,0 +1,20 @@
+package com.example.DocumindAI.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+@Data
+public class InitiateUploadRequest {
+    
+    @NotBlank(message = "File name is required")
+    private String fileName;
+    
+    @NotNull(message = "Total size is required")
+    @Positive(message = "Total size must be positive")
+    private Long totalSize;
+    
+    // Optional; the server default applies when omitted
+    private Integer chunkSize;
+}
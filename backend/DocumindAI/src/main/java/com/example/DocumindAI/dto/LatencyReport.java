@@ -0,0 +1,31 @@
+package com.example.DocumindAI.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Query count and response time percentiles (seconds) of one scope over a
+ * time range, in total and per hour or day.
+ */
+@Data
+public class LatencyReport {
+    private String scope;
+    private String key;
+    private Stats total;
+    private List<Stats> series;
+    
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Stats {
+        private LocalDateTime bucket;
+        private long count;
+        private Double avgTime;
+        private Double p50;
+        private Double p95;
+        private Double p99;
+        private Double maxTime;
+    }
+}
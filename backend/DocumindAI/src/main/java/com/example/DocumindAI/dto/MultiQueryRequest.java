@@ -0,0 +1,31 @@
+package com.example.DocumindAI.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A query across several documents. Scope is {@code documentIds} if given,
+ * otherwise the user's documents with {@code tag}, otherwise the user's
+ * whole library.
+ */
+@Data
+public class MultiQueryRequest {
+    
+    @NotBlank(message = "Query text is required")
+    private String query;
+    
+    @Size(max = 1000, message = "At most 1000 documents per query")
+    private List<String> documentIds;
+    
+    private String tag;
+    
+    private String userId = "default_user";
+    
+    // Overrides DocumindAI.multi-query.budget for this query
+    @Positive
+    private Long budgetMillis;
+}
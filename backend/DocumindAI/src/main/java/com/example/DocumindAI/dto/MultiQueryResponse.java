@@ -0,0 +1,31 @@
+package com.example.DocumindAI.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Answer merged from several documents. {@code partial} is set when some
+ * documents did not answer within the latency budget (or failed), or when
+ * the answer itself could not be generated in time; the sources that did
+ * arrive are still returned.
+ */
+@Data
+public class MultiQueryResponse {
+    private String answer;
+    private List<QueryResponse.Source> sources;
+    private Double confidence;
+    private Double processingTime;
+    private boolean partial;
+    private List<DocumentResult> documents;
+    
+    @Data
+    @AllArgsConstructor
+    public static class DocumentResult {
+        private String documentId;
+        private String status; // ok, timeout, not_ready, not_found, error
+        private Double retrievalTime;
+        private int sourceCount;
+    }
+}
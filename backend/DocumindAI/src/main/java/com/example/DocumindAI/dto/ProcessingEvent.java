@@ -0,0 +1,20 @@
+package com.example.DocumindAI.dto;
+
+import lombok.Data;
+
+/**
+ * One event of the AI service's ingestion stream: "progress" (fraction of
+ * the work done, 0 to 1), "embeddings" (vectors of the chunks from
+ * {@code start} on, only when requested), "done" (chunk count and timings)
+ * or "error".
+ */
+@Data
+public class ProcessingEvent {
+    private String type;
+    private Double progress;
+    private Integer chunkCount;
+    private Double processingTime;
+    private String text;
+    private Integer start;
+    private float[][] embeddings;
+}
@@ -11,4 +11,10 @@ public class QueryRequest {
     
     @NotBlank(message = "Query text is required")
     private String query;
+    
+    // Attributes the query in history and usage analytics
+    private String userId = "default_user";
+    
+    // Return the per-phase timing breakdown in the response
+    private boolean includeTimings;
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package com.example.DocumindAI.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import java.util.List;
+import java.util.Map;
 
 @Data
 public class QueryResponse {
@@ -10,10 +13,30 @@ public class QueryResponse {
     private Double processingTime;
     private Double confidence;
     
+    // Set when the AI service was unavailable and this is a previous answer
+    // to the most similar earlier query, with that query's similarity (0-1)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean stale;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double similarity;
+    
+    // Milliseconds per phase (lookup, cache, embed, retrieve, ai, fallback, persist); only when requested
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, Double> timings;
+    
     @Data
     public static class Source {
+        private String chunkId;
         private Integer page;
         private String snippet;
         private Double relevance;
+        
+        // Set when sources from several documents are merged
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private String documentId;
+        
+        // Full chunk text from /retrieve; read, never sent to clients
+        @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+        private String text;
     }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.example.DocumindAI.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One event of a streamed answer: "sources" (citations, sent first),
+ * "token" (a piece of answer text), "done" (timings) or "error".
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueryStreamEvent {
+    private String type;
+    private String text;
+    private List<QueryResponse.Source> sources;
+    private Double confidence;
+    private Double processingTime;
+    private Double timeToFirstToken;
+    
+    public static QueryStreamEvent of(String type, String text) {
+        QueryStreamEvent event = new QueryStreamEvent();
+        event.setType(type);
+        event.setText(text);
+        return event;
+    }
+}
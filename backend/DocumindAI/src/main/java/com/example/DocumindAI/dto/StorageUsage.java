@@ -0,0 +1,13 @@
+package com.example.DocumindAI.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class StorageUsage {
+    private String userId;
+    private long storedBytes;
+    private long documents;
+    private Long quotaBytes; // null when no quota is enforced
+}
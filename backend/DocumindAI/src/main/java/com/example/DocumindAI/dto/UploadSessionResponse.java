@@ -0,0 +1,49 @@
+package com.example.DocumindAI.dto;
+
+import com.example.DocumindAI.model.UploadSession;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * State of a chunked upload. {@code missingChunks} lists the chunk indexes
+ * still to be sent, so an interrupted client knows where to resume.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UploadSessionResponse {
+    private String sessionId;
+    private String status;
+    private Long totalSize;
+    private Integer chunkSize;
+    private Integer chunkCount;
+    private Integer receivedCount;
+    private List<Integer> missingChunks;
+    private String documentId;
+    private String error;
+    
+    public static UploadSessionResponse of(UploadSession session) {
+        UploadSessionResponse response = new UploadSessionResponse();
+        response.setSessionId(session.getId());
+        response.setStatus(session.getStatus());
+        response.setTotalSize(session.getTotalSize());
+        response.setChunkSize(session.getChunkSize());
+        response.setChunkCount(session.getChunkCount());
+        response.setReceivedCount(session.getReceivedChunks().size());
+        response.setMissingChunks(IntStream.range(0, session.getChunkCount())
+            .filter(index -> !session.getReceivedChunks().contains(index))
+            .boxed()
+            .toList());
+        response.setDocumentId(session.getDocumentId());
+        return response;
+    }
+    
+    public static UploadSessionResponse error(String message) {
+        UploadSessionResponse response = new UploadSessionResponse();
+        response.setStatus("error");
+        response.setError(message);
+        return response;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.DocumindAI.exception;
+
+/**
+ * Thrown when an AI service call is dropped because its deadline passed
+ * while it waited for a slot; the caller has already given up on it.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
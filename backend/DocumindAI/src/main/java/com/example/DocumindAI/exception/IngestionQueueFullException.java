@@ -0,0 +1,14 @@
+package com.example.DocumindAI.exception;
+
+/**
+ * Thrown when the ingestion queue has no room for another document.
+ * Controllers translate this into a 429 so clients back off and retry.
+ */
+public class IngestionQueueFullException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public IngestionQueueFullException(String message) {
+        super(message);
+    }
+}
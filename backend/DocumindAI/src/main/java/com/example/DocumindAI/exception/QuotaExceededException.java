@@ -0,0 +1,14 @@
+package com.example.DocumindAI.exception;
+
+/**
+ * Thrown when storing an upload would take its user over their storage
+ * quota. Controllers translate this into a 413.
+ */
+public class QuotaExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.DocumindAI.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * One physical upload shared by every {@link DocumentEntity} with the same
+ * content hash. Holds the stored file and the processed artifacts, plus a
+ * reference count so they are only removed with the last document.
+ */
+@Data
+@Document(collection = "document_contents")
+public class DocumentContent {
+    
+    @Id
+    private String id;
+    
+    @Indexed(unique = true)
+    private String contentHash;
+    
+    private String fileName;
+    private Long fileSize;
+    private String ownerDocumentId; // document whose ingestion produced the artifacts
+    private String status; // uploaded, processed, failed
+    private Integer refCount;
+    
+    private String chromaCollectionId;
+    private String extractedTextPath;
+    
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -2,13 +2,24 @@ package com.example.DocumindAI.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @Data
 @Document(collection = "documents")
+// Listing indexes end in (uploadedAt, _id) to serve the keyset pagination sort
+@CompoundIndexes({
+    @CompoundIndex(name = "user_uploaded_idx", def = "{'userId': 1, 'uploadedAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "user_status_uploaded_idx", def = "{'userId': 1, 'status': 1, 'uploadedAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "user_type_uploaded_idx", def = "{'userId': 1, 'fileType': 1, 'uploadedAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "user_tags_idx", def = "{'userId': 1, 'tags': 1}")
+})
 public class DocumentEntity {
     
     @Id
@@ -18,9 +29,13 @@ public class DocumentEntity {
     private String originalFileName;
     private Long fileSize;
     private String fileType;
+    @Indexed
+    private String contentHash; // SHA-256 of the original upload, see DocumentContent
     private LocalDateTime uploadedAt;
     private String userId;
-    private String status; // uploaded, processing, processed, failed
+    @Indexed
+    private String status; // uploaded, processing, processed, failed, deleted
+    private List<String> tags; // user-defined collections, used to scope multi-document queries
     
     private Map<String, Object> metadata;
     private String chromaCollectionId;
@@ -28,4 +43,8 @@ public class DocumentEntity {
     
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    
+    // Tombstone state, see DocumentReaper
+    private LocalDateTime deletedAt;
+    private Boolean purgeArtifacts; // set once the content reference is released; true if this was the last one
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.example.DocumindAI.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * How often one normalized query was asked in one scope and hour; summed
+ * over a time range for top-query reports.
+ */
+@Data
+@Document(collection = "query_counts")
+@CompoundIndex(name = "scope_key_bucket_idx", def = "{'scope': 1, 'key': 1, 'bucket': 1}")
+public class QueryCount {
+    
+    @Id
+    private String id; // scope:key:bucket:query hash
+    
+    private String scope;
+    private String key;
+    private LocalDateTime bucket;
+    
+    private String query;
+    private Long count;
+}
@@ -2,6 +2,8 @@ package com.example.DocumindAI.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -9,13 +11,21 @@ import java.util.List;
 
 @Data
 @Document(collection = "query_history")
+// Retention is a TTL index on timestamp, created by QueryAnalyticsService
+@CompoundIndexes({
+    @CompoundIndex(name = "document_query_idx", def = "{'documentId': 1, 'normalizedQuery': 1, 'timestamp': -1}"),
+    @CompoundIndex(name = "document_timestamp_idx", def = "{'documentId': 1, 'timestamp': -1}"),
+    @CompoundIndex(name = "user_timestamp_idx", def = "{'userId': 1, 'timestamp': -1}")
+})
 public class QueryHistory {
     
     @Id
     private String id;
     
     private String documentId;
+    private String userId;
     private String query;
+    private String normalizedQuery;
     private String response;
     private List<Citation> citations;
     private LocalDateTime timestamp;
@@ -0,0 +1,33 @@
+package com.example.DocumindAI.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Query count and latency of one scope (a document, a user or all queries)
+ * in one hour, maintained incrementally as history is written. Latency is
+ * kept as a log-bucketed histogram, see {@code LatencyHistogram}, so hours
+ * can be merged and percentiles read without touching raw history.
+ */
+@Data
+@Document(collection = "query_rollups")
+@CompoundIndex(name = "scope_key_bucket_idx", def = "{'scope': 1, 'key': 1, 'bucket': 1}")
+public class QueryRollup {
+    
+    @Id
+    private String id; // scope:key:bucket
+    
+    private String scope; // document, user, all
+    private String key;
+    private LocalDateTime bucket; // start of the hour
+    
+    private Long count;
+    private Double totalTime; // seconds
+    private Double maxTime;
+    private Map<String, Long> latency; // histogram bucket index -> count
+}
@@ -0,0 +1,36 @@
+package com.example.DocumindAI.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * A resumable chunked upload in progress. Chunks are written straight into a
+ * preallocated part file; {@code receivedChunks} records which indexes have
+ * been written and verified, so clients can resume after a failure.
+ */
+@Data
+@Document(collection = "upload_sessions")
+public class UploadSession {
+    
+    @Id
+    private String id;
+    
+    private String userId;
+    private String originalFileName;
+    private Long totalSize;
+    private Integer chunkSize;
+    private Integer chunkCount;
+    private Set<Integer> receivedChunks;
+    private String status; // active, completing, completed
+    private String documentId; // set once completed
+    
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    @Indexed
+    private LocalDateTime expiresAt;
+}
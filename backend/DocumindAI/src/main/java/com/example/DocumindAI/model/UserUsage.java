@@ -0,0 +1,24 @@
+package com.example.DocumindAI.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Running totals of a user's documents, kept up to date as documents are
+ * stored and deleted so quota checks never sum over the documents.
+ */
+@Data
+@Document(collection = "user_usage")
+public class UserUsage {
+
+    @Id
+    private String id; // userId
+
+    private Long storedBytes; // sum of fileSize over documents not deleted
+    private Long documents;
+
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,12 @@
+package com.example.DocumindAI.repository;
+
+import com.example.DocumindAI.model.DocumentContent;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface DocumentContentRepository extends MongoRepository<DocumentContent, String> {
+    Optional<DocumentContent> findByContentHash(String contentHash);
+}
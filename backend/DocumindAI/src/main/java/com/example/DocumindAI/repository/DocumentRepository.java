@@ -1,13 +1,30 @@
 package com.example.DocumindAI.repository;
 
 import com.example.DocumindAI.model.DocumentEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface DocumentRepository extends MongoRepository<DocumentEntity, String> {
     List<DocumentEntity> findByUserId(String userId);
+    List<DocumentEntity> findByUserIdAndStatusNot(String userId, String status);
     List<DocumentEntity> findByStatus(String status);
+    List<DocumentEntity> findByContentHash(String contentHash);
+    boolean existsByIdAndStatusNot(String id, String status);
+    
+    // Only what the query path checks; see DocumentMetadataCache
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'userId': 1, 'status': 1, 'chromaCollectionId': 1, 'extractedTextPath': 1, 'updatedAt': 1 }")
+    Optional<DocumentEntity> findMetadataById(String id);
+    
+    // Targets of a library-wide or tag-scoped query, newest first
+    @Query(value = "{ 'userId': ?0, 'status': 'processed' }", fields = "{ 'userId': 1, 'status': 1, 'chromaCollectionId': 1, 'extractedTextPath': 1, 'updatedAt': 1 }")
+    List<DocumentEntity> findProcessedMetadataByUserId(String userId, Pageable pageable);
+    
+    @Query(value = "{ 'userId': ?0, 'tags': ?1, 'status': 'processed' }", fields = "{ 'userId': 1, 'status': 1, 'chromaCollectionId': 1, 'extractedTextPath': 1, 'updatedAt': 1 }")
+    List<DocumentEntity> findProcessedMetadataByUserIdAndTag(String userId, String tag, Pageable pageable);
 }
\ No newline at end of file
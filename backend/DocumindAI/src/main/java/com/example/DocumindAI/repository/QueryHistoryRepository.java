@@ -1,12 +1,26 @@
 package com.example.DocumindAI.repository;
 
 import com.example.DocumindAI.model.QueryHistory;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface QueryHistoryRepository extends MongoRepository<QueryHistory, String> {
     List<QueryHistory> findByDocumentId(String documentId);
+    Optional<QueryHistory> findFirstByDocumentIdAndNormalizedQueryOrderByTimestampDesc(
+        String documentId, String normalizedQuery);
+    
+    // Served by document_timestamp_idx / user_timestamp_idx, newest first
+    List<QueryHistory> findByDocumentIdOrderByTimestampDesc(String documentId, Pageable pageable);
+    List<QueryHistory> findByDocumentIdAndTimestampAfterOrderByTimestampDesc(
+        String documentId, LocalDateTime after, Pageable pageable);
+    List<QueryHistory> findByDocumentIdAndTimestampBetweenOrderByTimestampDesc(
+        String documentId, LocalDateTime from, LocalDateTime to, Pageable pageable);
+    List<QueryHistory> findByUserIdAndTimestampBetweenOrderByTimestampDesc(
+        String userId, LocalDateTime from, LocalDateTime to, Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.example.DocumindAI.repository;
+
+import com.example.DocumindAI.model.UploadSession;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends MongoRepository<UploadSession, String> {
+    List<UploadSession> findByExpiresAtBefore(LocalDateTime time);
+}
@@ -1,85 +1,503 @@
 package com.example.DocumindAI.service;
 
+import com.example.DocumindAI.dto.EmbedResponse;
+import com.example.DocumindAI.dto.ProcessingEvent;
 import com.example.DocumindAI.dto.QueryResponse;
-import lombok.RequiredArgsConstructor;
+import com.example.DocumindAI.dto.QueryStreamEvent;
+import com.example.DocumindAI.exception.DeadlineExceededException;
+import com.example.DocumindAI.service.AiRequestScheduler.Lane;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.Predicate;
 
+/**
+ * Non-blocking client for the Python AI service. Each endpoint has its own
+ * timeout, bulkhead and circuit breaker, so a backlog of slow ingestion
+ * calls cannot starve interactive queries. Transient failures of queries
+ * (connection errors, timeouts, 502/503/504) are retried with jittered
+ * backoff. Processing calls are expensive and may have done their work when
+ * they time out, so they are only retried when the AI service could not be
+ * reached or answered 502/503.
+ * <p>
+ * Every attempt first waits for a slot from {@link AiRequestScheduler}:
+ * queries, retrieval, embedding and generation in the interactive lane, ingestion in
+ * the lane its caller picks.
+ * <p>
+ * Each call (including its retries) is timed as {@code documind.ai.calls}
+ * tagged by endpoint, outcome and error class, and request/response payload
+ * sizes are recorded. Individual HTTP attempts are additionally covered by
+ * Spring's {@code http.client.requests}.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class AIServiceClient {
-    
-    private final RestTemplate restTemplate;
-    
-    @Value("${documindai.ai-service.url}")
-    private String aiServiceUrl;
-    
-    public void processDocument(String documentId, String filePath) {
-        String url = aiServiceUrl + "/process-document";
-        
+
+    private static final String PROCESS_DOCUMENT = "ai-process-document";
+    private static final String QUERY = "ai-query";
+
+    private final WebClient webClient;
+    private final CircuitBreaker processCircuitBreaker;
+    private final CircuitBreaker queryCircuitBreaker;
+    private final Bulkhead processBulkhead;
+    private final Bulkhead queryBulkhead;
+    private final AiRequestScheduler scheduler;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${documindai.ai-service.timeout}")
+    private long queryTimeoutMillis;
+
+    @Value("${documindai.ai-service.process-timeout:300000}")
+    private long processTimeoutMillis;
+
+    @Value("${documindai.ai-service.retry.max-retries:2}")
+    private int maxRetries;
+
+    @Value("${documindai.ai-service.retry.backoff:200ms}")
+    private Duration retryBackoff;
+
+    public AIServiceClient(
+            WebClient aiServiceWebClient,
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            BulkheadRegistry bulkheadRegistry,
+            AiRequestScheduler scheduler,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${documindai.ai-service.bulkhead.process-document:8}") int processConcurrency,
+            @Value("${documindai.ai-service.bulkhead.query:64}") int queryConcurrency
+    ) {
+        this.webClient = aiServiceWebClient;
+        this.processCircuitBreaker = circuitBreakerRegistry.circuitBreaker(PROCESS_DOCUMENT);
+        this.queryCircuitBreaker = circuitBreakerRegistry.circuitBreaker(QUERY);
+        this.processBulkhead = bulkheadRegistry.bulkhead(PROCESS_DOCUMENT, bulkheadConfig(processConcurrency));
+        this.queryBulkhead = bulkheadRegistry.bulkhead(QUERY, bulkheadConfig(queryConcurrency));
+        this.scheduler = scheduler;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public CompletableFuture<Void> processDocumentAsync(String documentId, String filePath) {
         Map<String, String> request = new HashMap<>();
         request.put("documentId", documentId);
         request.put("filePath", filePath);
-        
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        
-        HttpEntity<Map<String, String>> entity = new HttpEntity<>(request, headers);
-        
-        try {
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK) {
-                log.info("Document {} sent to AI service successfully", documentId);
-            } else {
-                throw new RuntimeException("AI service returned non-OK status: " + response.getStatusCode());
-            }
-        } catch (Exception e) {
-            log.error("Error calling AI service: {}", e.getMessage());
-            throw new RuntimeException("Failed to process document", e);
+
+        return process("/process-document", request, Lane.INGEST, "Failed to process document")
+            .thenRun(() -> log.info("Document {} sent to AI service successfully", documentId));
+    }
+
+    public void processDocument(String documentId, String filePath) {
+        await(processDocumentAsync(documentId, filePath));
+    }
+
+    /**
+     * Has the AI service embed chunks already extracted into a
+     * {@link ChunkFile}, instead of parsing the original file itself.
+     * {@code lane} tells the scheduler how urgent the ingestion is.
+     * <p>
+     * The AI service streams its progress; {@code onProgress} receives the
+     * fraction done (0 to 1) on the client's event loop and must not block.
+     * The process timeout applies to the gap between events, so long
+     * ingestions run as long as they keep reporting progress.
+     * <p>
+     * With {@code onEmbeddings}, the AI service also streams every chunk's
+     * embedding; the "embeddings" events are handed over in order, off the
+     * event loop, so the consumer may block. The call is only retried if it
+     * failed before the first event, since a retry starts again from the
+     * first chunk.
+     */
+    public CompletableFuture<Void> processChunksAsync(
+            String documentId, String chunksPath, Lane lane, DoubleConsumer onProgress,
+            Consumer<ProcessingEvent> onEmbeddings) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("documentId", documentId);
+        request.put("chunksPath", chunksPath);
+        request.put("includeEmbeddings", onEmbeddings != null);
+
+        String endpoint = "/process-chunks/stream";
+        long deadline = deadline(processTimeoutMillis);
+        AtomicBoolean started = new AtomicBoolean();
+        return webClient.post()
+            .uri(endpoint)
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_NDJSON)
+            .bodyValue(encode(endpoint, request))
+            .retrieve()
+            .bodyToFlux(ProcessingEvent.class)
+            .timeout(Duration.ofMillis(processTimeoutMillis))
+            .concatMap(event -> "error".equals(event.getType())
+                ? Mono.<ProcessingEvent>error(new IllegalStateException("AI service: " + event.getText()))
+                : Mono.just(event))
+            .transformDeferred(CircuitBreakerOperator.of(processCircuitBreaker))
+            .transformDeferred(BulkheadOperator.of(processBulkhead))
+            .transformDeferred(call -> scheduler.schedule(lane, deadline, call))
+            .doOnNext(event -> started.set(true))
+            .retryWhen(retrySpec(error -> !started.get() && isRejected(error)))
+            .transformDeferred(call -> timed(endpoint, call))
+            .doOnNext(event -> {
+                if ("progress".equals(event.getType()) && event.getProgress() != null) {
+                    onProgress.accept(event.getProgress());
+                }
+            })
+            .doOnError(e -> log.error("Error calling AI service {}: {}", endpoint, e.getMessage()))
+            .onErrorMap(e -> new RuntimeException("Failed to process document", e))
+            .publishOn(Schedulers.boundedElastic())
+            .doOnNext(event -> {
+                if ("embeddings".equals(event.getType()) && onEmbeddings != null) {
+                    onEmbeddings.accept(event);
+                }
+            })
+            .then()
+            .toFuture()
+            .thenRun(() -> log.info("Document {} sent to AI service successfully", documentId));
+    }
+
+    public void processChunks(String documentId, String chunksPath, Lane lane, DoubleConsumer onProgress) {
+        processChunks(documentId, chunksPath, lane, onProgress, null);
+    }
+
+    public void processChunks(String documentId, String chunksPath, Lane lane, DoubleConsumer onProgress,
+                              Consumer<ProcessingEvent> onEmbeddings) {
+        await(processChunksAsync(documentId, chunksPath, lane, onProgress, onEmbeddings));
+    }
+
+    /**
+     * Drops the vector collections of deleted documents in one call.
+     * Collections that do not exist are skipped, so a failed batch can
+     * simply be sent again.
+     */
+    public CompletableFuture<Void> deleteCollectionsAsync(List<String> collectionNames) {
+        return process("/collections/delete", Map.of("collectionNames", collectionNames), Lane.BULK,
+            "Failed to delete collections");
+    }
+
+    public void deleteCollections(List<String> collectionNames) {
+        await(deleteCollectionsAsync(collectionNames));
+    }
+
+    public CompletableFuture<QueryResponse> queryDocumentAsync(String documentId, String collectionName, String query) {
+        Map<String, String> request = new HashMap<>();
+        request.put("documentId", documentId);
+        request.put("query", query);
+        if (collectionName != null) {
+            // Deduplicated documents share the owner's vector collection
+            request.put("collectionName", collectionName);
+        }
+
+        return query("/query", request, QueryResponse.class, "Failed to query document");
+    }
+
+    public QueryResponse queryDocument(String documentId, String collectionName, String query) {
+        return await(queryDocumentAsync(documentId, collectionName, query));
+    }
+
+    /**
+     * Retrieves a document's most relevant chunks, with their full text,
+     * without generating an answer.
+     */
+    public CompletableFuture<List<QueryResponse.Source>> retrieveAsync(
+            String documentId, String collectionName, String query, int topK) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("documentId", documentId);
+        request.put("query", query);
+        request.put("topK", topK);
+        if (collectionName != null) {
+            request.put("collectionName", collectionName);
+        }
+
+        return query("/retrieve", request, QueryResponse.class, "Failed to retrieve from document")
+            .thenApply(QueryResponse::getSources);
+    }
+
+    /**
+     * Generates one answer from chunks the caller already retrieved and
+     * ranked, e.g. merged from several documents.
+     */
+    public CompletableFuture<QueryResponse> generateAsync(String query, List<QueryResponse.Source> contexts) {
+        List<Map<String, Object>> chunks = new ArrayList<>(contexts.size());
+        for (QueryResponse.Source source : contexts) {
+            Map<String, Object> chunk = new HashMap<>();
+            chunk.put("documentId", source.getDocumentId());
+            chunk.put("chunkId", source.getChunkId());
+            chunk.put("page", source.getPage());
+            chunk.put("text", source.getText() != null ? source.getText() : source.getSnippet());
+            chunks.add(chunk);
         }
+        Map<String, Object> request = new HashMap<>();
+        request.put("query", query);
+        request.put("contexts", chunks);
+
+        return query("/generate", request, QueryResponse.class, "Failed to generate answer");
+    }
+
+    /**
+     * Embeds a query with the model the AI service embeds chunks with, for
+     * retrieval done in the backend.
+     */
+    public CompletableFuture<float[]> embedAsync(String text) {
+        return query("/embed", Map.of("texts", List.of(text)), EmbedResponse.class, "Failed to embed query")
+            .thenApply(response -> response.getEmbeddings().get(0));
     }
-    
-    public QueryResponse queryDocument(String documentId, String query) {
-        String url = aiServiceUrl + "/query";
-        
+
+    /**
+     * Relays the AI service's NDJSON answer stream event by event. Not
+     * retried, since tokens may already have reached the caller; the query
+     * timeout applies to the gap between events rather than the whole stream.
+     */
+    public Flux<QueryStreamEvent> streamQuery(String documentId, String collectionName, String query) {
         Map<String, String> request = new HashMap<>();
         request.put("documentId", documentId);
         request.put("query", query);
-        
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        
-        HttpEntity<Map<String, String>> entity = new HttpEntity<>(request, headers);
-        
+        if (collectionName != null) {
+            request.put("collectionName", collectionName);
+        }
+
+        return webClient.post()
+            .uri("/query/stream")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_NDJSON)
+            .bodyValue(encode("/query/stream", request))
+            .retrieve()
+            .bodyToFlux(QueryStreamEvent.class)
+            .timeout(Duration.ofMillis(queryTimeoutMillis))
+            .transformDeferred(CircuitBreakerOperator.of(queryCircuitBreaker))
+            .transformDeferred(BulkheadOperator.of(queryBulkhead))
+            .transformDeferred(call -> scheduler.schedule(Lane.INTERACTIVE, deadline(queryTimeoutMillis), call))
+            .transformDeferred(call -> timed("/query/stream", call))
+            .doOnError(e -> log.error("Error streaming from AI service: {}", e.getMessage()))
+            .onErrorMap(e -> new RuntimeException("Failed to stream query", e));
+    }
+
+    // Interactive calls share the query timeout, bulkhead and circuit breaker.
+    // Continuations run on boundedElastic, never on the netty event loop,
+    // since callers follow up with blocking MongoDB writes
+    private <T> CompletableFuture<T> query(String endpoint, Map<String, ?> request, Class<T> type, String failureMessage) {
+        long deadline = deadline(queryTimeoutMillis);
+        return webClient.post()
+            .uri(endpoint)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(encode(endpoint, request))
+            .retrieve()
+            .toEntity(type)
+            .doOnNext(response -> recordResponseSize(endpoint, response))
+            .map(HttpEntity::getBody)
+            .timeout(Duration.ofMillis(queryTimeoutMillis))
+            .transformDeferred(CircuitBreakerOperator.of(queryCircuitBreaker))
+            .transformDeferred(BulkheadOperator.of(queryBulkhead))
+            .transformDeferred(call -> scheduler.schedule(Lane.INTERACTIVE, deadline, call))
+            .retryWhen(retrySpec(AIServiceClient::isTransient))
+            .transformDeferred(call -> timed(endpoint, call))
+            .doOnError(e -> log.error("Error calling AI service {}: {}", endpoint, e.getMessage()))
+            .onErrorMap(e -> new RuntimeException(failureMessage, e))
+            .publishOn(Schedulers.boundedElastic())
+            .toFuture();
+    }
+
+    // Ingestion and cleanup calls share the process-document timeout, bulkhead and circuit breaker
+    private CompletableFuture<Void> process(String endpoint, Map<String, ?> request, Lane lane, String failureMessage) {
+        long deadline = deadline(processTimeoutMillis);
+        return webClient.post()
+            .uri(endpoint)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(encode(endpoint, request))
+            .retrieve()
+            .toBodilessEntity()
+            .doOnNext(response -> recordResponseSize(endpoint, response))
+            .timeout(Duration.ofMillis(processTimeoutMillis))
+            .transformDeferred(CircuitBreakerOperator.of(processCircuitBreaker))
+            .transformDeferred(BulkheadOperator.of(processBulkhead))
+            .transformDeferred(call -> scheduler.schedule(lane, deadline, call))
+            .retryWhen(retrySpec(AIServiceClient::isRejected))
+            .transformDeferred(call -> timed(endpoint, call))
+            .doOnError(e -> log.error("Error calling AI service {}: {}", endpoint, e.getMessage()))
+            .onErrorMap(e -> new RuntimeException(failureMessage, e))
+            .publishOn(Schedulers.boundedElastic())
+            .then()
+            .toFuture();
+    }
+
+    public CircuitBreaker.State getQueryCircuitState() {
+        return queryCircuitBreaker.getState();
+    }
+
+    // Retries share the first attempt's deadline, so none is sent after the caller gave up
+    private static long deadline(long timeoutMillis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * Serializes the request body up front so its size can be recorded; the
+     * bytes are what the JSON encoder would have written anyway.
+     */
+    private byte[] encode(String endpoint, Map<String, ?> request) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(request);
+            payloadSize("request", endpoint).record(body.length);
+            return body;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not encode AI service request", e);
+        }
+    }
+
+    private void recordResponseSize(String endpoint, ResponseEntity<?> response) {
+        long length = response.getHeaders().getContentLength();
+        if (length >= 0) {
+            payloadSize("response", endpoint).record(length);
+        }
+    }
+
+    private DistributionSummary payloadSize(String direction, String endpoint) {
+        return DistributionSummary.builder("documind.ai.payload.size")
+            .baseUnit("bytes")
+            .tag("direction", direction)
+            .tag("endpoint", endpoint)
+            .register(meterRegistry);
+    }
+
+    private <T> Mono<T> timed(String endpoint, Mono<T> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                .doOnSuccess(result -> recordCall(endpoint, start, null))
+                .doOnError(e -> recordCall(endpoint, start, e));
+        });
+    }
+
+    private <T> Flux<T> timed(String endpoint, Flux<T> call) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                .doOnComplete(() -> recordCall(endpoint, start, null))
+                .doOnError(e -> recordCall(endpoint, start, e));
+        });
+    }
+
+    private void recordCall(String endpoint, long startNanos, Throwable error) {
+        Timer.builder("documind.ai.calls")
+            .tag("endpoint", endpoint)
+            .tag("outcome", error == null ? "success" : "error")
+            .tag("error", errorClass(error))
+            .register(meterRegistry)
+            .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Coarse error class for metric tags: timeout, connect, circuit_open,
+     * bulkhead_full, deadline, http_4xx, http_5xx, other; "none" on success.
+     */
+    private static String errorClass(Throwable error) {
+        if (error == null) {
+            return "none";
+        }
+        if (error instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (error instanceof WebClientRequestException) {
+            return "connect";
+        }
+        if (error instanceof CallNotPermittedException) {
+            return "circuit_open";
+        }
+        if (error instanceof BulkheadFullException) {
+            return "bulkhead_full";
+        }
+        if (error instanceof DeadlineExceededException) {
+            return "deadline";
+        }
+        if (error instanceof WebClientResponseException responseError) {
+            return responseError.getStatusCode().is4xxClientError() ? "http_4xx" : "http_5xx";
+        }
+        return "other";
+    }
+
+    private Retry retrySpec(Predicate<Throwable> retryable) {
+        return Retry.backoff(maxRetries, retryBackoff)
+            .jitter(0.5)
+            .filter(retryable)
+            .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    private static boolean isTransient(Throwable error) {
+        if (error instanceof WebClientRequestException || error instanceof TimeoutException) {
+            return true;
+        }
+        if (error instanceof WebClientResponseException responseError) {
+            int status = responseError.getStatusCode().value();
+            return status == 502 || status == 503 || status == 504;
+        }
+        return false;
+    }
+
+    // Processing is expensive and may have done its work before timing out or
+    // failing at a gateway, so only calls the AI service never took on are retried
+    private static boolean isRejected(Throwable error) {
+        if (error instanceof WebClientRequestException) {
+            return error.getCause() instanceof ConnectException;
+        }
+        if (error instanceof WebClientResponseException responseError) {
+            int status = responseError.getStatusCode().value();
+            return status == 502 || status == 503;
+        }
+        return false;
+    }
+
+    private static BulkheadConfig bulkheadConfig(int maxConcurrentCalls) {
+        return BulkheadConfig.custom()
+            .maxConcurrentCalls(maxConcurrentCalls)
+            .maxWaitDuration(Duration.ZERO)
+            .build();
+    }
+
+    /**
+     * Blocks for a result, rethrowing the original RuntimeException instead
+     * of a CompletionException wrapper.
+     */
+    static <T> T await(CompletableFuture<T> future) {
         try {
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK) {
-                Map<String, Object> body = response.getBody();
-                
-                // Convert response to QueryResponse DTO
-                QueryResponse queryResponse = new QueryResponse();
-                queryResponse.setAnswer((String) body.get("answer"));
-                queryResponse.setProcessingTime((Double) body.get("processingTime"));
-                queryResponse.setConfidence((Double) body.get("confidence"));
-                
-                // TODO: Parse citations/sources
-                
-                return queryResponse;
-            } else {
-                throw new RuntimeException("AI service returned non-OK status: " + response.getStatusCode());
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
-        } catch (Exception e) {
-            log.error("Error querying AI service: {}", e.getMessage());
-            throw new RuntimeException("Failed to query document", e);
+            throw e;
         }
     }
-}
\ No newline at end of file
+}
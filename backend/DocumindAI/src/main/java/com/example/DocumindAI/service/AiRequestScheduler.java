@@ -0,0 +1,388 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.exception.DeadlineExceededException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control in front of the AI service. Calls wait in one of three
+ * priority lanes and are started, highest lane first, while fewer than the
+ * current concurrency limit are in flight. Lower lanes may only fill part of
+ * the limit ({@code max-share}), so long ingestion calls never hold every
+ * slot and interactive queries always find one soon.
+ * <p>
+ * The limit adapts AIMD-style: it grows by {@code 1/limit} per call that
+ * succeeds while the service is busy, and shrinks by {@code backoff-ratio}
+ * on timeouts, 429/503/504 or slow interactive calls, at most once per round
+ * trip. Only interactive calls are judged by latency, and a stream by the
+ * time to its first event: how long a stream stays open or a document takes
+ * to ingest depends on the answer and the document, not on how loaded the
+ * service is. Calls whose deadline passes while they wait
+ * are dropped with {@link DeadlineExceededException} instead of being sent
+ * for a caller that has already given up.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AiRequestScheduler {
+
+    /**
+     * Priority lanes, highest first.
+     */
+    public enum Lane {
+        INTERACTIVE, INGEST, BULK;
+
+        String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${DocumindAI.ai-scheduler.initial-limit:16}")
+    private int initialLimit;
+
+    @Value("${DocumindAI.ai-scheduler.min-limit:2}")
+    private int minLimit;
+
+    @Value("${DocumindAI.ai-scheduler.max-limit:128}")
+    private int maxLimit;
+
+    @Value("${DocumindAI.ai-scheduler.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    @Value("${DocumindAI.ai-scheduler.latency-target:10s}")
+    private Duration latencyTarget;
+
+    @Value("${DocumindAI.ai-scheduler.max-share.ingest:0.75}")
+    private double ingestShare;
+
+    @Value("${DocumindAI.ai-scheduler.max-share.bulk:0.5}")
+    private double bulkShare;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Lane, Deque<Waiter>> queues = new EnumMap<>(Lane.class);
+    private final int[] inFlight = new int[Lane.values().length];
+    private double limit;
+    private long lastDecreaseNanos;
+
+    @PostConstruct
+    void init() {
+        limit = initialLimit;
+        lastDecreaseNanos = System.nanoTime();
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, new ArrayDeque<>());
+            Gauge.builder("documind.ai.scheduler.queued", this, scheduler -> scheduler.queued(lane))
+                .tag("lane", lane.tag())
+                .register(meterRegistry);
+            Gauge.builder("documind.ai.scheduler.inflight", this, scheduler -> scheduler.inFlight(lane))
+                .tag("lane", lane.tag())
+                .register(meterRegistry);
+        }
+        Gauge.builder("documind.ai.scheduler.limit", this, AiRequestScheduler::getLimit)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code call} once a slot in {@code lane} is free. Cancelling the
+     * returned Mono while it waits removes it from the queue.
+     */
+    public <T> Mono<T> schedule(Lane lane, long deadlineNanos, Mono<T> call) {
+        return Mono.defer(() -> {
+            Waiter waiter = new Waiter(lane, deadlineNanos);
+            return Mono.usingWhen(
+                acquire(waiter),
+                permit -> call,
+                permit -> Mono.fromRunnable(() -> release(permit, null, false)),
+                (permit, error) -> Mono.fromRunnable(() -> release(permit, error, false)),
+                permit -> Mono.fromRunnable(() -> release(permit, null, true))
+            ).doOnCancel(() -> cancel(waiter));
+        });
+    }
+
+    /**
+     * Like {@link #schedule(Lane, long, Mono)}; the slot is held until the
+     * stream terminates, but its latency is the time to the first element.
+     */
+    public <T> Flux<T> schedule(Lane lane, long deadlineNanos, Flux<T> call) {
+        return Flux.defer(() -> {
+            Waiter waiter = new Waiter(lane, deadlineNanos);
+            return Flux.usingWhen(
+                acquire(waiter),
+                permit -> call.doOnNext(item -> permit.responded()),
+                permit -> Mono.fromRunnable(() -> release(permit, null, false)),
+                (permit, error) -> Mono.fromRunnable(() -> release(permit, error, false)),
+                permit -> Mono.fromRunnable(() -> release(permit, null, true))
+            ).doOnCancel(() -> cancel(waiter));
+        });
+    }
+
+    public double getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Mono<Permit> acquire(Waiter waiter) {
+        return Mono.create(sink -> {
+            Lane lane = waiter.lane;
+            long remaining = waiter.deadlineNanos - System.nanoTime();
+            if (remaining <= 0) {
+                drop(lane, "deadline", sink);
+                return;
+            }
+            waiter.sink = sink;
+            waiter.enqueuedNanos = System.nanoTime();
+            lock.lock();
+            try {
+                if (waiter.cancelled) {
+                    return;
+                }
+                queues.get(lane).addLast(waiter);
+            } finally {
+                lock.unlock();
+            }
+            waiter.timer = Schedulers.parallel().schedule(() -> {
+                if (remove(waiter)) {
+                    drop(lane, "deadline", sink);
+                }
+            }, remaining, TimeUnit.NANOSECONDS);
+            dispatch();
+        });
+    }
+
+    /*
+     * The subscriber went away: leave the queue, or give back the slot if
+     * one was granted. Done here, outside usingWhen, because Reactor may
+     * drop a permit emitted while the subscriber cancels without discarding
+     * it or running the cleanup, whether in Mono.create or in usingWhen.
+     */
+    private void cancel(Waiter waiter) {
+        waiter.cancelled = true;
+        if (remove(waiter)) {
+            Disposable timer = waiter.timer;
+            if (timer != null) {
+                timer.dispose();
+            }
+            meterRegistry.counter("documind.ai.scheduler.dropped", "lane", waiter.lane.tag(), "reason", "cancelled")
+                .increment();
+        } else if (waiter.permit != null) {
+            release(waiter.permit, null, true);
+        }
+    }
+
+    private void dispatch() {
+        List<Waiter> ready = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Lane lane : Lane.values()) {
+                Deque<Waiter> queue = queues.get(lane);
+                while (!queue.isEmpty() && hasCapacity(lane)) {
+                    Waiter waiter = queue.pollFirst();
+                    // Only calls made while the service is busy say anything about a higher limit
+                    boolean busy = totalInFlight() >= limit / 2;
+                    inFlight[lane.ordinal()]++;
+                    waiter.permit = new Permit(lane, System.nanoTime(), busy);
+                    ready.add(waiter);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Complete outside the lock; subscribers start their call synchronously
+        for (Waiter waiter : ready) {
+            if (waiter.timer != null) {
+                waiter.timer.dispose();
+            }
+            Timer.builder("documind.ai.scheduler.wait")
+                .tag("lane", waiter.lane.tag())
+                .register(meterRegistry)
+                .record(waiter.permit.startNanos - waiter.enqueuedNanos, TimeUnit.NANOSECONDS);
+            waiter.sink.success(waiter.permit);
+        }
+    }
+
+    // A lane may use its share of the limit, counting itself and every lane below it
+    private boolean hasCapacity(Lane lane) {
+        if (totalInFlight() >= Math.max(1, (int) limit)) {
+            return false;
+        }
+        int used = 0;
+        for (int i = lane.ordinal(); i < inFlight.length; i++) {
+            used += inFlight[i];
+        }
+        return used < Math.max(1, (int) (share(lane) * limit));
+    }
+
+    // Idempotent: a cancelled call may be released both by cancel() and by usingWhen
+    private void release(Permit permit, Throwable error, boolean cancelled) {
+        if (!permit.released.compareAndSet(false, true)) {
+            return;
+        }
+        long now = System.nanoTime();
+        long latency = now - permit.startNanos;
+        lock.lock();
+        try {
+            inFlight[permit.lane.ordinal()]--;
+            if (!cancelled) {
+                adjustLimit(permit, permit.latencyNanos(now), now, error);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        String outcome = cancelled ? "cancelled" : error == null ? "success" : "error";
+        Timer.builder("documind.ai.scheduler.calls")
+            .tag("lane", permit.lane.tag())
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .record(latency, TimeUnit.NANOSECONDS);
+        dispatch();
+    }
+
+    private void adjustLimit(Permit permit, long latencyNanos, long now, Throwable error) {
+        boolean overloaded = isOverload(error)
+            || permit.lane == Lane.INTERACTIVE && latencyNanos > latencyTarget.toNanos();
+        if (overloaded) {
+            // Calls started before the last decrease saw the old limit; don't punish twice
+            if (permit.startNanos > lastDecreaseNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecreaseNanos = now;
+                log.debug("AI service concurrency limit lowered to {}", String.format("%.1f", limit));
+            }
+        } else if (error == null && permit.busy) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    private static boolean isOverload(Throwable error) {
+        if (error instanceof TimeoutException) {
+            return true;
+        }
+        if (error instanceof WebClientResponseException responseError) {
+            int status = responseError.getStatusCode().value();
+            return status == 429 || status == 503 || status == 504;
+        }
+        return false;
+    }
+
+    private boolean remove(Waiter waiter) {
+        lock.lock();
+        try {
+            return queues.get(waiter.lane).remove(waiter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drop(Lane lane, String reason, MonoSink<Permit> sink) {
+        meterRegistry.counter("documind.ai.scheduler.dropped", "lane", lane.tag(), "reason", reason).increment();
+        sink.error(new DeadlineExceededException("AI service call dropped: deadline passed while queued in " + lane.tag()));
+    }
+
+    private int totalInFlight() {
+        int total = 0;
+        for (int count : inFlight) {
+            total += count;
+        }
+        return total;
+    }
+
+    private double share(Lane lane) {
+        return switch (lane) {
+            case INTERACTIVE -> 1.0;
+            case INGEST -> ingestShare;
+            case BULK -> bulkShare;
+        };
+    }
+
+    private int queued(Lane lane) {
+        lock.lock();
+        try {
+            return queues.get(lane).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int inFlight(Lane lane) {
+        lock.lock();
+        try {
+            return inFlight[lane.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Permit {
+        private final Lane lane;
+        private final long startNanos;
+        private final boolean busy;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long respondedNanos;
+
+        private Permit(Lane lane, long startNanos, boolean busy) {
+            this.lane = lane;
+            this.startNanos = startNanos;
+            this.busy = busy;
+        }
+
+        void responded() {
+            if (respondedNanos == 0) {
+                respondedNanos = System.nanoTime();
+            }
+        }
+
+        // Until the first element of a stream, or the whole call
+        long latencyNanos(long now) {
+            long responded = respondedNanos;
+            return (responded != 0 ? responded : now) - startNanos;
+        }
+    }
+
+    // One per subscription. The plain fields are written before the waiter is
+    // queued or under the lock, so whoever finds it through the lock sees them
+    private static final class Waiter {
+        private final Lane lane;
+        private final long deadlineNanos;
+        private long enqueuedNanos;
+        private MonoSink<Permit> sink;
+        private volatile Disposable timer;
+        private volatile boolean cancelled;
+        // Set under the lock when granted
+        private Permit permit;
+
+        private Waiter(Lane lane, long deadlineNanos) {
+            this.lane = lane;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
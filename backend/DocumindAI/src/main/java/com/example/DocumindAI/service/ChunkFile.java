@@ -0,0 +1,167 @@
+package com.example.DocumindAI.service;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary file holding a document's extracted chunks, shared with the AI
+ * service through the processed directory. Layout (big-endian):
+ * <pre>
+ * header   magic "DMCK" (int), version (int)
+ * text     UTF-8 text of every chunk, back to back
+ * index    per chunk: offset (long), length (int), startPage (int), endPage (int), wordCount (int)
+ * trailer  index offset (long), chunk count (int), magic (int)
+ * </pre>
+ * The index goes last so the file is written in one streaming pass; readers
+ * memory-map it and find the index through the fixed-size trailer.
+ */
+public final class ChunkFile {
+
+    static final int MAGIC = 0x444D434B;
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int ENTRY_SIZE = 24;
+    private static final int TRAILER_SIZE = 16;
+
+    private ChunkFile() {
+    }
+
+    /**
+     * One chunk of extracted text. Pages are 1-based; formats without pages
+     * report everything as page 1.
+     */
+    public record Chunk(int index, int startPage, int endPage, int wordCount, String text) {
+    }
+
+    /**
+     * @return true if the file exists and has a complete trailer, i.e. it was
+     *         fully written by a previous extraction
+     */
+    public static boolean isComplete(Path path) {
+        try {
+            Reader.open(path);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Streams chunks to a new file. Chunks must be appended in index order;
+     * {@link #close} writes the index and trailer.
+     */
+    public static final class Writer implements Closeable {
+
+        private final DataOutputStream output;
+        private final List<long[]> entries = new ArrayList<>();
+        private long position;
+
+        public Writer(Path path) throws IOException {
+            this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            position = HEADER_SIZE;
+        }
+
+        public void append(Chunk chunk) throws IOException {
+            byte[] text = chunk.text().getBytes(StandardCharsets.UTF_8);
+            output.write(text);
+            entries.add(new long[] {position, text.length, chunk.startPage(), chunk.endPage(), chunk.wordCount()});
+            position += text.length;
+        }
+
+        public int count() {
+            return entries.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (output) {
+                long indexOffset = position;
+                for (long[] entry : entries) {
+                    output.writeLong(entry[0]);
+                    output.writeInt((int) entry[1]);
+                    output.writeInt((int) entry[2]);
+                    output.writeInt((int) entry[3]);
+                    output.writeInt((int) entry[4]);
+                }
+                output.writeLong(indexOffset);
+                output.writeInt(entries.size());
+                output.writeInt(MAGIC);
+            }
+        }
+    }
+
+    /**
+     * Random access to the chunks of a memory-mapped chunk file.
+     */
+    public static final class Reader {
+
+        private final MappedByteBuffer buffer;
+        private final int indexOffset;
+        private final int count;
+
+        private Reader(MappedByteBuffer buffer, int indexOffset, int count) {
+            this.buffer = buffer;
+            this.indexOffset = indexOffset;
+            this.count = count;
+        }
+
+        /**
+         * @throws IOException if the file is missing, truncated or not a chunk file
+         */
+        public static Reader open(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < HEADER_SIZE + TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                    throw new IOException("Not a chunk file: " + path);
+                }
+                // The mapping stays valid after the channel is closed
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                long indexOffset = buffer.getLong((int) size - TRAILER_SIZE);
+                int count = buffer.getInt((int) size - 8);
+                boolean valid = buffer.getInt(0) == MAGIC
+                    && buffer.getInt(4) == VERSION
+                    && buffer.getInt((int) size - 4) == MAGIC
+                    && count >= 0
+                    && indexOffset + (long) count * ENTRY_SIZE == size - TRAILER_SIZE;
+                if (!valid) {
+                    throw new IOException("Incomplete or corrupt chunk file: " + path);
+                }
+                return new Reader(buffer, (int) indexOffset, count);
+            }
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public Chunk get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Chunk " + index + " of " + count);
+            }
+            int entry = indexOffset + index * ENTRY_SIZE;
+            int offset = (int) buffer.getLong(entry);
+            int length = buffer.getInt(entry + 8);
+            byte[] text = new byte[length];
+            buffer.get(offset, text);
+            return new Chunk(
+                index,
+                buffer.getInt(entry + 12),
+                buffer.getInt(entry + 16),
+                buffer.getInt(entry + 20),
+                new String(text, StandardCharsets.UTF_8)
+            );
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.dto.InitiateUploadRequest;
+import com.example.DocumindAI.exception.IngestionQueueFullException;
+import com.example.DocumindAI.exception.QuotaExceededException;
+import com.example.DocumindAI.model.DocumentEntity;
+import com.example.DocumindAI.model.UploadSession;
+import com.example.DocumindAI.repository.UploadSessionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Resumable upload protocol for large files: initiate a session, send chunks
+ * in any order (or in parallel), then complete. Each chunk is verified
+ * against its SHA-256 and written with positional writes straight into a
+ * part file preallocated to the final size, so server memory stays at one
+ * buffer per in-flight chunk. The {@link DocumentEntity} is only created,
+ * and processing only queued, when the upload is completed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChunkedUploadService {
+
+    private static final String ACTIVE = "active";
+    private static final String COMPLETING = "completing";
+    private static final String COMPLETED = "completed";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final MongoTemplate mongoTemplate;
+    private final DocumentService documentService;
+    private final StorageQuotaService storageQuotaService;
+
+    @Value("${DocumindAI.upload-dir}")
+    private String uploadDir;
+
+    @Value("${DocumindAI.chunked-upload.max-file-size:4GB}")
+    private DataSize maxFileSize;
+
+    @Value("${DocumindAI.chunked-upload.default-chunk-size:8MB}")
+    private DataSize defaultChunkSize;
+
+    @Value("${DocumindAI.chunked-upload.min-chunk-size:256KB}")
+    private DataSize minChunkSize;
+
+    @Value("${DocumindAI.chunked-upload.max-chunk-size:64MB}")
+    private DataSize maxChunkSize;
+
+    @Value("${DocumindAI.chunked-upload.session-ttl:24h}")
+    private Duration sessionTtl;
+
+    /**
+     * Opens an upload session and preallocates its part file.
+     *
+     * @throws IllegalArgumentException if the size, chunk size or file name is not acceptable
+     * @throws QuotaExceededException if the file would not fit in the user's storage quota
+     */
+    public UploadSession initiate(InitiateUploadRequest request, String userId) throws IOException {
+        String fileName = request.getFileName();
+        if (fileName.lastIndexOf(".") < 0) {
+            throw new IllegalArgumentException("File name must have an extension");
+        }
+        long totalSize = request.getTotalSize();
+        if (totalSize > maxFileSize.toBytes()) {
+            throw new IllegalArgumentException(
+                "File size exceeds maximum allowed size of " + maxFileSize.toMegabytes() + "MB"
+            );
+        }
+        storageQuotaService.checkAvailable(userId, totalSize);
+        long chunkSize = request.getChunkSize() != null ? request.getChunkSize() : defaultChunkSize.toBytes();
+        if (chunkSize < minChunkSize.toBytes() || chunkSize > maxChunkSize.toBytes()) {
+            throw new IllegalArgumentException(
+                "Chunk size must be between " + minChunkSize.toKilobytes() + "KB and " + maxChunkSize.toMegabytes() + "MB"
+            );
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId("upl_" + UUID.randomUUID());
+        session.setUserId(userId);
+        session.setOriginalFileName(fileName);
+        session.setTotalSize(totalSize);
+        session.setChunkSize((int) chunkSize);
+        session.setChunkCount((int) ((totalSize + chunkSize - 1) / chunkSize));
+        session.setReceivedChunks(new HashSet<>());
+        session.setStatus(ACTIVE);
+        session.setCreatedAt(LocalDateTime.now());
+        session.setUpdatedAt(LocalDateTime.now());
+        session.setExpiresAt(LocalDateTime.now().plus(sessionTtl));
+
+        // Reserve the full size up front; chunks are then written in place
+        Path partFile = partFile(session.getId());
+        Files.createDirectories(partFile.getParent());
+        try (RandomAccessFile file = new RandomAccessFile(partFile.toFile(), "rw")) {
+            file.setLength(totalSize);
+        }
+
+        uploadSessionRepository.save(session);
+        log.info("Upload session {} started: {} bytes in {} chunks", session.getId(), totalSize, session.getChunkCount());
+        return session;
+    }
+
+    /**
+     * Writes one chunk at its offset and marks it received once its length
+     * and checksum match. Re-sending a chunk simply overwrites it.
+     *
+     * @throws IllegalArgumentException if the index, length or checksum is wrong
+     * @throws IllegalStateException if the session is no longer accepting chunks
+     */
+    public UploadSession uploadChunk(String sessionId, int index, InputStream content, String expectedSha256) throws IOException {
+        UploadSession session = getSession(sessionId);
+        if (!ACTIVE.equals(session.getStatus())) {
+            throw new IllegalStateException("Upload session is " + session.getStatus());
+        }
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new IllegalArgumentException("Chunk index must be between 0 and " + (session.getChunkCount() - 1));
+        }
+        if (expectedSha256 == null || expectedSha256.isBlank()) {
+            throw new IllegalArgumentException("Chunk checksum is required");
+        }
+
+        long offset = (long) index * session.getChunkSize();
+        long expectedLength = Math.min(session.getChunkSize(), session.getTotalSize() - offset);
+
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(partFile(sessionId), StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = content.read(buffer)) > 0) {
+                if (written + read > expectedLength) {
+                    throw new IllegalArgumentException("Chunk " + index + " is larger than " + expectedLength + " bytes");
+                }
+                digest.update(buffer, 0, read);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    written += channel.write(chunk, offset + written);
+                }
+            }
+            if (written != expectedLength) {
+                throw new IllegalArgumentException(
+                    "Chunk " + index + " has " + written + " bytes, expected " + expectedLength
+                );
+            }
+            // Only acknowledge chunks that would survive a crash
+            channel.force(false);
+        }
+
+        String actualSha256 = HexFormat.of().formatHex(digest.digest());
+        if (!actualSha256.equalsIgnoreCase(expectedSha256.trim())) {
+            throw new IllegalArgumentException("Checksum mismatch for chunk " + index);
+        }
+
+        UploadSession updated = mongoTemplate.findAndModify(
+            Query.query(Criteria.where("_id").is(sessionId).and("status").is(ACTIVE)),
+            new Update()
+                .addToSet("receivedChunks", index)
+                .set("updatedAt", LocalDateTime.now())
+                .set("expiresAt", LocalDateTime.now().plus(sessionTtl)),
+            FindAndModifyOptions.options().returnNew(true),
+            UploadSession.class
+        );
+        if (updated == null) {
+            throw new IllegalStateException("Upload session is no longer active");
+        }
+        return updated;
+    }
+
+    /**
+     * Turns a fully received upload into a document and queues it for
+     * processing. Safe against concurrent calls: only one caller wins the
+     * transition out of "active".
+     *
+     * @throws IllegalStateException if chunks are missing or the session is not active
+     * @throws IllegalArgumentException if the assembled file is rejected; the session is discarded
+     * @throws QuotaExceededException if it no longer fits in the user's quota; the session is discarded
+     */
+    public UploadSession complete(String sessionId) throws IOException {
+        UploadSession session = getSession(sessionId);
+        UploadSession claimed = mongoTemplate.findAndModify(
+            Query.query(Criteria.where("_id").is(sessionId)
+                .and("status").is(ACTIVE)
+                .and("receivedChunks").size(session.getChunkCount())),
+            new Update().set("status", COMPLETING).set("updatedAt", LocalDateTime.now()),
+            FindAndModifyOptions.options().returnNew(true),
+            UploadSession.class
+        );
+        if (claimed == null) {
+            if (!ACTIVE.equals(session.getStatus())) {
+                throw new IllegalStateException("Upload session is " + session.getStatus());
+            }
+            int missing = session.getChunkCount() - session.getReceivedChunks().size();
+            throw new IllegalStateException("Upload is missing " + missing + " chunk(s)");
+        }
+
+        DocumentEntity document;
+        try {
+            document = documentService.uploadAssembledDocument(
+                partFile(sessionId), claimed.getOriginalFileName(), claimed.getUserId()
+            );
+        } catch (IllegalArgumentException | QuotaExceededException e) {
+            // Content itself is unacceptable, or was already dropped for the quota; retrying cannot help
+            abort(sessionId);
+            throw e;
+        } catch (IngestionQueueFullException | IOException e) {
+            // Transient; let the client call complete again
+            setStatus(sessionId, ACTIVE);
+            throw e;
+        }
+
+        claimed.setStatus(COMPLETED);
+        claimed.setDocumentId(document.getId());
+        claimed.setUpdatedAt(LocalDateTime.now());
+        uploadSessionRepository.save(claimed);
+        log.info("Upload session {} completed as document {}", sessionId, document.getId());
+        return claimed;
+    }
+
+    public UploadSession getSession(String sessionId) {
+        return uploadSessionRepository.findById(sessionId)
+            .orElseThrow(() -> new RuntimeException("Upload session not found"));
+    }
+
+    public void abort(String sessionId) throws IOException {
+        UploadSession session = getSession(sessionId);
+        if (!COMPLETED.equals(session.getStatus())) {
+            Files.deleteIfExists(partFile(sessionId));
+        }
+        uploadSessionRepository.deleteById(sessionId);
+    }
+
+    /**
+     * Removes sessions (and part files) that saw no activity within the
+     * session TTL.
+     */
+    @Scheduled(
+        initialDelayString = "${DocumindAI.chunked-upload.cleanup-interval:3600000}",
+        fixedDelayString = "${DocumindAI.chunked-upload.cleanup-interval:3600000}"
+    )
+    public void removeExpiredSessions() {
+        try {
+            for (UploadSession session : uploadSessionRepository.findByExpiresAtBefore(LocalDateTime.now())) {
+                if (COMPLETING.equals(session.getStatus())) {
+                    continue;
+                }
+                abort(session.getId());
+                log.info("Removed expired upload session {}", session.getId());
+            }
+        } catch (Exception e) {
+            log.warn("Upload session cleanup failed: {}", e.getMessage());
+        }
+    }
+
+    private void setStatus(String sessionId, String status) {
+        mongoTemplate.updateFirst(
+            Query.query(Criteria.where("_id").is(sessionId)),
+            new Update().set("status", status).set("updatedAt", LocalDateTime.now()),
+            UploadSession.class
+        );
+    }
+
+    // Kept under the upload directory so completion is an atomic rename
+    private Path partFile(String sessionId) {
+        return Paths.get(uploadDir, ".sessions", sessionId + ".part");
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
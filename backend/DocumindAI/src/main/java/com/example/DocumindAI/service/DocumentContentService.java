@@ -0,0 +1,122 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.model.DocumentContent;
+import com.example.DocumindAI.repository.DocumentContentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Reference-counted registry of uploaded content, keyed by SHA-256.
+ * All updates are single atomic MongoDB operations so concurrent uploads of
+ * the same file agree on one owner.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentContentService {
+
+    private final DocumentContentRepository documentContentRepository;
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Adds a reference to the content with the given hash, registering it with
+     * {@code documentId} as owner if it is new. The caller owns the content
+     * (and must store the file and process it) when the returned record's
+     * owner equals {@code documentId}.
+     */
+    public DocumentContent acquire(String contentHash, String documentId, String fileName, long fileSize) {
+        LocalDateTime now = LocalDateTime.now();
+        Update update = new Update()
+            .inc("refCount", 1)
+            .set("updatedAt", now)
+            .setOnInsert("fileName", fileName)
+            .setOnInsert("fileSize", fileSize)
+            .setOnInsert("ownerDocumentId", documentId)
+            .setOnInsert("status", "uploaded")
+            .setOnInsert("createdAt", now);
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+
+        try {
+            return mongoTemplate.findAndModify(byHash(contentHash), update, options, DocumentContent.class);
+        } catch (DuplicateKeyException e) {
+            // Lost an upsert race on the unique index; the record exists now
+            return mongoTemplate.findAndModify(byHash(contentHash), update, options, DocumentContent.class);
+        }
+    }
+
+    /**
+     * Drops one reference.
+     *
+     * @return true if this was the last reference and the stored file and
+     *         processed artifacts can be removed; false when another upload
+     *         took a new reference before the record could be removed
+     */
+    public boolean release(String contentHash) {
+        DocumentContent content = mongoTemplate.findAndModify(
+            byHash(contentHash),
+            new Update().inc("refCount", -1).set("updatedAt", LocalDateTime.now()),
+            FindAndModifyOptions.options().returnNew(true),
+            DocumentContent.class
+        );
+        if (content == null) {
+            return true;
+        }
+        if (content.getRefCount() > 0) {
+            return false;
+        }
+        // Only if still unreferenced: a concurrent upload may have acquired it since
+        Query unreferenced = Query.query(Criteria.where("_id").is(content.getId()).and("refCount").lte(0));
+        return mongoTemplate.remove(unreferenced, DocumentContent.class).getDeletedCount() > 0;
+    }
+
+    /**
+     * Hands ownership of unprocessed content from {@code currentOwner} (failed
+     * or deleted) to another document so it can be re-processed.
+     *
+     * @return true if {@code documentId} is now the owner
+     */
+    public boolean takeOver(String contentHash, String documentId, String currentOwner) {
+        Query query = byHash(contentHash)
+            .addCriteria(Criteria.where("ownerDocumentId").is(currentOwner))
+            .addCriteria(Criteria.where("status").ne("processed"));
+        Update update = new Update()
+            .set("ownerDocumentId", documentId)
+            .set("status", "uploaded")
+            .set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.updateFirst(query, update, DocumentContent.class).getModifiedCount() > 0;
+    }
+
+    public void markProcessed(String contentHash, String chromaCollectionId, String extractedTextPath) {
+        Update update = new Update()
+            .set("status", "processed")
+            .set("chromaCollectionId", chromaCollectionId)
+            .set("extractedTextPath", extractedTextPath)
+            .set("updatedAt", LocalDateTime.now());
+        mongoTemplate.updateFirst(byHash(contentHash), update, DocumentContent.class);
+    }
+
+    public void markFailed(String contentHash) {
+        Update update = new Update()
+            .set("status", "failed")
+            .set("updatedAt", LocalDateTime.now());
+        mongoTemplate.updateFirst(byHash(contentHash), update, DocumentContent.class);
+    }
+
+    public Optional<DocumentContent> find(String contentHash) {
+        return documentContentRepository.findByContentHash(contentHash);
+    }
+
+    private static Query byHash(String contentHash) {
+        return Query.query(Criteria.where("contentHash").is(contentHash));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.dto.DocumentStatusEvent;
+import com.example.DocumindAI.model.DocumentEntity;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process fan-out of document status transitions and ingestion progress,
+ * so clients are pushed changes instead of polling the document.
+ * <p>
+ * Subscribers are grouped by user: publishing touches only the channel of
+ * the document's owner, so the cost of an event does not grow with the
+ * number of idle subscriptions. Emission never blocks the publisher (an
+ * ingestion worker or the AI client's event loop); each subscriber has a
+ * bounded buffer that drops its oldest events if it falls behind.
+ * <p>
+ * Events are only seen by subscribers connected to the instance that made
+ * the change.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentEventBus {
+
+    private final DocumentMetadataCache documentMetadataCache;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${DocumindAI.events.subscriber-buffer:256}")
+    private int subscriberBuffer;
+
+    @Value("${DocumindAI.events.heartbeat:30s}")
+    private Duration heartbeatInterval;
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    // Latest progress of documents being ingested, replayed to new subscribers
+    private final Map<String, DocumentStatusEvent> progress = new ConcurrentHashMap<>();
+    private Flux<Long> heartbeat;
+
+    @PostConstruct
+    void init() {
+        // One timer shared by every subscription
+        heartbeat = Flux.interval(heartbeatInterval).share();
+        Gauge.builder("documind.events.subscribers", this, DocumentEventBus::getSubscriberCount)
+            .register(meterRegistry);
+    }
+
+    public void publish(DocumentStatusEvent event) {
+        if ("progress".equals(event.getType())) {
+            progress.put(event.getDocumentId(), event);
+        } else if (event.isTerminal()) {
+            progress.remove(event.getDocumentId());
+        }
+        meterRegistry.counter("documind.events.published", "type", event.getType()).increment();
+
+        Channel channel = channels.get(routingKey(event.getUserId()));
+        if (channel != null) {
+            // Serializes concurrent publishers; directBestEffort itself never waits on subscribers
+            channel.sink.emitNext(event, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+        }
+    }
+
+    /**
+     * Events for a user's documents, limited to {@code documentIds} if not
+     * empty. A scoped subscription also gets the current status (and
+     * progress) of each of its documents, so a client never misses a change
+     * made between reading the document and subscribing.
+     */
+    public Flux<DocumentStatusEvent> subscribe(String userId, Set<String> documentIds) {
+        String key = routingKey(userId);
+        Flux<DocumentStatusEvent> live = Flux.defer(() -> join(key).asFlux())
+            .doFinally(signal -> leave(key))
+            .onBackpressureBuffer(subscriberBuffer, dropped -> { }, BufferOverflowStrategy.DROP_OLDEST);
+        if (documentIds.isEmpty()) {
+            return live;
+        }
+        // Join before reading the snapshot; writers update the metadata cache before
+        // publishing, so a change in between arrives live or is in the snapshot
+        return Flux.merge(live, Flux.defer(() -> Flux.fromIterable(snapshot(key, documentIds))))
+            .filter(event -> documentIds.contains(event.getDocumentId()));
+    }
+
+    /**
+     * Ticks every {@code DocumindAI.events.heartbeat}, for keep-alives on
+     * otherwise idle connections.
+     */
+    public Flux<Long> heartbeat() {
+        return heartbeat;
+    }
+
+    public int getSubscriberCount() {
+        return channels.values().stream().mapToInt(channel -> channel.subscribers).sum();
+    }
+
+    private List<DocumentStatusEvent> snapshot(String userId, Set<String> documentIds) {
+        List<DocumentStatusEvent> events = new ArrayList<>();
+        for (String documentId : documentIds) {
+            DocumentEntity document = documentMetadataCache.get(documentId).orElse(null);
+            if (document == null || !userId.equals(routingKey(document.getUserId()))) {
+                continue;
+            }
+            events.add(DocumentStatusEvent.status(documentId, userId, document.getStatus()));
+            DocumentStatusEvent latest = progress.get(documentId);
+            if (latest != null && "processing".equals(document.getStatus())) {
+                events.add(latest);
+            }
+        }
+        return events;
+    }
+
+    // Channels are created on first subscribe and dropped with the last subscriber
+    private Sinks.Many<DocumentStatusEvent> join(String userId) {
+        return channels.compute(userId, (key, channel) -> {
+            Channel joined = channel != null ? channel : new Channel();
+            joined.subscribers++;
+            return joined;
+        }).sink;
+    }
+
+    private void leave(String userId) {
+        channels.computeIfPresent(userId, (key, channel) -> --channel.subscribers == 0 ? null : channel);
+    }
+
+    private static String routingKey(String userId) {
+        return Objects.requireNonNullElse(userId, "default_user");
+    }
+
+    private static final class Channel {
+        private final Sinks.Many<DocumentStatusEvent> sink = Sinks.many().multicast().directBestEffort();
+        // Only changed inside ConcurrentHashMap.compute for this channel's key
+        private int subscribers;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.dto.DocumentPage;
+import com.example.DocumindAI.dto.DocumentSummary;
+import com.example.DocumindAI.model.DocumentEntity;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Document listings for users with many documents. Pages use keyset
+ * pagination on (uploadedAt desc, _id desc), so every page is an index range
+ * scan no matter how deep the caller goes, and only the summary fields are
+ * read. Exports stream the same query straight from a MongoDB cursor.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentListingService {
+
+    private static final String[] SUMMARY_FIELDS = {
+        "originalFileName", "fileSize", "fileType", "status", "uploadedAt"
+    };
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${DocumindAI.listing.max-page-size:500}")
+    private int maxPageSize;
+
+    /**
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public DocumentPage listDocuments(DocumentFilter filter, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+
+        Query query = summaryQuery(filter);
+        if (cursor != null && !cursor.isBlank()) {
+            query.addCriteria(afterCursor(Cursor.decode(cursor)));
+        }
+        // One extra row tells us whether there is a next page
+        query.limit(pageSize + 1);
+
+        List<DocumentSummary> documents = new ArrayList<>(
+            mongoTemplate.find(query, DocumentSummary.class, collection())
+        );
+        String nextCursor = null;
+        if (documents.size() > pageSize) {
+            documents.remove(pageSize);
+            DocumentSummary last = documents.get(pageSize - 1);
+            nextCursor = new Cursor(last.getUploadedAt(), last.getId()).encode();
+        }
+        return new DocumentPage(documents, nextCursor);
+    }
+
+    /**
+     * Writes every matching document as a JSON array, one cursor batch at a
+     * time, without holding the result set in memory.
+     */
+    public void exportDocuments(DocumentFilter filter, OutputStream output) throws IOException {
+        Query query = summaryQuery(filter);
+        try (Stream<DocumentSummary> stream = mongoTemplate.stream(query, DocumentSummary.class, collection());
+             JsonGenerator json = objectMapper.getFactory().createGenerator(output)) {
+            Iterator<DocumentSummary> documents = stream.iterator();
+            json.writeStartArray();
+            long count = 0;
+            while (documents.hasNext()) {
+                objectMapper.writeValue(json, documents.next());
+                if (++count % 500 == 0) {
+                    json.flush();
+                }
+            }
+            json.writeEndArray();
+            log.debug("Exported {} documents for user {}", count, filter.userId());
+        }
+    }
+
+    private Query summaryQuery(DocumentFilter filter) {
+        Query query = Query.query(Criteria.where("userId").is(filter.userId()));
+        if (filter.status() != null) {
+            query.addCriteria(Criteria.where("status").is(filter.status()));
+        } else {
+            // Tombstones awaiting the reaper are only listed when asked for
+            query.addCriteria(Criteria.where("status").ne("deleted"));
+        }
+        if (filter.fileType() != null) {
+            query.addCriteria(Criteria.where("fileType").is(filter.fileType()));
+        }
+        if (filter.from() != null || filter.to() != null) {
+            Criteria uploadedAt = Criteria.where("uploadedAt");
+            if (filter.from() != null) {
+                uploadedAt.gte(filter.from());
+            }
+            if (filter.to() != null) {
+                uploadedAt.lt(filter.to());
+            }
+            query.addCriteria(uploadedAt);
+        }
+        query.fields().include(SUMMARY_FIELDS);
+        query.with(Sort.by(Sort.Order.desc("uploadedAt"), Sort.Order.desc("_id")));
+        // Large exports read in batches instead of one huge first reply
+        query.cursorBatchSize(500);
+        return query;
+    }
+
+    // Rows strictly after the cursor in (uploadedAt desc, _id desc) order
+    private static Criteria afterCursor(Cursor cursor) {
+        return new Criteria().orOperator(
+            Criteria.where("uploadedAt").lt(cursor.uploadedAt()),
+            new Criteria().andOperator(
+                Criteria.where("uploadedAt").is(cursor.uploadedAt()),
+                Criteria.where("_id").lt(cursor.id())
+            )
+        );
+    }
+
+    private String collection() {
+        return mongoTemplate.getCollectionName(DocumentEntity.class);
+    }
+
+    /**
+     * Listing filters; only {@code userId} is required. {@code from} is
+     * inclusive and {@code to} exclusive.
+     */
+    public record DocumentFilter(String userId, String status, String fileType, LocalDateTime from, LocalDateTime to) {
+    }
+
+    /**
+     * Position after the last row of a page, handed to clients as an opaque
+     * URL-safe token.
+     */
+    record Cursor(LocalDateTime uploadedAt, String id) {
+
+        String encode() {
+            String raw = uploadedAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.model.DocumentEntity;
+import com.example.DocumindAI.repository.DocumentRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * In-process cache of the document fields the query path needs (status,
+ * vector collection, chunk file, owner, last update), loaded through a projection so the
+ * full entity and its metadata map are never read per query. Writers keep it
+ * current by calling {@link #update} on every status transition and
+ * {@link #evict} on delete.
+ * <p>
+ * With several backend instances, {@code DocumindAI.document-cache.change-streams}
+ * subscribes to the documents collection's change stream and evicts entries
+ * changed by other instances. Change streams need a replica set, so this is
+ * off by default and the TTL bounds staleness instead.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentMetadataCache {
+
+    private final DocumentRepository documentRepository;
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${DocumindAI.document-cache.max-size:50000}")
+    private long maxSize;
+
+    @Value("${DocumindAI.document-cache.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${DocumindAI.document-cache.change-streams:false}")
+    private boolean changeStreamsEnabled;
+
+    private Cache<String, DocumentEntity> cache;
+    private MessageListenerContainer changeListener;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "documentMetadata");
+
+        if (changeStreamsEnabled) {
+            changeListener = new DefaultMessageListenerContainer(mongoTemplate);
+            changeListener.register(
+                ChangeStreamRequest.builder(this::onChange)
+                    .collection(mongoTemplate.getCollectionName(DocumentEntity.class))
+                    .build(),
+                Document.class
+            );
+            changeListener.start();
+            log.info("Document metadata cache listening to change stream");
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (changeListener != null) {
+            changeListener.stop();
+        }
+    }
+
+    /**
+     * Returns the cached projection, loading it from MongoDB on a miss. The
+     * returned entity only has the projected fields set and must not be saved.
+     */
+    public Optional<DocumentEntity> get(String documentId) {
+        return Optional.ofNullable(
+            cache.get(documentId, id -> documentRepository.findMetadataById(id).orElse(null))
+        );
+    }
+
+    /**
+     * Refreshes the entry from a just-saved entity, so readers see the new
+     * status without another round-trip.
+     */
+    public void update(DocumentEntity document) {
+        cache.put(document.getId(), project(document));
+    }
+
+    public void evict(String documentId) {
+        cache.invalidate(documentId);
+    }
+
+    private void onChange(Message<ChangeStreamDocument<Document>, Document> message) {
+        BsonDocument key = message.getRaw() == null ? null : message.getRaw().getDocumentKey();
+        BsonValue id = key == null ? null : key.get("_id");
+        if (id != null && id.isString()) {
+            cache.invalidate(id.asString().getValue());
+        }
+    }
+
+    // Copy of the fields loaded by DocumentRepository.findMetadataById
+    private static DocumentEntity project(DocumentEntity document) {
+        DocumentEntity metadata = new DocumentEntity();
+        metadata.setId(document.getId());
+        metadata.setUserId(document.getUserId());
+        metadata.setStatus(document.getStatus());
+        metadata.setChromaCollectionId(document.getChromaCollectionId());
+        metadata.setExtractedTextPath(document.getExtractedTextPath());
+        metadata.setUpdatedAt(document.getUpdatedAt());
+        return metadata;
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.model.DocumentContent;
+import com.example.DocumindAI.model.DocumentEntity;
+import com.example.DocumindAI.repository.DocumentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Removes what deleted documents leave behind. Tombstones are reaped in
+ * batches: content references are released, the vector collections of
+ * content nobody references any more are dropped with one AI service call,
+ * then the files and records are removed. A slower sweep deletes stored
+ * originals, chunk files and local vector indexes that no record points
+ * to, e.g. after a crash between writing a file and saving its document.
+ * <p>
+ * Every step is safe to repeat, so a batch that fails half-way (AI service
+ * down) is simply picked up again by the next run.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentReaper {
+
+    private static final int LOOKUP_BATCH_SIZE = 500;
+
+    private final DocumentRepository documentRepository;
+    private final DocumentContentService documentContentService;
+    private final DocumentMetadataCache documentMetadataCache;
+    private final IngestionService ingestionService;
+    private final AIServiceClient aiServiceClient;
+    private final VectorIndexService vectorIndexService;
+    private final DocumentStorage documentStorage;
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${DocumindAI.processed-dir}")
+    private String processedDir;
+
+    @Value("${DocumindAI.reaper.batch-size:200}")
+    private int batchSize;
+
+    @Value("${DocumindAI.reaper.orphan-grace-period:1h}")
+    private Duration orphanGracePeriod;
+
+    @Scheduled(
+        initialDelayString = "${DocumindAI.reaper.initial-delay:10000}",
+        fixedDelayString = "${DocumindAI.reaper.interval:30000}"
+    )
+    public void reapDeletedDocuments() {
+        try {
+            int reaped;
+            do {
+                reaped = reapBatch();
+            } while (reaped >= batchSize);
+        } catch (Exception e) {
+            log.warn("Reaping deleted documents failed, retrying next run: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reaps up to one batch of tombstones, oldest first.
+     *
+     * @return the number of documents removed
+     */
+    int reapBatch() throws IOException {
+        Query query = Query.query(Criteria.where("status").is("deleted"))
+            .with(Sort.by("deletedAt"))
+            .limit(batchSize);
+        List<DocumentEntity> tombstones = new ArrayList<>();
+        for (DocumentEntity document : mongoTemplate.find(query, DocumentEntity.class)) {
+            // Its worker may still write vectors; reap it once ingestion gives up
+            if (!ingestionService.isInFlight(document.getId())) {
+                tombstones.add(document);
+            }
+        }
+        if (tombstones.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> collections = new LinkedHashSet<>();
+        for (DocumentEntity document : tombstones) {
+            if (document.getPurgeArtifacts() == null) {
+                releaseContent(document);
+            }
+            if (document.getPurgeArtifacts()) {
+                collections.add(document.getChromaCollectionId() != null
+                    ? document.getChromaCollectionId()
+                    : "doc_" + document.getId());
+            }
+        }
+
+        // One call for the whole batch; if it fails every tombstone stays for the next run
+        if (!collections.isEmpty()) {
+            aiServiceClient.deleteCollections(new ArrayList<>(collections));
+            meterRegistry.counter("documind.reaper.collections").increment(collections.size());
+        }
+
+        long reclaimed = 0;
+        for (String collection : collections) {
+            reclaimed += vectorIndexService.delete(collection);
+        }
+        List<String> ids = new ArrayList<>(tombstones.size());
+        List<String> originals = new ArrayList<>();
+        for (DocumentEntity document : tombstones) {
+            if (document.getPurgeArtifacts()) {
+                originals.add(document.getFileName());
+                reclaimed += deleteChunkFile(document);
+            }
+            ids.add(document.getId());
+        }
+        reclaimed += documentStorage.delete(originals);
+
+        documentRepository.deleteAllById(ids);
+        ids.forEach(documentMetadataCache::evict);
+
+        meterRegistry.counter("documind.reaper.documents").increment(ids.size());
+        reclaimed(reclaimed, "tombstone");
+        log.info("Reaped {} deleted documents and {} vector collections, reclaimed {} bytes",
+            ids.size(), collections.size(), reclaimed);
+        return ids.size();
+    }
+
+    /**
+     * Deletes stored originals, chunk files and vector indexes that no
+     * document or content record refers to. Only files untouched for the
+     * grace period are considered, so uploads and extractions in progress
+     * are left alone.
+     */
+    @Scheduled(
+        initialDelayString = "${DocumindAI.reaper.orphan-interval:3600000}",
+        fixedDelayString = "${DocumindAI.reaper.orphan-interval:3600000}"
+    )
+    public void collectOrphans() {
+        try {
+            long reclaimed = collectOrphanUploads() + collectOrphanChunkFiles() + collectOrphanVectorFiles();
+            if (reclaimed > 0) {
+                log.info("Orphan sweep reclaimed {} bytes", reclaimed);
+            }
+        } catch (Exception e) {
+            log.warn("Orphan sweep failed: {}", e.getMessage());
+        }
+    }
+
+    long collectOrphanUploads() throws IOException {
+        // Both storage tiers, including temporary files of uploads that never finished
+        Instant cutoff = Instant.now().minus(orphanGracePeriod);
+        Set<String> names = new HashSet<>();
+        try (Stream<ObjectStore.ObjectInfo> objects = documentStorage.list()) {
+            objects.filter(object -> object.lastAccessed().isBefore(cutoff))
+                .forEach(object -> names.add(object.key()));
+        }
+
+        Set<String> referenced = new HashSet<>();
+        forEachBatch(names, batch -> {
+            referenced.addAll(distinct("fileName", Criteria.where("fileName").in(batch), DocumentEntity.class));
+            referenced.addAll(distinct("fileName", Criteria.where("fileName").in(batch), DocumentContent.class));
+        });
+
+        names.removeAll(referenced);
+        long reclaimed = documentStorage.delete(names);
+        meterRegistry.counter("documind.reaper.orphans").increment(names.size());
+        reclaimed(reclaimed, "orphan");
+        return reclaimed;
+    }
+
+    long collectOrphanChunkFiles() throws IOException {
+        // Chunk files are named after the content hash, or the document ID without one;
+        // stale leftovers of interrupted extractions (.tmp) are orphans outright
+        Map<Path, String> stems = new HashMap<>();
+        for (Path file : staleFiles(Paths.get(processedDir, "chunks"))) {
+            String name = file.getFileName().toString();
+            stems.put(file, name.endsWith(".chunks") ? name.substring(0, name.length() - ".chunks".length()) : null);
+        }
+
+        Set<String> names = new HashSet<>(stems.values());
+        names.remove(null);
+        Set<String> referenced = new HashSet<>();
+        forEachBatch(names, batch -> {
+            referenced.addAll(distinct("contentHash", Criteria.where("contentHash").in(batch), DocumentContent.class));
+            referenced.addAll(distinct("contentHash", Criteria.where("contentHash").in(batch), DocumentEntity.class));
+            referenced.addAll(distinct("_id", Criteria.where("_id").in(batch), DocumentEntity.class));
+        });
+
+        return deleteOrphans(stems.entrySet().stream()
+            .filter(entry -> entry.getValue() == null || !referenced.contains(entry.getValue()))
+            .map(Map.Entry::getKey)
+            .toList());
+    }
+
+    long collectOrphanVectorFiles() throws IOException {
+        // Index files are named after their vector collection; unfinished ones (.tmp) are orphans outright
+        Map<Path, String> collections = new HashMap<>();
+        for (Path file : staleFiles(vectorIndexService.directory())) {
+            collections.put(file, VectorIndexService.collectionOf(file));
+        }
+
+        Set<String> names = new HashSet<>(collections.values());
+        names.remove(null);
+        Set<String> referenced = new HashSet<>();
+        forEachBatch(names, batch -> {
+            referenced.addAll(distinct("chromaCollectionId", Criteria.where("chromaCollectionId").in(batch), DocumentContent.class));
+            referenced.addAll(distinct("chromaCollectionId", Criteria.where("chromaCollectionId").in(batch), DocumentEntity.class));
+        });
+
+        return deleteOrphans(collections.entrySet().stream()
+            .filter(entry -> entry.getValue() == null || !referenced.contains(entry.getValue()))
+            .map(Map.Entry::getKey)
+            .toList());
+    }
+
+    // Marks the tombstone once its reference is gone, so a retried batch never releases twice
+    private void releaseContent(DocumentEntity document) {
+        boolean lastReference = document.getContentHash() == null
+            || documentContentService.release(document.getContentHash());
+        mongoTemplate.updateFirst(
+            Query.query(Criteria.where("_id").is(document.getId())),
+            new Update().set("purgeArtifacts", lastReference),
+            DocumentEntity.class
+        );
+        document.setPurgeArtifacts(lastReference);
+    }
+
+    private long deleteChunkFile(DocumentEntity document) {
+        if (document.getExtractedTextPath() == null) {
+            return 0;
+        }
+        // The same content may have been uploaded again since, and its chunk file path is shared
+        if (document.getContentHash() != null && documentContentService.find(document.getContentHash()).isPresent()) {
+            return 0;
+        }
+        return deleteFile(Paths.get(document.getExtractedTextPath()));
+    }
+
+    private long deleteOrphans(List<Path> orphans) {
+        long reclaimed = 0;
+        for (Path orphan : orphans) {
+            reclaimed += deleteFile(orphan);
+        }
+        meterRegistry.counter("documind.reaper.orphans").increment(orphans.size());
+        reclaimed(reclaimed, "orphan");
+        return reclaimed;
+    }
+
+    // Regular files directly in the directory, not modified within the grace period
+    private List<Path> staleFiles(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        Instant cutoff = Instant.now().minus(orphanGracePeriod);
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(Files::isRegularFile)
+                .filter(file -> {
+                    try {
+                        return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+                    } catch (IOException e) {
+                        return false;
+                    }
+                })
+                .toList();
+        }
+    }
+
+    private List<String> distinct(String field, Criteria criteria, Class<?> entityClass) {
+        return mongoTemplate.findDistinct(Query.query(criteria), field, entityClass, String.class);
+    }
+
+    private static void forEachBatch(Set<String> values, Consumer<List<String>> action) {
+        List<String> all = new ArrayList<>(values);
+        for (int from = 0; from < all.size(); from += LOOKUP_BATCH_SIZE) {
+            action.accept(all.subList(from, Math.min(from + LOOKUP_BATCH_SIZE, all.size())));
+        }
+    }
+
+    private long deleteFile(Path file) {
+        try {
+            long size = Files.exists(file) ? Files.size(file) : 0;
+            return Files.deleteIfExists(file) ? size : 0;
+        } catch (IOException e) {
+            log.error("Error deleting file {}: {}", file, e.getMessage());
+            return 0;
+        }
+    }
+
+    private void reclaimed(long bytes, String source) {
+        Counter.builder("documind.reaper.reclaimed")
+            .baseUnit("bytes")
+            .tag("source", source)
+            .register(meterRegistry)
+            .increment(bytes);
+    }
+}
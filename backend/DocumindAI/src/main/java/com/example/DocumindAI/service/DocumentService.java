@@ -1,170 +1,619 @@
 package com.example.DocumindAI.service;
 
+import com.example.DocumindAI.dto.BatchUploadResult;
+import com.example.DocumindAI.dto.DocumentStatusEvent;
+import com.example.DocumindAI.exception.QuotaExceededException;
+import com.example.DocumindAI.model.DocumentContent;
 import com.example.DocumindAI.model.DocumentEntity;
 import com.example.DocumindAI.repository.DocumentRepository;
+import com.example.DocumindAI.service.UploadPipeline.StoredUpload;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.tika.Tika;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DocumentService {
     
+    private static final int BULK_DELETE_BATCH_SIZE = 1000;
+    
     private final DocumentRepository documentRepository;
-    private final AIServiceClient aiServiceClient;
+    private final IngestionService ingestionService;
+    private final QueryCache queryCache;
+    private final HistoryAnswerIndex historyAnswerIndex;
+    private final UploadPipeline uploadPipeline;
+    private final DocumentContentService documentContentService;
+    private final DocumentMetadataCache documentMetadataCache;
+    private final DocumentEventBus documentEventBus;
+    private final DocumentStorage documentStorage;
+    private final StorageQuotaService storageQuotaService;
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
     
     @Value("${DocumindAI.upload-dir}")
     private String uploadDir;
     
-    private static final List<String> ALLOWED_TYPES = Arrays.asList(
-        "application/pdf",
-        "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
-        "text/plain"
-    );
+    @Value("${DocumindAI.batch.upload-concurrency:4}")
+    private int uploadConcurrency;
+    
+    private ExecutorService uploadExecutor;
     
-    private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB
+    @PostConstruct
+    void init() {
+        uploadExecutor = Executors.newFixedThreadPool(uploadConcurrency, new CustomizableThreadFactory("upload-batch-"));
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        uploadExecutor.shutdownNow();
+    }
     
     public DocumentEntity uploadDocument(MultipartFile file, String userId) throws IOException {
-        // Validate file
-        validateFile(file);
+        checkFile(file);
+        storageQuotaService.checkAvailable(userId, file.getSize());
+        
+        try (InputStream content = file.getInputStream()) {
+            return uploadDocument(content, file.getOriginalFilename(), userId);
+        }
+    }
+    
+    /**
+     * Stores an upload from a raw stream in a single pass (type detection,
+     * hashing and disk write) and queues it for processing.
+     */
+    public DocumentEntity uploadDocument(InputStream content, String originalFilename, String userId) throws IOException {
+        // Reject early if the ingestion queue cannot take another document
+        ingestionService.ensureCapacity(1);
+        
+        DocumentEntity document = storeDocument(content, originalFilename, userId);
+        saveOrDiscard(List.of(document));
+        statusChanged(document);
+        
+        // Process document asynchronously via AI service
+        if ("uploaded".equals(document.getStatus())) {
+            processDocumentAsync(document);
+        }
+        
+        return document;
+    }
+    
+    /**
+     * Stores several uploads, at most {@code DocumindAI.batch.upload-concurrency}
+     * at a time, handing each file's result to {@code onResult} as soon as its
+     * record is saved. Records are saved with bulk inserts: while one insert
+     * runs, the files stored meanwhile queue up and go in the next. Files are
+     * validated individually, so one bad file only fails its own entry.
+     */
+    public CompletableFuture<Void> uploadDocuments(List<MultipartFile> files, String userId,
+                                                   Consumer<BatchUploadResult> onResult) {
+        ingestionService.ensureCapacity(files.size());
+        
+        BatchCommitter committer = new BatchCommitter(onResult);
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            int index = i;
+            MultipartFile file = files.get(i);
+            tasks.add(CompletableFuture.runAsync(() -> {
+                BatchUploadResult rejected = storeBatchItem(index, file, userId, committer);
+                if (rejected != null) {
+                    onResult.accept(rejected);
+                }
+            }, uploadExecutor));
+        }
+        
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]));
+    }
+    
+    // Null once the document is handed to the committer, which reports it after saving
+    private BatchUploadResult storeBatchItem(int index, MultipartFile file, String userId, BatchCommitter committer) {
+        String fileName = file.getOriginalFilename();
+        DocumentEntity document;
+        try (InputStream content = file.getInputStream()) {
+            checkFile(file);
+            storageQuotaService.checkAvailable(userId, file.getSize());
+            document = storeDocument(content, fileName, userId);
+        } catch (IllegalArgumentException | QuotaExceededException e) {
+            return new BatchUploadResult(index, fileName, null, "error", e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            log.error("Error storing {}: {}", fileName, e.getMessage());
+            return new BatchUploadResult(index, fileName, null, "error", "Failed to upload document");
+        }
+        committer.commit(index, document);
+        return null;
+    }
+    
+    /**
+     * Group commit of the records of one batch upload. Each storing thread
+     * queues its record and then saves everything queued, unless a thread
+     * that got the lock first already did.
+     */
+    private final class BatchCommitter {
+        
+        private record Stored(int index, DocumentEntity document) {
+        }
+        
+        private final Consumer<BatchUploadResult> onResult;
+        private final Queue<Stored> pending = new ConcurrentLinkedQueue<>();
+        private final ReentrantLock lock = new ReentrantLock();
         
+        private BatchCommitter(Consumer<BatchUploadResult> onResult) {
+            this.onResult = onResult;
+        }
+        
+        void commit(int index, DocumentEntity document) {
+            pending.add(new Stored(index, document));
+            lock.lock();
+            try {
+                List<Stored> batch = new ArrayList<>();
+                for (Stored stored = pending.poll(); stored != null; stored = pending.poll()) {
+                    batch.add(stored);
+                }
+                if (!batch.isEmpty()) {
+                    save(batch);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        private void save(List<Stored> batch) {
+            try {
+                saveOrDiscard(batch.stream().map(Stored::document).toList());
+            } catch (RuntimeException e) {
+                log.error("Error saving {} uploaded documents: {}", batch.size(), e.getMessage());
+                batch.forEach(stored -> onResult.accept(new BatchUploadResult(stored.index(),
+                    stored.document().getOriginalFileName(), null, "error", "Failed to upload document")));
+                return;
+            }
+            for (Stored stored : batch) {
+                statusChanged(stored.document());
+                if ("uploaded".equals(stored.document().getStatus())) {
+                    processDocumentAsync(stored.document());
+                }
+            }
+            // Only then reported, so a client gone meanwhile cannot stop the rest being queued
+            for (Stored stored : batch) {
+                DocumentEntity document = stored.document();
+                onResult.accept(new BatchUploadResult(stored.index(), document.getOriginalFileName(), document.getId(),
+                    document.getStatus(), "Document uploaded successfully and is being processed"));
+            }
+        }
+    }
+    
+    private void checkFile(MultipartFile file) {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        
+        if (file.getSize() > uploadPipeline.getMaxFileSize()) {
+            throw new IllegalArgumentException("File size exceeds maximum allowed size");
+        }
+    }
+    
+    /**
+     * Registers a file already assembled on disk (a completed chunked upload)
+     * as a new document and queues it for processing. The file is moved into
+     * place, or deleted if identical content was uploaded before.
+     */
+    public DocumentEntity uploadAssembledDocument(Path file, String originalFilename, String userId) throws IOException {
+        ingestionService.ensureCapacity(1);
+        requireExtension(originalFilename);
+        
+        StoredUpload upload;
+        try {
+            upload = uploadPipeline.inspect(file, originalFilename);
+        } catch (IllegalArgumentException e) {
+            meterRegistry.counter("documind.upload.rejected").increment();
+            throw e;
+        }
+        recordUploadSize(upload);
+        
+        DocumentEntity document = registerDocument(upload, originalFilename, userId);
+        saveOrDiscard(List.of(document));
+        statusChanged(document);
+        
+        if ("uploaded".equals(document.getStatus())) {
+            processDocumentAsync(document);
+        }
+        
+        return document;
+    }
+    
+    /**
+     * Writes the content to disk (or links it to an identical earlier upload)
+     * and builds the unsaved document record.
+     */
+    private DocumentEntity storeDocument(InputStream content, String originalFilename, String userId) throws IOException {
+        requireExtension(originalFilename);
+        
+        // Staged next to the hot tier, so storing it is a rename
+        Path uploadPath = uploadPath();
+        
+        long storeStart = System.nanoTime();
+        StoredUpload upload;
+        try {
+            upload = uploadPipeline.store(content, uploadPath, originalFilename);
+        } catch (IllegalArgumentException e) {
+            meterRegistry.counter("documind.upload.rejected").increment();
+            throw e;
+        }
+        // Validation, hashing and the disk write happen in this single pass
+        Timer.builder("documind.upload.store")
+            .tag("type", upload.contentType())
+            .register(meterRegistry)
+            .record(System.nanoTime() - storeStart, TimeUnit.NANOSECONDS);
+        recordUploadSize(upload);
+        
+        return registerDocument(upload, originalFilename, userId);
+    }
+    
+    /**
+     * Charges the upload to the user's quota, hands it to
+     * {@link DocumentStorage} under a new document ID (or links it to an
+     * identical earlier upload) and builds the unsaved document record.
+     */
+    private DocumentEntity registerDocument(StoredUpload upload, String originalFilename, String userId) throws IOException {
+        try {
+            storageQuotaService.reserve(userId, upload.size());
+        } catch (QuotaExceededException e) {
+            Files.deleteIfExists(upload.tempFile());
+            throw e;
+        }
+        try {
+            return createDocument(upload, originalFilename, userId);
+        } catch (IOException | RuntimeException e) {
+            storageQuotaService.release(userId, upload.size(), 1);
+            try {
+                Files.deleteIfExists(upload.tempFile());
+            } catch (IOException deleteFailure) {
+                e.addSuppressed(deleteFailure);
+            }
+            throw e;
+        }
+    }
+    
+    private DocumentEntity createDocument(StoredUpload upload, String originalFilename, String userId) throws IOException {
         // Generate unique document ID
         String documentId = "doc_" + UUID.randomUUID().toString();
-        
-        // Determine file extension
-        String originalFilename = file.getOriginalFilename();
         String extension = originalFilename.substring(originalFilename.lastIndexOf("."));
         String fileName = documentId + extension;
         
-        // Save file to disk
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-        
-        Path filePath = uploadPath.resolve(fileName);
-        file.transferTo(filePath.toFile());
+        // Link to an earlier upload of the same content instead of storing and processing it again
+        DocumentContent storedContent = documentContentService.acquire(
+            upload.contentHash(), documentId, fileName, upload.size()
+        );
+        boolean owner = documentId.equals(storedContent.getOwnerDocumentId());
+        meterRegistry.counter("documind.upload.documents", "content", owner ? "new" : "duplicate").increment();
         
-        log.info("File saved to: {}", filePath);
+        try {
+            if (owner) {
+                documentStorage.store(fileName, upload.tempFile());
+                log.info("File saved as: {}", fileName);
+            } else {
+                Files.deleteIfExists(upload.tempFile());
+                log.info("Document {} is a duplicate of {}", documentId, storedContent.getOwnerDocumentId());
+            }
+        } catch (IOException | RuntimeException e) {
+            // Otherwise the content stays registered to a file never written, and later uploads of it link to that
+            releaseContent(upload.contentHash(), owner ? fileName : storedContent.getFileName());
+            throw e;
+        }
+        if (!owner) {
+            fileName = storedContent.getFileName();
+        }
         
         // Create MongoDB record
         DocumentEntity document = new DocumentEntity();
         document.setId(documentId);
         document.setFileName(fileName);
         document.setOriginalFileName(originalFilename);
-        document.setFileSize(file.getSize());
-        document.setFileType(file.getContentType());
+        document.setFileSize(upload.size());
+        document.setFileType(upload.contentType());
+        document.setContentHash(upload.contentHash());
         document.setUploadedAt(LocalDateTime.now());
         document.setUserId(userId);
         document.setStatus("uploaded");
         document.setCreatedAt(LocalDateTime.now());
         document.setUpdatedAt(LocalDateTime.now());
         
-        documentRepository.save(document);
-        
-        // Process document asynchronously via AI service
-        processDocumentAsync(documentId, filePath.toString());
+        if (!owner && "processed".equals(storedContent.getStatus())) {
+            // Reuse the existing chunks and embeddings
+            document.setStatus("processed");
+            document.setChromaCollectionId(storedContent.getChromaCollectionId());
+            document.setExtractedTextPath(storedContent.getExtractedTextPath());
+        }
         
         return document;
     }
     
-    private void validateFile(MultipartFile file) {
-        if (file.isEmpty()) {
-            throw new IllegalArgumentException("File is empty");
+    /**
+     * Saves new document records. If that fails, the documents not saved
+     * give back what storing them took: their content reference (and the
+     * file with the last one) and their quota charge.
+     */
+    private void saveOrDiscard(List<DocumentEntity> documents) {
+        try {
+            documentRepository.saveAll(documents);
+        } catch (RuntimeException e) {
+            Set<String> saved = new HashSet<>();
+            try {
+                documentRepository.findAllById(documents.stream().map(DocumentEntity::getId).toList())
+                    .forEach(document -> saved.add(document.getId()));
+            } catch (RuntimeException lookupFailure) {
+                // Unknown which were saved; the reaper's orphan sweep removes unreferenced files
+                log.error("Could not save {} documents, nor check which were saved: {}",
+                    documents.size(), lookupFailure.getMessage());
+                throw e;
+            }
+            for (DocumentEntity document : documents) {
+                if (!saved.contains(document.getId())) {
+                    discard(document);
+                }
+            }
+            throw e;
         }
-        
-        if (file.getSize() > MAX_FILE_SIZE) {
-            throw new IllegalArgumentException("File size exceeds maximum allowed size of 10MB");
+    }
+    
+    private void discard(DocumentEntity document) {
+        releaseContent(document.getContentHash(), document.getFileName());
+        try {
+            storageQuotaService.release(document.getUserId(), fileSize(document), 1);
+        } catch (RuntimeException e) {
+            log.error("Could not release the quota of unsaved document {}: {}", document.getId(), e.getMessage());
         }
-        
-        // Use Apache Tika for accurate MIME type detection
-        Tika tika = new Tika();
-        String detectedType;
+    }
+    
+    // Drops a reference taken for a document that will not be saved, and the file with the last one
+    private void releaseContent(String contentHash, String fileName) {
         try {
-            detectedType = tika.detect(file.getInputStream());
+            if (documentContentService.release(contentHash)) {
+                documentStorage.delete(List.of(fileName));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not release content {}: {}", contentHash, e.getMessage());
         }
-        catch (IOException e) {
-            throw new IllegalArgumentException("Unable to detect file type");
+    }
+    
+    private static void requireExtension(String originalFilename) {
+        if (originalFilename == null || originalFilename.lastIndexOf(".") < 0) {
+            throw new IllegalArgumentException("File name must have an extension");
         }
-        
-        if (!ALLOWED_TYPES.contains(detectedType)) {
-            throw new IllegalArgumentException(
-                "Invalid file type. Only PDF, DOCX, and TXT files are allowed"
-            );
+    }
+    
+    private Path uploadPath() throws IOException {
+        Path uploadPath = Paths.get(uploadDir);
+        if (!Files.exists(uploadPath)) {
+            Files.createDirectories(uploadPath);
         }
+        return uploadPath;
     }
     
-    private void processDocumentAsync(String documentId, String filePath) {
-        // In production, use @Async or message queue
-        // For simplicity, we'll call synchronously but update status
-        new Thread(() -> {
-            try {
-                // Update status to processing
-                DocumentEntity document = documentRepository.findById(documentId)
-                    .orElseThrow(() -> new RuntimeException("Document not found"));
-                document.setStatus("processing");
-                documentRepository.save(document);
-                
-                // Call AI service
-                aiServiceClient.processDocument(documentId, filePath);
-                
-                // Update status to processed
-                document.setStatus("processed");
-                document.setUpdatedAt(LocalDateTime.now());
-                documentRepository.save(document);
-                
-                log.info("Document {} processed successfully", documentId);
-                
-            } catch (Exception e) {
-                log.error("Error processing document {}: {}", documentId, e.getMessage());
-                
-                // Update status to failed
-                DocumentEntity document = documentRepository.findById(documentId).orElse(null);
-                if (document != null) {
-                    document.setStatus("failed");
-                    documentRepository.save(document);
-                }
-            }
-        }).start();
+    private void recordUploadSize(StoredUpload upload) {
+        DistributionSummary.builder("documind.upload.size")
+            .baseUnit("bytes")
+            .tag("type", upload.contentType())
+            .register(meterRegistry)
+            .record(upload.size());
+    }
+    
+    // Status transitions reach the query path and event subscribers immediately
+    private void statusChanged(DocumentEntity document) {
+        documentMetadataCache.update(document);
+        documentEventBus.publish(DocumentStatusEvent.status(document));
+    }
+    
+    private void processDocumentAsync(DocumentEntity document) {
+        if (!ingestionService.enqueue(document)) {
+            // Stays in "uploaded"; the ingestion recovery sweep will pick it up
+            log.warn("Ingestion queue full, document {} deferred", document.getId());
+        }
     }
     
     public DocumentEntity getDocument(String documentId) {
         return documentRepository.findById(documentId)
+            .filter(document -> !"deleted".equals(document.getStatus()))
             .orElseThrow(() -> new RuntimeException("Document not found"));
     }
     
+    /**
+     * Cached status projection of a document for the query path; only id,
+     * userId, status, chromaCollectionId, extractedTextPath and updatedAt
+     * are set.
+     */
+    public DocumentEntity getDocumentMetadata(String documentId) {
+        return documentMetadataCache.get(documentId)
+            .filter(document -> !"deleted".equals(document.getStatus()))
+            .orElseThrow(() -> new RuntimeException("Document not found"));
+    }
+    
+    /**
+     * Queues a processed or failed document to be embedded again, e.g. after
+     * an embedding model change. Its extracted chunks are reused, so the
+     * original file is not parsed again.
+     *
+     * @throws IllegalStateException if the document is still being ingested
+     */
+    public DocumentEntity reprocessDocument(String documentId) {
+        DocumentEntity document = getDocument(documentId);
+        if (!"processed".equals(document.getStatus()) && !"failed".equals(document.getStatus())) {
+            throw new IllegalStateException("Document is already queued for processing");
+        }
+        ingestionService.ensureCapacity(1);
+        
+        // Conditional, so a delete or another reprocess since the read is not undone
+        document = mongoTemplate.findAndModify(
+            Query.query(Criteria.where("_id").is(documentId).and("status").in("processed", "failed")),
+            new Update().set("status", "uploaded").set("updatedAt", LocalDateTime.now()),
+            FindAndModifyOptions.options().returnNew(true),
+            DocumentEntity.class
+        );
+        if (document == null) {
+            // Throws if it was deleted
+            getDocument(documentId);
+            throw new IllegalStateException("Document is already queued for processing");
+        }
+        statusChanged(document);
+        historyAnswerIndex.invalidate(documentId);
+        processDocumentAsync(document);
+        return document;
+    }
+    
+    /**
+     * Replaces the document's tags. Tags group documents for multi-document
+     * queries.
+     */
+    public DocumentEntity setTags(String documentId, List<String> tags) {
+        List<String> cleaned = tags.stream()
+            .map(String::trim)
+            .filter(tag -> !tag.isEmpty())
+            .distinct()
+            .toList();
+        // Only the tags, so a concurrent status change or delete is kept
+        DocumentEntity document = mongoTemplate.findAndModify(
+            Query.query(Criteria.where("_id").is(documentId).and("status").ne("deleted")),
+            new Update().set("tags", cleaned).set("updatedAt", LocalDateTime.now()),
+            FindAndModifyOptions.options().returnNew(true),
+            DocumentEntity.class
+        );
+        if (document == null) {
+            throw new RuntimeException("Document not found");
+        }
+        statusChanged(document);
+        return document;
+    }
+    
+    /**
+     * Processed documents a multi-document query should search: the user's
+     * documents with {@code tag}, or the whole library when no tag is given.
+     * Newest first, at most {@code limit}; only the metadata fields are set.
+     */
+    public List<DocumentEntity> findQueryTargets(String userId, String tag, int limit) {
+        PageRequest page = PageRequest.of(0, limit, Sort.by(Sort.Direction.DESC, "uploadedAt"));
+        if (tag != null && !tag.isBlank()) {
+            return documentRepository.findProcessedMetadataByUserIdAndTag(userId, tag.trim(), page);
+        }
+        return documentRepository.findProcessedMetadataByUserId(userId, page);
+    }
+    
     public List<DocumentEntity> listDocuments(String userId) {
-        return documentRepository.findByUserId(userId);
+        return documentRepository.findByUserIdAndStatusNot(userId, "deleted");
     }
     
+    /**
+     * Tombstones the document. Queries reject it from now on; its files,
+     * vectors and record are removed in the background by
+     * {@link DocumentReaper}.
+     */
     public void deleteDocument(String documentId) {
         DocumentEntity document = getDocument(documentId);
         
-        // Delete file from disk
-        try {
-            Path filePath = Paths.get(uploadDir, document.getFileName());
-            Files.deleteIfExists(filePath);
-        } catch (IOException e) {
-            log.error("Error deleting file: {}", e.getMessage());
+        LocalDateTime now = LocalDateTime.now();
+        document.setStatus("deleted");
+        document.setDeletedAt(now);
+        document.setUpdatedAt(now);
+        // Conditional, so a concurrent delete cannot credit the quota twice
+        long tombstoned = mongoTemplate.updateFirst(
+            Query.query(Criteria.where("_id").is(documentId).and("status").ne("deleted")),
+            tombstone(now),
+            DocumentEntity.class
+        ).getModifiedCount();
+        if (tombstoned == 0) {
+            throw new RuntimeException("Document not found");
+        }
+        storageQuotaService.release(document.getUserId(), fileSize(document), 1);
+        statusChanged(document);
+        queryCache.invalidateDocument(documentId);
+        historyAnswerIndex.invalidate(documentId);
+    }
+    
+    /**
+     * Tombstones the given documents of a user, or all of them when
+     * {@code documentIds} is null.
+     *
+     * @return the number of documents deleted
+     */
+    public long deleteDocuments(String userId, List<String> documentIds) {
+        Query query = Query.query(Criteria.where("userId").is(userId).and("status").ne("deleted"));
+        if (documentIds != null) {
+            query.addCriteria(Criteria.where("_id").in(documentIds));
         }
+        query.fields().include("_id").include("fileSize");
         
-        // Delete from database
-        documentRepository.deleteById(documentId);
+        List<DocumentEntity> documents = mongoTemplate.find(query, DocumentEntity.class);
+        if (documents.isEmpty()) {
+            return 0;
+        }
         
-        // TODO: Delete from ChromaDB via AI service
-        //Test
+        Update update = tombstone(LocalDateTime.now());
+        long deleted = 0;
+        for (int from = 0; from < documents.size(); from += BULK_DELETE_BATCH_SIZE) {
+            List<DocumentEntity> batch = documents.subList(from, Math.min(from + BULK_DELETE_BATCH_SIZE, documents.size()));
+            List<String> ids = batch.stream().map(DocumentEntity::getId).toList();
+            long modified = mongoTemplate.updateMulti(
+                Query.query(Criteria.where("_id").in(ids).and("status").ne("deleted")), update, DocumentEntity.class
+            ).getModifiedCount();
+            deleted += modified;
+            if (modified == batch.size()) {
+                storageQuotaService.release(userId, batch.stream().mapToLong(DocumentService::fileSize).sum(), modified);
+            } else {
+                // Some were deleted concurrently, and which is unknown
+                storageQuotaService.recount(userId);
+            }
+            for (String id : ids) {
+                documentMetadataCache.evict(id);
+                queryCache.invalidateDocument(id);
+                historyAnswerIndex.invalidate(id);
+                documentEventBus.publish(DocumentStatusEvent.status(id, userId, "deleted"));
+            }
+        }
+        log.info("Deleted {} documents of user {}", deleted, userId);
+        return deleted;
+    }
+    
+    private static Update tombstone(LocalDateTime now) {
+        return new Update()
+            .set("status", "deleted")
+            .set("deletedAt", now)
+            .set("updatedAt", now);
+    }
+    
+    private static long fileSize(DocumentEntity document) {
+        return document.getFileSize() == null ? 0 : document.getFileSize();
     }
 }
\ No newline at end of file
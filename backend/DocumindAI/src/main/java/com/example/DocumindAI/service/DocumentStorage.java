@@ -0,0 +1,287 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.service.ObjectStore.ObjectInfo;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Where document originals live. New uploads go to the hot tier, an
+ * {@link ObjectStore} of plain files in {@code upload-dir}. Originals are
+ * rarely read again once processed, so those not read for
+ * {@code DocumindAI.storage.cold-after} are moved in the background to the
+ * cold tier, a {@link SegmentStore} of compressed, packed segment files.
+ * An original needed for parsing again is restored to the hot tier first;
+ * downloads are served from whichever tier holds it.
+ * <p>
+ * Keys are the documents' {@code fileName}s.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentStorage {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ObjectStore hotStore;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${DocumindAI.storage.cold-dir:${DocumindAI.upload-dir}/cold}")
+    private String coldDir;
+
+    @Value("${DocumindAI.storage.cold-after:7d}")
+    private Duration coldAfter;
+
+    @Value("${DocumindAI.storage.segment-size:256MB}")
+    private DataSize segmentSize;
+
+    @Value("${DocumindAI.storage.compaction-threshold:0.5}")
+    private double compactionThreshold;
+
+    @Value("${DocumindAI.storage.migration-batch:1000}")
+    private int migrationBatch;
+
+    private SegmentStore coldStore;
+
+    /**
+     * An original as currently stored.
+     *
+     * @param gzipped whether it is stored gzipped, and so can be sent as is
+     *                to clients accepting that encoding
+     */
+    public record StoredObject(String key, long size, String tier, boolean gzipped) {
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        coldStore = SegmentStore.open(Paths.get(coldDir), segmentSize.toBytes());
+        Gauge.builder("documind.storage.cold.objects", coldStore, SegmentStore::count)
+            .register(meterRegistry);
+        Gauge.builder("documind.storage.cold.size", coldStore, SegmentStore::diskSize)
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Takes ownership of {@code file} as the original stored under {@code key}.
+     */
+    public void store(String key, Path file) throws IOException {
+        hotStore.put(key, file);
+    }
+
+    public Optional<StoredObject> stat(String key) throws IOException {
+        Optional<ObjectInfo> hot = hotStore.stat(key);
+        if (hot.isPresent()) {
+            return Optional.of(new StoredObject(key, hot.get().size(), "hot", false));
+        }
+        return coldStore.entry(key)
+            .map(entry -> new StoredObject(key, entry.size(), "cold", entry.gzipped()));
+    }
+
+    /**
+     * The original as a local file, for parsing. Restores it from the cold
+     * tier first if needed, and counts as an access.
+     *
+     * @throws NoSuchFileException if there is no such original
+     */
+    public Path localFile(String key) throws IOException {
+        Optional<Path> path = hotStore.localPath(key);
+        if (path.isEmpty() && coldStore.contains(key)) {
+            restore(key);
+            path = hotStore.localPath(key);
+        }
+        hotStore.touch(key);
+        return path.orElseThrow(() -> new NoSuchFileException(key));
+    }
+
+    /**
+     * Writes the original to {@code target}, gzipped if {@code gzip}. When
+     * that matches how the original is stored, its bytes go straight from
+     * the file to the channel; otherwise it is (de)compressed on the way.
+     *
+     * @return bytes written
+     * @throws NoSuchFileException if there is no such original
+     */
+    public long transferTo(String key, WritableByteChannel target, boolean gzip) throws IOException {
+        if (hotStore.stat(key).isPresent()) {
+            hotStore.touch(key);
+            if (!gzip) {
+                return hotStore.transferTo(key, target);
+            }
+            try (InputStream input = hotStore.get(key)) {
+                return gzipTo(input, target);
+            }
+        }
+        SegmentStore.Entry entry = coldStore.entry(key).orElseThrow(() -> new NoSuchFileException(key));
+        if (entry.gzipped() == gzip) {
+            return coldStore.transferStored(key, target);
+        }
+        try (InputStream input = coldStore.get(key)) {
+            return gzip ? gzipTo(input, target) : copy(input, target);
+        }
+    }
+
+    /**
+     * Deletes the originals from both tiers.
+     *
+     * @return bytes freed on disk
+     */
+    public long delete(Collection<String> keys) throws IOException {
+        long freed = 0;
+        for (String key : keys) {
+            freed += hotStore.delete(key);
+        }
+        return freed + coldStore.delete(keys);
+    }
+
+    /**
+     * Every object in either tier, including temporary upload files, with
+     * its last access. The stream must be closed.
+     */
+    public Stream<ObjectInfo> list() throws IOException {
+        List<ObjectInfo> cold = coldStore.entries()
+            .map(entry -> new ObjectInfo(entry.key(), entry.size(), Instant.ofEpochMilli(entry.lastAccessed())))
+            .toList();
+        return Stream.concat(hotStore.list(), cold.stream());
+    }
+
+    /**
+     * Moves originals not read for {@code cold-after} to the cold tier, at
+     * most {@code migration-batch} per run, then compacts the cold tier.
+     */
+    @Scheduled(
+        initialDelayString = "${DocumindAI.storage.migration-interval:3600000}",
+        fixedDelayString = "${DocumindAI.storage.migration-interval:3600000}"
+    )
+    public void migrateColdObjects() {
+        try {
+            int moved = migrate();
+            long freed = coldStore.compact(compactionThreshold);
+            if (moved > 0 || freed > 0) {
+                log.info("Moved {} originals to cold storage, compaction freed {} bytes", moved, freed);
+            }
+        } catch (Exception e) {
+            log.warn("Cold storage migration failed, retrying next run: {}", e.getMessage());
+        }
+    }
+
+    int migrate() throws IOException {
+        Instant cutoff = Instant.now().minus(coldAfter);
+        Map<String, SegmentStore.Source> candidates = new LinkedHashMap<>();
+        try (Stream<ObjectInfo> objects = hotStore.list()) {
+            objects
+                // Temporary upload files start with a dot
+                .filter(object -> !object.key().startsWith("."))
+                .filter(object -> object.lastAccessed().isBefore(cutoff))
+                .limit(migrationBatch)
+                .forEach(object -> hotStore.localPath(object.key()).ifPresent(path ->
+                    candidates.put(object.key(), new SegmentStore.Source(object.key(), path, object.lastAccessed()))));
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        long bytes = 0;
+        List<String> readMeanwhile = new ArrayList<>();
+        int moved = 0;
+        for (String key : coldStore.append(List.copyOf(candidates.values()))) {
+            Optional<ObjectInfo> hot = hotStore.stat(key);
+            if (hot.isPresent() && hot.get().lastAccessed().isAfter(candidates.get(key).lastAccessed())) {
+                // Read while it was being copied, so it stays hot
+                readMeanwhile.add(key);
+                continue;
+            }
+            bytes += hotStore.delete(key);
+            moved++;
+        }
+        coldStore.delete(readMeanwhile);
+
+        meterRegistry.counter("documind.storage.migrated").increment(moved);
+        meterRegistry.counter("documind.storage.migrated.bytes").increment(bytes);
+        return moved;
+    }
+
+    // Decompresses into the hot tier, then drops the cold copy
+    private void restore(String key) throws IOException {
+        Path temp = Files.createTempFile(Paths.get(coldDir), key + ".", ".restore.tmp");
+        try {
+            try (InputStream input = coldStore.get(key)) {
+                Files.copy(input, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            hotStore.put(key, temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        coldStore.delete(List.of(key));
+        meterRegistry.counter("documind.storage.restored").increment();
+        log.info("Restored {} from cold storage", key);
+    }
+
+    private static long gzipTo(InputStream input, WritableByteChannel target) throws IOException {
+        CountingChannelOutput counted = new CountingChannelOutput(target);
+        try (OutputStream output = new GZIPOutputStream(counted, BUFFER_SIZE)) {
+            input.transferTo(output);
+        }
+        return counted.count;
+    }
+
+    private static long copy(InputStream input, WritableByteChannel target) throws IOException {
+        CountingChannelOutput output = new CountingChannelOutput(target);
+        input.transferTo(output);
+        return output.count;
+    }
+
+    /**
+     * Writes to a channel, counting bytes; closing leaves the channel open.
+     */
+    private static final class CountingChannelOutput extends OutputStream {
+
+        private final WritableByteChannel channel;
+        private long count;
+
+        private CountingChannelOutput(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            count += length;
+        }
+    }
+}
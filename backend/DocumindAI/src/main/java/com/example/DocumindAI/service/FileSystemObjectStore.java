@@ -0,0 +1,125 @@
+package com.example.DocumindAI.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * {@link ObjectStore} over one local directory, one plain file per key.
+ * The last access time is the file's modification time, which
+ * {@link #touch} moves forward: access times proper are commonly disabled
+ * ({@code noatime}) on the filesystems we run on.
+ */
+public class FileSystemObjectStore implements ObjectStore {
+
+    private final Path directory;
+
+    public FileSystemObjectStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    @Override
+    public void put(String key, Path file) throws IOException {
+        Path target = resolve(key);
+        try {
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Source on another filesystem; readers may briefly see a partial file
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public Optional<ObjectInfo> stat(String key) throws IOException {
+        try {
+            return Optional.of(info(resolve(key)));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public long transferTo(String key, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            return size;
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        Path path = resolve(key);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    @Override
+    public void touch(String key) throws IOException {
+        try {
+            Files.setLastModifiedTime(resolve(key), FileTime.from(Instant.now()));
+        } catch (NoSuchFileException e) {
+            // Nothing to touch
+        }
+    }
+
+    @Override
+    public long delete(String key) throws IOException {
+        Path path = resolve(key);
+        try {
+            long size = Files.size(path);
+            return Files.deleteIfExists(path) ? size : 0;
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public Stream<ObjectInfo> list() throws IOException {
+        return Files.list(directory)
+            .filter(Files::isRegularFile)
+            .flatMap(path -> {
+                try {
+                    return Stream.of(info(path));
+                } catch (NoSuchFileException e) {
+                    // Deleted while listing
+                    return Stream.empty();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    private Path resolve(String key) {
+        if (key.isEmpty() || key.contains("/") || key.contains("\\") || key.equals("..") || key.equals(".")) {
+            throw new IllegalArgumentException("Invalid object key: " + key);
+        }
+        return directory.resolve(key);
+    }
+
+    private static ObjectInfo info(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new ObjectInfo(path.getFileName().toString(), attributes.size(), attributes.lastModifiedTime().toInstant());
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.dto.QueryResponse;
+import com.example.DocumindAI.model.QueryHistory;
+import com.example.DocumindAI.repository.QueryHistoryRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * In-memory full-text index over the recent answers of each document, for
+ * answering queries from history while the AI service is unavailable. A
+ * document's index is built from {@code query_history} by the first lookup,
+ * so it is useful after a restart too; that lookup reads MongoDB, later ones
+ * only memory. New answers are added to indexes already built. Only answers
+ * given since the document last changed are loaded, and re-processing or
+ * deleting a document drops its index.
+ * <p>
+ * Queries are matched on their words by TF-IDF cosine similarity, so a
+ * rephrased question can still find an earlier answer to the same thing.
+ * Each document keeps the latest answer to at most {@code entries-per-document}
+ * distinct queries, the most recently answered ones; indexes of documents
+ * not queried for {@code idle-ttl} are dropped.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HistoryAnswerIndex {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "and", "are", "as", "at", "be", "by", "can", "do", "does", "for", "from", "how", "in",
+        "is", "it", "of", "on", "or", "the", "this", "to", "was", "what", "when", "where", "which", "who",
+        "why", "with", "you"
+    );
+
+    private final QueryHistoryRepository queryHistoryRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${DocumindAI.degraded.entries-per-document:200}")
+    private int entriesPerDocument;
+
+    @Value("${DocumindAI.degraded.max-documents:10000}")
+    private long maxDocuments;
+
+    @Value("${DocumindAI.degraded.idle-ttl:1h}")
+    private Duration idleTtl;
+
+    private Cache<String, DocumentAnswers> indexes;
+
+    /**
+     * A previous answer and how similar its query is to the one asked, from
+     * 0 (no words in common) to 1 (the same words).
+     */
+    public record Match(QueryResponse response, double similarity, String query, LocalDateTime answeredAt) {
+    }
+
+    @PostConstruct
+    void init() {
+        indexes = Caffeine.newBuilder()
+            .maximumSize(maxDocuments)
+            .expireAfterAccess(idleTtl)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, indexes, "historyAnswers");
+    }
+
+    /**
+     * Adds an answer just written to history. Replaces an older answer to
+     * the same normalized query.
+     */
+    public void add(QueryHistory history) {
+        if (history.getDocumentId() == null || history.getResponse() == null) {
+            return;
+        }
+        DocumentAnswers answers = indexes.getIfPresent(history.getDocumentId());
+        if (answers != null) {
+            answers.add(history);
+        }
+    }
+
+    /**
+     * The previous answer to the document whose query is most similar to
+     * {@code query}, if any is at least {@code minSimilarity} similar. Only
+     * answers given after {@code changedAt}, when the document last changed,
+     * are considered. Loads the document's index on first use.
+     */
+    public Optional<Match> findSimilar(String documentId, LocalDateTime changedAt, String query, double minSimilarity) {
+        DocumentAnswers answers = indexes.getIfPresent(documentId);
+        if (answers == null) {
+            // Loaded outside the cache, so a slow read does not block other documents
+            DocumentAnswers loaded = load(documentId, changedAt);
+            answers = indexes.asMap().merge(documentId, loaded, (current, ignored) -> current);
+        }
+        return answers.match(query, minSimilarity);
+    }
+
+    /**
+     * Drops the document's index, for when the document is re-processed or
+     * deleted and its earlier answers may no longer hold.
+     */
+    public void invalidate(String documentId) {
+        indexes.invalidate(documentId);
+    }
+
+    private DocumentAnswers load(String documentId, LocalDateTime changedAt) {
+        DocumentAnswers answers = new DocumentAnswers(entriesPerDocument);
+        try {
+            PageRequest page = PageRequest.of(0, entriesPerDocument);
+            List<QueryHistory> recent = changedAt != null
+                ? queryHistoryRepository.findByDocumentIdAndTimestampAfterOrderByTimestampDesc(documentId, changedAt, page)
+                : queryHistoryRepository.findByDocumentIdOrderByTimestampDesc(documentId, page);
+            // Oldest first, so the newest answer to each query wins
+            for (int i = recent.size() - 1; i >= 0; i--) {
+                if (recent.get(i).getResponse() != null) {
+                    answers.add(recent.get(i));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Could not load answer history of {}: {}", documentId, e.getMessage());
+        }
+        return answers;
+    }
+
+    private static Map<String, Integer> terms(String text) {
+        Map<String, Integer> terms = new HashMap<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() > 1 && !STOP_WORDS.contains(word)) {
+                terms.merge(word, 1, Integer::sum);
+            }
+        }
+        return terms;
+    }
+
+    // Identity equality: postings hold the entries themselves
+    private static final class Entry {
+
+        private final String normalizedQuery;
+        private final Map<String, Integer> terms;
+        private final QueryHistory history;
+
+        private Entry(String normalizedQuery, Map<String, Integer> terms, QueryHistory history) {
+            this.normalizedQuery = normalizedQuery;
+            this.terms = terms;
+            this.history = history;
+        }
+    }
+
+    /**
+     * The answers of one document with an inverted index over their queries.
+     * Guarded by its own monitor; all operations touch at most a few hundred
+     * entries.
+     */
+    private static final class DocumentAnswers {
+
+        private final int capacity;
+        // Oldest answer first: a query answered again is removed and re-added
+        private final LinkedHashMap<String, Entry> byQuery = new LinkedHashMap<>();
+        private final Map<String, Set<Entry>> postings = new HashMap<>();
+
+        private DocumentAnswers(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void add(QueryHistory history) {
+            String normalized = history.getNormalizedQuery() != null
+                ? history.getNormalizedQuery()
+                : QueryCache.normalize(history.getQuery());
+            Entry existing = byQuery.get(normalized);
+            if (existing != null) {
+                if (isNewer(existing.history, history)) {
+                    return;
+                }
+                remove(existing);
+            }
+            Entry entry = new Entry(normalized, terms(normalized), history);
+            if (entry.terms.isEmpty()) {
+                return;
+            }
+            byQuery.put(normalized, entry);
+            entry.terms.keySet().forEach(term -> postings.computeIfAbsent(term, t -> new HashSet<>()).add(entry));
+
+            Iterator<Entry> oldest = byQuery.values().iterator();
+            while (byQuery.size() > capacity) {
+                Entry evicted = oldest.next();
+                oldest.remove();
+                unindex(evicted);
+            }
+        }
+
+        synchronized Optional<Match> match(String query, double minSimilarity) {
+            Map<String, Integer> queryTerms = terms(query);
+            Set<Entry> candidates = new HashSet<>();
+            for (String term : queryTerms.keySet()) {
+                candidates.addAll(postings.getOrDefault(term, Set.of()));
+            }
+            if (candidates.isEmpty()) {
+                return Optional.empty();
+            }
+
+            double queryNorm = norm(queryTerms);
+            Entry best = null;
+            double bestSimilarity = 0;
+            for (Entry candidate : candidates) {
+                double dot = 0;
+                for (Map.Entry<String, Integer> term : queryTerms.entrySet()) {
+                    Integer count = candidate.terms.get(term.getKey());
+                    if (count != null) {
+                        double idf = idf(term.getKey());
+                        dot += term.getValue() * idf * count * idf;
+                    }
+                }
+                double similarity = dot / (queryNorm * norm(candidate.terms));
+                if (similarity > bestSimilarity
+                        || similarity == bestSimilarity && best != null && isNewer(candidate.history, best.history)) {
+                    best = candidate;
+                    bestSimilarity = similarity;
+                }
+            }
+            if (best == null || bestSimilarity < minSimilarity) {
+                return Optional.empty();
+            }
+            QueryHistory history = best.history;
+            return Optional.of(new Match(toResponse(history), Math.min(1.0, bestSimilarity), history.getQuery(), history.getTimestamp()));
+        }
+
+        private double norm(Map<String, Integer> terms) {
+            double sum = 0;
+            for (Map.Entry<String, Integer> term : terms.entrySet()) {
+                double weight = term.getValue() * idf(term.getKey());
+                sum += weight * weight;
+            }
+            return Math.sqrt(sum);
+        }
+
+        // Smoothed so words in every entry still count, just less
+        private double idf(String term) {
+            Set<Entry> containing = postings.get(term);
+            int df = containing == null ? 0 : containing.size();
+            return 1 + Math.log((byQuery.size() + 1.0) / (df + 1.0));
+        }
+
+        private void remove(Entry entry) {
+            byQuery.remove(entry.normalizedQuery);
+            unindex(entry);
+        }
+
+        private void unindex(Entry entry) {
+            for (String term : entry.terms.keySet()) {
+                Set<Entry> entries = postings.get(term);
+                if (entries != null) {
+                    entries.remove(entry);
+                    if (entries.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+
+        private static boolean isNewer(QueryHistory history, QueryHistory than) {
+            return history.getTimestamp() != null && than.getTimestamp() != null
+                && history.getTimestamp().isAfter(than.getTimestamp());
+        }
+
+        private static QueryResponse toResponse(QueryHistory history) {
+            QueryResponse response = new QueryResponse();
+            response.setAnswer(history.getResponse());
+            if (history.getCitations() != null) {
+                response.setSources(history.getCitations().stream().map(citation -> {
+                    QueryResponse.Source source = new QueryResponse.Source();
+                    source.setChunkId(citation.getChunkId());
+                    source.setPage(citation.getPageNumber());
+                    source.setRelevance(citation.getRelevanceScore());
+                    return source;
+                }).toList());
+                response.setConfidence(response.getSources().isEmpty() ? 0.0 : response.getSources().get(0).getRelevance());
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.DocumindAI.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * Hierarchical navigable small world graph over the rows of a
+ * {@link VectorFile}, for approximate top-k search in collections too large
+ * to scan. Similarity is the dot product of unit vectors. Only the graph
+ * lives on the heap; vectors are read from the mapped file as needed.
+ * <p>
+ * Graph files are written next to the vector file (big-endian):
+ * <pre>
+ * header   magic "DMHN" (int), version (int), count (int), m (int), entry point (int), top level (int)
+ * nodes    per row: level (int), then per level 0..level: link count (int), links (ints)
+ * trailer  magic (int)
+ * </pre>
+ */
+final class HnswGraph {
+
+    static final int MAGIC = 0x444D484E;
+    static final int VERSION = 1;
+    private static final int MAX_LEVEL = 16;
+
+    private static final Comparator<Scored> BEST_FIRST = Comparator.comparingDouble(Scored::score).reversed();
+    private static final Comparator<Scored> WORST_FIRST = Comparator.comparingDouble(Scored::score);
+
+    private final int m;
+    // links[node][level] = {count, neighbour, ...}
+    private final int[][][] links;
+    private int entryPoint;
+    private int topLevel;
+
+    private HnswGraph(int m, int[][][] links, int entryPoint, int topLevel) {
+        this.m = m;
+        this.links = links;
+        this.entryPoint = entryPoint;
+        this.topLevel = topLevel;
+    }
+
+    record Scored(int node, float score) {
+    }
+
+    /**
+     * Inserts every row of {@code vectors} in order. {@code m} is the number
+     * of links per node on the upper levels (twice that on level 0).
+     */
+    static HnswGraph build(VectorFile.Reader vectors, int m, int efConstruction, long seed) {
+        HnswGraph graph = new HnswGraph(m, new int[vectors.count()][][], -1, -1);
+        Builder builder = graph.new Builder(vectors, efConstruction);
+        SplittableRandom random = new SplittableRandom(seed);
+        double levelMultiplier = 1 / Math.log(m);
+        for (int node = 0; node < vectors.count(); node++) {
+            int level = Math.min(MAX_LEVEL, (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier));
+            builder.insert(node, level);
+        }
+        return graph;
+    }
+
+    int count() {
+        return links.length;
+    }
+
+    /**
+     * The {@code k} rows most similar to {@code query}, best first.
+     * {@code ef} is the candidate list size; larger is slower but more exact.
+     */
+    List<Scored> search(VectorFile.Reader vectors, float[] query, int k, int ef) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        Scorer scorer = new Scorer(vectors, query);
+        Scored entry = new Scored(entryPoint, scorer.score(entryPoint));
+        for (int level = topLevel; level > 0; level--) {
+            entry = greedy(scorer, entry, level);
+        }
+        List<Scored> found = searchLevel(scorer, List.of(entry), Math.max(ef, k), 0);
+        return found.subList(0, Math.min(k, found.size()));
+    }
+
+    void write(Path path) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(links.length);
+            output.writeInt(m);
+            output.writeInt(entryPoint);
+            output.writeInt(topLevel);
+            for (int[][] node : links) {
+                output.writeInt(node.length - 1);
+                for (int[] level : node) {
+                    output.writeInt(level[0]);
+                    for (int i = 1; i <= level[0]; i++) {
+                        output.writeInt(level[i]);
+                    }
+                }
+            }
+            output.writeInt(MAGIC);
+        }
+    }
+
+    /**
+     * @throws IOException if the file is missing, corrupt or not built for
+     *         {@code expectedCount} rows
+     */
+    static HnswGraph read(Path path, int expectedCount) throws IOException {
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a graph file: " + path);
+            }
+            int count = input.readInt();
+            int m = input.readInt();
+            int entryPoint = input.readInt();
+            int topLevel = input.readInt();
+            if (count != expectedCount || m < 2 || entryPoint >= count || topLevel > MAX_LEVEL) {
+                throw new IOException("Graph file does not match its vectors: " + path);
+            }
+            int[][][] links = new int[count][][];
+            for (int node = 0; node < count; node++) {
+                int level = input.readInt();
+                if (level < 0 || level > topLevel) {
+                    throw new IOException("Corrupt graph file: " + path);
+                }
+                links[node] = new int[level + 1][];
+                for (int l = 0; l <= level; l++) {
+                    int size = input.readInt();
+                    int capacity = maxLinks(m, l);
+                    if (size < 0 || size > capacity) {
+                        throw new IOException("Corrupt graph file: " + path);
+                    }
+                    int[] neighbours = new int[capacity + 1];
+                    neighbours[0] = size;
+                    for (int i = 1; i <= size; i++) {
+                        neighbours[i] = input.readInt();
+                    }
+                    links[node][l] = neighbours;
+                }
+            }
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Incomplete graph file: " + path);
+            }
+            return new HnswGraph(m, links, entryPoint, topLevel);
+        }
+    }
+
+    private static int maxLinks(int m, int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    // Follows the single best link until no neighbour is better
+    private Scored greedy(Scorer scorer, Scored entry, int level) {
+        Scored best = entry;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links[best.node()][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                float score = scorer.score(neighbours[i]);
+                if (score > best.score()) {
+                    best = new Scored(neighbours[i], score);
+                    improved = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    // Best-first beam search on one level; returns up to ef nodes, best first
+    private List<Scored> searchLevel(Scorer scorer, List<Scored> entries, int ef, int level) {
+        BitSet visited = new BitSet(links.length);
+        PriorityQueue<Scored> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Scored> results = new PriorityQueue<>(WORST_FIRST);
+        for (Scored entry : entries) {
+            visited.set(entry.node());
+            candidates.add(entry);
+            results.add(entry);
+        }
+        while (!candidates.isEmpty()) {
+            Scored candidate = candidates.poll();
+            if (results.size() >= ef && candidate.score() < results.peek().score()) {
+                break;
+            }
+            int[] neighbours = links[candidate.node()][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float score = scorer.score(neighbour);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Scored scored = new Scored(neighbour, score);
+                    candidates.add(scored);
+                    results.add(scored);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<Scored> found = new ArrayList<>(results);
+        found.sort(BEST_FIRST);
+        return found;
+    }
+
+    /**
+     * Dot products of one query with rows of the mapped file.
+     */
+    private static final class Scorer {
+
+        private final VectorFile.Reader vectors;
+        private final float[] query;
+        private final float[] row;
+
+        private Scorer(VectorFile.Reader vectors, float[] query) {
+            this.vectors = vectors;
+            this.query = query;
+            this.row = new float[vectors.dimensions()];
+        }
+
+        float score(int node) {
+            vectors.vector(node, row);
+            return VectorFile.Reader.dot(query, row, 0, row.length);
+        }
+    }
+
+    private final class Builder {
+
+        private final VectorFile.Reader vectors;
+        private final int efConstruction;
+        private final float[] left;
+        private final float[] right;
+
+        private Builder(VectorFile.Reader vectors, int efConstruction) {
+            this.vectors = vectors;
+            this.efConstruction = efConstruction;
+            this.left = new float[vectors.dimensions()];
+            this.right = new float[vectors.dimensions()];
+        }
+
+        void insert(int node, int level) {
+            links[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                links[node][l] = new int[maxLinks(m, l) + 1];
+            }
+            if (entryPoint < 0) {
+                entryPoint = node;
+                topLevel = level;
+                return;
+            }
+
+            float[] query = new float[vectors.dimensions()];
+            vectors.vector(node, query);
+            Scorer scorer = new Scorer(vectors, query);
+            Scored entry = new Scored(entryPoint, scorer.score(entryPoint));
+            for (int l = topLevel; l > level; l--) {
+                entry = greedy(scorer, entry, l);
+            }
+
+            List<Scored> entries = List.of(entry);
+            for (int l = Math.min(level, topLevel); l >= 0; l--) {
+                List<Scored> found = searchLevel(scorer, entries, efConstruction, l);
+                int[] own = links[node][l];
+                for (Scored neighbour : select(found, maxLinks(m, l))) {
+                    own[++own[0]] = neighbour.node();
+                    link(neighbour.node(), node, neighbour.score(), l);
+                }
+                entries = found;
+            }
+            if (level > topLevel) {
+                entryPoint = node;
+                topLevel = level;
+            }
+        }
+
+        /*
+         * Adds a back link. A full neighbour swaps its least similar link for
+         * the new one if that is closer. The node's own links already went
+         * through the diversity heuristic; re-running it on every back link
+         * is quadratic in the link count and dominated build time.
+         */
+        private void link(int from, int to, float score, int level) {
+            int[] neighbours = links[from][level];
+            int capacity = maxLinks(m, level);
+            if (neighbours[0] < capacity) {
+                neighbours[++neighbours[0]] = to;
+                return;
+            }
+            int worst = -1;
+            float worstScore = score;
+            vectors.vector(from, left);
+            for (int i = 1; i <= neighbours[0]; i++) {
+                vectors.vector(neighbours[i], right);
+                float similarity = VectorFile.Reader.dot(left, right, 0, left.length);
+                if (similarity < worstScore) {
+                    worst = i;
+                    worstScore = similarity;
+                }
+            }
+            if (worst > 0) {
+                neighbours[worst] = to;
+            }
+        }
+
+        /*
+         * The HNSW neighbour heuristic: a candidate is kept only if it is
+         * closer to the base than to every neighbour kept so far, which spreads
+         * links in different directions instead of clustering them; slots
+         * left over are filled with the closest pruned candidates.
+         */
+        private List<Scored> select(List<Scored> candidates, int max) {
+            List<Scored> kept = new ArrayList<>(max);
+            List<Scored> pruned = new ArrayList<>();
+            // Rows of the kept nodes, back to back, so each is read from the file once
+            float[] keptRows = new float[max * left.length];
+            for (Scored candidate : candidates) {
+                if (kept.size() >= max) {
+                    break;
+                }
+                vectors.vector(candidate.node(), left);
+                boolean diverse = true;
+                for (int i = 0; i < kept.size(); i++) {
+                    if (VectorFile.Reader.dot(left, keptRows, i * left.length, left.length) > candidate.score()) {
+                        diverse = false;
+                        break;
+                    }
+                }
+                if (diverse) {
+                    System.arraycopy(left, 0, keptRows, kept.size() * left.length, left.length);
+                    kept.add(candidate);
+                } else {
+                    pruned.add(candidate);
+                }
+            }
+            for (int i = 0; i < pruned.size() && kept.size() < max; i++) {
+                kept.add(pruned.get(i));
+            }
+            return kept;
+        }
+    }
+}
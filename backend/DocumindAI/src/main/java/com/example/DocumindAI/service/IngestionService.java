@@ -0,0 +1,454 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.dto.DocumentStatusEvent;
+import com.example.DocumindAI.exception.IngestionQueueFullException;
+import com.example.DocumindAI.model.DocumentContent;
+import com.example.DocumindAI.model.DocumentEntity;
+import com.example.DocumindAI.repository.DocumentRepository;
+import com.example.DocumindAI.service.AiRequestScheduler.Lane;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded ingestion scheduler. Uploaded documents are queued per user and
+ * handed to a fixed pool of workers round-robin across users, so one user's
+ * burst cannot starve everyone else. The queue itself is rebuilt from
+ * MongoDB: anything left in "uploaded" or "processing" (restart, overflow)
+ * is picked up again by the periodic recovery sweep.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IngestionService {
+
+    private static final List<String> PENDING_STATUSES = List.of("uploaded", "processing");
+
+    private final DocumentRepository documentRepository;
+    private final AIServiceClient aiServiceClient;
+    private final QueryCache queryCache;
+    private final HistoryAnswerIndex historyAnswerIndex;
+    private final DocumentContentService documentContentService;
+    private final DocumentMetadataCache documentMetadataCache;
+    private final TextExtractionService textExtractionService;
+    private final DocumentEventBus documentEventBus;
+    private final VectorIndexService vectorIndexService;
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${DocumindAI.ingestion.workers:4}")
+    private int workerCount;
+
+    @Value("${DocumindAI.ingestion.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${DocumindAI.ai-scheduler.small-document-size:5MB}")
+    private DataSize smallDocumentSize;
+
+    // Per-user FIFO queues plus the rotation order used to pick the next user
+    private final Map<String, Deque<QueuedDocument>> userQueues = new HashMap<>();
+    private final Deque<String> userRotation = new ArrayDeque<>();
+    // Queued or in-flight document IDs, so the recovery sweep never double-submits
+    private final Set<String> trackedIds = new HashSet<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private int depth;
+
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    private Counter processedCounter;
+    private Counter failedCounter;
+    private Counter rejectedCounter;
+    private Timer queueWaitTimer;
+    private Timer processingTimer;
+
+    @PostConstruct
+    void start() {
+        Gauge.builder("documind.ingestion.queue.depth", this, IngestionService::getQueueDepth)
+            .description("Documents waiting for an ingestion worker")
+            .register(meterRegistry);
+        Gauge.builder("documind.ingestion.queue.capacity", this, service -> service.queueCapacity)
+            .register(meterRegistry);
+        processedCounter = meterRegistry.counter("documind.ingestion.documents", "outcome", "processed");
+        failedCounter = meterRegistry.counter("documind.ingestion.documents", "outcome", "failed");
+        rejectedCounter = meterRegistry.counter("documind.ingestion.rejected");
+        queueWaitTimer = meterRegistry.timer("documind.ingestion.queue.wait");
+        processingTimer = meterRegistry.timer("documind.ingestion.processing");
+
+        running = true;
+        workers = Executors.newFixedThreadPool(workerCount, new CustomizableThreadFactory("ingest-worker-"));
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::runWorker);
+        }
+        log.info("Ingestion service started with {} workers, queue capacity {}", workerCount, queueCapacity);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        workers.shutdownNow();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Rejects new uploads up front when the queue cannot take {@code count}
+     * more documents, before anything is written to disk or MongoDB.
+     */
+    public void ensureCapacity(int count) {
+        if (getQueueDepth() + count > queueCapacity) {
+            rejectedCounter.increment();
+            throw new IngestionQueueFullException(
+                "Ingestion queue is full, please retry later"
+            );
+        }
+    }
+
+    /**
+     * Queues a persisted document for processing.
+     *
+     * @return false if the queue is full; the document stays in "uploaded"
+     *         and is picked up by a later recovery sweep
+     */
+    public boolean enqueue(DocumentEntity document) {
+        String userId = Objects.requireNonNullElse(document.getUserId(), "default_user");
+        lock.lock();
+        try {
+            if (trackedIds.contains(document.getId())) {
+                return true;
+            }
+            if (depth >= queueCapacity) {
+                return false;
+            }
+            Deque<QueuedDocument> queue = userQueues.get(userId);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                userQueues.put(userId, queue);
+                userRotation.addLast(userId);
+            }
+            queue.addLast(new QueuedDocument(document.getId(), document.getFileName(), System.nanoTime()));
+            trackedIds.add(document.getId());
+            depth++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return depth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Re-queues documents that never finished ingestion, e.g. after a restart
+     * or because the queue was full when they were uploaded.
+     */
+    @Scheduled(
+        initialDelayString = "${DocumindAI.ingestion.recovery-initial-delay:5000}",
+        fixedDelayString = "${DocumindAI.ingestion.recovery-interval:60000}"
+    )
+    public void recoverPendingDocuments() {
+        try {
+            int resumed = 0;
+            for (String status : PENDING_STATUSES) {
+                for (DocumentEntity document : documentRepository.findByStatus(status)) {
+                    if (!enqueue(document)) {
+                        log.info("Ingestion queue full, {} pending documents resumed so far", resumed);
+                        return;
+                    }
+                    resumed++;
+                }
+            }
+            if (resumed > 0) {
+                log.info("Recovery sweep queued {} pending documents", resumed);
+            }
+        } catch (Exception e) {
+            log.warn("Recovery sweep failed: {}", e.getMessage());
+        }
+    }
+
+    private void runWorker() {
+        while (running) {
+            QueuedDocument next;
+            try {
+                next = take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                queueWaitTimer.record(System.nanoTime() - next.enqueuedAt(), TimeUnit.NANOSECONDS);
+                processingTimer.record(() -> process(next));
+            } catch (Exception e) {
+                // Keep the worker alive; the recovery sweep retries the document
+                log.error("Ingestion worker failed on {}: {}", next.documentId(), e.getMessage());
+            } finally {
+                lock.lock();
+                try {
+                    trackedIds.remove(next.documentId());
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private QueuedDocument take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (depth == 0) {
+                notEmpty.await();
+            }
+            String userId = userRotation.pollFirst();
+            Deque<QueuedDocument> queue = userQueues.get(userId);
+            QueuedDocument next = queue.pollFirst();
+            if (queue.isEmpty()) {
+                userQueues.remove(userId);
+            } else {
+                userRotation.addLast(userId);
+            }
+            depth--;
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void process(QueuedDocument queued) {
+        String documentId = queued.documentId();
+        try {
+            DocumentEntity document = documentRepository.findById(documentId)
+                .orElseThrow(() -> new RuntimeException("Document not found"));
+            if ("deleted".equals(document.getStatus())) {
+                return;
+            }
+
+            // Duplicates reuse the owner's artifacts instead of being ingested again
+            if (!claimContent(document)) {
+                return;
+            }
+
+            // Update status to processing
+            document.setStatus("processing");
+            if (!save(document)) {
+                log.info("Document {} was deleted before ingestion", documentId);
+                return;
+            }
+
+            // Re-embedding already extracted content and large files go to the bulk lane
+            boolean reindex = document.getExtractedTextPath() != null;
+            boolean large = document.getFileSize() != null && document.getFileSize() > smallDocumentSize.toBytes();
+            Lane lane = reindex || large ? Lane.BULK : Lane.INGEST;
+
+            // Parse once into a chunk file; reprocessing reuses it
+            Path chunkFile = textExtractionService.extract(document, queued.fileName());
+            document.setExtractedTextPath(chunkFile.toString());
+
+            // With local retrieval, also keep the chunk embeddings the AI service computes anyway
+            try (VectorIndexService.IndexWriter vectorIndex = vectorIndexService.isEnabled()
+                    ? vectorIndexService.writer("doc_" + documentId)
+                    : null) {
+                // Call AI service, relaying its progress to subscribers once per whole percent
+                AtomicInteger lastPercent = new AtomicInteger(-1);
+                aiServiceClient.processChunks(documentId, chunkFile.toString(), lane, fraction -> {
+                    int percent = (int) (fraction * 100);
+                    if (lastPercent.getAndSet(percent) != percent) {
+                        documentEventBus.publish(DocumentStatusEvent.progress(document, percent));
+                    }
+                }, vectorIndex);
+
+                // Deleted meanwhile; leave the tombstone for the reaper, which drops the new vectors too
+                if (isDeleted(documentId)) {
+                    log.info("Document {} was deleted during ingestion", documentId);
+                    return;
+                }
+
+                if (vectorIndex != null) {
+                    try {
+                        vectorIndex.commit(ChunkFile.Reader.open(chunkFile).count());
+                    } catch (IOException e) {
+                        log.warn("No local vector index for {}, its queries retrieve through the AI service: {}",
+                            documentId, e.getMessage());
+                    }
+                }
+            }
+
+            // Update status to processed
+            document.setStatus("processed");
+            document.setChromaCollectionId("doc_" + documentId);
+            if (!save(document)) {
+                log.info("Document {} was deleted during ingestion", documentId);
+                return;
+            }
+            // Answers cached against the previous version are now stale
+            queryCache.invalidateDocument(documentId);
+            historyAnswerIndex.invalidate(documentId);
+
+            if (document.getContentHash() != null) {
+                documentContentService.markProcessed(
+                    document.getContentHash(), document.getChromaCollectionId(), document.getExtractedTextPath()
+                );
+                updateDuplicates(document);
+            }
+
+            processedCounter.increment();
+            log.info("Document {} processed successfully", documentId);
+
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.error("Error processing document {}: {}", documentId, e.getMessage());
+
+            // Update status to failed
+            DocumentEntity document = documentRepository.findById(documentId).orElse(null);
+            if (document != null && !"deleted".equals(document.getStatus())) {
+                document.setStatus("failed");
+                if (save(document) && document.getContentHash() != null) {
+                    documentContentService.markFailed(document.getContentHash());
+                    updateDuplicates(document);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decides whether this document has to be ingested itself.
+     *
+     * @return false if the document was linked to already processed content,
+     *         or if another document is still ingesting the same content
+     */
+    private boolean claimContent(DocumentEntity document) {
+        if (document.getContentHash() == null) {
+            return true;
+        }
+        DocumentContent content = documentContentService.find(document.getContentHash()).orElse(null);
+        if (content == null || document.getId().equals(content.getOwnerDocumentId())) {
+            return true;
+        }
+
+        if ("processed".equals(content.getStatus())) {
+            document.setStatus("processed");
+            document.setChromaCollectionId(content.getChromaCollectionId());
+            document.setExtractedTextPath(content.getExtractedTextPath());
+            save(document);
+            return false;
+        }
+
+        // Re-ingest under this document if the previous owner failed or is gone
+        String owner = content.getOwnerDocumentId();
+        boolean ownerStalled = "failed".equals(content.getStatus()) || isDeleted(owner);
+        if (ownerStalled && documentContentService.takeOver(document.getContentHash(), document.getId(), owner)) {
+            log.info("Document {} takes over ingestion of content from {}", document.getId(), owner);
+            return true;
+        }
+
+        log.debug("Document {} waits for {} to finish ingestion", document.getId(), owner);
+        return false;
+    }
+
+    /**
+     * Copies the owner's final status and artifacts to every other document
+     * sharing its content.
+     */
+    private void updateDuplicates(DocumentEntity owner) {
+        for (DocumentEntity duplicate : documentRepository.findByContentHash(owner.getContentHash())) {
+            if (duplicate.getId().equals(owner.getId()) || owner.getStatus().equals(duplicate.getStatus())
+                    || "deleted".equals(duplicate.getStatus())) {
+                continue;
+            }
+            duplicate.setStatus(owner.getStatus());
+            duplicate.setChromaCollectionId(owner.getChromaCollectionId());
+            duplicate.setExtractedTextPath(owner.getExtractedTextPath());
+            if (!save(duplicate)) {
+                continue;
+            }
+            queryCache.invalidateDocument(duplicate.getId());
+            historyAnswerIndex.invalidate(duplicate.getId());
+        }
+    }
+
+    /**
+     * Whether the document is queued or being ingested right now. Its
+     * worker may still write vectors, so the reaper leaves it alone.
+     */
+    public boolean isInFlight(String documentId) {
+        lock.lock();
+        try {
+            return trackedIds.contains(documentId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Gone or tombstoned
+    private boolean isDeleted(String documentId) {
+        return !documentRepository.existsByIdAndStatusNot(documentId, "deleted");
+    }
+
+    /**
+     * Writes a status transition with its artifacts, unless the document was
+     * deleted meanwhile: only these fields are written, and only over a
+     * document that is not a tombstone, so a concurrent delete is never
+     * undone. Every transition goes through here so the query path and
+     * subscribers see it immediately.
+     *
+     * @return false if the document is deleted and nothing was written
+     */
+    private boolean save(DocumentEntity document) {
+        document.setUpdatedAt(LocalDateTime.now());
+        Query live = Query.query(Criteria.where("_id").is(document.getId()).and("status").ne("deleted"));
+        Update transition = new Update()
+            .set("status", document.getStatus())
+            .set("chromaCollectionId", document.getChromaCollectionId())
+            .set("extractedTextPath", document.getExtractedTextPath())
+            .set("updatedAt", document.getUpdatedAt());
+        if (mongoTemplate.updateFirst(live, transition, DocumentEntity.class).getMatchedCount() == 0) {
+            return false;
+        }
+        documentMetadataCache.update(document);
+        documentEventBus.publish(DocumentStatusEvent.status(document));
+        meterRegistry.counter("documind.document.transitions", "status", document.getStatus()).increment();
+        return true;
+    }
+
+    private record QueuedDocument(String documentId, String fileName, long enqueuedAt) {
+    }
+}
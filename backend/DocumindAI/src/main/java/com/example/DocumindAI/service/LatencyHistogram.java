@@ -0,0 +1,62 @@
+package com.example.DocumindAI.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Log-bucketed latency histogram as stored in {@code QueryRollup.latency}.
+ * Bucket {@code i} counts latencies in (G^(i-1), G^i] milliseconds with
+ * G = 1.05, so any percentile is within about 2.5% of the true value.
+ * Buckets are plain counters: histograms are updated with atomic
+ * {@code $inc}s and merged by adding counts, which keeps rollups correct
+ * with several writers and without read-modify-write.
+ * <p>
+ * The bucket layout is part of the stored data; changing G invalidates
+ * existing rollups.
+ */
+final class LatencyHistogram {
+
+    private static final double GROWTH = 1.05;
+    private static final double LOG_GROWTH = Math.log(GROWTH);
+
+    private final TreeMap<Integer, Long> counts = new TreeMap<>();
+    private long total;
+
+    static int bucketOf(double seconds) {
+        double millis = seconds * 1000;
+        return millis <= 1 ? 0 : (int) Math.ceil(Math.log(millis) / LOG_GROWTH);
+    }
+
+    void add(Map<String, Long> buckets) {
+        if (buckets == null) {
+            return;
+        }
+        buckets.forEach((bucket, count) -> {
+            counts.merge(Integer.parseInt(bucket), count, Long::sum);
+            total += count;
+        });
+    }
+
+    long count() {
+        return total;
+    }
+
+    /**
+     * Latency in seconds at quantile {@code q} (0 to 1), or null if empty.
+     * Reported as the bucket's geometric midpoint.
+     */
+    Double percentile(double q) {
+        if (total == 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (Map.Entry<Integer, Long> bucket : counts.entrySet()) {
+            seen += bucket.getValue();
+            if (seen >= rank) {
+                return bucket.getKey() == 0 ? 0.001 : Math.pow(GROWTH, bucket.getKey() - 0.5) / 1000;
+            }
+        }
+        return Math.pow(GROWTH, counts.lastKey() - 0.5) / 1000;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.DocumindAI.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Object-store style access to document originals: flat keys, whole
+ * objects, no partial updates. {@link FileSystemObjectStore} keeps objects
+ * as plain files; an S3-compatible store can implement the same contract
+ * and replace it as the hot tier of {@link DocumentStorage}.
+ */
+public interface ObjectStore {
+
+    /**
+     * Stores {@code file} under {@code key}, replacing any existing object.
+     * The store takes ownership of the file: it is moved rather than copied
+     * where possible, and gone afterwards either way.
+     */
+    void put(String key, Path file) throws IOException;
+
+    Optional<ObjectInfo> stat(String key) throws IOException;
+
+    /**
+     * @throws java.nio.file.NoSuchFileException if there is no such object
+     */
+    InputStream get(String key) throws IOException;
+
+    /**
+     * Writes the whole object to {@code target}, without copying it through
+     * the heap where the store and channel allow it.
+     *
+     * @return bytes written
+     * @throws java.nio.file.NoSuchFileException if there is no such object
+     */
+    long transferTo(String key, WritableByteChannel target) throws IOException;
+
+    /**
+     * The object as a file on the local filesystem, if the store keeps it as
+     * one and it exists.
+     */
+    Optional<Path> localPath(String key);
+
+    /**
+     * Records a read of the object, moving its last access time to now.
+     * Does nothing if there is no such object.
+     */
+    void touch(String key) throws IOException;
+
+    /**
+     * @return bytes freed, 0 if there was no such object
+     */
+    long delete(String key) throws IOException;
+
+    /**
+     * Every object in the store. The stream must be closed.
+     */
+    Stream<ObjectInfo> list() throws IOException;
+
+    record ObjectInfo(String key, long size, Instant lastAccessed) {
+    }
+}
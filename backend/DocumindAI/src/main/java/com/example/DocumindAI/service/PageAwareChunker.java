@@ -0,0 +1,138 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.service.ChunkFile.Chunk;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Receives Tika's XHTML events and cuts the text into overlapping word
+ * windows as it arrives, so only one chunk's worth of words is ever held.
+ * Follows the AI service's {@code chunk_text}: {@code chunkSize} words per
+ * chunk, {@code overlap} words shared with the next one, and each chunk ends
+ * at the last sentence boundary within its final {@code overlap} words.
+ * Pages are counted from Tika's {@code <div class="page">} elements.
+ */
+class PageAwareChunker extends DefaultHandler {
+
+    // Elements that do not separate words
+    private static final Set<String> INLINE_ELEMENTS = Set.of(
+        "a", "b", "i", "u", "em", "strong", "span", "sub", "sup", "small", "font"
+    );
+
+    private final int chunkSize;
+    private final int overlap;
+    private final ChunkFile.Writer writer;
+
+    private final List<String> words;
+    private final int[] pages;
+    private final StringBuilder word = new StringBuilder();
+    private int page;
+    private int unemitted;
+    private int headDepth;
+    private int chunkIndex;
+
+    PageAwareChunker(int chunkSize, int overlap, ChunkFile.Writer writer) {
+        if (overlap < 0 || overlap >= chunkSize) {
+            throw new IllegalArgumentException("Chunk overlap must be between 0 and chunk size");
+        }
+        this.chunkSize = chunkSize;
+        this.overlap = overlap;
+        this.writer = writer;
+        this.words = new ArrayList<>(chunkSize);
+        this.pages = new int[chunkSize];
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        if ("head".equals(localName)) {
+            headDepth++;
+        } else if ("div".equals(localName) && "page".equals(attributes.getValue("class"))) {
+            endWord();
+            page++;
+        } else if (!INLINE_ELEMENTS.contains(localName)) {
+            endWord();
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if ("head".equals(localName)) {
+            headDepth--;
+        } else if (!INLINE_ELEMENTS.contains(localName)) {
+            endWord();
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (headDepth > 0) {
+            return;
+        }
+        for (int i = start; i < start + length; i++) {
+            if (Character.isWhitespace(ch[i])) {
+                endWord();
+            } else {
+                word.append(ch[i]);
+            }
+        }
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        endWord();
+        // Words cut off by the last sentence boundary still need a chunk
+        if (unemitted > 0) {
+            emit(words.size());
+        }
+    }
+
+    private void endWord() throws SAXException {
+        if (word.isEmpty()) {
+            return;
+        }
+        pages[words.size()] = Math.max(page, 1);
+        words.add(word.toString());
+        word.setLength(0);
+        unemitted++;
+
+        if (words.size() == chunkSize) {
+            int end = sentenceEnd();
+            emit(end);
+            // Slide the window; the overlap (including any words after the
+            // sentence boundary) starts the next chunk
+            int step = chunkSize - overlap;
+            words.subList(0, step).clear();
+            System.arraycopy(pages, step, pages, 0, overlap);
+            unemitted = chunkSize - end;
+        }
+    }
+
+    // Never cuts deeper than the overlap, so no word is dropped between chunks
+    private int sentenceEnd() {
+        for (int i = words.size() - 1; i >= words.size() - overlap; i--) {
+            String candidate = words.get(i);
+            char last = candidate.charAt(candidate.length() - 1);
+            if (last == '.' || last == '!' || last == '?') {
+                return i + 1;
+            }
+        }
+        return words.size();
+    }
+
+    private void emit(int end) throws SAXException {
+        try {
+            writer.append(new Chunk(
+                chunkIndex++, pages[0], pages[end - 1], end, String.join(" ", words.subList(0, end))
+            ));
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+        unemitted = 0;
+    }
+}
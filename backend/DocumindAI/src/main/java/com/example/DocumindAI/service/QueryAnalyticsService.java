@@ -0,0 +1,343 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.dto.LatencyReport;
+import com.example.DocumindAI.dto.TopQuery;
+import com.example.DocumindAI.model.QueryCount;
+import com.example.DocumindAI.model.QueryHistory;
+import com.example.DocumindAI.model.QueryRollup;
+import com.example.DocumindAI.repository.QueryHistoryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Usage and latency analytics over query history. The history writer hands
+ * every written batch to {@link #record}, which folds it into hourly
+ * rollups per document, per user and overall ({@link QueryRollup}) and into
+ * hourly per-query counters ({@link QueryCount}). Reports read only these,
+ * so they cost the same however much raw history there is.
+ * <p>
+ * Raw history expires after {@code DocumindAI.history.retention}; rollups
+ * after {@code DocumindAI.analytics.rollup-retention}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueryAnalyticsService {
+
+    public static final String SCOPE_DOCUMENT = "document";
+    public static final String SCOPE_USER = "user";
+    public static final String SCOPE_ALL = "all";
+
+    private static final int MAX_QUERY_LENGTH = 500;
+    private static final int MAX_HOURLY_POINTS = 24 * 31;
+
+    private final MongoTemplate mongoTemplate;
+    private final QueryHistoryRepository queryHistoryRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${DocumindAI.history.retention:30d}")
+    private Duration historyRetention;
+
+    @Value("${DocumindAI.analytics.rollup-retention:400d}")
+    private Duration rollupRetention;
+
+    @Value("${DocumindAI.analytics.max-range:400d}")
+    private Duration maxRange;
+
+    @PostConstruct
+    void ensureRetention() {
+        ensureTtlIndex(QueryHistory.class, "timestamp", historyRetention);
+        ensureTtlIndex(QueryRollup.class, "bucket", rollupRetention);
+        ensureTtlIndex(QueryCount.class, "bucket", rollupRetention);
+    }
+
+    /**
+     * Adds written history entries to the rollups. Never throws: history is
+     * already stored, so a failure only leaves the rollups short and is
+     * counted in {@code documind.analytics.rollup.failures}.
+     */
+    public void record(List<QueryHistory> entries) {
+        Map<String, RollupDelta> rollups = new HashMap<>();
+        Map<String, CountDelta> counts = new HashMap<>();
+        for (QueryHistory entry : entries) {
+            if (entry.getTimestamp() == null || entry.getResponseTime() == null) {
+                continue;
+            }
+            LocalDateTime bucket = entry.getTimestamp().truncatedTo(ChronoUnit.HOURS);
+            Map<String, String> scopes = new LinkedHashMap<>();
+            scopes.put(SCOPE_ALL, SCOPE_ALL);
+            if (entry.getDocumentId() != null) {
+                scopes.put(SCOPE_DOCUMENT, entry.getDocumentId());
+            }
+            if (entry.getUserId() != null) {
+                scopes.put(SCOPE_USER, entry.getUserId());
+            }
+
+            scopes.forEach((scope, key) -> {
+                String id = scope + ":" + key + ":" + bucket.toEpochSecond(ZoneOffset.UTC);
+                rollups.computeIfAbsent(id, ignored -> new RollupDelta(scope, key, bucket))
+                    .add(entry.getResponseTime());
+                if (entry.getNormalizedQuery() != null) {
+                    String query = truncate(entry.getNormalizedQuery());
+                    counts.computeIfAbsent(id + ":" + digest(query), ignored -> new CountDelta(scope, key, bucket, query))
+                        .count++;
+                }
+            });
+        }
+        if (rollups.isEmpty()) {
+            return;
+        }
+
+        try {
+            BulkOperations rollupOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, QueryRollup.class);
+            rollups.forEach((id, delta) -> rollupOps.upsert(byId(id), delta.toUpdate()));
+            rollupOps.execute();
+
+            if (!counts.isEmpty()) {
+                BulkOperations countOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, QueryCount.class);
+                counts.forEach((id, delta) -> countOps.upsert(byId(id), delta.toUpdate()));
+                countOps.execute();
+            }
+        } catch (Exception e) {
+            meterRegistry.counter("documind.analytics.rollup.failures").increment();
+            log.warn("Could not roll up {} history entries: {}", entries.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Count and response time percentiles of a scope in [from, to), in
+     * total and per {@code granularity} ("hour" or "day").
+     */
+    public LatencyReport latency(String scope, String key, LocalDateTime from, LocalDateTime to, String granularity) {
+        ChronoUnit unit = switch (granularity) {
+            case "hour" -> ChronoUnit.HOURS;
+            case "day" -> ChronoUnit.DAYS;
+            default -> throw new IllegalArgumentException("Granularity must be hour or day");
+        };
+        checkRange(from, to);
+        if (unit == ChronoUnit.HOURS && Duration.between(from, to).toHours() > MAX_HOURLY_POINTS) {
+            throw new IllegalArgumentException("Hourly series are limited to 31 days");
+        }
+
+        Query query = inRange(scope, key, from, to).with(Sort.by("bucket"));
+        SeriesPoint total = new SeriesPoint(null);
+        Map<LocalDateTime, SeriesPoint> series = new LinkedHashMap<>();
+        for (QueryRollup rollup : mongoTemplate.find(query, QueryRollup.class)) {
+            total.add(rollup);
+            series.computeIfAbsent(rollup.getBucket().truncatedTo(unit), SeriesPoint::new).add(rollup);
+        }
+
+        LatencyReport report = new LatencyReport();
+        report.setScope(scope);
+        report.setKey(key);
+        report.setTotal(total.toStats());
+        report.setSeries(series.values().stream().map(SeriesPoint::toStats).toList());
+        return report;
+    }
+
+    /**
+     * The most frequent normalized queries of a scope in [from, to).
+     */
+    public List<TopQuery> topQueries(String scope, String key, LocalDateTime from, LocalDateTime to, int limit) {
+        checkRange(from, to);
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(inRangeCriteria(scope, key, from, to)),
+            Aggregation.group("query").sum("count").as("count"),
+            Aggregation.sort(Sort.Direction.DESC, "count"),
+            Aggregation.limit(limit)
+        );
+        List<TopQuery> top = new ArrayList<>();
+        for (Document row : mongoTemplate.aggregate(aggregation, QueryCount.class, Document.class).getMappedResults()) {
+            top.add(new TopQuery(row.getString("_id"), ((Number) row.get("count")).longValue()));
+        }
+        return top;
+    }
+
+    /**
+     * Raw history of a document or user in [from, to), newest first; only
+     * within the history retention.
+     */
+    public List<QueryHistory> recentQueries(String scope, String key, LocalDateTime from, LocalDateTime to, int limit) {
+        checkRange(from, to);
+        PageRequest page = PageRequest.of(0, limit);
+        return switch (scope) {
+            case SCOPE_DOCUMENT -> queryHistoryRepository.findByDocumentIdAndTimestampBetweenOrderByTimestampDesc(key, from, to, page);
+            case SCOPE_USER -> queryHistoryRepository.findByUserIdAndTimestampBetweenOrderByTimestampDesc(key, from, to, page);
+            default -> throw new IllegalArgumentException("documentId or userId is required");
+        };
+    }
+
+    private void checkRange(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (Duration.between(from, to).compareTo(maxRange) > 0) {
+            throw new IllegalArgumentException("Time range is too long");
+        }
+    }
+
+    private static Query inRange(String scope, String key, LocalDateTime from, LocalDateTime to) {
+        return Query.query(inRangeCriteria(scope, key, from, to));
+    }
+
+    // Hourly buckets overlapping [from, to)
+    private static Criteria inRangeCriteria(String scope, String key, LocalDateTime from, LocalDateTime to) {
+        return Criteria.where("scope").is(scope)
+            .and("key").is(key)
+            .and("bucket").gte(from.truncatedTo(ChronoUnit.HOURS)).lt(to);
+    }
+
+    private void ensureTtlIndex(Class<?> entityClass, String field, Duration retention) {
+        String name = field + "_ttl_idx";
+        try {
+            mongoTemplate.indexOps(entityClass)
+                .ensureIndex(new Index().on(field, Sort.Direction.ASC).named(name).expire(retention));
+        } catch (Exception e) {
+            // Retention changed since the index was created; update it in place
+            try {
+                mongoTemplate.executeCommand(new Document("collMod", mongoTemplate.getCollectionName(entityClass))
+                    .append("index", new Document("name", name).append("expireAfterSeconds", retention.toSeconds())));
+            } catch (Exception collModError) {
+                log.warn("Could not set retention of {}: {}", mongoTemplate.getCollectionName(entityClass), collModError.getMessage());
+            }
+        }
+    }
+
+    private static Query byId(String id) {
+        return Query.query(Criteria.where("_id").is(id));
+    }
+
+    private static String truncate(String query) {
+        return query.length() > MAX_QUERY_LENGTH ? query.substring(0, MAX_QUERY_LENGTH) : query;
+    }
+
+    private static String digest(String query) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(query.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class RollupDelta {
+        private final String scope;
+        private final String key;
+        private final LocalDateTime bucket;
+        private final Map<Integer, Long> latency = new HashMap<>();
+        private long count;
+        private double totalTime;
+        private double maxTime;
+
+        private RollupDelta(String scope, String key, LocalDateTime bucket) {
+            this.scope = scope;
+            this.key = key;
+            this.bucket = bucket;
+        }
+
+        private void add(double responseTime) {
+            count++;
+            totalTime += responseTime;
+            maxTime = Math.max(maxTime, responseTime);
+            latency.merge(LatencyHistogram.bucketOf(responseTime), 1L, Long::sum);
+        }
+
+        private Update toUpdate() {
+            Update update = new Update()
+                .setOnInsert("scope", scope)
+                .setOnInsert("key", key)
+                .setOnInsert("bucket", bucket)
+                .inc("count", count)
+                .inc("totalTime", totalTime)
+                .max("maxTime", maxTime);
+            latency.forEach((index, value) -> update.inc("latency." + index, value));
+            return update;
+        }
+    }
+
+    private static final class CountDelta {
+        private final String scope;
+        private final String key;
+        private final LocalDateTime bucket;
+        private final String query;
+        private long count;
+
+        private CountDelta(String scope, String key, LocalDateTime bucket, String query) {
+            this.scope = scope;
+            this.key = key;
+            this.bucket = bucket;
+            this.query = query;
+        }
+
+        private Update toUpdate() {
+            return new Update()
+                .setOnInsert("scope", scope)
+                .setOnInsert("key", key)
+                .setOnInsert("bucket", bucket)
+                .setOnInsert("query", query)
+                .inc("count", count);
+        }
+    }
+
+    // Rollups merged into one point of the report
+    private static final class SeriesPoint {
+        private final LocalDateTime bucket;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private long count;
+        private double totalTime;
+        private Double maxTime;
+
+        private SeriesPoint(LocalDateTime bucket) {
+            this.bucket = bucket;
+        }
+
+        private void add(QueryRollup rollup) {
+            count += rollup.getCount() != null ? rollup.getCount() : 0;
+            totalTime += rollup.getTotalTime() != null ? rollup.getTotalTime() : 0;
+            if (rollup.getMaxTime() != null) {
+                maxTime = maxTime == null ? rollup.getMaxTime() : Math.max(maxTime, rollup.getMaxTime());
+            }
+            histogram.add(rollup.getLatency());
+        }
+
+        private LatencyReport.Stats toStats() {
+            LatencyReport.Stats stats = new LatencyReport.Stats();
+            stats.setBucket(bucket);
+            stats.setCount(count);
+            stats.setAvgTime(count > 0 ? totalTime / count : null);
+            stats.setP50(histogram.percentile(0.50));
+            stats.setP95(histogram.percentile(0.95));
+            stats.setP99(histogram.percentile(0.99));
+            stats.setMaxTime(maxTime);
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.dto.QueryResponse;
+import com.example.DocumindAI.model.DocumentEntity;
+import com.example.DocumindAI.model.QueryHistory;
+import com.example.DocumindAI.repository.QueryHistoryRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Answer cache in front of the AI service, keyed on (documentId, normalized query).
+ * The in-memory tier is a size/TTL-bounded Caffeine cache (W-TinyLFU eviction);
+ * the optional second tier reuses the latest matching answer from query_history
+ * so warm answers survive restarts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueryCache {
+
+    private final QueryHistoryRepository queryHistoryRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${DocumindAI.query-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${DocumindAI.query-cache.ttl:1h}")
+    private Duration ttl;
+
+    @Value("${DocumindAI.query-cache.history-tier:false}")
+    private boolean historyTierEnabled;
+
+    private Cache<CacheKey, QueryResponse> cache;
+    private Counter historyHits;
+    private Counter historyMisses;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "queryAnswers");
+        historyHits = meterRegistry.counter("documind.query.cache.history", "result", "hit");
+        historyMisses = meterRegistry.counter("documind.query.cache.history", "result", "miss");
+    }
+
+    /**
+     * Looks up a cached answer for a processed document. History-tier answers
+     * older than the document's last processing are ignored.
+     */
+    public Optional<QueryResponse> get(DocumentEntity document, String query) {
+        String normalizedQuery = normalize(query);
+        CacheKey key = new CacheKey(document.getId(), normalizedQuery);
+
+        QueryResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(copyOf(cached));
+        }
+
+        if (!historyTierEnabled) {
+            return Optional.empty();
+        }
+
+        Optional<QueryResponse> fromHistory = queryHistoryRepository
+            .findFirstByDocumentIdAndNormalizedQueryOrderByTimestampDesc(document.getId(), normalizedQuery)
+            .filter(history -> document.getUpdatedAt() == null
+                || history.getTimestamp().isAfter(document.getUpdatedAt()))
+            .map(this::fromHistory);
+
+        if (fromHistory.isPresent()) {
+            historyHits.increment();
+            cache.put(key, fromHistory.get());
+            return Optional.of(copyOf(fromHistory.get()));
+        }
+        historyMisses.increment();
+        return Optional.empty();
+    }
+
+    public void put(String documentId, String query, QueryResponse response) {
+        cache.put(new CacheKey(documentId, normalize(query)), copyOf(response));
+    }
+
+    /**
+     * Drops every cached answer for a document. Called when the document is
+     * deleted or re-processed.
+     */
+    public void invalidateDocument(String documentId) {
+        cache.asMap().keySet().removeIf(key -> key.documentId().equals(documentId));
+    }
+
+    /**
+     * Normalizes a query so trivially different phrasings share a cache entry:
+     * case, surrounding/repeated whitespace and trailing punctuation are ignored.
+     */
+    public static String normalize(String query) {
+        String normalized = query.trim()
+            .toLowerCase(Locale.ROOT)
+            .replaceAll("\\s+", " ");
+        return normalized.replaceAll("[?!.\\s]+$", "");
+    }
+
+    private QueryResponse fromHistory(QueryHistory history) {
+        QueryResponse response = new QueryResponse();
+        response.setAnswer(history.getResponse());
+        response.setProcessingTime(history.getResponseTime());
+        return response;
+    }
+
+    private static QueryResponse copyOf(QueryResponse source) {
+        QueryResponse copy = new QueryResponse();
+        copy.setAnswer(source.getAnswer());
+        copy.setProcessingTime(source.getProcessingTime());
+        copy.setConfidence(source.getConfidence());
+        if (source.getSources() != null) {
+            copy.setSources(new ArrayList<>(source.getSources()));
+        }
+        return copy;
+    }
+
+    private record CacheKey(String documentId, String normalizedQuery) {
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.model.QueryHistory;
+import com.example.DocumindAI.repository.QueryHistoryRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind pipeline for query history. Entries are buffered in memory
+ * and flushed with bulk inserts once {@code batch-size} entries are waiting
+ * or {@code flush-interval} has passed. When the buffer is full (MongoDB
+ * slow or down) the configured overflow policy applies:
+ * <ul>
+ *     <li>{@code drop} - discard the entry and count it</li>
+ *     <li>{@code block} - wait up to {@code block-timeout} for space, then drop</li>
+ *     <li>{@code spill} - append the entry to a local NDJSON file that is
+ *     replayed into MongoDB once it is reachable again</li>
+ * </ul>
+ * Failed bulk inserts are spilled under the {@code spill} policy and dropped
+ * otherwise. The buffer is flushed on shutdown.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueryHistoryWriter {
+
+    public enum OverflowPolicy { DROP, BLOCK, SPILL }
+
+    private final QueryHistoryRepository queryHistoryRepository;
+    private final QueryAnalyticsService queryAnalyticsService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${DocumindAI.history.buffer-capacity:10000}")
+    private int bufferCapacity;
+
+    @Value("${DocumindAI.history.batch-size:500}")
+    private int batchSize;
+
+    @Value("${DocumindAI.history.flush-interval:1s}")
+    private Duration flushInterval;
+
+    @Value("${DocumindAI.history.overflow:spill}")
+    private String overflow;
+
+    @Value("${DocumindAI.history.block-timeout:100ms}")
+    private Duration blockTimeout;
+
+    @Value("${DocumindAI.history.spill-file:${DocumindAI.processed-dir}/query-history.spill.ndjson}")
+    private String spillFile;
+
+    private BlockingQueue<QueryHistory> buffer;
+    private OverflowPolicy overflowPolicy;
+    private Path spillPath;
+    private final Object spillLock = new Object();
+
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Counter droppedCounter;
+    private Counter spilledCounter;
+    private Counter writtenCounter;
+    private Counter corruptCounter;
+    private Timer flushTimer;
+
+    @PostConstruct
+    void start() {
+        buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        overflowPolicy = OverflowPolicy.valueOf(overflow.toUpperCase());
+        spillPath = Paths.get(spillFile);
+
+        Gauge.builder("documind.history.buffer.size", buffer, BlockingQueue::size)
+            .description("Query history entries waiting to be written")
+            .register(meterRegistry);
+        Gauge.builder("documind.history.lag.seconds", this, QueryHistoryWriter::getLagSeconds)
+            .description("Age of the oldest unwritten query history entry")
+            .register(meterRegistry);
+        droppedCounter = meterRegistry.counter("documind.history.entries", "outcome", "dropped");
+        spilledCounter = meterRegistry.counter("documind.history.entries", "outcome", "spilled");
+        writtenCounter = meterRegistry.counter("documind.history.entries", "outcome", "written");
+        corruptCounter = meterRegistry.counter("documind.history.entries", "outcome", "corrupt");
+        flushTimer = meterRegistry.timer("documind.history.flush");
+
+        running = true;
+        flusher = new Thread(this::runFlusher, "history-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(flushInterval.toMillis() + 5000);
+
+        // Write whatever is still buffered before the context goes away
+        List<QueryHistory> remaining = new ArrayList<>();
+        buffer.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += batchSize) {
+            write(remaining.subList(from, Math.min(remaining.size(), from + batchSize)));
+        }
+    }
+
+    /**
+     * Queues an entry for writing. Never throws; under pressure the entry is
+     * handled according to the overflow policy.
+     */
+    public void enqueue(QueryHistory history) {
+        if (buffer.offer(history)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    if (buffer.offer(history, blockTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                droppedCounter.increment();
+            }
+            case SPILL -> spill(List.of(history));
+            default -> droppedCounter.increment();
+        }
+    }
+
+    public void enqueueAll(Collection<QueryHistory> histories) {
+        histories.forEach(this::enqueue);
+    }
+
+    public double getLagSeconds() {
+        QueryHistory oldest = buffer.peek();
+        if (oldest == null || oldest.getTimestamp() == null) {
+            return 0;
+        }
+        return Duration.between(oldest.getTimestamp(), LocalDateTime.now()).toMillis() / 1000.0;
+    }
+
+    private void runFlusher() {
+        List<QueryHistory> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                QueryHistory first = buffer.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    // Idle: a good moment to replay anything spilled earlier
+                    replaySpill();
+                    continue;
+                }
+
+                // Collect until the batch is full or the flush interval has passed
+                batch.add(first);
+                long deadline = System.nanoTime() + flushInterval.toNanos();
+                while (batch.size() < batchSize) {
+                    buffer.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    QueryHistory next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // stop() drains the buffer; keep what this batch already holds
+                buffer.addAll(batch);
+                return;
+            } catch (Exception e) {
+                log.error("History writer error: {}", e.getMessage());
+                batch.clear();
+            }
+        }
+    }
+
+    private boolean write(List<QueryHistory> batch) {
+        try {
+            flushTimer.record(() -> queryHistoryRepository.insert(batch));
+            writtenCounter.increment(batch.size());
+        } catch (Exception e) {
+            log.warn("Bulk insert of {} history entries failed: {}", batch.size(), e.getMessage());
+            if (overflowPolicy == OverflowPolicy.SPILL) {
+                spill(batch);
+            } else {
+                droppedCounter.increment(batch.size());
+            }
+            return false;
+        }
+        // Only written entries are rolled up, so spilled ones are counted once, on replay
+        queryAnalyticsService.record(batch);
+        return true;
+    }
+
+    private void spill(List<QueryHistory> entries) {
+        synchronized (spillLock) {
+            try {
+                Files.createDirectories(spillPath.toAbsolutePath().getParent());
+                try (BufferedWriter writer = Files.newBufferedWriter(spillPath, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (QueryHistory entry : entries) {
+                        writer.write(objectMapper.writeValueAsString(entry));
+                        writer.newLine();
+                    }
+                }
+                spilledCounter.increment(entries.size());
+            } catch (IOException e) {
+                log.error("Could not spill {} history entries: {}", entries.size(), e.getMessage());
+                droppedCounter.increment(entries.size());
+            }
+        }
+    }
+
+    /**
+     * Moves the spill file aside and inserts its entries. If MongoDB is still
+     * unavailable the failed batch is re-spilled by {@link #write} and the
+     * unread remainder is appended back untouched. A file left aside by a
+     * replay that did not finish (say, the process died) is replayed first,
+     * before the spill file may be moved over it. Lines that do not parse,
+     * such as one cut short by a crash while spilling, are skipped and counted.
+     */
+    private void replaySpill() {
+        Path replayPath = spillPath.resolveSibling(spillPath.getFileName() + ".replay");
+        synchronized (spillLock) {
+            if (!Files.exists(replayPath)) {
+                if (!Files.exists(spillPath)) {
+                    return;
+                }
+                try {
+                    Files.move(spillPath, replayPath);
+                } catch (IOException e) {
+                    log.warn("Could not move spill file for replay: {}", e.getMessage());
+                    return;
+                }
+            }
+        }
+
+        List<QueryHistory> batch = new ArrayList<>(batchSize);
+        int replayed = 0;
+        int corrupt = 0;
+        try (BufferedReader reader = Files.newBufferedReader(replayPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    batch.add(objectMapper.readValue(line, QueryHistory.class));
+                } catch (JsonProcessingException e) {
+                    corrupt++;
+                    continue;
+                }
+                if (batch.size() == batchSize) {
+                    if (!write(batch)) {
+                        respill(reader);
+                        batch.clear();
+                        break;
+                    }
+                    replayed += batch.size();
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty() && write(batch)) {
+                replayed += batch.size();
+            }
+            Files.delete(replayPath);
+            if (replayed > 0) {
+                log.info("Replayed {} spilled history entries", replayed);
+            }
+            if (corrupt > 0) {
+                corruptCounter.increment(corrupt);
+                log.warn("Skipped {} spilled history entries that could not be parsed", corrupt);
+            }
+        } catch (IOException e) {
+            log.error("Could not replay spilled history: {}", e.getMessage());
+        }
+    }
+
+    private void respill(BufferedReader remaining) throws IOException {
+        synchronized (spillLock) {
+            try (BufferedWriter writer = Files.newBufferedWriter(spillPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                remaining.transferTo(writer);
+            }
+        }
+    }
+}
@@ -1,15 +1,43 @@
 package com.example.DocumindAI.service;
 
+import com.example.DocumindAI.dto.BatchQueryResult;
+import com.example.DocumindAI.dto.MultiQueryRequest;
+import com.example.DocumindAI.dto.MultiQueryResponse;
 import com.example.DocumindAI.dto.QueryRequest;
 import com.example.DocumindAI.dto.QueryResponse;
+import com.example.DocumindAI.dto.QueryStreamEvent;
 import com.example.DocumindAI.model.DocumentEntity;
 import com.example.DocumindAI.model.QueryHistory;
-import com.example.DocumindAI.repository.QueryHistoryRepository;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -18,47 +46,512 @@ public class QueryService {
     
     private final DocumentService documentService;
     private final AIServiceClient aiServiceClient;
-    private final QueryHistoryRepository queryHistoryRepository;
+    private final QueryHistoryWriter queryHistoryWriter;
+    private final QueryCache queryCache;
+    private final VectorIndexService vectorIndexService;
+    private final HistoryAnswerIndex historyAnswerIndex;
+    private final MeterRegistry meterRegistry;
     
-    public QueryResponse processQuery(QueryRequest request) {
-        long startTime = System.currentTimeMillis();
+    @Value("${DocumindAI.batch.query-concurrency:8}")
+    private int batchConcurrency;
+    
+    @Value("${DocumindAI.multi-query.parallelism:8}")
+    private int multiQueryParallelism;
+    
+    @Value("${DocumindAI.multi-query.max-documents:100}")
+    private int multiQueryMaxDocuments;
+    
+    @Value("${DocumindAI.multi-query.chunks-per-document:5}")
+    private int chunksPerDocument;
+    
+    @Value("${DocumindAI.multi-query.top-k:8}")
+    private int multiQueryTopK;
+    
+    @Value("${DocumindAI.multi-query.budget:10s}")
+    private Duration multiQueryBudget;
+    
+    @Value("${DocumindAI.retrieval.local.top-k:5}")
+    private int localTopK;
+    
+    @Value("${DocumindAI.degraded.enabled:true}")
+    private boolean degradedEnabled;
+    
+    @Value("${DocumindAI.degraded.min-similarity:0.5}")
+    private double minSimilarity;
+    
+    private ExecutorService batchExecutor;
+    
+    @PostConstruct
+    void init() {
+        batchExecutor = Executors.newFixedThreadPool(batchConcurrency, new CustomizableThreadFactory("query-batch-"));
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        batchExecutor.shutdownNow();
+    }
+    
+    /**
+     * Answers a query without holding the calling thread while the AI
+     * service works. Validation failures complete the future exceptionally.
+     */
+    public CompletableFuture<QueryResponse> processQuery(QueryRequest request) {
+        long startNanos = System.nanoTime();
+        QueryTimings timings = new QueryTimings(meterRegistry);
         
-        // Validate document exists and is processed
-        DocumentEntity document = documentService.getDocument(request.getDocumentId());
+        return answer(request, timings).thenApply(response -> complete(request, response, timings, startNanos));
+    }
+    
+    /**
+     * Streams the answer as it is generated. Must be called after
+     * {@link #requireProcessedDocument}. The full answer is cached and written
+     * to history once the stream completes; time to first token and total
+     * time are recorded as metrics and reported in the final "done" event.
+     */
+    public Flux<QueryStreamEvent> streamQuery(DocumentEntity document, QueryRequest request) {
+        long startNanos = System.nanoTime();
+        
+        QueryResponse cached = queryCache.get(document, request.getQuery()).orElse(null);
+        if (cached != null) {
+            QueryStreamEvent sources = QueryStreamEvent.of("sources", null);
+            sources.setSources(cached.getSources());
+            sources.setConfidence(cached.getConfidence());
+            return Flux.just(sources, QueryStreamEvent.of("token", cached.getAnswer()), QueryStreamEvent.of("done", null))
+                .map(event -> withTimings(event, startNanos, startNanos));
+        }
+        
+        QueryResponse collected = new QueryResponse();
+        StringBuilder answer = new StringBuilder();
+        AtomicLong firstTokenNanos = new AtomicLong();
+        
+        return aiServiceClient.streamQuery(request.getDocumentId(), document.getChromaCollectionId(), request.getQuery())
+            // History and cache writes block, so keep them off the netty event loop
+            .publishOn(Schedulers.boundedElastic())
+            .map(event -> {
+                switch (event.getType()) {
+                    case "sources" -> {
+                        collected.setSources(event.getSources());
+                        collected.setConfidence(event.getConfidence());
+                    }
+                    case "token" -> {
+                        if (firstTokenNanos.compareAndSet(0, System.nanoTime())) {
+                            meterRegistry.timer("documind.query.stream.first-token")
+                                .record(firstTokenNanos.get() - startNanos, TimeUnit.NANOSECONDS);
+                        }
+                        answer.append(event.getText());
+                    }
+                    case "done" -> {
+                        long firstToken = firstTokenNanos.get() == 0 ? System.nanoTime() : firstTokenNanos.get();
+                        return withTimings(event, startNanos, firstToken);
+                    }
+                    case "error" -> throw new RuntimeException("AI service stream failed: " + event.getText());
+                    default -> {
+                    }
+                }
+                return event;
+            })
+            .doOnComplete(() -> {
+                double processingTime = (System.nanoTime() - startNanos) / 1e9;
+                meterRegistry.timer("documind.query.stream.total")
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                
+                collected.setAnswer(answer.toString());
+                collected.setProcessingTime(processingTime);
+                queryCache.put(request.getDocumentId(), request.getQuery(), collected);
+                QueryHistory history = toHistory(request, collected, processingTime);
+                queryHistoryWriter.enqueue(history);
+                historyAnswerIndex.add(history);
+            });
+    }
+    
+    /**
+     * Loads the document's cached metadata and checks it can be queried.
+     *
+     * @throws IllegalStateException if the document is not processed yet
+     */
+    public DocumentEntity requireProcessedDocument(String documentId) {
+        DocumentEntity document = documentService.getDocumentMetadata(documentId);
         
         if (!"processed".equals(document.getStatus())) {
             throw new IllegalStateException(
                 "Document is not ready for queries. Current status: " + document.getStatus()
             );
         }
+        return document;
+    }
+    
+    private static QueryStreamEvent withTimings(QueryStreamEvent event, long startNanos, long firstTokenNanos) {
+        if ("done".equals(event.getType())) {
+            event.setProcessingTime((System.nanoTime() - startNanos) / 1e9);
+            event.setTimeToFirstToken((firstTokenNanos - startNanos) / 1e9);
+        }
+        return event;
+    }
+    
+    /**
+     * Answers a batch of queries with at most {@code DocumindAI.batch.query-concurrency}
+     * AI calls in flight, handing each result to {@code onResult} as soon as it
+     * completes.
+     */
+    public CompletableFuture<Void> processBatch(List<QueryRequest> requests, Consumer<BatchQueryResult> onResult) {
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(requests.size());
+        
+        for (int i = 0; i < requests.size(); i++) {
+            int index = i;
+            QueryRequest request = requests.get(i);
+            tasks.add(CompletableFuture.runAsync(
+                () -> onResult.accept(answerBatchItem(index, request)),
+                batchExecutor
+            ));
+        }
         
-        // Query AI service
-        QueryResponse response = aiServiceClient.queryDocument(
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]));
+    }
+    
+    private BatchQueryResult answerBatchItem(int index, QueryRequest request) {
+        try {
+            long startNanos = System.nanoTime();
+            QueryTimings timings = new QueryTimings(meterRegistry);
+            QueryResponse response = complete(request, AIServiceClient.await(answer(request, timings)), timings, startNanos);
+            return new BatchQueryResult(index, request.getDocumentId(), "ok", response, null);
+            
+        } catch (IllegalStateException e) {
+            return new BatchQueryResult(index, request.getDocumentId(), "not_ready", null, e.getMessage());
+            
+        } catch (RuntimeException e) {
+            log.error("Error processing batch query {}: {}", index, e.getMessage());
+            return new BatchQueryResult(index, request.getDocumentId(), "error", null, e.getMessage());
+        }
+    }
+    
+    /**
+     * Answers one query across several documents. Retrieval fans out to at
+     * most {@code DocumindAI.multi-query.parallelism} documents at a time; the
+     * returned chunks are merged, re-ranked by relevance and the best
+     * {@code top-k} answered from in a single generation call.
+     * <p>
+     * Everything shares one latency budget. Documents still retrieving when
+     * it runs out are cancelled and reported as "timeout"; if no time is left
+     * for generation, the merged sources are returned without an answer.
+     *
+     * @throws IllegalArgumentException if too many documents are requested
+     * @throws IllegalStateException if none of the documents can be queried
+     */
+    public CompletableFuture<MultiQueryResponse> processMultiQuery(MultiQueryRequest request) {
+        long startNanos = System.nanoTime();
+        Duration budget = request.getBudgetMillis() != null
+            ? Duration.ofMillis(request.getBudgetMillis())
+            : multiQueryBudget;
+        long deadlineNanos = startNanos + budget.toNanos();
+        
+        // Documents that cannot be searched are reported, not fatal
+        Map<String, MultiQueryResponse.DocumentResult> results = new LinkedHashMap<>();
+        List<DocumentEntity> targets;
+        try {
+            targets = resolveTargets(request, results);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (targets.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No processed documents to query"));
+        }
+        
+        // With local retrieval the query is embedded once for all documents
+        Mono<float[]> embedding = vectorIndexService.isEnabled()
+            ? Mono.fromFuture(() -> aiServiceClient.embedAsync(request.getQuery())).cache()
+            : null;
+        
+        return Flux.fromIterable(targets)
+            .flatMap(document -> retrieve(document, request.getQuery(), embedding), multiQueryParallelism)
+            .take(remaining(deadlineNanos))
+            .collectList()
+            .flatMap(retrievals -> {
+                List<QueryResponse.Source> merged = new ArrayList<>();
+                Map<String, MultiQueryResponse.DocumentResult> retrieved = new HashMap<>();
+                for (Retrieval retrieval : retrievals) {
+                    merged.addAll(retrieval.sources());
+                    retrieved.put(retrieval.documentId(), new MultiQueryResponse.DocumentResult(
+                        retrieval.documentId(), retrieval.status(), retrieval.seconds(), retrieval.sources().size()
+                    ));
+                }
+                for (DocumentEntity document : targets) {
+                    results.put(document.getId(), retrieved.getOrDefault(document.getId(),
+                        new MultiQueryResponse.DocumentResult(document.getId(), "timeout", null, 0)));
+                }
+                
+                merged.sort(Comparator.comparing(QueryResponse.Source::getRelevance,
+                    Comparator.nullsLast(Comparator.reverseOrder())));
+                List<QueryResponse.Source> top = List.copyOf(merged.subList(0, Math.min(multiQueryTopK, merged.size())));
+                
+                MultiQueryResponse response = new MultiQueryResponse();
+                response.setSources(top);
+                response.setConfidence(top.isEmpty() ? 0.0 : top.get(0).getRelevance());
+                response.setDocuments(List.copyOf(results.values()));
+                response.setPartial(results.values().stream().anyMatch(result -> !"ok".equals(result.getStatus())));
+                
+                Duration remaining = remaining(deadlineNanos);
+                if (top.isEmpty() || remaining.isZero()) {
+                    response.setPartial(response.isPartial() || !top.isEmpty());
+                    return Mono.just(response);
+                }
+                return Mono.fromFuture(() -> aiServiceClient.generateAsync(request.getQuery(), top))
+                    .timeout(remaining)
+                    .map(answer -> {
+                        response.setAnswer(answer.getAnswer());
+                        return response;
+                    })
+                    .onErrorResume(TimeoutException.class, e -> {
+                        log.warn("Multi-document answer not generated within budget");
+                        response.setPartial(true);
+                        return Mono.just(response);
+                    });
+            })
+            .map(response -> {
+                response.setProcessingTime((System.nanoTime() - startNanos) / 1e9);
+                Timer.builder("documind.query.multi")
+                    .tag("partial", String.valueOf(response.isPartial()))
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                for (MultiQueryResponse.DocumentResult result : response.getDocuments()) {
+                    meterRegistry.counter("documind.query.multi.documents", "status", result.getStatus()).increment();
+                }
+                return response;
+            })
+            .toFuture();
+    }
+    
+    private List<DocumentEntity> resolveTargets(MultiQueryRequest request, Map<String, MultiQueryResponse.DocumentResult> results) {
+        if (request.getDocumentIds() == null || request.getDocumentIds().isEmpty()) {
+            return documentService.findQueryTargets(request.getUserId(), request.getTag(), multiQueryMaxDocuments);
+        }
+        
+        List<String> documentIds = request.getDocumentIds().stream().distinct().toList();
+        if (documentIds.size() > multiQueryMaxDocuments) {
+            throw new IllegalArgumentException("At most " + multiQueryMaxDocuments + " documents per query");
+        }
+        List<DocumentEntity> targets = new ArrayList<>(documentIds.size());
+        for (String documentId : documentIds) {
+            try {
+                targets.add(requireProcessedDocument(documentId));
+                // Placeholder keeps the results in request order
+                results.put(documentId, null);
+            } catch (IllegalStateException e) {
+                results.put(documentId, new MultiQueryResponse.DocumentResult(documentId, "not_ready", null, 0));
+            } catch (RuntimeException e) {
+                results.put(documentId, new MultiQueryResponse.DocumentResult(documentId, "not_found", null, 0));
+            }
+        }
+        return targets;
+    }
+    
+    // Never fails: errors become a per-document status so the others still count
+    private Mono<Retrieval> retrieve(DocumentEntity document, String query, Mono<float[]> embedding) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            Mono<List<QueryResponse.Source>> remote = Mono.fromFuture(() -> aiServiceClient.retrieveAsync(
+                document.getId(), document.getChromaCollectionId(), query, chunksPerDocument));
+            Mono<List<QueryResponse.Source>> retrieval = embedding == null || document.getExtractedTextPath() == null
+                ? remote
+                : embedding
+                    .publishOn(Schedulers.boundedElastic())
+                    .flatMap(vector -> Mono.justOrEmpty(vectorIndexService.search(
+                        document.getChromaCollectionId(), document.getExtractedTextPath(), vector, chunksPerDocument)))
+                    .switchIfEmpty(remote);
+            return retrieval
+                .map(sources -> {
+                    sources.forEach(source -> source.setDocumentId(document.getId()));
+                    return new Retrieval(document.getId(), "ok", sources, (System.nanoTime() - start) / 1e9);
+                })
+                .onErrorResume(e -> {
+                    log.warn("Retrieval from {} failed: {}", document.getId(), e.getMessage());
+                    return Mono.just(new Retrieval(document.getId(), "error", List.of(), (System.nanoTime() - start) / 1e9));
+                });
+        });
+    }
+    
+    private static Duration remaining(long deadlineNanos) {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+    
+    private record Retrieval(String documentId, String status, List<QueryResponse.Source> sources, double seconds) {
+    }
+    
+    private CompletableFuture<QueryResponse> answer(QueryRequest request, QueryTimings timings) {
+        // Validate document exists and is processed
+        long phaseStart = System.nanoTime();
+        DocumentEntity document;
+        try {
+            document = requireProcessedDocument(request.getDocumentId());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            timings.record("lookup", phaseStart);
+        }
+        
+        // Serve repeated questions from the answer cache
+        phaseStart = System.nanoTime();
+        QueryResponse cached = queryCache.get(document, request.getQuery()).orElse(null);
+        timings.record("cache", phaseStart);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        if (!degradedEnabled) {
+            return generate(request, document, timings);
+        }
+        return generateOrFallBack(request, document, timings);
+    }
+    
+    private CompletableFuture<QueryResponse> generate(QueryRequest request, DocumentEntity document, QueryTimings timings) {
+        if (vectorIndexService.isEnabled() && document.getExtractedTextPath() != null) {
+            return answerLocally(request, document, timings);
+        }
+        return answerRemotely(request, document, timings);
+    }
+    
+    /*
+     * Degraded mode: while the AI service's circuit is open, or once the
+     * call fails or times out, answers with the previous answer to the most
+     * similar earlier query, flagged stale. Without a similar enough one the
+     * error is returned as usual. A slow call that is still within the query
+     * timeout is always awaited: a fresh answer beats a stale one.
+     */
+    private CompletableFuture<QueryResponse> generateOrFallBack(QueryRequest request, DocumentEntity document, QueryTimings timings) {
+        if (aiServiceClient.getQueryCircuitState() == CircuitBreaker.State.OPEN) {
+            Optional<QueryResponse> stale = staleAnswer(request, document, timings, "circuit_open");
+            if (stale.isPresent()) {
+                return CompletableFuture.completedFuture(stale.get());
+            }
+        }
+        
+        CompletableFuture<QueryResponse> result = new CompletableFuture<>();
+        // The first lookup of a document reads its history, so not on the netty event loop
+        generate(request, document, timings).whenCompleteAsync((response, error) -> {
+            if (error == null) {
+                result.complete(response);
+            } else {
+                staleAnswer(request, document, timings, "error")
+                    .ifPresentOrElse(result::complete, () -> result.completeExceptionally(error));
+            }
+        }, runnable -> Schedulers.boundedElastic().schedule(runnable));
+        return result;
+    }
+    
+    // Reads memory only once the document's index is loaded
+    private Optional<QueryResponse> staleAnswer(QueryRequest request, DocumentEntity document, QueryTimings timings, String reason) {
+        long phaseStart = System.nanoTime();
+        Optional<HistoryAnswerIndex.Match> match = historyAnswerIndex.findSimilar(
+            request.getDocumentId(), document.getUpdatedAt(), request.getQuery(), minSimilarity);
+        meterRegistry.counter("documind.query.degraded", "reason", reason, "result", match.isPresent() ? "stale" : "miss")
+            .increment();
+        if (match.isEmpty()) {
+            return Optional.empty();
+        }
+        timings.record("fallback", phaseStart);
+        
+        log.warn("AI service unavailable ({}), answering query on {} from history with similarity {}",
+            reason, request.getDocumentId(), String.format("%.2f", match.get().similarity()));
+        QueryResponse response = match.get().response();
+        response.setStale(true);
+        response.setSimilarity(match.get().similarity());
+        return Optional.of(response);
+    }
+    
+    /*
+     * Embeds the query, picks the chunks from the in-process index and sends
+     * only those to the AI service to answer from. Documents without an index
+     * yet are answered by the AI service's own retrieval.
+     */
+    private CompletableFuture<QueryResponse> answerLocally(QueryRequest request, DocumentEntity document, QueryTimings timings) {
+        long embedStart = System.nanoTime();
+        // The index may be opened from disk, so search off the netty event loop
+        return aiServiceClient.embedAsync(request.getQuery()).thenComposeAsync(embedding -> {
+            timings.record("embed", embedStart);
+            
+            long retrieveStart = System.nanoTime();
+            List<QueryResponse.Source> sources = vectorIndexService.search(
+                document.getChromaCollectionId(), document.getExtractedTextPath(), embedding, localTopK
+            ).orElse(null);
+            timings.record("retrieve", retrieveStart);
+            if (sources == null) {
+                return answerRemotely(request, document, timings);
+            }
+            
+            long aiStart = System.nanoTime();
+            return aiServiceClient.generateAsync(request.getQuery(), sources).thenApply(generated -> {
+                timings.record("ai", aiStart);
+                QueryResponse response = new QueryResponse();
+                response.setAnswer(generated.getAnswer());
+                response.setSources(sources);
+                response.setConfidence(sources.isEmpty() ? 0.0 : sources.get(0).getRelevance());
+                queryCache.put(request.getDocumentId(), request.getQuery(), response);
+                return response;
+            });
+        }, runnable -> Schedulers.boundedElastic().schedule(runnable));
+    }
+    
+    private CompletableFuture<QueryResponse> answerRemotely(QueryRequest request, DocumentEntity document, QueryTimings timings) {
+        long aiStart = System.nanoTime();
+        return aiServiceClient.queryDocumentAsync(
             request.getDocumentId(), 
+            document.getChromaCollectionId(),
             request.getQuery()
-        );
-        
-        // Calculate processing time
-        long endTime = System.currentTimeMillis();
-        double processingTime = (endTime - startTime) / 1000.0;
+        ).thenApply(response -> {
+            timings.record("ai", aiStart);
+            queryCache.put(request.getDocumentId(), request.getQuery(), response);
+            return response;
+        });
+    }
+    
+    /**
+     * Sets the processing time, queues the history entry and, if requested,
+     * attaches the phase breakdown. Stale answers are not written to history,
+     * where they would pass for answers to this query.
+     */
+    private QueryResponse complete(QueryRequest request, QueryResponse response, QueryTimings timings, long startNanos) {
+        double processingTime = (System.nanoTime() - startNanos) / 1e9;
         response.setProcessingTime(processingTime);
         
-        // Save to query history
-        saveQueryHistory(request, response, processingTime);
+        // Written behind by the history writer, off the request path
+        if (!Boolean.TRUE.equals(response.getStale())) {
+            long persistStart = System.nanoTime();
+            QueryHistory history = toHistory(request, response, processingTime);
+            queryHistoryWriter.enqueue(history);
+            historyAnswerIndex.add(history);
+            timings.record("persist", persistStart);
+        }
         
+        timings.recordTotal(startNanos);
+        if (request.isIncludeTimings()) {
+            response.setTimings(timings.asMap());
+        }
         return response;
     }
     
-    private void saveQueryHistory(QueryRequest request, QueryResponse response, double processingTime) {
+    private QueryHistory toHistory(QueryRequest request, QueryResponse response, double processingTime) {
         QueryHistory history = new QueryHistory();
         history.setDocumentId(request.getDocumentId());
+        history.setUserId(request.getUserId());
         history.setQuery(request.getQuery());
+        history.setNormalizedQuery(QueryCache.normalize(request.getQuery()));
         history.setResponse(response.getAnswer());
         history.setTimestamp(LocalDateTime.now());
         history.setResponseTime(processingTime);
         
-        // TODO: Add citations from response
+        if (response.getSources() != null) {
+            history.setCitations(response.getSources().stream()
+                .map(QueryService::toCitation)
+                .toList());
+        }
         
-        queryHistoryRepository.save(history);
+        return history;
+    }
+    
+    private static QueryHistory.Citation toCitation(QueryResponse.Source source) {
+        QueryHistory.Citation citation = new QueryHistory.Citation();
+        citation.setChunkId(source.getChunkId());
+        citation.setPageNumber(source.getPage());
+        citation.setRelevanceScore(source.getRelevance());
+        return citation;
     }
-}
\ No newline at end of file
+}
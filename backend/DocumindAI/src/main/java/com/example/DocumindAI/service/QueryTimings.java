@@ -0,0 +1,54 @@
+package com.example.DocumindAI.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phase breakdown of one query (lookup, cache, embed and retrieve with local
+ * retrieval, ai, fallback when answered from history, persist). Each phase
+ * is recorded to the {@code documind.query.phase} timer, the whole query to
+ * {@code documind.query.total}, and both are kept in milliseconds for the
+ * optional per-request breakdown in the response.
+ */
+class QueryTimings {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Double> millis = new LinkedHashMap<>();
+
+    QueryTimings(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Records a phase that started at {@code startNanos} and ends now.
+     */
+    synchronized void record(String phase, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        Timer.builder("documind.query.phase")
+            .tag("phase", phase)
+            .register(meterRegistry)
+            .record(elapsed, TimeUnit.NANOSECONDS);
+        millis.put(phase, elapsed / 1e6);
+    }
+
+    /**
+     * Records the whole query, tagged by whether it was answered from cache,
+     * by the AI service or, stale, from history.
+     */
+    synchronized void recordTotal(long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        Timer.builder("documind.query.total")
+            .tag("cache", millis.containsKey("fallback") ? "stale" : millis.containsKey("ai") ? "miss" : "hit")
+            .register(meterRegistry)
+            .record(elapsed, TimeUnit.NANOSECONDS);
+        millis.put("total", elapsed / 1e6);
+    }
+
+    synchronized Map<String, Double> asMap() {
+        return new LinkedHashMap<>(millis);
+    }
+}
@@ -0,0 +1,580 @@
+package com.example.DocumindAI.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold tier of {@link DocumentStorage}: objects packed back to back into
+ * segment files of about {@code segmentSize} bytes. Each object is gzipped
+ * on its own, unless that saves less than {@link #MIN_SAVING} (PDFs are
+ * usually compressed already), so it stays one contiguous byte range that
+ * can be sent with {@link FileChannel#transferTo} as it is stored.
+ * <p>
+ * Each segment has an index of its objects' offsets, loaded into memory on
+ * {@link #open}; a segment counts as written once its index exists, so data
+ * files without one are leftovers of an interrupted write. Segments are
+ * never modified: deleting rewrites the index only, and {@link #compact}
+ * copies the live objects of mostly-dead segments into new ones.
+ * <pre>
+ * segment-NNNNNNNN.seg  stored objects
+ * segment-NNNNNNNN.idx  magic "DMSI" (int), version (int), entry count (int), then per entry
+ *                       key (UTF), offset (long), stored length (long), size (long),
+ *                       last access (long, epoch millis), gzipped (boolean); trailer magic (int)
+ * </pre>
+ * Reads are lock-free; writes are serialized.
+ */
+@Slf4j
+final class SegmentStore {
+
+    static final int MAGIC = 0x444D5349;
+    static final int VERSION = 1;
+    static final double MIN_SAVING = 0.1;
+    private static final String DATA = ".seg";
+    private static final String INDEX = ".idx";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Guarded by this
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    // Never reused, so a stale entry cannot point into a different segment
+    private int nextId = 1;
+
+    private SegmentStore(Path directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    record Entry(int segment, String key, long offset, long storedLength, long size, long lastAccessed, boolean gzipped) {
+    }
+
+    /**
+     * A hot object to move into a segment.
+     */
+    record Source(String key, Path file, Instant lastAccessed) {
+    }
+
+    private record Segment(int id, long dataSize, Map<String, Entry> entries) {
+
+        long liveBytes() {
+            long live = 0;
+            for (Entry entry : entries.values()) {
+                live += entry.storedLength();
+            }
+            return live;
+        }
+    }
+
+    static SegmentStore open(Path directory, long segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        SegmentStore store = new SegmentStore(directory, segmentSize);
+        store.load();
+        return store;
+    }
+
+    Optional<Entry> entry(String key) {
+        return Optional.ofNullable(entries.get(key));
+    }
+
+    boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    int count() {
+        return entries.size();
+    }
+
+    synchronized long diskSize() {
+        long size = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.dataSize();
+        }
+        return size;
+    }
+
+    Stream<Entry> entries() {
+        return entries.values().stream();
+    }
+
+    /**
+     * Copies the sources into new segments. Sources already stored, or
+     * deleted meanwhile, are skipped; the hot copies are left to the caller.
+     *
+     * @return the keys now stored, including those that already were
+     */
+    synchronized List<String> append(List<Source> sources) throws IOException {
+        List<String> stored = new ArrayList<>(sources.size());
+        SegmentWriter writer = null;
+        try {
+            for (Source source : sources) {
+                if (entries.containsKey(source.key())) {
+                    stored.add(source.key());
+                    continue;
+                }
+                if (writer == null) {
+                    writer = new SegmentWriter();
+                }
+                if (writer.add(source)) {
+                    stored.add(source.key());
+                }
+                if (writer.size() >= segmentSize) {
+                    writer.commit();
+                    writer = null;
+                }
+            }
+            if (writer != null) {
+                writer.commit();
+                writer = null;
+            }
+        } finally {
+            if (writer != null) {
+                writer.abort();
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * The object, decompressed.
+     *
+     * @throws NoSuchFileException if there is no such object
+     */
+    InputStream get(String key) throws IOException {
+        Read read = open(key);
+        InputStream slice = new SliceInputStream(read.channel(), read.entry().offset(), read.entry().storedLength());
+        try {
+            return read.entry().gzipped() ? new GZIPInputStream(slice, BUFFER_SIZE) : new BufferedInputStream(slice, BUFFER_SIZE);
+        } catch (IOException e) {
+            slice.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the object exactly as stored (gzipped if {@link Entry#gzipped})
+     * to {@code target}.
+     *
+     * @return bytes written
+     * @throws NoSuchFileException if there is no such object
+     */
+    long transferStored(String key, WritableByteChannel target) throws IOException {
+        Read read = open(key);
+        try (FileChannel channel = read.channel()) {
+            long offset = read.entry().offset();
+            long length = read.entry().storedLength();
+            long done = 0;
+            while (done < length) {
+                done += channel.transferTo(offset + done, length - done, target);
+            }
+            return length;
+        }
+    }
+
+    /**
+     * Drops the objects from their segments' indexes; segments left empty are
+     * deleted outright.
+     *
+     * @return bytes freed on disk
+     */
+    synchronized long delete(Collection<String> keys) throws IOException {
+        Map<Integer, Segment> touched = new HashMap<>();
+        for (String key : keys) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                Segment segment = segments.get(entry.segment());
+                segment.entries().remove(key);
+                touched.put(segment.id(), segment);
+            }
+        }
+        long freed = 0;
+        for (Segment segment : touched.values()) {
+            if (segment.entries().isEmpty()) {
+                freed += deleteSegment(segment);
+            } else {
+                writeIndex(segment.id(), segment.entries().values());
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * Rewrites segments whose live objects take less than {@code minLiveRatio}
+     * of their size, copying the objects as stored (no recompression). Small
+     * segments, as left by migrations that moved little, are merged too.
+     *
+     * @return bytes freed on disk
+     */
+    synchronized long compact(double minLiveRatio) throws IOException {
+        List<Segment> sparse = new ArrayList<>();
+        List<Segment> small = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (segment.liveBytes() < segment.dataSize() * minLiveRatio) {
+                sparse.add(segment);
+            } else if (segment.dataSize() < segmentSize / 4) {
+                small.add(segment);
+            }
+        }
+        if (small.size() > 1) {
+            sparse.addAll(small);
+        }
+        if (sparse.isEmpty()) {
+            return 0;
+        }
+
+        long before = diskSize();
+        SegmentWriter writer = null;
+        try {
+            for (Segment segment : sparse) {
+                for (Entry entry : List.copyOf(segment.entries().values())) {
+                    if (writer == null) {
+                        writer = new SegmentWriter();
+                    }
+                    writer.copy(entry);
+                    if (writer.size() >= segmentSize) {
+                        writer.commit();
+                        writer = null;
+                    }
+                }
+            }
+            if (writer != null) {
+                writer.commit();
+                writer = null;
+            }
+        } finally {
+            if (writer != null) {
+                writer.abort();
+            }
+        }
+        // Every live entry now points into a new segment
+        for (Segment segment : sparse) {
+            deleteSegment(segment);
+        }
+        long freed = before - diskSize();
+        log.info("Compacted {} cold storage segments, {} bytes freed", sparse.size(), freed);
+        return freed;
+    }
+
+    private void load() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(Files::isRegularFile).sorted().toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Integer id = segmentId(name, INDEX);
+            Integer dataId = segmentId(name, DATA);
+            nextId = Math.max(nextId, (dataId != null ? dataId : id != null ? id : 0) + 1);
+            if (id == null) {
+                continue;
+            }
+            try {
+                Segment segment = new Segment(id, Files.size(dataPath(id)), readIndex(id));
+                segments.put(id, segment);
+            } catch (IOException e) {
+                log.error("Cold storage segment {} unreadable, its objects are unavailable: {}", id, e.getMessage());
+            }
+        }
+        // The same key in two segments: a compaction was interrupted before
+        // deleting the old segment, whose copy is the stale one
+        for (Segment segment : segments.values()) {
+            for (Entry entry : segment.entries().values()) {
+                Entry previous = entries.put(entry.key(), entry);
+                if (previous != null) {
+                    segments.get(previous.segment()).entries().remove(entry.key());
+                }
+            }
+        }
+        for (Segment segment : List.copyOf(segments.values())) {
+            if (segment.entries().isEmpty()) {
+                deleteSegment(segment);
+            }
+        }
+        // Leftovers of interrupted writes
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Integer id = segmentId(name, DATA);
+            if (name.endsWith(".tmp") || (id != null && !segments.containsKey(id) && !Files.exists(indexPath(id)))) {
+                Files.deleteIfExists(file);
+            }
+        }
+        log.info("Cold storage holds {} objects in {} segments", entries.size(), segments.size());
+    }
+
+    private Map<String, Entry> readIndex(int id) throws IOException {
+        Path path = indexPath(id);
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a segment index: " + path);
+            }
+            int count = input.readInt();
+            Map<String, Entry> segmentEntries = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(id, input.readUTF(), input.readLong(), input.readLong(),
+                    input.readLong(), input.readLong(), input.readBoolean());
+                segmentEntries.put(entry.key(), entry);
+            }
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Incomplete segment index: " + path);
+            }
+            return segmentEntries;
+        }
+    }
+
+    // Written to a temporary file and moved into place, so an index is always complete
+    private void writeIndex(int id, Collection<Entry> segmentEntries) throws IOException {
+        Path path = indexPath(id);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new ChannelOutputStream(channel), BUFFER_SIZE));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(segmentEntries.size());
+            for (Entry entry : segmentEntries) {
+                output.writeUTF(entry.key());
+                output.writeLong(entry.offset());
+                output.writeLong(entry.storedLength());
+                output.writeLong(entry.size());
+                output.writeLong(entry.lastAccessed());
+                output.writeBoolean(entry.gzipped());
+            }
+            output.writeInt(MAGIC);
+            output.flush();
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private long deleteSegment(Segment segment) throws IOException {
+        segments.remove(segment.id());
+        // Index first: a data file without one is cleaned up on the next open
+        Files.deleteIfExists(indexPath(segment.id()));
+        Files.deleteIfExists(dataPath(segment.id()));
+        return segment.dataSize();
+    }
+
+    private record Read(Entry entry, FileChannel channel) {
+    }
+
+    // A compaction may move the entry between lookup and open; look it up again then
+    private Read open(String key) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                throw new NoSuchFileException(key);
+            }
+            try {
+                return new Read(entry, FileChannel.open(dataPath(entry.segment()), StandardOpenOption.READ));
+            } catch (NoSuchFileException e) {
+                if (attempt > 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private Path dataPath(int id) {
+        return directory.resolve(String.format("segment-%08d%s", id, DATA));
+    }
+
+    private Path indexPath(int id) {
+        return directory.resolve(String.format("segment-%08d%s", id, INDEX));
+    }
+
+    private static Integer segmentId(String name, String suffix) {
+        if (!name.startsWith("segment-") || !name.endsWith(suffix)) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(name.substring("segment-".length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * One new segment being written; becomes visible on {@link #commit}.
+     */
+    private final class SegmentWriter {
+
+        private final int id;
+        private final Path temp;
+        private final FileChannel channel;
+        private final Map<String, Entry> written = new LinkedHashMap<>();
+
+        private SegmentWriter() throws IOException {
+            this.id = nextId++;
+            this.temp = dataPath(id).resolveSibling(dataPath(id).getFileName() + ".tmp");
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+
+        long size() throws IOException {
+            return channel.position();
+        }
+
+        // Gzips the file into the segment, or stores it as is if that barely helps
+        boolean add(Source source) throws IOException {
+            long offset = channel.position();
+            long size;
+            boolean gzipped = true;
+            try (FileChannel input = FileChannel.open(source.file(), StandardOpenOption.READ)) {
+                size = input.size();
+                try (OutputStream output = new GZIPOutputStream(new ChannelOutputStream(channel), BUFFER_SIZE)) {
+                    Files.copy(source.file(), output);
+                }
+                if (channel.position() - offset > size * (1 - MIN_SAVING)) {
+                    channel.truncate(offset);
+                    channel.position(offset);
+                    transfer(input, 0, size);
+                    gzipped = false;
+                }
+            } catch (NoSuchFileException e) {
+                // Deleted since it was listed
+                channel.truncate(offset);
+                channel.position(offset);
+                return false;
+            }
+            written.put(source.key(), new Entry(id, source.key(), offset, channel.position() - offset, size,
+                source.lastAccessed().toEpochMilli(), gzipped));
+            return true;
+        }
+
+        void copy(Entry entry) throws IOException {
+            long offset = channel.position();
+            try (FileChannel input = FileChannel.open(dataPath(entry.segment()), StandardOpenOption.READ)) {
+                transfer(input, entry.offset(), entry.storedLength());
+            }
+            written.put(entry.key(), new Entry(id, entry.key(), offset, entry.storedLength(), entry.size(),
+                entry.lastAccessed(), entry.gzipped()));
+        }
+
+        void commit() throws IOException {
+            long dataSize = channel.position();
+            channel.force(true);
+            channel.close();
+            if (written.isEmpty()) {
+                Files.deleteIfExists(temp);
+                return;
+            }
+            Files.move(temp, dataPath(id), StandardCopyOption.ATOMIC_MOVE);
+            writeIndex(id, written.values());
+            segments.put(id, new Segment(id, dataSize, new LinkedHashMap<>(written)));
+            for (Entry entry : written.values()) {
+                Entry previous = entries.put(entry.key(), entry);
+                if (previous != null && previous.segment() != id) {
+                    segments.get(previous.segment()).entries().remove(entry.key());
+                }
+            }
+        }
+
+        void abort() {
+            try {
+                channel.close();
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                log.warn("Could not remove unfinished segment {}: {}", temp, e.getMessage());
+            }
+        }
+
+        private void transfer(FileChannel input, long position, long length) throws IOException {
+            long done = 0;
+            while (done < length) {
+                done += input.transferTo(position + done, length - done, channel);
+            }
+        }
+    }
+
+    /**
+     * Writes to a channel at its current position; closing leaves the channel open.
+     */
+    private static final class ChannelOutputStream extends OutputStream {
+
+        private final WritableByteChannel channel;
+
+        private ChannelOutputStream(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads a byte range of a file with positional reads; closes the channel.
+     */
+    private static final class SliceInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        private SliceInputStream(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(bytes, offset, (int) Math.min(length, end - position)), position);
+            if (read < 0) {
+                throw new IOException("Segment file truncated");
+            }
+            position += read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
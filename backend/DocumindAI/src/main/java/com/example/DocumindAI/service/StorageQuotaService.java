@@ -0,0 +1,183 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.dto.StorageUsage;
+import com.example.DocumindAI.exception.QuotaExceededException;
+import com.example.DocumindAI.model.DocumentEntity;
+import com.example.DocumindAI.model.UserUsage;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-user storage quota over the {@code fileSize} of documents not
+ * deleted. Totals live in {@link UserUsage} and are adjusted with an atomic
+ * increment whenever a document is stored or deleted; a new document is
+ * charged with a single conditional update that only matches while it still
+ * fits, so concurrent uploads cannot overshoot the quota together. A
+ * duplicate upload costs its user the full size, as it would without
+ * deduplication.
+ * <p>
+ * A quota of 0 turns enforcement off; totals are kept either way.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StorageQuotaService {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${DocumindAI.quota.storage:10GB}")
+    private DataSize quota;
+
+    /**
+     * Totals start from the existing documents the first time this runs
+     * against a database that has none.
+     */
+    @PostConstruct
+    void init() {
+        if (mongoTemplate.estimatedCount(UserUsage.class) > 0) {
+            return;
+        }
+        List<UserUsage> usages = new ArrayList<>();
+        for (Document row : mongoTemplate.aggregate(usageAggregation(new Criteria()), DocumentEntity.class, Document.class)) {
+            if (row.getString("_id") != null) {
+                usages.add(usage(row.getString("_id"), row));
+            }
+        }
+        if (!usages.isEmpty()) {
+            mongoTemplate.insertAll(usages);
+            log.info("Initialized storage usage of {} users", usages.size());
+        }
+    }
+
+    /**
+     * Rejects an upload of {@code bytes} up front, before it is written,
+     * when it could not fit in the user's quota anyway.
+     *
+     * @throws QuotaExceededException if it does not fit
+     */
+    public void checkAvailable(String userId, long bytes) {
+        if (quota.toBytes() <= 0) {
+            return;
+        }
+        UserUsage usage = mongoTemplate.findById(userId, UserUsage.class);
+        long stored = usage == null || usage.getStoredBytes() == null ? 0 : usage.getStoredBytes();
+        if (stored + bytes > quota.toBytes()) {
+            throw exceeded(userId);
+        }
+    }
+
+    /**
+     * Charges a new document of {@code bytes} to the user.
+     *
+     * @throws QuotaExceededException if it does not fit; nothing is charged
+     */
+    public void reserve(String userId, long bytes) {
+        long limit = quota.toBytes();
+        if (limit <= 0) {
+            mongoTemplate.upsert(byUser(userId), charge(bytes, 1), UserUsage.class);
+            return;
+        }
+        if (bytes > limit) {
+            throw exceeded(userId);
+        }
+
+        Query fits = Query.query(Criteria.where("_id").is(userId).and("storedBytes").lte(limit - bytes));
+        if (mongoTemplate.updateFirst(fits, charge(bytes, 1), UserUsage.class).getMatchedCount() == 1) {
+            return;
+        }
+        // Either over quota, or the user's first document
+        UserUsage first = new UserUsage();
+        first.setId(userId);
+        first.setStoredBytes(bytes);
+        first.setDocuments(1L);
+        first.setUpdatedAt(LocalDateTime.now());
+        try {
+            mongoTemplate.insert(first);
+            return;
+        } catch (DuplicateKeyException e) {
+            // Usage exists: over quota, unless it was created concurrently
+        }
+        if (mongoTemplate.updateFirst(fits, charge(bytes, 1), UserUsage.class).getMatchedCount() == 0) {
+            throw exceeded(userId);
+        }
+    }
+
+    /**
+     * Credits {@code documents} documents totalling {@code bytes} back to
+     * the user, once they are deleted or failed to be stored.
+     */
+    public void release(String userId, long bytes, long documents) {
+        mongoTemplate.updateFirst(byUser(userId), charge(-bytes, -documents), UserUsage.class);
+    }
+
+    /**
+     * Recomputes the user's totals from their documents. Only for when the
+     * exact change is unknown, as it sums over all of them.
+     */
+    public void recount(String userId) {
+        Criteria ofUser = Criteria.where("userId").is(userId);
+        Document row = mongoTemplate.aggregate(usageAggregation(ofUser), DocumentEntity.class, Document.class)
+            .getUniqueMappedResult();
+        UserUsage usage = usage(userId, row);
+        mongoTemplate.upsert(byUser(userId), new Update()
+            .set("storedBytes", usage.getStoredBytes())
+            .set("documents", usage.getDocuments())
+            .set("updatedAt", usage.getUpdatedAt()), UserUsage.class);
+    }
+
+    public StorageUsage usage(String userId) {
+        UserUsage usage = mongoTemplate.findById(userId, UserUsage.class);
+        return new StorageUsage(
+            userId,
+            usage == null || usage.getStoredBytes() == null ? 0 : usage.getStoredBytes(),
+            usage == null || usage.getDocuments() == null ? 0 : usage.getDocuments(),
+            quota.toBytes() > 0 ? quota.toBytes() : null
+        );
+    }
+
+    private static Aggregation usageAggregation(Criteria criteria) {
+        return Aggregation.newAggregation(
+            Aggregation.match(criteria.and("status").ne("deleted")),
+            Aggregation.group("userId").sum("fileSize").as("storedBytes").count().as("documents")
+        );
+    }
+
+    private static UserUsage usage(String userId, Document row) {
+        UserUsage usage = new UserUsage();
+        usage.setId(userId);
+        usage.setStoredBytes(row == null ? 0 : ((Number) row.get("storedBytes")).longValue());
+        usage.setDocuments(row == null ? 0 : ((Number) row.get("documents")).longValue());
+        usage.setUpdatedAt(LocalDateTime.now());
+        return usage;
+    }
+
+    private static Query byUser(String userId) {
+        return Query.query(Criteria.where("_id").is(userId));
+    }
+
+    private static Update charge(long bytes, long documents) {
+        return new Update()
+            .inc("storedBytes", bytes)
+            .inc("documents", documents)
+            .set("updatedAt", LocalDateTime.now());
+    }
+
+    private QuotaExceededException exceeded(String userId) {
+        return new QuotaExceededException("Storage quota of " + quota + " exceeded for user " + userId);
+    }
+}
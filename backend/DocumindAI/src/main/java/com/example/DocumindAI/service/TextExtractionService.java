@@ -0,0 +1,125 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.model.DocumentEntity;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction stage of ingestion: parses the original upload once with Tika
+ * and streams the text into a {@link ChunkFile} under the processed
+ * directory. Later runs for the same content (retries, re-embedding,
+ * duplicates taking over) find the finished file and skip parsing entirely.
+ * Runs on the ingestion workers, so documents are extracted in parallel.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TextExtractionService {
+
+    private final DocumentStorage documentStorage;
+    private final MeterRegistry meterRegistry;
+    // Stateless and thread-safe, shared by all workers
+    private final AutoDetectParser parser = new AutoDetectParser();
+
+    @Value("${DocumindAI.processed-dir}")
+    private String processedDir;
+
+    @Value("${DocumindAI.extraction.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${DocumindAI.extraction.chunk-overlap:50}")
+    private int chunkOverlap;
+
+    /**
+     * Returns the document's chunk file, extracting it from the stored
+     * original {@code fileName} unless a complete one already exists.
+     *
+     * @throws IllegalStateException if the document contains no text
+     */
+    public Path extract(DocumentEntity document, String fileName) throws IOException {
+        if (document.getExtractedTextPath() != null) {
+            Path existing = Paths.get(document.getExtractedTextPath());
+            if (ChunkFile.isComplete(existing)) {
+                meterRegistry.counter("documind.extraction.documents", "result", "reused").increment();
+                return existing;
+            }
+        }
+        Path target = chunkFilePath(document);
+        if (ChunkFile.isComplete(target)) {
+            meterRegistry.counter("documind.extraction.documents", "result", "reused").increment();
+            return target;
+        }
+
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long start = System.nanoTime();
+        int chunkCount;
+        try {
+            // Only read the original when it has to be parsed; it may be in cold storage
+            chunkCount = parse(documentStorage.localFile(fileName), temp);
+            if (chunkCount == 0) {
+                throw new IllegalStateException("No text could be extracted from " + document.getOriginalFileName());
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        Timer.builder("documind.extraction.time")
+            .tag("type", String.valueOf(document.getFileType()))
+            .register(meterRegistry)
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("documind.extraction.chunks")
+            .register(meterRegistry)
+            .record(chunkCount);
+        meterRegistry.counter("documind.extraction.documents", "result", "extracted").increment();
+        log.info("Extracted {} chunks from document {} into {}", chunkCount, document.getId(), target);
+        return target;
+    }
+
+    /**
+     * Chunk files are named by content hash, so every document sharing the
+     * content also shares the file.
+     */
+    public Path chunkFilePath(DocumentEntity document) {
+        String name = document.getContentHash() != null ? document.getContentHash() : document.getId();
+        return Paths.get(processedDir, "chunks", name + ".chunks");
+    }
+
+    private int parse(Path source, Path target) throws IOException {
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, source.getFileName().toString());
+
+        try (TikaInputStream input = TikaInputStream.get(source, metadata);
+             ChunkFile.Writer writer = new ChunkFile.Writer(target)) {
+            parser.parse(input, new PageAwareChunker(chunkSize, chunkOverlap, writer), metadata, new ParseContext());
+            return writer.count();
+        } catch (SAXException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Could not read document text: " + e.getMessage(), e);
+        } catch (TikaException e) {
+            throw new IOException("Could not read document text: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.DocumindAI.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets of one limit, one per key. A bucket holds up to
+ * {@code burst} tokens and refills at {@code rate} per second; each request
+ * takes one.
+ * <p>
+ * A bucket is a single {@link AtomicLong}: the time at which it will be
+ * full again (the generic cell rate algorithm), moved forward by one
+ * emission interval per request with a compare-and-set, so acquiring takes
+ * no lock. A bucket left alone long enough to refill carries no state, so
+ * buckets idle for the full refill time are evicted without changing any
+ * decision. Beyond {@code maxKeys} the least used are evicted early, and
+ * those keys start again from a full bucket.
+ */
+public class TokenBucketRateLimiter {
+
+    private final String name;
+    private final int burst;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final Cache<String, AtomicLong> buckets;
+
+    /**
+     * @param rate  tokens per second
+     * @param burst bucket capacity, the most requests allowed at once
+     */
+    public TokenBucketRateLimiter(String name, double rate, int burst, long maxKeys) {
+        if (rate <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate limit " + name + " needs a positive rate and burst");
+        }
+        this.name = name;
+        this.burst = burst;
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+        this.burstNanos = intervalNanos * burst;
+        this.buckets = Caffeine.newBuilder()
+            .maximumSize(maxKeys)
+            .expireAfterAccess(Duration.ofNanos(burstNanos))
+            .build();
+    }
+
+    /**
+     * Outcome of one acquire.
+     *
+     * @param remaining  tokens left after this request
+     * @param resetNanos until the bucket is full again
+     * @param retryAfterNanos until a rejected request could succeed, 0 if allowed
+     */
+    public record Decision(boolean allowed, int limit, int remaining, long resetNanos, long retryAfterNanos) {
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Decision tryAcquire(String key) {
+        AtomicLong fullAt = buckets.get(key, ignored -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long ahead = next - now;
+            if (ahead > burstNanos) {
+                return new Decision(false, burst, 0, Math.max(0, current - now), ahead - burstNanos);
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                int remaining = (int) ((burstNanos - ahead) / intervalNanos);
+                return new Decision(true, burst, remaining, ahead, 0);
+            }
+        }
+    }
+
+    /**
+     * Keys with a bucket currently tracked.
+     */
+    public long trackedKeys() {
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.DocumindAI.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.Tika;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Single-pass upload pipeline: detects the MIME type from the first bytes,
+ * then streams the content to disk through a {@link FileChannel} while
+ * computing its SHA-256. Memory use is one fixed buffer per upload,
+ * independent of file size.
+ */
+@Slf4j
+@Service
+public class UploadPipeline {
+
+    public static final List<String> ALLOWED_TYPES = List.of(
+        "application/pdf",
+        "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+        "text/plain"
+    );
+
+    // Detected for DOCX files whose prefix does not show the document type
+    private static final Set<String> ZIP_CONTAINER_TYPES = Set.of("application/zip", "application/x-tika-ooxml");
+
+    // Tika facade is thread-safe, so one detector is shared by all uploads
+    private static final Tika TIKA = new Tika();
+
+    // Enough for Tika's magic-byte detection of the allowed types
+    static final int DETECTION_BYTES = 64 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Value("${DocumindAI.max-file-size:512MB}")
+    private DataSize maxFileSize;
+
+    public long getMaxFileSize() {
+        return maxFileSize.toBytes();
+    }
+
+    /**
+     * Streams {@code content} into a temporary file under {@code directory}.
+     * The caller is responsible for moving the returned temp file into place.
+     *
+     * @throws IllegalArgumentException if the content is empty, too large or of a disallowed type
+     */
+    public StoredUpload store(InputStream content, Path directory, String originalFilename) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int prefixLength = content.readNBytes(buffer, 0, DETECTION_BYTES);
+        if (prefixLength == 0) {
+            throw new IllegalArgumentException("File is empty");
+        }
+
+        String detectedType = requireAllowedType(buffer, prefixLength, originalFilename);
+
+        MessageDigest digest = newDigest();
+        Path tempFile = Files.createTempFile(directory, ".upload-", ".part");
+        long size = 0;
+        boolean completed = false;
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            int read = prefixLength;
+            while (read > 0) {
+                size += read;
+                if (size > maxFileSize.toBytes()) {
+                    throw new IllegalArgumentException(
+                        "File size exceeds maximum allowed size of " + maxFileSize.toMegabytes() + "MB"
+                    );
+                }
+                digest.update(buffer, 0, read);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+                read = content.read(buffer);
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+
+        String contentHash = HexFormat.of().formatHex(digest.digest());
+        log.debug("Streamed {} bytes ({}) to {}", size, detectedType, tempFile);
+        return new StoredUpload(tempFile, size, detectedType, contentHash);
+    }
+
+    /**
+     * Detects the type and computes the SHA-256 of a file that is already on
+     * disk (e.g. assembled from chunks), in one sequential read. The size
+     * limit is left to the caller.
+     *
+     * @throws IllegalArgumentException if the file is empty or of a disallowed type
+     */
+    public StoredUpload inspect(Path file, String originalFilename) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        String detectedType = null;
+        long size = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (true) {
+                // A full first buffer covers the detection prefix
+                fill(channel, buffer);
+                buffer.flip();
+                if (!buffer.hasRemaining()) {
+                    break;
+                }
+                if (detectedType == null) {
+                    detectedType = requireAllowedType(buffer.array(), buffer.limit(), originalFilename);
+                }
+                size += buffer.remaining();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        if (detectedType == null) {
+            throw new IllegalArgumentException("File is empty");
+        }
+
+        String contentHash = HexFormat.of().formatHex(digest.digest());
+        return new StoredUpload(file, size, detectedType, contentHash);
+    }
+
+    /**
+     * Detects the MIME type from a content prefix. The content alone decides
+     * what kind of file it is; the file name only tells DOCX apart from other
+     * ZIP containers when the prefix cannot, so unrecognised bytes are never
+     * accepted for their extension.
+     */
+    public String detectType(byte[] prefix, int length, String fileName) {
+        byte[] bytes = length == prefix.length ? prefix : Arrays.copyOf(prefix, length);
+        String type = TIKA.detect(bytes);
+        if (ZIP_CONTAINER_TYPES.contains(type)) {
+            // Tika only lets the name narrow the magic-byte match down to a subtype
+            return TIKA.detect(bytes, fileName);
+        }
+        return type;
+    }
+
+    private String requireAllowedType(byte[] prefix, int length, String fileName) {
+        String detectedType = detectType(prefix, Math.min(length, DETECTION_BYTES), fileName);
+        if (!ALLOWED_TYPES.contains(detectedType)) {
+            throw new IllegalArgumentException(
+                "Invalid file type. Only PDF, DOCX, and TXT files are allowed"
+            );
+        }
+        return detectedType;
+    }
+
+    private static void fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return;
+            }
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public record StoredUpload(Path tempFile, long size, String contentType, String contentHash) {
+    }
+}
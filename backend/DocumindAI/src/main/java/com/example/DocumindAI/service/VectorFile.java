@@ -0,0 +1,187 @@
+package com.example.DocumindAI.service;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary file holding the chunk embeddings of one vector collection, row
+ * {@code i} being chunk {@code i} of the collection's {@link ChunkFile}.
+ * Layout (little-endian, so rows map straight onto native float arrays):
+ * <pre>
+ * header   magic "DMVE" (int), version (int), dimensions (int), reserved (int)
+ * vectors  per chunk: dimensions floats, normalized to unit length
+ * trailer  row count (int), magic (int)
+ * </pre>
+ * Vectors are unit length, so cosine similarity is a plain dot product.
+ * Readers memory-map the file; rows are never copied onto the heap except
+ * block by block while scoring.
+ */
+public final class VectorFile {
+
+    static final int MAGIC = 0x444D5645;
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int TRAILER_SIZE = 8;
+
+    private VectorFile() {
+    }
+
+    /**
+     * Streams vectors to a new file. The dimension is fixed by the first
+     * vector; {@link #close} writes the trailer.
+     */
+    public static final class Writer implements Closeable {
+
+        private final OutputStream output;
+        private ByteBuffer row;
+        private int dimensions;
+        private int count;
+
+        public Writer(Path path) throws IOException {
+            this.output = new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024);
+        }
+
+        public void append(float[] vector) throws IOException {
+            if (row == null) {
+                if (vector.length == 0) {
+                    throw new IllegalArgumentException("Empty vector");
+                }
+                dimensions = vector.length;
+                row = ByteBuffer.allocate(Math.max(HEADER_SIZE, dimensions * Float.BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+                row.putInt(MAGIC).putInt(VERSION).putInt(dimensions).putInt(0);
+                output.write(row.array(), 0, HEADER_SIZE);
+            } else if (vector.length != dimensions) {
+                throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+            }
+
+            double norm = 0;
+            for (float value : vector) {
+                norm += value * value;
+            }
+            float scale = norm > 0 ? (float) (1 / Math.sqrt(norm)) : 0;
+            row.clear();
+            for (float value : vector) {
+                row.putFloat(value * scale);
+            }
+            output.write(row.array(), 0, dimensions * Float.BYTES);
+            count++;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (output) {
+                if (row == null) {
+                    throw new IOException("No vectors written");
+                }
+                output.write(ByteBuffer.allocate(TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(count).putInt(MAGIC).array());
+            }
+        }
+    }
+
+    /**
+     * Scoring over a memory-mapped vector file. Safe for concurrent use.
+     */
+    public static final class Reader {
+
+        private final FloatBuffer vectors;
+        private final int dimensions;
+        private final int count;
+
+        private Reader(FloatBuffer vectors, int dimensions, int count) {
+            this.vectors = vectors;
+            this.dimensions = dimensions;
+            this.count = count;
+        }
+
+        /**
+         * @throws IOException if the file is missing, truncated or not a vector file
+         */
+        public static Reader open(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < HEADER_SIZE + TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                    throw new IOException("Not a vector file, or too large to map: " + path);
+                }
+                // The mapping stays valid after the channel is closed
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                int dimensions = buffer.getInt(8);
+                int count = buffer.getInt((int) size - TRAILER_SIZE);
+                boolean valid = buffer.getInt(0) == MAGIC
+                    && buffer.getInt(4) == VERSION
+                    && buffer.getInt((int) size - 4) == MAGIC
+                    && dimensions > 0
+                    && count >= 0
+                    && HEADER_SIZE + (long) count * dimensions * Float.BYTES == size - TRAILER_SIZE;
+                if (!valid) {
+                    throw new IOException("Incomplete or corrupt vector file: " + path);
+                }
+                FloatBuffer vectors = buffer.slice(HEADER_SIZE, count * dimensions * Float.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer();
+                return new Reader(vectors, dimensions, count);
+            }
+        }
+
+        public int dimensions() {
+            return dimensions;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Copies row {@code row} into {@code into}.
+         */
+        public void vector(int row, float[] into) {
+            vectors.get(row * dimensions, into, 0, dimensions);
+        }
+
+        /**
+         * Dot products of {@code query} with rows {@code [from, from + rows)},
+         * into {@code scores[0..rows)}. Rows are copied in one bulk read into
+         * {@code block}, which must hold {@code rows * dimensions} floats.
+         */
+        public void scores(float[] query, int from, int rows, float[] block, float[] scores) {
+            vectors.get(from * dimensions, block, 0, rows * dimensions);
+            for (int i = 0; i < rows; i++) {
+                scores[i] = dot(query, block, i * dimensions, dimensions);
+            }
+        }
+
+        // Four independent accumulators, so the loop is not serialized on one float add
+        static float dot(float[] query, float[] block, int offset, int length) {
+            float s0 = 0;
+            float s1 = 0;
+            float s2 = 0;
+            float s3 = 0;
+            int i = 0;
+            for (; i + 3 < length; i += 4) {
+                s0 += query[i] * block[offset + i];
+                s1 += query[i + 1] * block[offset + i + 1];
+                s2 += query[i + 2] * block[offset + i + 2];
+                s3 += query[i + 3] * block[offset + i + 3];
+            }
+            for (; i < length; i++) {
+                s0 += query[i] * block[offset + i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+    }
+}
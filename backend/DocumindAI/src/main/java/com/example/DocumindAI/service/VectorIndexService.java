@@ -0,0 +1,376 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.dto.ProcessingEvent;
+import com.example.DocumindAI.dto.QueryResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Retrieval inside the backend, so a query costs one embedding call and one
+ * generation call instead of a vector search round trip to ChromaDB.
+ * <p>
+ * With {@code DocumindAI.retrieval.local.enabled}, ingestion asks the AI
+ * service for the chunk embeddings it computes anyway and writes them to a
+ * {@link VectorFile} per vector collection under
+ * {@code processed-dir/vectors}. Collections of at least
+ * {@code hnsw-threshold} chunks also get an {@link HnswGraph}; smaller ones
+ * are scanned exhaustively, which is exact and, at that size, as fast.
+ * Indexes are memory-mapped on first query and kept open for the most
+ * recently used {@code max-open-indexes} collections.
+ * <p>
+ * Collections ingested before local retrieval was enabled have no index;
+ * {@link #search} reports that and callers use the AI service instead.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VectorIndexService {
+
+    private static final String VECTORS = ".vec";
+    private static final String GRAPH = ".hnsw";
+    // Rows scored per bulk read in an exhaustive scan
+    private static final int BLOCK_FLOATS = 16 * 1024;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${DocumindAI.retrieval.local.enabled:false}")
+    private boolean enabled;
+
+    @Value("${DocumindAI.processed-dir}")
+    private String processedDir;
+
+    @Value("${DocumindAI.retrieval.local.hnsw-threshold:20000}")
+    private int hnswThreshold;
+
+    @Value("${DocumindAI.retrieval.local.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${DocumindAI.retrieval.local.hnsw.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${DocumindAI.retrieval.local.hnsw.ef-search:64}")
+    private int efSearch;
+
+    @Value("${DocumindAI.retrieval.local.max-open-indexes:256}")
+    private long maxOpenIndexes;
+
+    private Cache<String, LoadedIndex> indexes;
+
+    @PostConstruct
+    void init() {
+        indexes = Caffeine.newBuilder()
+            .maximumSize(maxOpenIndexes)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, indexes, "vectorIndexes");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts a new index for {@code collectionId}, fed with the events of
+     * {@link AIServiceClient#processChunks}. It replaces the current one only
+     * on {@link IndexWriter#commit}; closing it without committing discards it.
+     */
+    public IndexWriter writer(String collectionId) throws IOException {
+        Files.createDirectories(directory());
+        return new IndexWriter(collectionId, Files.createTempFile(directory(), collectionId + ".", VECTORS + ".tmp"));
+    }
+
+    /**
+     * The {@code k} chunks of a collection most similar to {@code query},
+     * best first, with their full text; {@code chunksPath} is the
+     * collection's chunk file. Empty if the collection has no usable index.
+     */
+    public Optional<List<QueryResponse.Source>> search(String collectionId, String chunksPath, float[] query, int k) {
+        LoadedIndex index;
+        try {
+            index = indexes.get(collectionId, id -> load(id, chunksPath));
+        } catch (UncheckedIOException e) {
+            log.warn("Vector index of {} unusable, retrieving through the AI service: {}", collectionId, e.getMessage());
+            return Optional.empty();
+        }
+        if (index == null) {
+            return Optional.empty();
+        }
+        if (query.length != index.vectors().dimensions()) {
+            log.warn("Query embedding has {} dimensions, index of {} has {}; was the embedding model changed?",
+                query.length, collectionId, index.vectors().dimensions());
+            return Optional.empty();
+        }
+
+        long start = System.nanoTime();
+        float[] normalized = normalize(query);
+        List<HnswGraph.Scored> hits = index.graph() != null
+            ? index.graph().search(index.vectors(), normalized, k, Math.max(efSearch, k))
+            : scan(index.vectors(), normalized, k);
+        Timer.builder("documind.retrieval.local")
+            .tag("index", index.graph() != null ? "hnsw" : "exact")
+            .register(meterRegistry)
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        List<QueryResponse.Source> sources = new ArrayList<>(hits.size());
+        for (HnswGraph.Scored hit : hits) {
+            sources.add(toSource(index.chunks().get(hit.node()), hit.score()));
+        }
+        return Optional.of(sources);
+    }
+
+    /**
+     * Deletes a collection's index files.
+     *
+     * @return bytes reclaimed
+     */
+    public long delete(String collectionId) {
+        indexes.invalidate(collectionId);
+        return deleteFile(vectorPath(collectionId)) + deleteFile(graphPath(collectionId));
+    }
+
+    /**
+     * Directory holding every collection's index files.
+     */
+    public Path directory() {
+        return Paths.get(processedDir, "vectors");
+    }
+
+    /**
+     * The collection an index file in {@link #directory()} belongs to, or
+     * null for files that are not finished indexes (e.g. temporary files).
+     */
+    public static String collectionOf(Path file) {
+        String name = file.getFileName().toString();
+        for (String suffix : new String[] {VECTORS, GRAPH}) {
+            if (name.endsWith(suffix)) {
+                return name.substring(0, name.length() - suffix.length());
+            }
+        }
+        return null;
+    }
+
+    private Path vectorPath(String collectionId) {
+        return directory().resolve(collectionId + VECTORS);
+    }
+
+    private Path graphPath(String collectionId) {
+        return directory().resolve(collectionId + GRAPH);
+    }
+
+    // Null (and not cached) if the collection has no index yet
+    private LoadedIndex load(String collectionId, String chunksPath) {
+        Path vectorPath = vectorPath(collectionId);
+        if (chunksPath == null || !Files.exists(vectorPath)) {
+            return null;
+        }
+        try {
+            VectorFile.Reader vectors = VectorFile.Reader.open(vectorPath);
+            ChunkFile.Reader chunks = ChunkFile.Reader.open(Paths.get(chunksPath));
+            if (chunks.count() != vectors.count()) {
+                throw new IOException(vectors.count() + " vectors for " + chunks.count() + " chunks");
+            }
+            HnswGraph graph = null;
+            if (vectors.count() >= hnswThreshold) {
+                try {
+                    graph = HnswGraph.read(graphPath(collectionId), vectors.count());
+                } catch (IOException e) {
+                    log.warn("No usable graph for {}, searching exhaustively: {}", collectionId, e.getMessage());
+                }
+            }
+            log.debug("Opened vector index of {} ({} vectors, {} dimensions)",
+                collectionId, vectors.count(), vectors.dimensions());
+            return new LoadedIndex(vectors, graph, chunks);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<HnswGraph.Scored> scan(VectorFile.Reader vectors, float[] query, int k) {
+        int blockRows = Math.max(1, BLOCK_FLOATS / vectors.dimensions());
+        float[] block = new float[blockRows * vectors.dimensions()];
+        float[] scores = new float[blockRows];
+        // Worst of the best k on top
+        PriorityQueue<HnswGraph.Scored> top = new PriorityQueue<>(k + 1, Comparator.comparingDouble(HnswGraph.Scored::score));
+        for (int from = 0; from < vectors.count(); from += blockRows) {
+            int rows = Math.min(blockRows, vectors.count() - from);
+            vectors.scores(query, from, rows, block, scores);
+            for (int i = 0; i < rows; i++) {
+                if (top.size() < k) {
+                    top.add(new HnswGraph.Scored(from + i, scores[i]));
+                } else if (scores[i] > top.peek().score()) {
+                    top.poll();
+                    top.add(new HnswGraph.Scored(from + i, scores[i]));
+                }
+            }
+        }
+        List<HnswGraph.Scored> hits = new ArrayList<>(top);
+        hits.sort(Comparator.comparingDouble(HnswGraph.Scored::score).reversed());
+        return hits;
+    }
+
+    // Same shape and relevance scale as the AI service's /retrieve
+    private static QueryResponse.Source toSource(ChunkFile.Chunk chunk, float similarity) {
+        QueryResponse.Source source = new QueryResponse.Source();
+        source.setChunkId("chunk_" + chunk.index());
+        source.setPage(chunk.startPage());
+        source.setSnippet(chunk.text().substring(0, Math.min(200, chunk.text().length())) + "...");
+        // ChromaDB reports squared L2 distance, which for unit vectors is 2 - 2 * cosine
+        double distance = Math.max(0, 2 - 2 * similarity);
+        source.setRelevance(Math.round(1000 / (1 + distance)) / 1000.0);
+        source.setText(chunk.text());
+        return source;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float scale = norm > 0 ? (float) (1 / Math.sqrt(norm)) : 0;
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private static long deleteFile(Path file) {
+        try {
+            long size = Files.exists(file) ? Files.size(file) : 0;
+            return Files.deleteIfExists(file) ? size : 0;
+        } catch (IOException e) {
+            log.error("Error deleting file {}: {}", file, e.getMessage());
+            return 0;
+        }
+    }
+
+    private record LoadedIndex(VectorFile.Reader vectors, HnswGraph graph, ChunkFile.Reader chunks) {
+    }
+
+    /**
+     * Receives a collection's "embeddings" events in chunk order while the
+     * AI service streams them, into a temporary file. Never throws from
+     * {@link #accept}: a write failure is logged and only makes
+     * {@link #commit} fail, so it cannot fail the ingestion itself.
+     */
+    public final class IndexWriter implements Consumer<ProcessingEvent>, Closeable {
+
+        private final String collectionId;
+        private final Path tempFile;
+        private VectorFile.Writer writer;
+        private Exception failure;
+        private boolean committed;
+
+        private IndexWriter(String collectionId, Path tempFile) throws IOException {
+            this.collectionId = collectionId;
+            this.tempFile = tempFile;
+            this.writer = new VectorFile.Writer(tempFile);
+        }
+
+        /**
+         * Appends the vectors of chunks {@code start} onwards. A batch
+         * starting over at 0 means the AI call was retried, and discards
+         * what was written so far.
+         */
+        @Override
+        public void accept(ProcessingEvent event) {
+            int start = event.getStart() != null ? event.getStart() : -1;
+            try {
+                if (start == 0 && (writer.count() > 0 || failure != null)) {
+                    closeQuietly();
+                    writer = new VectorFile.Writer(tempFile);
+                    failure = null;
+                }
+                if (failure != null) {
+                    return;
+                }
+                if (start != writer.count() || event.getEmbeddings() == null) {
+                    throw new IllegalStateException("Expected embeddings from row " + writer.count() + ", got " + start);
+                }
+                for (float[] vector : event.getEmbeddings()) {
+                    writer.append(vector);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not write vector index of {}: {}", collectionId, e.getMessage());
+                failure = e;
+            }
+        }
+
+        /**
+         * Finishes the index and makes it the collection's current one,
+         * building the search graph first if the collection is large.
+         *
+         * @throws IOException if fewer or more than {@code expectedCount} vectors arrived
+         */
+        public void commit(int expectedCount) throws IOException {
+            if (failure != null) {
+                throw new IOException("Writing embeddings failed", failure);
+            }
+            writer.close();
+            if (writer.count() != expectedCount) {
+                throw new IOException("Expected " + expectedCount + " embeddings, got " + writer.count());
+            }
+
+            Path graphPath = graphPath(collectionId);
+            if (expectedCount >= hnswThreshold) {
+                long start = System.nanoTime();
+                HnswGraph graph = HnswGraph.build(VectorFile.Reader.open(tempFile), hnswM, efConstruction, collectionId.hashCode());
+                Path graphTemp = Files.createTempFile(directory(), collectionId + ".", GRAPH + ".tmp");
+                try {
+                    graph.write(graphTemp);
+                    Files.move(graphTemp, graphPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(graphTemp);
+                }
+                log.info("Built search graph of {} over {} vectors in {} ms",
+                    collectionId, expectedCount, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } else {
+                // Left over from an earlier, larger version of the collection
+                Files.deleteIfExists(graphPath);
+            }
+
+            Files.move(tempFile, vectorPath(collectionId), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            indexes.invalidate(collectionId);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                closeQuietly();
+                Files.deleteIfExists(tempFile);
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                // Being discarded; an incomplete file is fine
+            }
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.example.DocumindAI;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 
 @SpringBootTest
+@Import(EmbeddedMongoConfiguration.class)
 class DocumindAIApplicationTests {
 
 	@Test
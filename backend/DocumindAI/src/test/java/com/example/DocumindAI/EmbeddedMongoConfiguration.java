@@ -0,0 +1,27 @@
+package com.example.DocumindAI;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * In-memory MongoDB stand-in so Spring context tests run without a real server.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class EmbeddedMongoConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    public MongoServer mongoServer() {
+        MongoServer server = new MongoServer(new MemoryBackend());
+        server.bind();
+        return server;
+    }
+
+    @Bean(destroyMethod = "close")
+    public MongoClient mongoClient(MongoServer mongoServer) {
+        return MongoClients.create(mongoServer.getConnectionString());
+    }
+}
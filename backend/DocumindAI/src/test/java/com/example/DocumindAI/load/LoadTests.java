@@ -0,0 +1,247 @@
+package com.example.DocumindAI.load;
+
+import com.example.DocumindAI.EmbeddedMongoConfiguration;
+import com.example.DocumindAI.support.LoadGenerator;
+import com.example.DocumindAI.support.LoadReport;
+import com.example.DocumindAI.support.StubAiServer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives a realistic upload and query mix through the HTTP API of a fully
+ * started backend, backed by in-memory MongoDB and the stub AI service, and
+ * reports throughput, latency percentiles, threads and heap.
+ * <p>
+ * Excluded from the normal build; run it with the {@code load} profile.
+ * Every knob is a system property, for example:
+ * <pre>
+ * mvn -B test -Pload -Dload.rate=200 -Dload.duration=2m -Dload.ai-latency=500ms -Dload.mix=upload:1,query:4,stream:4
+ * </pre>
+ * The report is logged and written as JSON to {@code load.report}.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(EmbeddedMongoConfiguration.class)
+class LoadTests {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTests.class);
+
+    private static final String USER_ID = "load_user";
+    private static final String BOUNDARY = "documind-load-boundary";
+
+    private static final StubAiServer STUB = StubAiServer.start()
+        .withLatency(duration("load.ai-latency", "50ms"))
+        .withTokenDelay(duration("load.token-delay", "5ms"))
+        .withErrorRate(Double.parseDouble(System.getProperty("load.ai-error-rate", "0")));
+
+    private static final Path DATA_DIR = createDataDir();
+
+    private final HttpClient http = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+    private final AtomicLong uploadCounter = new AtomicLong();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void loadProperties(DynamicPropertyRegistry registry) {
+        registry.add("DocumindAI.ai-service.url", STUB::getUrl);
+        registry.add("DocumindAI.upload-dir", () -> DATA_DIR.resolve("uploads").toString());
+        registry.add("DocumindAI.processed-dir", () -> DATA_DIR.resolve("processed").toString());
+        registry.add("DocumindAI.history.spill-file", () -> DATA_DIR.resolve("history.spill.ndjson").toString());
+        // One user drives all the load; measure the service, not its per-user limits
+        registry.add("DocumindAI.rate-limit.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void cleanUp() throws IOException {
+        STUB.close();
+        FileSystemUtils.deleteRecursively(DATA_DIR);
+    }
+
+    @Test
+    void uploadAndQueryMix() throws Exception {
+        double rate = Double.parseDouble(System.getProperty("load.rate", "50"));
+        Duration runFor = duration("load.duration", "30s");
+        int documentCount = Integer.getInteger("load.documents", 10);
+        int distinctQueries = Integer.getInteger("load.distinct-queries", 50);
+        Map<String, Integer> mix = parseMix(System.getProperty("load.mix", "upload:1,query:8,stream:1"));
+
+        List<String> documentIds = seedDocuments(documentCount, duration("load.seed-timeout", "60s"));
+
+        LoadGenerator generator = new LoadGenerator()
+            .operation("upload", mix.getOrDefault("upload", 0), this::upload)
+            .operation("query", mix.getOrDefault("query", 0),
+                () -> query("/api/query", documentIds, distinctQueries, HttpResponse.BodyHandlers.discarding()))
+            .operation("stream", mix.getOrDefault("stream", 0),
+                // Reads the whole event stream, so slow generation counts towards latency
+                () -> query("/api/query/stream", documentIds, distinctQueries, HttpResponse.BodyHandlers.ofLines()));
+
+        int maxInFlight = Integer.getInteger("load.max-in-flight", 2000);
+        Duration drainTimeout = duration("load.drain-timeout", "30s");
+        Duration warmup = duration("load.warmup", "10s");
+        if (!warmup.isZero()) {
+            // Lets JIT compilation, pools and caches settle; its numbers are discarded
+            generator.run(rate, warmup, maxInFlight, drainTimeout);
+        }
+        LoadReport report = generator.run(rate, runFor, maxInFlight, drainTimeout);
+
+        log.info("Load test report{}{}", System.lineSeparator(), report.format());
+        Path reportFile = Paths.get(System.getProperty("load.report", "target/load-report.json"));
+        Files.createDirectories(reportFile.toAbsolutePath().getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile.toFile(), report);
+
+        assertThat(report.dropped()).as("requests not sent because too many were in flight").isZero();
+        assertThat(report.errorRate()).as("server error rate")
+            .isLessThanOrEqualTo(Double.parseDouble(System.getProperty("load.max-error-rate", "0.01")));
+    }
+
+    private List<String> seedDocuments(int count, Duration timeout) throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            HttpResponse<String> response = http.send(uploadRequest(), HttpResponse.BodyHandlers.ofString());
+            assertThat(response.statusCode()).as("seed upload").isEqualTo(200);
+            ids.add(objectMapper.readTree(response.body()).get("documentId").asText());
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (String id : ids) {
+            String status;
+            do {
+                Thread.sleep(100);
+                HttpResponse<String> response = http.send(
+                    HttpRequest.newBuilder(uri("/api/documents/" + id)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString()
+                );
+                JsonNode document = objectMapper.readTree(response.body());
+                status = document.path("status").asText();
+                assertThat(status).as("seed document " + id).isNotEqualTo("failed");
+            } while (!"processed".equals(status) && System.nanoTime() < deadline);
+            assertThat(status).as("seed document " + id + " processed in time").isEqualTo("processed");
+        }
+        return ids;
+    }
+
+    private CompletableFuture<Integer> upload() {
+        return http.sendAsync(uploadRequest(), HttpResponse.BodyHandlers.discarding())
+            .thenApply(HttpResponse::statusCode);
+    }
+
+    private <T> CompletableFuture<Integer> query(
+            String path, List<String> documentIds, int distinctQueries, HttpResponse.BodyHandler<T> body
+    ) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, String> request = Map.of(
+            "documentId", documentIds.get(random.nextInt(documentIds.size())),
+            // A bounded pool of questions, so part of the traffic hits the answer cache
+            "query", "What does section " + random.nextInt(distinctQueries) + " say?",
+            "userId", USER_ID
+        );
+        try {
+            return http.sendAsync(
+                    HttpRequest.newBuilder(uri(path))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(request)))
+                        .build(),
+                    body
+                )
+                .thenApply(response -> {
+                    // Drain streamed bodies before the request counts as finished
+                    if (response.body() instanceof Stream<?> lines) {
+                        lines.forEach(line -> { });
+                    }
+                    return response.statusCode();
+                });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Unique content per upload, so deduplication does not short-circuit ingestion
+    private HttpRequest uploadRequest() {
+        int size = Integer.getInteger("load.document-size", 16 * 1024);
+        String marker = "Load document " + uploadCounter.incrementAndGet() + " " + UUID.randomUUID() + "\n";
+        StringBuilder text = new StringBuilder(size + marker.length()).append(marker);
+        while (text.length() < size) {
+            text.append("Section ").append(text.length() % 97).append(": retrieval, chunking and answer generation. ");
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(text.length() + 512);
+        body.writeBytes(("--" + BOUNDARY + "\r\n"
+            + "Content-Disposition: form-data; name=\"file\"; filename=\"load.txt\"\r\n"
+            + "Content-Type: text/plain\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(text.toString().getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        return HttpRequest.newBuilder(uri("/api/documents/upload?userId=" + USER_ID))
+            .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+            .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            weights.put(parts[0], Integer.parseInt(parts[1]));
+        }
+        return weights;
+    }
+
+    private static Duration duration(String property, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty(property, defaultValue));
+    }
+
+    private static Path createDataDir() {
+        try {
+            return Files.createTempDirectory("documind-load-");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
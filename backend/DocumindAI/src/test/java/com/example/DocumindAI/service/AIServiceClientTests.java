@@ -0,0 +1,146 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.EmbeddedMongoConfiguration;
+import com.example.DocumindAI.dto.QueryResponse;
+import com.example.DocumindAI.dto.QueryStreamEvent;
+import com.example.DocumindAI.support.StubAiServer;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@Import(EmbeddedMongoConfiguration.class)
+class AIServiceClientTests {
+
+    private static final StubAiServer STUB = StubAiServer.start();
+
+    @Autowired
+    private AIServiceClient aiServiceClient;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @DynamicPropertySource
+    static void aiServiceProperties(DynamicPropertyRegistry registry) {
+        registry.add("DocumindAI.ai-service.url", STUB::getUrl);
+        registry.add("DocumindAI.ai-service.timeout", () -> 2000);
+        registry.add("DocumindAI.ai-service.retry.backoff", () -> "10ms");
+        registry.add("DocumindAI.ai-service.circuit-breaker.minimum-calls", () -> 4);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        STUB.close();
+    }
+
+    @BeforeEach
+    void reset() {
+        STUB.reset();
+        circuitBreakerRegistry.circuitBreaker("ai-query").reset();
+    }
+
+    @Test
+    void queryParsesAnswerAndSources() {
+        QueryResponse response = aiServiceClient.queryDocument("doc_1", null, "What is this?");
+
+        assertThat(response.getAnswer()).isEqualTo("Stub answer to: What is this?");
+        assertThat(response.getConfidence()).isEqualTo(0.9);
+        assertThat(response.getSources()).hasSize(1);
+        assertThat(response.getSources().get(0).getPage()).isEqualTo(1);
+    }
+
+    @Test
+    void streamQueryRelaysEventsInOrder() {
+        List<QueryStreamEvent> events = aiServiceClient.streamQuery("doc_1", null, "stream me")
+            .collectList()
+            .block();
+
+        assertThat(events).extracting(QueryStreamEvent::getType)
+            .startsWith("sources", "token")
+            .endsWith("done");
+        assertThat(events.stream()
+                .filter(event -> "token".equals(event.getType()))
+                .map(QueryStreamEvent::getText)
+                .collect(Collectors.joining()))
+            .isEqualTo("Stub answer to: stream me");
+    }
+
+    @Test
+    void retriesTransientFailures() {
+        STUB.failNext(2, 503);
+
+        QueryResponse response = aiServiceClient.queryDocument("doc_1", null, "retry me");
+
+        assertThat(response.getAnswer()).isEqualTo("Stub answer to: retry me");
+        assertThat(STUB.getQueryCalls()).isEqualTo(3);
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        STUB.failNext(1, 400);
+
+        assertThatThrownBy(() -> aiServiceClient.queryDocument("doc_1", null, "bad request"))
+            .isInstanceOf(RuntimeException.class)
+            .hasMessage("Failed to query document");
+        assertThat(STUB.getQueryCalls()).isEqualTo(1);
+    }
+
+    @Test
+    void retriesProcessingTheServiceRejected() {
+        STUB.failNext(1, 503);
+
+        aiServiceClient.processDocument("doc_1", "/tmp/doc_1.pdf");
+
+        assertThat(STUB.getProcessCalls()).isEqualTo(2);
+    }
+
+    @Test
+    void doesNotRetryProcessingThatMayHaveRun() {
+        STUB.failNext(1, 504);
+
+        assertThatThrownBy(() -> aiServiceClient.processDocument("doc_1", "/tmp/doc_1.pdf"))
+            .isInstanceOf(RuntimeException.class);
+        assertThat(STUB.getProcessCalls()).isEqualTo(1);
+    }
+
+    @Test
+    void circuitOpensAndFailsFastAfterRepeatedFailures() {
+        STUB.withErrorRate(1.0);
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> aiServiceClient.queryDocument("doc_1", null, "failing"))
+                .isInstanceOf(RuntimeException.class);
+        }
+        assertThat(aiServiceClient.getQueryCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        int callsBefore = STUB.getQueryCalls();
+        assertThatThrownBy(() -> aiServiceClient.queryDocument("doc_1", null, "failing"))
+            .hasCauseInstanceOf(CallNotPermittedException.class);
+        assertThat(STUB.getQueryCalls()).isEqualTo(callsBefore);
+    }
+
+    @Test
+    void clientErrorsDoNotOpenCircuit() {
+        STUB.failNext(6, 400);
+        for (int i = 0; i < 6; i++) {
+            assertThatThrownBy(() -> aiServiceClient.queryDocument("doc_1", null, "bad request"))
+                .isInstanceOf(RuntimeException.class);
+        }
+
+        assertThat(aiServiceClient.getQueryCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(aiServiceClient.queryDocument("doc_1", null, "fine").getAnswer()).isEqualTo("Stub answer to: fine");
+    }
+}
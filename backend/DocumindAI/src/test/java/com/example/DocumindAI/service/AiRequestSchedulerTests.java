@@ -0,0 +1,138 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.service.AiRequestScheduler.Lane;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AiRequestSchedulerTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AiRequestScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        scheduler = new AiRequestScheduler(meterRegistry);
+        ReflectionTestUtils.setField(scheduler, "initialLimit", 1);
+        ReflectionTestUtils.setField(scheduler, "minLimit", 1);
+        ReflectionTestUtils.setField(scheduler, "maxLimit", 8);
+        ReflectionTestUtils.setField(scheduler, "backoffRatio", 0.9);
+        ReflectionTestUtils.setField(scheduler, "latencyTarget", Duration.ofMillis(500));
+        ReflectionTestUtils.setField(scheduler, "ingestShare", 0.75);
+        ReflectionTestUtils.setField(scheduler, "bulkShare", 0.5);
+        scheduler.init();
+    }
+
+    @Test
+    void waiterCancelledDuringDispatchGivesItsSlotBack() {
+        Sinks.Empty<Void> holder = Sinks.empty();
+        scheduler.schedule(Lane.INTERACTIVE, deadline(), holder.asMono()).subscribe();
+
+        // Started by the same dispatch pass as the second waiter, it cancels that one
+        // after it was granted a slot but before the slot was handed over
+        AtomicReference<Disposable> second = new AtomicReference<>();
+        Sinks.Empty<Void> first = Sinks.empty();
+        scheduler.schedule(Lane.INTERACTIVE, deadline(), Mono.defer(() -> {
+            second.get().dispose();
+            return first.asMono();
+        })).subscribe();
+        second.set(scheduler.schedule(Lane.INTERACTIVE, deadline(), Mono.never()).subscribe());
+        assertThat(inFlight()).isEqualTo(1);
+
+        ReflectionTestUtils.setField(scheduler, "limit", 2.0);
+        holder.tryEmitEmpty();
+
+        assertThat(inFlight()).isEqualTo(1);
+        first.tryEmitEmpty();
+        assertThat(inFlight()).isZero();
+        assertThat(scheduler.schedule(Lane.INTERACTIVE, deadline(), Mono.just("next")).block(Duration.ofSeconds(1)))
+            .isEqualTo("next");
+    }
+
+    @Test
+    void concurrentCancellationsNeverLeakSlots() throws InterruptedException {
+        ReflectionTestUtils.setField(scheduler, "limit", 4.0);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(2000);
+        try {
+            for (int i = 0; i < 2000; i++) {
+                int call = i;
+                executor.execute(() -> {
+                    Disposable subscription = scheduler.schedule(Lane.INTERACTIVE, deadline(),
+                        Mono.delay(Duration.ofNanos(call % 3 * 100_000L))).subscribe();
+                    if (call % 2 == 0) {
+                        subscription.dispose();
+                    }
+                    done.countDown();
+                });
+            }
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdown();
+        }
+
+        List<Long> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(scheduler.schedule(Lane.INTERACTIVE, deadline(), Mono.just(1L)).block(Duration.ofSeconds(5)));
+        }
+        assertThat(results).containsOnly(1L);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void slowInteractiveCallLowersLimit() {
+        ReflectionTestUtils.setField(scheduler, "limit", 4.0);
+
+        scheduler.schedule(Lane.INTERACTIVE, deadline(), Mono.delay(Duration.ofMillis(700))).block();
+
+        assertThat(scheduler.getLimit()).isLessThan(4.0);
+    }
+
+    @Test
+    void streamIsJudgedByItsFirstEvent() {
+        ReflectionTestUtils.setField(scheduler, "limit", 4.0);
+
+        scheduler.schedule(Lane.INTERACTIVE, deadline(),
+            Flux.concat(Mono.just(0L), Mono.delay(Duration.ofMillis(700)))).blockLast();
+
+        assertThat(scheduler.getLimit()).isEqualTo(4.0);
+    }
+
+    @Test
+    void slowIngestCallKeepsLimit() {
+        ReflectionTestUtils.setField(scheduler, "limit", 4.0);
+
+        scheduler.schedule(Lane.INGEST, deadline(), Mono.delay(Duration.ofMillis(700))).block();
+
+        assertThat(scheduler.getLimit()).isEqualTo(4.0);
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("documind.ai.scheduler.inflight").tag("lane", "interactive").gauge().value();
+    }
+
+    private static long deadline() {
+        return System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.service.ChunkFile.Chunk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChunkFileTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        List<Chunk> chunks = List.of(
+            new Chunk(0, 1, 1, 3, "The first chunk"),
+            new Chunk(1, 1, 2, 0, ""),
+            new Chunk(2, 2, 3, 4, "Ünïcödé spans — pages ✓")
+        );
+        Path path = write(chunks);
+
+        ChunkFile.Reader reader = ChunkFile.Reader.open(path);
+
+        assertThat(reader.count()).isEqualTo(3);
+        for (Chunk chunk : chunks) {
+            assertThat(reader.get(chunk.index())).isEqualTo(chunk);
+        }
+        assertThat(ChunkFile.isComplete(path)).isTrue();
+    }
+
+    @Test
+    void emptyFileHasNoChunks() throws IOException {
+        ChunkFile.Reader reader = ChunkFile.Reader.open(write(List.of()));
+
+        assertThat(reader.count()).isZero();
+        assertThatThrownBy(() -> reader.get(0)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void rejectsOutOfRangeIndexes() throws IOException {
+        ChunkFile.Reader reader = ChunkFile.Reader.open(write(List.of(new Chunk(0, 1, 1, 1, "only"))));
+
+        assertThatThrownBy(() -> reader.get(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> reader.get(1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void truncatedFileIsIncomplete() throws IOException {
+        Path path = write(List.of(new Chunk(0, 1, 1, 2, "some text"), new Chunk(1, 1, 1, 2, "more text")));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        assertThat(ChunkFile.isComplete(path)).isFalse();
+        assertThatThrownBy(() -> ChunkFile.Reader.open(path)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void otherFilesAreNotChunkFiles() throws IOException {
+        Path garbage = dir.resolve("garbage.bin");
+        Files.write(garbage, new byte[64]);
+
+        assertThat(ChunkFile.isComplete(garbage)).isFalse();
+        assertThat(ChunkFile.isComplete(dir.resolve("missing.chunks"))).isFalse();
+    }
+
+    private Path write(List<Chunk> chunks) throws IOException {
+        Path path = dir.resolve("doc.chunks");
+        try (ChunkFile.Writer writer = new ChunkFile.Writer(path)) {
+            for (Chunk chunk : chunks) {
+                writer.append(chunk);
+            }
+            assertThat(writer.count()).isEqualTo(chunks.size());
+        }
+        return path;
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.dto.BatchUploadResult;
+import com.example.DocumindAI.model.DocumentContent;
+import com.example.DocumindAI.model.DocumentEntity;
+import com.example.DocumindAI.repository.DocumentContentRepository;
+import com.example.DocumindAI.repository.DocumentRepository;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentServiceTests {
+
+    @TempDir
+    Path dir;
+
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final IngestionService ingestionService = mock(IngestionService.class);
+    private final UploadPipeline uploadPipeline = mock(UploadPipeline.class);
+    private final DocumentContentService documentContentService = mock(DocumentContentService.class);
+    private final DocumentStorage documentStorage = mock(DocumentStorage.class);
+    private final StorageQuotaService storageQuotaService = mock(StorageQuotaService.class);
+    private final DocumentMetadataCache documentMetadataCache = mock(DocumentMetadataCache.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+    private DocumentService documentService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        documentService = documentService(documentContentService);
+
+        when(uploadPipeline.getMaxFileSize()).thenReturn(1000L);
+        when(uploadPipeline.store(any(), any(), anyString())).thenAnswer(invocation -> {
+            String name = invocation.getArgument(2);
+            Path temp = Files.write(dir.resolve(name + ".upload"), name.getBytes());
+            return new UploadPipeline.StoredUpload(temp, 100, "application/pdf", "hash-" + name);
+        });
+        when(documentContentService.acquire(anyString(), anyString(), anyString(), anyLong())).thenAnswer(invocation -> {
+            DocumentContent content = new DocumentContent();
+            content.setContentHash(invocation.getArgument(0));
+            content.setOwnerDocumentId(invocation.getArgument(1));
+            content.setFileName(invocation.getArgument(2));
+            return content;
+        });
+        when(documentContentService.release(anyString())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        documentService.shutdown();
+    }
+
+    @Test
+    void failedBulkSaveReleasesWhatTheUploadsTook() throws Exception {
+        when(documentRepository.saveAll(anyList())).thenThrow(new DataAccessResourceFailureException("MongoDB down"));
+        when(documentRepository.findAllById(anyList())).thenReturn(List.of());
+
+        assertThat(uploadDocuments(file("a.pdf"), file("b.pdf")))
+            .extracting(BatchUploadResult::getStatus)
+            .containsOnly("error");
+
+        verify(documentContentService).release("hash-a.pdf");
+        verify(documentContentService).release("hash-b.pdf");
+        verify(documentStorage, times(2)).delete(anyList());
+        verify(storageQuotaService, times(2)).release("alice", 100, 1);
+        verify(ingestionService, never()).enqueue(any());
+    }
+
+    @Test
+    void documentsSavedBeforeTheFailureKeepTheirCharges() throws Exception {
+        // The record of a.pdf made it before the failure
+        Set<String> saved = ConcurrentHashMap.newKeySet();
+        when(documentRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<DocumentEntity> documents = invocation.getArgument(0);
+            documents.stream().filter(document -> "a.pdf".equals(document.getOriginalFileName()))
+                .forEach(document -> saved.add(document.getId()));
+            throw new DataAccessResourceFailureException("MongoDB down");
+        });
+        when(documentRepository.findAllById(anyList())).thenAnswer(invocation -> {
+            List<String> ids = invocation.getArgument(0);
+            return ids.stream().filter(saved::contains).map(id -> {
+                DocumentEntity document = new DocumentEntity();
+                document.setId(id);
+                return document;
+            }).toList();
+        });
+
+        assertThat(uploadDocuments(file("a.pdf"), file("b.pdf")))
+            .extracting(BatchUploadResult::getStatus)
+            .containsOnly("error");
+
+        verify(documentContentService, never()).release("hash-a.pdf");
+        verify(documentContentService).release("hash-b.pdf");
+        verify(storageQuotaService).release("alice", 100, 1);
+    }
+
+    @Test
+    void failedStoreLeavesNoContentBehind() throws Exception {
+        MongoServer server = new MongoServer(new MemoryBackend());
+        server.bind();
+        try (MongoClient client = MongoClients.create(server.getConnectionString())) {
+            DocumentContentService contents = new DocumentContentService(mock(DocumentContentRepository.class),
+                new MongoTemplate(client, "documind"));
+            DocumentService service = documentService(contents);
+            doThrow(new IOException("Disk full")).doNothing().when(documentStorage).store(anyString(), any());
+
+            assertThatThrownBy(() -> service.uploadDocument(file("a.pdf"), "alice")).isInstanceOf(IOException.class);
+
+            assertThat(dir.resolve("a.pdf.upload")).doesNotExist();
+            verify(storageQuotaService).release("alice", 100, 1);
+
+            // Stored as new content, not linked to the file that was never written
+            DocumentEntity document = service.uploadDocument(file("a.pdf"), "alice");
+            assertThat(document.getStatus()).isEqualTo("uploaded");
+            verify(documentStorage).store(eq(document.getFileName()), any());
+            assertThat(document.getFileName()).startsWith(document.getId());
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    void reprocessDoesNotReviveADocumentDeletedMeanwhile() {
+        DocumentEntity processed = new DocumentEntity();
+        processed.setId("doc_1");
+        processed.setStatus("processed");
+        DocumentEntity deleted = new DocumentEntity();
+        deleted.setId("doc_1");
+        deleted.setStatus("deleted");
+        when(documentRepository.findById("doc_1")).thenReturn(Optional.of(processed), Optional.of(deleted));
+
+        assertThatThrownBy(() -> documentService.reprocessDocument("doc_1")).hasMessage("Document not found");
+
+        verify(documentRepository, never()).save(any());
+        verify(ingestionService, never()).enqueue(any());
+    }
+
+    @Test
+    void setTagsWritesOnlyTheTagsOfALiveDocument() {
+        DocumentEntity tagged = new DocumentEntity();
+        tagged.setId("doc_1");
+        tagged.setStatus("processed");
+        tagged.setTags(List.of("contracts", "2026"));
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.findAndModify(any(Query.class), update.capture(), any(FindAndModifyOptions.class),
+            eq(DocumentEntity.class))).thenReturn(tagged, (DocumentEntity) null);
+
+        assertThat(documentService.setTags("doc_1", List.of(" contracts", "2026", "", "contracts")))
+            .isSameAs(tagged);
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class))
+            .containsOnlyKeys("tags", "updatedAt")
+            .containsEntry("tags", List.of("contracts", "2026"));
+        verify(documentMetadataCache).update(tagged);
+
+        // Deleted
+        assertThatThrownBy(() -> documentService.setTags("doc_1", List.of("x"))).hasMessage("Document not found");
+        verify(documentRepository, never()).save(any());
+    }
+
+    @Test
+    void batchUploadReportsEachFile() throws Exception {
+        when(documentRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<BatchUploadResult> results = uploadDocuments(file("a.pdf"), file("empty.pdf", new byte[0]), file("b.pdf"));
+
+        assertThat(results).extracting(BatchUploadResult::getIndex).containsExactlyInAnyOrder(0, 1, 2);
+        assertThat(results).filteredOn(result -> result.getIndex() == 1).singleElement()
+            .satisfies(result -> {
+                assertThat(result.getStatus()).isEqualTo("error");
+                assertThat(result.getMessage()).isEqualTo("File is empty");
+            });
+        assertThat(results).filteredOn(result -> result.getIndex() != 1)
+            .allSatisfy(result -> {
+                assertThat(result.getStatus()).isEqualTo("uploaded");
+                assertThat(result.getDocumentId()).startsWith("doc_");
+            });
+        verify(ingestionService, times(2)).enqueue(any());
+    }
+
+    private List<BatchUploadResult> uploadDocuments(MockMultipartFile... files) {
+        List<BatchUploadResult> results = new CopyOnWriteArrayList<>();
+        documentService.uploadDocuments(List.of(files), "alice", results::add).join();
+        return results;
+    }
+
+    private DocumentService documentService(DocumentContentService contents) {
+        DocumentService service = new DocumentService(documentRepository, ingestionService, mock(QueryCache.class),
+            mock(HistoryAnswerIndex.class), uploadPipeline, contents, documentMetadataCache,
+            mock(DocumentEventBus.class), documentStorage, storageQuotaService, mongoTemplate,
+            new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "uploadDir", dir.toString());
+        ReflectionTestUtils.setField(service, "uploadConcurrency", 2);
+        service.init();
+        return service;
+    }
+
+    private static MockMultipartFile file(String name) {
+        return file(name, name.getBytes());
+    }
+
+    private static MockMultipartFile file(String name, byte[] content) {
+        return new MockMultipartFile("files", name, "application/pdf", content);
+    }
+}
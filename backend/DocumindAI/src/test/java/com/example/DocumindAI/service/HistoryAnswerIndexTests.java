@@ -0,0 +1,149 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.model.QueryHistory;
+import com.example.DocumindAI.repository.QueryHistoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HistoryAnswerIndexTests {
+
+    private static final LocalDateTime CHANGED_AT = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    private QueryHistoryRepository repository;
+    private HistoryAnswerIndex index;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(QueryHistoryRepository.class);
+        index = new HistoryAnswerIndex(repository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(index, "entriesPerDocument", 3);
+        ReflectionTestUtils.setField(index, "maxDocuments", 100L);
+        ReflectionTestUtils.setField(index, "idleTtl", Duration.ofHours(1));
+        index.init();
+    }
+
+    @Test
+    void findsRephrasedQuery() {
+        seed(history("What is the termination notice period?", "Thirty days.", 1),
+            history("Who signed the contract?", "Both parties.", 2));
+
+        HistoryAnswerIndex.Match match = index.findSimilar("doc_1", CHANGED_AT, "termination notice period length", 0.5)
+            .orElseThrow();
+
+        assertThat(match.response().getAnswer()).isEqualTo("Thirty days.");
+        assertThat(match.query()).isEqualTo("What is the termination notice period?");
+        assertThat(match.similarity()).isBetween(0.5, 1.0);
+    }
+
+    @Test
+    void identicalQueryIsFullySimilar() {
+        seed(history("Who signed the contract?", "Both parties.", 1));
+
+        assertThat(index.findSimilar("doc_1", CHANGED_AT, "who signed the contract", 0.5).orElseThrow().similarity())
+            .isCloseTo(1.0, offset(1e-9));
+    }
+
+    @Test
+    void ignoresDissimilarQueries() {
+        seed(history("What is the termination notice period?", "Thirty days.", 1));
+
+        assertThat(index.findSimilar("doc_1", CHANGED_AT, "Who signed the contract?", 0.5)).isEmpty();
+        assertThat(index.findSimilar("doc_1", CHANGED_AT, "What is it?", 0.5)).isEmpty();
+    }
+
+    @Test
+    void newerAnswerToSameQueryWins() {
+        seed(history("Who signed the contract?", "Nobody yet.", 1));
+        index.findSimilar("doc_1", CHANGED_AT, "signed", 0.0);
+
+        index.add(history("who signed the contract", "Both parties.", 2));
+
+        assertThat(index.findSimilar("doc_1", CHANGED_AT, "Who signed the contract?", 0.5).orElseThrow()
+            .response().getAnswer()).isEqualTo("Both parties.");
+    }
+
+    @Test
+    void evictsLeastRecentlyAnsweredQueries() {
+        seed();
+        index.findSimilar("doc_1", CHANGED_AT, "anything", 0.0);
+
+        index.add(history("alpha question", "A", 1));
+        index.add(history("beta question", "B", 2));
+        index.add(history("gamma question", "C", 3));
+        // Answering alpha again makes beta the oldest
+        index.add(history("alpha question", "A2", 4));
+        index.add(history("delta question", "D", 5));
+
+        assertThat(index.findSimilar("doc_1", CHANGED_AT, "beta", 0.1)).isEmpty();
+        assertThat(index.findSimilar("doc_1", CHANGED_AT, "alpha", 0.1).orElseThrow().response().getAnswer())
+            .isEqualTo("A2");
+        assertThat(index.findSimilar("doc_1", CHANGED_AT, "gamma", 0.1)).isPresent();
+        assertThat(index.findSimilar("doc_1", CHANGED_AT, "delta", 0.1)).isPresent();
+    }
+
+    @Test
+    void loadsOnlyAnswersSinceDocumentChanged() {
+        seed(history("Who signed the contract?", "Both parties.", 1));
+
+        index.findSimilar("doc_1", CHANGED_AT, "signed", 0.5);
+        index.findSimilar("doc_1", CHANGED_AT, "contract", 0.5);
+
+        verify(repository, times(1))
+            .findByDocumentIdAndTimestampAfterOrderByTimestampDesc(eq("doc_1"), eq(CHANGED_AT), any(Pageable.class));
+    }
+
+    @Test
+    void invalidateReloadsHistory() {
+        seed(history("Who signed the contract?", "Both parties.", 1));
+        assertThat(index.findSimilar("doc_1", CHANGED_AT, "Who signed the contract?", 0.5)).isPresent();
+
+        seed();
+        index.invalidate("doc_1");
+
+        assertThat(index.findSimilar("doc_1", CHANGED_AT, "Who signed the contract?", 0.5)).isEmpty();
+    }
+
+    @Test
+    void answersAreNotAddedToUnloadedIndexes() {
+        seed();
+        index.add(history("Who signed the contract?", "Both parties.", 1));
+
+        assertThat(index.findSimilar("doc_1", CHANGED_AT, "Who signed the contract?", 0.5)).isEmpty();
+    }
+
+    // Oldest first; the repository returns them newest first
+    private void seed(QueryHistory... histories) {
+        List<QueryHistory> newestFirst = new ArrayList<>(List.of(histories));
+        Collections.reverse(newestFirst);
+        when(repository.findByDocumentIdAndTimestampAfterOrderByTimestampDesc(eq("doc_1"), any(), any()))
+            .thenReturn(newestFirst);
+    }
+
+    private static QueryHistory history(String query, String answer, int minutes) {
+        QueryHistory history = new QueryHistory();
+        history.setDocumentId("doc_1");
+        history.setQuery(query);
+        history.setNormalizedQuery(QueryCache.normalize(query));
+        history.setResponse(answer);
+        history.setTimestamp(CHANGED_AT.plusMinutes(minutes));
+        return history;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.DocumindAI.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HnswGraphTests {
+
+    private static final int ROWS = 2000;
+    private static final int DIMENSIONS = 16;
+    private static final int K = 10;
+
+    @TempDir
+    Path dir;
+
+    private VectorFile.Reader vectors;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Random random = new Random(7);
+        Path path = dir.resolve("collection.vectors");
+        try (VectorFile.Writer writer = new VectorFile.Writer(path)) {
+            for (int i = 0; i < ROWS; i++) {
+                writer.append(randomVector(random));
+            }
+        }
+        vectors = VectorFile.Reader.open(path);
+    }
+
+    @Test
+    void recallMatchesBruteForce() {
+        HnswGraph graph = HnswGraph.build(vectors, 8, 100, 42);
+        Random random = new Random(11);
+
+        int found = 0;
+        int queries = 100;
+        for (int q = 0; q < queries; q++) {
+            float[] query = normalize(randomVector(random));
+            Set<Integer> exact = bruteForce(query);
+            found += (int) graph.search(vectors, query, K, 64).stream()
+                .filter(scored -> exact.contains(scored.node()))
+                .count();
+        }
+
+        assertThat(found / (double) (queries * K)).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void resultsAreBestFirst() {
+        HnswGraph graph = HnswGraph.build(vectors, 8, 100, 42);
+        float[] query = normalize(randomVector(new Random(3)));
+
+        List<HnswGraph.Scored> results = graph.search(vectors, query, K, 64);
+
+        assertThat(results).hasSize(K);
+        assertThat(results).isSortedAccordingTo(Comparator.comparingDouble(HnswGraph.Scored::score).reversed());
+    }
+
+    @Test
+    void readsBackTheGraphItWrote() throws IOException {
+        HnswGraph graph = HnswGraph.build(vectors, 8, 100, 42);
+        Path path = dir.resolve("collection.hnsw");
+        graph.write(path);
+
+        HnswGraph read = HnswGraph.read(path, ROWS);
+
+        float[] query = normalize(randomVector(new Random(5)));
+        assertThat(read.count()).isEqualTo(ROWS);
+        assertThat(read.search(vectors, query, K, 64)).isEqualTo(graph.search(vectors, query, K, 64));
+    }
+
+    @Test
+    void rejectsGraphsOfOtherVectorsOrCorruptFiles() throws IOException {
+        Path path = dir.resolve("collection.hnsw");
+        HnswGraph.build(vectors, 8, 100, 42).write(path);
+
+        assertThatThrownBy(() -> HnswGraph.read(path, ROWS + 1)).isInstanceOf(IOException.class);
+
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+        assertThatThrownBy(() -> HnswGraph.read(path, ROWS)).isInstanceOf(IOException.class);
+    }
+
+    private Set<Integer> bruteForce(float[] query) {
+        float[] scores = new float[ROWS];
+        vectors.scores(query, 0, ROWS, new float[ROWS * DIMENSIONS], scores);
+        return IntStream.range(0, ROWS).boxed()
+            .sorted(Comparator.comparingDouble(row -> -scores[row]))
+            .limit(K)
+            .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.model.DocumentEntity;
+import com.example.DocumindAI.repository.DocumentRepository;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IngestionServiceTests {
+
+    @TempDir
+    Path dir;
+
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final AIServiceClient aiServiceClient = mock(AIServiceClient.class);
+    private final TextExtractionService textExtractionService = mock(TextExtractionService.class);
+    private final DocumentContentService documentContentService = mock(DocumentContentService.class);
+    private final DocumentMetadataCache documentMetadataCache = mock(DocumentMetadataCache.class);
+
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private IngestionService ingestionService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new MongoServer(new MemoryBackend());
+        server.bind();
+        client = MongoClients.create(server.getConnectionString());
+        mongoTemplate = new MongoTemplate(client, "documind");
+
+        ingestionService = new IngestionService(documentRepository, aiServiceClient, mock(QueryCache.class),
+            mock(HistoryAnswerIndex.class), documentContentService, documentMetadataCache, textExtractionService,
+            mock(DocumentEventBus.class), mock(VectorIndexService.class), mongoTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(ingestionService, "workerCount", 1);
+        ReflectionTestUtils.setField(ingestionService, "queueCapacity", 10);
+        ReflectionTestUtils.setField(ingestionService, "smallDocumentSize", DataSize.ofMegabytes(5));
+        ingestionService.start();
+
+        when(textExtractionService.extract(any(), anyString())).thenReturn(dir.resolve("doc_1.chunks"));
+        when(documentRepository.existsByIdAndStatusNot("doc_1", "deleted")).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        ingestionService.stop();
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void documentDeletedBeforeIngestionStaysDeleted() throws Exception {
+        mongoTemplate.insert(document("deleted"));
+        // Read just before the delete landed
+        when(documentRepository.findById("doc_1")).thenReturn(Optional.of(document("uploaded")));
+
+        process();
+
+        assertThat(status()).isEqualTo("deleted");
+        verify(textExtractionService, never()).extract(any(), anyString());
+        verify(documentMetadataCache, never()).update(any());
+    }
+
+    @Test
+    void documentDeletedDuringIngestionStaysDeleted() throws Exception {
+        mongoTemplate.insert(document("uploaded"));
+        when(documentRepository.findById("doc_1")).thenReturn(Optional.of(document("uploaded")));
+        // Lands after the deletion check that follows the AI service call
+        doAnswer(invocation -> {
+            mongoTemplate.save(document("deleted"));
+            return null;
+        }).when(documentMetadataCache).update(any());
+
+        process();
+
+        assertThat(status()).isEqualTo("deleted");
+        // Only the "processing" transition was published
+        verify(documentMetadataCache, times(1)).update(any());
+        verify(documentContentService, never()).markProcessed(anyString(), anyString(), anyString());
+        verify(aiServiceClient).processChunks(eq("doc_1"), anyString(), any(), any(), any());
+    }
+
+    private void process() throws InterruptedException {
+        ingestionService.enqueue(document("uploaded"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (ingestionService.isInFlight("doc_1")) {
+            assertThat(System.nanoTime()).as("processed within 10s").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private String status() {
+        return mongoTemplate.findById("doc_1", DocumentEntity.class).getStatus();
+    }
+
+    private static DocumentEntity document(String status) {
+        DocumentEntity document = new DocumentEntity();
+        document.setId("doc_1");
+        document.setFileName("doc_1.pdf");
+        document.setUserId("alice");
+        document.setStatus(status);
+        return document;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.DocumindAI.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTests {
+
+    @Test
+    void bucketCoversItsLatency() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            double millis = Math.exp(random.nextDouble() * Math.log(100_000));
+            int bucket = LatencyHistogram.bucketOf(millis / 1000);
+
+            if (millis <= 1) {
+                assertThat(bucket).isZero();
+            } else {
+                // (G^(i-1), G^i], with a little slack for rounding at the edges
+                assertThat(millis).isGreaterThan(Math.pow(1.05, bucket - 1) * (1 - 1e-9));
+                assertThat(millis).isLessThanOrEqualTo(Math.pow(1.05, bucket) * (1 + 1e-9));
+            }
+        }
+    }
+
+    @Test
+    void subMillisecondLatenciesShareTheFirstBucket() {
+        assertThat(LatencyHistogram.bucketOf(0)).isZero();
+        assertThat(LatencyHistogram.bucketOf(0.0004)).isZero();
+        assertThat(LatencyHistogram.bucketOf(0.001)).isZero();
+        assertThat(LatencyHistogram.bucketOf(0.0011)).isPositive();
+
+        LatencyHistogram histogram = histogram(0.0002, 0.0007);
+        assertThat(histogram.percentile(0.5)).isEqualTo(0.001);
+    }
+
+    @Test
+    void percentilesAreWithinTheBucketError() {
+        Random random = new Random(2);
+        double[] latencies = new double[10_000];
+        for (int i = 0; i < latencies.length; i++) {
+            // 5 ms to 5 s, log-uniform
+            latencies[i] = 0.005 * Math.exp(random.nextDouble() * Math.log(1000));
+        }
+        LatencyHistogram histogram = histogram(latencies);
+        Arrays.sort(latencies);
+
+        assertThat(histogram.count()).isEqualTo(latencies.length);
+        for (double q : new double[] {0.01, 0.5, 0.9, 0.95, 0.99, 1.0}) {
+            double exact = latencies[(int) Math.ceil(q * latencies.length) - 1];
+            assertThat(histogram.percentile(q)).as("p%s", q * 100).isCloseTo(exact, within(exact * 0.025));
+        }
+    }
+
+    @Test
+    void mergingAddsCounts() {
+        LatencyHistogram merged = new LatencyHistogram();
+        merged.add(buckets(0.010, 0.010, 0.200));
+        merged.add(buckets(0.010, 0.900));
+        merged.add(null);
+
+        LatencyHistogram whole = histogram(0.010, 0.010, 0.200, 0.010, 0.900);
+        assertThat(merged.count()).isEqualTo(5);
+        for (double q : new double[] {0.2, 0.6, 0.8, 1.0}) {
+            assertThat(merged.percentile(q)).isEqualTo(whole.percentile(q));
+        }
+        // Three of the five are 10 ms
+        assertThat(merged.percentile(0.6)).isCloseTo(0.010, within(0.010 * 0.025));
+        assertThat(merged.percentile(0.8)).isCloseTo(0.200, within(0.200 * 0.025));
+    }
+
+    @Test
+    void emptyHistogramHasNoPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.count()).isZero();
+        assertThat(histogram.percentile(0.5)).isNull();
+    }
+
+    private static LatencyHistogram histogram(double... seconds) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.add(buckets(seconds));
+        return histogram;
+    }
+
+    // As stored in QueryRollup.latency: bucket number to count
+    private static Map<String, Long> buckets(double... seconds) {
+        Map<String, Long> buckets = new HashMap<>();
+        for (double latency : seconds) {
+            buckets.merge(String.valueOf(LatencyHistogram.bucketOf(latency)), 1L, Long::sum);
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.service.ChunkFile.Chunk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PageAwareChunkerTests {
+
+    private static final String XHTML = "http://www.w3.org/1999/xhtml";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void windowsOverlapByTheConfiguredWords() throws Exception {
+        List<Chunk> chunks = chunk(5, 2, "w1 w2 w3 w4 w5 w6 w7 w8");
+
+        assertThat(chunks).extracting(Chunk::text).containsExactly("w1 w2 w3 w4 w5", "w4 w5 w6 w7 w8");
+        assertThat(chunks).extracting(Chunk::wordCount).containsExactly(5, 5);
+        assertThat(chunks).extracting(Chunk::index).containsExactly(0, 1);
+    }
+
+    @Test
+    void wordsAfterTheLastFullWindowGetAChunk() throws Exception {
+        List<Chunk> chunks = chunk(5, 2, "w1 w2 w3 w4 w5 w6 w7 w8 w9");
+
+        assertThat(chunks).extracting(Chunk::text).containsExactly("w1 w2 w3 w4 w5", "w4 w5 w6 w7 w8", "w7 w8 w9");
+    }
+
+    @Test
+    void documentShorterThanAChunkIsOneChunk() throws Exception {
+        assertThat(chunk(5, 2, "just three words")).extracting(Chunk::text).containsExactly("just three words");
+        assertThat(chunk(5, 2, "   ")).isEmpty();
+    }
+
+    @Test
+    void chunksEndAtASentenceBoundaryWithinTheOverlap() throws Exception {
+        List<Chunk> chunks = chunk(5, 2, "a b c d. e f g");
+
+        assertThat(chunks).extracting(Chunk::text).containsExactly("a b c d.", "d. e f g");
+        assertThat(chunks.get(0).wordCount()).isEqualTo(4);
+    }
+
+    @Test
+    void sentenceBoundaryBeforeTheOverlapIsIgnored() throws Exception {
+        List<Chunk> chunks = chunk(5, 2, "a b. c d e f");
+
+        assertThat(chunks).extracting(Chunk::text).containsExactly("a b. c d e", "d e f");
+    }
+
+    @Test
+    void zeroOverlapCutsAtWindowEdges() throws Exception {
+        List<Chunk> chunks = chunk(3, 0, "a b. c d e f g");
+
+        assertThat(chunks).extracting(Chunk::text).containsExactly("a b. c", "d e f", "g");
+    }
+
+    @Test
+    void chunksRecordTheirFirstAndLastPage() throws Exception {
+        List<Chunk> chunks = chunkPages(5, 1, "a b c", "d e f g", "h");
+
+        assertThat(chunks).extracting(Chunk::text).containsExactly("a b c d e", "e f g h");
+        assertThat(chunks).extracting(Chunk::startPage).containsExactly(1, 2);
+        assertThat(chunks).extracting(Chunk::endPage).containsExactly(2, 3);
+    }
+
+    @Test
+    void textWithoutPagesIsOnPageOne() throws Exception {
+        List<Chunk> chunks = chunk(5, 2, "no pages here");
+
+        assertThat(chunks.get(0).startPage()).isEqualTo(1);
+        assertThat(chunks.get(0).endPage()).isEqualTo(1);
+    }
+
+    @Test
+    void inlineElementsDoNotSplitWordsAndHeadIsSkipped() throws Exception {
+        Path path = dir.resolve("inline.chunks");
+        try (ChunkFile.Writer writer = new ChunkFile.Writer(path)) {
+            PageAwareChunker chunker = new PageAwareChunker(5, 1, writer);
+            chunker.startDocument();
+            start(chunker, "head");
+            text(chunker, "Title metadata");
+            end(chunker, "head");
+            start(chunker, "p");
+            text(chunker, "un");
+            start(chunker, "b");
+            text(chunker, "broken");
+            end(chunker, "b");
+            end(chunker, "p");
+            start(chunker, "p");
+            text(chunker, "next");
+            end(chunker, "p");
+            chunker.endDocument();
+        }
+
+        assertThat(read(path)).extracting(Chunk::text).containsExactly("unbroken next");
+    }
+
+    @Test
+    void rejectsOverlapNotSmallerThanChunkSize() {
+        assertThatThrownBy(() -> new PageAwareChunker(5, 5, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new PageAwareChunker(5, -1, null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<Chunk> chunk(int chunkSize, int overlap, String text) throws Exception {
+        Path path = dir.resolve("doc.chunks");
+        try (ChunkFile.Writer writer = new ChunkFile.Writer(path)) {
+            PageAwareChunker chunker = new PageAwareChunker(chunkSize, overlap, writer);
+            chunker.startDocument();
+            start(chunker, "p");
+            text(chunker, text);
+            end(chunker, "p");
+            chunker.endDocument();
+        }
+        return read(path);
+    }
+
+    private List<Chunk> chunkPages(int chunkSize, int overlap, String... pages) throws Exception {
+        Path path = dir.resolve("pages.chunks");
+        try (ChunkFile.Writer writer = new ChunkFile.Writer(path)) {
+            PageAwareChunker chunker = new PageAwareChunker(chunkSize, overlap, writer);
+            chunker.startDocument();
+            for (String page : pages) {
+                AttributesImpl attributes = new AttributesImpl();
+                attributes.addAttribute("", "class", "class", "CDATA", "page");
+                chunker.startElement(XHTML, "div", "div", attributes);
+                text(chunker, page);
+                end(chunker, "div");
+            }
+            chunker.endDocument();
+        }
+        return read(path);
+    }
+
+    private static void start(PageAwareChunker chunker, String element) throws SAXException {
+        chunker.startElement(XHTML, element, element, new AttributesImpl());
+    }
+
+    private static void end(PageAwareChunker chunker, String element) throws SAXException {
+        chunker.endElement(XHTML, element, element);
+    }
+
+    private static void text(PageAwareChunker chunker, String text) throws SAXException {
+        chunker.characters(text.toCharArray(), 0, text.length());
+    }
+
+    private static List<Chunk> read(Path path) throws IOException {
+        ChunkFile.Reader reader = ChunkFile.Reader.open(path);
+        List<Chunk> chunks = new ArrayList<>();
+        for (int i = 0; i < reader.count(); i++) {
+            chunks.add(reader.get(i));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.model.QueryHistory;
+import com.example.DocumindAI.repository.QueryHistoryRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class QueryHistoryWriterTests {
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<String> inserted = new CopyOnWriteArrayList<>();
+    private volatile boolean mongoDown;
+
+    private SimpleMeterRegistry meterRegistry;
+    private QueryHistoryWriter writer;
+    private Path spillPath;
+
+    @BeforeEach
+    void setUp() {
+        QueryHistoryRepository repository = mock(QueryHistoryRepository.class);
+        doAnswer(invocation -> {
+            if (mongoDown) {
+                throw new DataAccessResourceFailureException("MongoDB down");
+            }
+            Iterable<QueryHistory> batch = invocation.getArgument(0);
+            batch.forEach(history -> inserted.add(history.getQuery()));
+            return null;
+        }).when(repository).insert(anyIterable());
+
+        meterRegistry = new SimpleMeterRegistry();
+        writer = new QueryHistoryWriter(repository, mock(QueryAnalyticsService.class), objectMapper, meterRegistry);
+        spillPath = dir.resolve("query-history.spill.ndjson");
+        ReflectionTestUtils.setField(writer, "bufferCapacity", 100);
+        ReflectionTestUtils.setField(writer, "batchSize", 2);
+        ReflectionTestUtils.setField(writer, "flushInterval", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(writer, "overflow", "spill");
+        ReflectionTestUtils.setField(writer, "blockTimeout", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(writer, "spillFile", spillPath.toString());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.stop();
+    }
+
+    @Test
+    void entriesSpilledWhileMongoIsDownAreReplayedOnceItIsBack() throws Exception {
+        mongoDown = true;
+        writer.start();
+        for (int i = 0; i < 5; i++) {
+            writer.enqueue(history("q" + i));
+        }
+        await(() -> counter("spilled") >= 5);
+
+        mongoDown = false;
+        await(() -> inserted.size() >= 5 && !Files.exists(spillPath.resolveSibling(spillPath.getFileName() + ".replay")));
+
+        assertThat(inserted).containsExactlyInAnyOrder("q0", "q1", "q2", "q3", "q4");
+        assertThat(spillPath).doesNotExist();
+    }
+
+    @Test
+    void replaySkipsCorruptLinesAndKeepsUnfinishedReplay() throws Exception {
+        Path replayPath = dir.resolve("query-history.spill.ndjson.replay");
+        Files.write(replayPath, lines(history("left-1"), history("left-2")), StandardCharsets.UTF_8);
+        List<String> spilled = lines(history("spilled-1"), history("spilled-2"));
+        spilled.add(1, "{\"query\": \"cut sho");
+        Files.write(spillPath, spilled, StandardCharsets.UTF_8);
+
+        writer.start();
+        // Counted once the file is done with, after its entries are written
+        await(() -> counter("corrupt") > 0);
+
+        assertThat(inserted).containsExactlyInAnyOrder("left-1", "left-2", "spilled-1", "spilled-2");
+        assertThat(counter("corrupt")).isEqualTo(1);
+        assertThat(spillPath).doesNotExist();
+        assertThat(replayPath).doesNotExist();
+    }
+
+    private List<String> lines(QueryHistory... histories) throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (QueryHistory history : histories) {
+            lines.add(objectMapper.writeValueAsString(history));
+        }
+        return lines;
+    }
+
+    private double counter(String outcome) {
+        return meterRegistry.get("documind.history.entries").tag("outcome", outcome).counter().count();
+    }
+
+    private static QueryHistory history(String query) {
+        QueryHistory history = new QueryHistory();
+        history.setDocumentId("doc_1");
+        history.setQuery(query);
+        history.setResponse("answer to " + query);
+        history.setTimestamp(LocalDateTime.now());
+        return history;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition within 10s").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
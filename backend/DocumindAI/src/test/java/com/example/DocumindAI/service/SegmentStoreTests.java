@@ -0,0 +1,172 @@
+package com.example.DocumindAI.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SegmentStoreTests {
+
+    private static final long SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path hot;
+
+    @TempDir
+    Path cold;
+
+    @Test
+    void storesCompressibleObjectsGzippedAndOthersAsTheyAre() throws IOException {
+        byte[] text = "the quick brown fox jumps over the lazy dog\n".repeat(200).getBytes(StandardCharsets.UTF_8);
+        byte[] random = randomBytes(8 * 1024, 1);
+        SegmentStore store = SegmentStore.open(cold, SEGMENT_SIZE);
+
+        List<String> stored = store.append(List.of(source("text", text), source("random", random)));
+
+        assertThat(stored).containsExactly("text", "random");
+        assertThat(store.entry("text").orElseThrow().gzipped()).isTrue();
+        assertThat(store.entry("text").orElseThrow().storedLength()).isLessThan(text.length);
+        assertThat(store.entry("random").orElseThrow().gzipped()).isFalse();
+        assertThat(read(store, "text")).isEqualTo(text);
+        assertThat(read(store, "random")).isEqualTo(random);
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        assertThat(store.transferStored("random", Channels.newChannel(raw))).isEqualTo(random.length);
+        assertThat(raw.toByteArray()).isEqualTo(random);
+    }
+
+    @Test
+    void skipsObjectsAlreadyStoredOrDeletedSinceListed() throws IOException {
+        SegmentStore store = SegmentStore.open(cold, SEGMENT_SIZE);
+        store.append(List.of(source("a", randomBytes(100, 1))));
+
+        List<String> stored = store.append(List.of(
+            source("a", randomBytes(100, 2)),
+            new SegmentStore.Source("gone", hot.resolve("gone"), Instant.now()),
+            source("b", randomBytes(100, 3))));
+
+        assertThat(stored).containsExactly("a", "b");
+        assertThat(store.count()).isEqualTo(2);
+        assertThat(read(store, "a")).isEqualTo(randomBytes(100, 1));
+        assertThat(store.contains("gone")).isFalse();
+    }
+
+    @Test
+    void deleteDropsObjectsAndEmptySegments() throws IOException {
+        SegmentStore store = SegmentStore.open(cold, SEGMENT_SIZE);
+        store.append(List.of(source("a", randomBytes(1000, 1)), source("b", randomBytes(1000, 2))));
+
+        assertThat(store.delete(List.of("a"))).isZero();
+        assertThatThrownBy(() -> store.get("a")).isInstanceOf(NoSuchFileException.class);
+        assertThat(read(store, "b")).isEqualTo(randomBytes(1000, 2));
+
+        assertThat(store.delete(List.of("b", "unknown"))).isEqualTo(2000);
+        assertThat(store.count()).isZero();
+        assertThat(files()).isEmpty();
+    }
+
+    @Test
+    void compactRewritesMostlyDeadSegments() throws IOException {
+        SegmentStore store = SegmentStore.open(cold, 4 * 1024);
+        List<SegmentStore.Source> sources = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            sources.add(source("object-" + i, randomBytes(2 * 1024, i)));
+        }
+        store.append(sources);
+        assertThat(files()).hasSize(8);
+        // Leaves every segment half full
+        store.delete(List.of("object-0", "object-2", "object-4", "object-6"));
+
+        long freed = store.compact(0.75);
+
+        assertThat(freed).isEqualTo(4 * 2 * 1024);
+        assertThat(store.diskSize()).isEqualTo(4 * 2 * 1024);
+        assertThat(files()).hasSize(4);
+        for (int i = 1; i < 8; i += 2) {
+            assertThat(read(store, "object-" + i)).isEqualTo(randomBytes(2 * 1024, i));
+        }
+        assertThat(store.compact(0.75)).isZero();
+    }
+
+    @Test
+    void reopenedStoreHasTheSameObjects() throws IOException {
+        SegmentStore store = SegmentStore.open(cold, SEGMENT_SIZE);
+        store.append(List.of(source("a", randomBytes(500, 1)), source("b", randomBytes(500, 2))));
+        store.delete(List.of("a"));
+
+        SegmentStore reopened = SegmentStore.open(cold, SEGMENT_SIZE);
+
+        assertThat(reopened.count()).isEqualTo(1);
+        assertThat(reopened.contains("a")).isFalse();
+        assertThat(read(reopened, "b")).isEqualTo(randomBytes(500, 2));
+        // New segments do not reuse the ids of existing ones
+        reopened.append(List.of(source("c", randomBytes(500, 3))));
+        assertThat(read(SegmentStore.open(cold, SEGMENT_SIZE), "b")).isEqualTo(randomBytes(500, 2));
+    }
+
+    @Test
+    void openRemovesLeftoversOfInterruptedWrites() throws IOException {
+        SegmentStore.open(cold, SEGMENT_SIZE).append(List.of(source("a", randomBytes(500, 1))));
+        Files.write(cold.resolve("segment-00000007.seg.tmp"), randomBytes(100, 2));
+        Files.write(cold.resolve("segment-00000001.idx.tmp"), randomBytes(100, 3));
+        // Data moved into place, but the index never written
+        Files.write(cold.resolve("segment-00000005.seg"), randomBytes(100, 4));
+
+        SegmentStore store = SegmentStore.open(cold, SEGMENT_SIZE);
+
+        assertThat(files()).containsExactlyInAnyOrder("segment-00000001.idx", "segment-00000001.seg");
+        assertThat(read(store, "a")).isEqualTo(randomBytes(500, 1));
+        store.append(List.of(source("b", randomBytes(500, 5))));
+        assertThat(files()).contains("segment-00000006.seg", "segment-00000006.idx");
+    }
+
+    @Test
+    void segmentWithUnreadableIndexIsKeptButUnavailable() throws IOException {
+        SegmentStore.open(cold, SEGMENT_SIZE).append(List.of(source("a", randomBytes(500, 1))));
+        Files.write(cold.resolve("segment-00000001.idx"), new byte[] {1, 2, 3});
+
+        SegmentStore store = SegmentStore.open(cold, SEGMENT_SIZE);
+
+        assertThat(store.contains("a")).isFalse();
+        assertThat(files()).contains("segment-00000001.seg");
+    }
+
+    private SegmentStore.Source source(String key, byte[] content) throws IOException {
+        Path file = hot.resolve(key);
+        Files.write(file, content);
+        return new SegmentStore.Source(key, file, Instant.now());
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> listing = Files.list(cold)) {
+            return listing.map(path -> path.getFileName().toString()).toList();
+        }
+    }
+
+    private static byte[] read(SegmentStore store, String key) throws IOException {
+        try (InputStream input = store.get(key)) {
+            return input.readAllBytes();
+        }
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
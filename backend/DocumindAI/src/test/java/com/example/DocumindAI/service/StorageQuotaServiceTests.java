@@ -0,0 +1,104 @@
+package com.example.DocumindAI.service;
+
+import com.example.DocumindAI.exception.QuotaExceededException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StorageQuotaServiceTests {
+
+    private MongoServer server;
+    private MongoClient client;
+    private StorageQuotaService quotas;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        server.bind();
+        client = MongoClients.create(server.getConnectionString());
+        quotas = new StorageQuotaService(new MongoTemplate(client, "documind"));
+        ReflectionTestUtils.setField(quotas, "quota", DataSize.ofBytes(1000));
+        quotas.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdown();
+    }
+
+    @Test
+    void reserveChargesUntilTheQuotaIsFull() {
+        quotas.reserve("alice", 600);
+        quotas.reserve("alice", 400);
+
+        assertThatThrownBy(() -> quotas.reserve("alice", 1)).isInstanceOf(QuotaExceededException.class);
+        assertThat(quotas.usage("alice").getStoredBytes()).isEqualTo(1000);
+        assertThat(quotas.usage("alice").getDocuments()).isEqualTo(2);
+
+        quotas.release("alice", 400, 1);
+        quotas.reserve("alice", 300);
+        assertThat(quotas.usage("alice").getStoredBytes()).isEqualTo(900);
+    }
+
+    @Test
+    void concurrentReservationsNeverExceedTheQuota() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 10; round++) {
+                // A new user each round, so the first reservations also race to create the usage
+                String userId = "user-" + round;
+                List<Callable<Boolean>> uploads = new ArrayList<>();
+                for (int i = 0; i < 25; i++) {
+                    uploads.add(() -> {
+                        try {
+                            quotas.reserve(userId, 100);
+                            return true;
+                        } catch (QuotaExceededException e) {
+                            return false;
+                        }
+                    });
+                }
+
+                int reserved = 0;
+                for (Future<Boolean> upload : executor.invokeAll(uploads)) {
+                    if (get(upload)) {
+                        reserved++;
+                    }
+                }
+
+                assertThat(reserved).isEqualTo(10);
+                assertThat(quotas.usage(userId).getStoredBytes()).isEqualTo(1000);
+                assertThat(quotas.usage(userId).getDocuments()).isEqualTo(10);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static boolean get(Future<Boolean> upload) throws InterruptedException {
+        try {
+            return upload.get();
+        } catch (ExecutionException e) {
+            throw new AssertionError("Reservation failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.DocumindAI.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenBucketRateLimiterTests {
+
+    @Test
+    void allowsABurstThenRejects() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("test", 1, 5, 100);
+
+        for (int remaining = 4; remaining >= 0; remaining--) {
+            TokenBucketRateLimiter.Decision decision = limiter.tryAcquire("user");
+            assertThat(decision.allowed()).isTrue();
+            assertThat(decision.limit()).isEqualTo(5);
+            assertThat(decision.remaining()).isEqualTo(remaining);
+            assertThat(decision.retryAfterNanos()).isZero();
+        }
+
+        TokenBucketRateLimiter.Decision rejected = limiter.tryAcquire("user");
+        assertThat(rejected.allowed()).isFalse();
+        assertThat(rejected.remaining()).isZero();
+    }
+
+    @Test
+    void retryAfterIsTheTimeUntilTheNextToken() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("test", 1, 2, 100);
+        limiter.tryAcquire("user");
+        limiter.tryAcquire("user");
+
+        TokenBucketRateLimiter.Decision rejected = limiter.tryAcquire("user");
+
+        // One token a second: the next one is due a second after the first was taken
+        assertThat(rejected.retryAfterNanos())
+            .isPositive()
+            .isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(1))
+            .isGreaterThan(TimeUnit.MILLISECONDS.toNanos(500));
+        // And the bucket is full again a second after that
+        assertThat(rejected.resetNanos())
+            .isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(2))
+            .isGreaterThan(TimeUnit.MILLISECONDS.toNanos(1500));
+    }
+
+    @Test
+    void refillsAtTheRate() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("test", 10, 1, 100);
+        assertThat(limiter.tryAcquire("user").allowed()).isTrue();
+        assertThat(limiter.tryAcquire("user").allowed()).isFalse();
+
+        Thread.sleep(150);
+
+        TokenBucketRateLimiter.Decision refilled = limiter.tryAcquire("user");
+        assertThat(refilled.allowed()).isTrue();
+        assertThat(refilled.remaining()).isZero();
+    }
+
+    @Test
+    void keysHaveTheirOwnBuckets() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("test", 1, 1, 100);
+
+        assertThat(limiter.tryAcquire("alice").allowed()).isTrue();
+        assertThat(limiter.tryAcquire("alice").allowed()).isFalse();
+        assertThat(limiter.tryAcquire("bob").allowed()).isTrue();
+        assertThat(limiter.trackedKeys()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsLimitsThatAllowNothing() {
+        assertThatThrownBy(() -> new TokenBucketRateLimiter("test", 0, 1, 100))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TokenBucketRateLimiter("test", 1, 0, 100))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.DocumindAI.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UploadPipelineTests {
+
+    private static final String DOCX = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+    private final UploadPipeline uploadPipeline = new UploadPipeline();
+
+    @Test
+    void contentDecidesOverExtension() {
+        byte[] pdf = "%PDF-1.7\n1 0 obj\n<<>>\nendobj\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] text = "Plain notes about the contract.\n".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(detect(pdf, "notes.txt")).isEqualTo("application/pdf");
+        assertThat(detect(text, "report.docx")).isEqualTo("text/plain");
+    }
+
+    @Test
+    void unrecognisedBinaryIsNotAcceptedForItsExtension() {
+        byte[] binary = new byte[4096];
+        new Random(42).nextBytes(binary);
+        binary[0] = 0;
+
+        assertThat(UploadPipeline.ALLOWED_TYPES)
+            .doesNotContain(detect(binary, "report.pdf"))
+            .doesNotContain(detect(binary, "report.docx"));
+    }
+
+    @Test
+    void nameOnlyTellsDocxApartFromOtherZipFiles() throws IOException {
+        byte[] docx = zip("[Content_Types].xml", "word/document.xml");
+
+        assertThat(detect(docx, "report.docx")).isEqualTo(DOCX);
+        assertThat(detect(zip("data.csv"), "archive.zip")).isEqualTo("application/zip");
+    }
+
+    private String detect(byte[] bytes, String fileName) {
+        return uploadPipeline.detectType(bytes, bytes.length, fileName);
+    }
+
+    private static byte[] zip(String... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (String entry : entries) {
+                zip.putNextEntry(new ZipEntry(entry));
+                zip.write("<x/>".getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.DocumindAI.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class VectorFileTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackNormalizedVectors() throws IOException {
+        Path path = write(new float[] {3, 4, 0, 0, 0}, new float[] {0, 0, 2, 0, 0}, new float[] {0, 0, 0, 0, 0});
+
+        VectorFile.Reader reader = VectorFile.Reader.open(path);
+
+        assertThat(reader.dimensions()).isEqualTo(5);
+        assertThat(reader.count()).isEqualTo(3);
+        float[] row = new float[5];
+        reader.vector(0, row);
+        assertThat(row).containsExactly(new float[] {0.6f, 0.8f, 0, 0, 0}, within(1e-6f));
+        reader.vector(1, row);
+        assertThat(row).containsExactly(new float[] {0, 0, 1, 0, 0}, within(1e-6f));
+        // A zero vector stays zero rather than turning into NaNs
+        reader.vector(2, row);
+        assertThat(row).containsOnly(0f);
+    }
+
+    @Test
+    void scoresAreDotProductsWithTheRows() throws IOException {
+        VectorFile.Reader reader = VectorFile.Reader.open(
+            write(new float[] {1, 0, 0, 0, 0}, new float[] {0, 1, 0, 0, 0}, new float[] {1, 1, 0, 0, 0}));
+        float[] query = {1, 0, 0, 0, 0};
+        float[] block = new float[2 * 5];
+        float[] scores = new float[2];
+
+        reader.scores(query, 1, 2, block, scores);
+
+        assertThat(scores).containsExactly(new float[] {0, (float) Math.sqrt(0.5)}, within(1e-6f));
+    }
+
+    @Test
+    void dotHandlesLengthsNotAMultipleOfFour() {
+        float[] a = {1, 2, 3, 4, 5, 6, 7};
+        float[] b = {0, 0, 1, 1, 1, 1, 1, 1, 1};
+
+        assertThat(VectorFile.Reader.dot(a, b, 2, 7)).isEqualTo(28f);
+    }
+
+    @Test
+    void rejectsVectorsOfOtherDimensions() throws IOException {
+        try (VectorFile.Writer writer = new VectorFile.Writer(dir.resolve("mixed.vectors"))) {
+            writer.append(new float[] {1, 2, 3});
+            assertThatThrownBy(() -> writer.append(new float[] {1, 2})).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        Path path = write(new float[] {1, 2, 3, 4}, new float[] {5, 6, 7, 8});
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 4);
+        }
+
+        assertThatThrownBy(() -> VectorFile.Reader.open(path)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void corruptFileIsRejected() throws IOException {
+        Path path = write(new float[] {1, 2, 3, 4}, new float[] {5, 6, 7, 8});
+        byte[] bytes = Files.readAllBytes(path);
+        // Claim one more row than the file holds
+        bytes[bytes.length - 8]++;
+        Files.write(path, bytes);
+
+        assertThatThrownBy(() -> VectorFile.Reader.open(path)).isInstanceOf(IOException.class);
+
+        Path garbage = dir.resolve("garbage.vectors");
+        Files.write(garbage, new byte[64]);
+        assertThatThrownBy(() -> VectorFile.Reader.open(garbage)).isInstanceOf(IOException.class);
+    }
+
+    private Path write(float[]... vectors) throws IOException {
+        Path path = dir.resolve("collection.vectors");
+        try (VectorFile.Writer writer = new VectorFile.Writer(path)) {
+            for (float[] vector : vectors) {
+                writer.append(vector);
+            }
+        }
+        return path;
+    }
+}
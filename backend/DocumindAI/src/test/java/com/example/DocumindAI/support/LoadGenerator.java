@@ -0,0 +1,221 @@
+package com.example.DocumindAI.support;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Open-loop load driver: starts requests at a fixed rate whatever the
+ * response times, picking each one from a weighted mix of operations, and
+ * measures latency from the moment a request was due rather than when it
+ * was actually sent, so a stalled server shows up as latency instead of as
+ * a lower request rate.
+ * <p>
+ * Operations complete with the HTTP status they got; 5xx and transport
+ * failures count as errors. Requests that would exceed {@code maxInFlight}
+ * are not sent and are reported as dropped. Thread count, heap and GC are
+ * sampled for the JVM the driver runs in, which includes the server when
+ * both are in one test.
+ */
+public class LoadGenerator {
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 250;
+
+    private final Map<String, Operation> operations = new LinkedHashMap<>();
+    private int totalWeight;
+
+    public LoadGenerator operation(String name, int weight, Supplier<CompletableFuture<Integer>> request) {
+        if (weight > 0) {
+            operations.put(name, new Operation(name, weight, request));
+            totalWeight += weight;
+        }
+        return this;
+    }
+
+    /**
+     * Runs the mix at {@code rate} requests per second for {@code duration},
+     * then waits up to {@code drainTimeout} for requests still in flight.
+     * Each run is measured on its own, so a first run can serve as warm-up.
+     */
+    public LoadReport run(double rate, Duration duration, int maxInFlight, Duration drainTimeout) throws InterruptedException {
+        if (operations.isEmpty()) {
+            throw new IllegalStateException("No operations configured");
+        }
+        operations.values().forEach(Operation::reset);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        threads.resetPeakThreadCount();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        AtomicLong peakHeap = new AtomicLong();
+        LongAdder threadSamples = new LongAdder();
+        LongAdder samples = new LongAdder();
+
+        AtomicInteger inFlight = new AtomicInteger();
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long total = (long) (rate * duration.toNanos() / TimeUnit.SECONDS.toNanos(1));
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "load-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+            threadSamples.add(threads.getThreadCount());
+            samples.increment();
+        }, 0, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        try {
+            for (long i = 0; i < total; i++) {
+                long due = start + i * intervalNanos;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                Operation operation = pick();
+                if (inFlight.incrementAndGet() > maxInFlight) {
+                    inFlight.decrementAndGet();
+                    operation.dropped.increment();
+                    continue;
+                }
+                operation.send(due).whenComplete((status, error) -> inFlight.decrementAndGet());
+            }
+            long drainDeadline = System.nanoTime() + drainTimeout.toNanos();
+            while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        List<LoadReport.OperationStats> stats = new ArrayList<>();
+        for (Operation operation : operations.values()) {
+            stats.add(operation.stats(elapsed));
+        }
+        return new LoadReport(
+            rate,
+            elapsed,
+            inFlight.get(),
+            stats,
+            threads.getPeakThreadCount(),
+            samples.sum() == 0 ? 0 : threadSamples.sum() / samples.sum(),
+            peakHeap.get(),
+            gcCount() - gcCountBefore,
+            Duration.ofMillis(gcTime() - gcTimeBefore)
+        );
+    }
+
+    private Operation pick() {
+        int roll = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Operation operation : operations.values()) {
+            roll -= operation.weight;
+            if (roll < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException("Unreachable");
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+            .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+            .filter(count -> count > 0)
+            .sum();
+    }
+
+    private static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+            .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+            .filter(time -> time > 0)
+            .sum();
+    }
+
+    private static final class Operation {
+
+        private final String name;
+        private final int weight;
+        private final Supplier<CompletableFuture<Integer>> request;
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+
+        private Operation(String name, int weight, Supplier<CompletableFuture<Integer>> request) {
+            this.name = name;
+            this.weight = weight;
+            this.request = request;
+        }
+
+        private void reset() {
+            latencies.clear();
+            statuses.clear();
+            errors.reset();
+            dropped.reset();
+        }
+
+        private CompletableFuture<Integer> send(long due) {
+            CompletableFuture<Integer> response;
+            try {
+                response = request.get();
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            return response.whenComplete((status, error) -> {
+                latencies.add(System.nanoTime() - due);
+                String key = error != null ? "failed" : String.valueOf(status);
+                statuses.computeIfAbsent(key, ignored -> new LongAdder()).increment();
+                if (error != null || status >= 500) {
+                    errors.increment();
+                }
+            });
+        }
+
+        private LoadReport.OperationStats stats(Duration elapsed) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            Map<String, Long> byStatus = new LinkedHashMap<>();
+            statuses.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> byStatus.put(entry.getKey(), entry.getValue().sum()));
+            return new LoadReport.OperationStats(
+                name,
+                sorted.length,
+                errors.sum(),
+                dropped.sum(),
+                sorted.length / Math.max(elapsed.toNanos() / 1e9, 1e-9),
+                percentileMillis(sorted, 0.50),
+                percentileMillis(sorted, 0.95),
+                percentileMillis(sorted, 0.99),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6,
+                byStatus
+            );
+        }
+
+        private static double percentileMillis(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, rank)] / 1e6;
+        }
+    }
+}
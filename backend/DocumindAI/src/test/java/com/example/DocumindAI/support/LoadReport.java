@@ -0,0 +1,74 @@
+package com.example.DocumindAI.support;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a {@link LoadGenerator} run. Latencies are in milliseconds,
+ * throughput in completed requests per second.
+ */
+public record LoadReport(
+    double targetRate,
+    Duration elapsed,
+    int unfinished,
+    List<OperationStats> operations,
+    int peakThreads,
+    long averageThreads,
+    long peakHeapBytes,
+    long gcCount,
+    Duration gcTime
+) {
+
+    public long completed() {
+        return operations.stream().mapToLong(OperationStats::completed).sum();
+    }
+
+    public long errors() {
+        return operations.stream().mapToLong(OperationStats::errors).sum();
+    }
+
+    public long dropped() {
+        return operations.stream().mapToLong(OperationStats::dropped).sum();
+    }
+
+    public double errorRate() {
+        long sent = completed() + unfinished;
+        return sent == 0 ? 0 : (double) (errors() + unfinished) / sent;
+    }
+
+    public double throughput() {
+        return operations.stream().mapToDouble(OperationStats::throughput).sum();
+    }
+
+    /** Human-readable summary, one line per operation. */
+    public String format() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("target %.1f req/s, achieved %.1f req/s over %ds; %d unfinished, %d dropped%n",
+            targetRate, throughput(), elapsed.toSeconds(), unfinished, dropped()));
+        report.append(String.format("%-10s %8s %7s %9s %9s %9s %9s %9s  %s%n",
+            "operation", "count", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms", "statuses"));
+        for (OperationStats stats : operations) {
+            report.append(String.format("%-10s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f  %s%n",
+                stats.name(), stats.completed(), stats.errors(), stats.throughput(),
+                stats.p50(), stats.p95(), stats.p99(), stats.max(), stats.statuses()));
+        }
+        report.append(String.format("threads: peak %d, average %d; heap peak %d MB; GC %d collections, %d ms",
+            peakThreads, averageThreads, peakHeapBytes >> 20, gcCount, gcTime.toMillis()));
+        return report.toString();
+    }
+
+    public record OperationStats(
+        String name,
+        long completed,
+        long errors,
+        long dropped,
+        double throughput,
+        double p50,
+        double p95,
+        double p99,
+        double max,
+        Map<String, Long> statuses
+    ) {
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.DocumindAI.support;
+
+import com.example.DocumindAI.service.ChunkFile;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the Python AI service, with injectable latency and
+ * failures. Runs on the JDK's built-in HTTP server on a random port.
+ */
+public class StubAiServer implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int DIMENSIONS = 64;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private volatile Duration latency = Duration.ZERO;
+    private volatile Duration tokenDelay = Duration.ZERO;
+    private volatile double errorRate;
+    private volatile int failureStatus = 503;
+    private final AtomicInteger failuresRemaining = new AtomicInteger();
+    private final AtomicInteger processCalls = new AtomicInteger();
+    private final AtomicInteger queryCalls = new AtomicInteger();
+    private final List<String> deletedCollections = new CopyOnWriteArrayList<>();
+
+    private StubAiServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/health", exchange -> respond(exchange, 200, Map.of("status", "healthy")));
+        server.createContext("/process-document", this::handleProcessDocument);
+        server.createContext("/process-chunks", this::handleProcessDocument);
+        server.createContext("/process-chunks/stream", this::handleProcessStream);
+        server.createContext("/query", this::handleQuery);
+        server.createContext("/query/stream", this::handleQueryStream);
+        server.createContext("/retrieve", this::handleRetrieve);
+        server.createContext("/generate", this::handleGenerate);
+        server.createContext("/embed", this::handleEmbed);
+        server.createContext("/collections/delete", this::handleDeleteCollections);
+        server.start();
+    }
+
+    public static StubAiServer start() {
+        try {
+            return new StubAiServer();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start stub AI server", e);
+        }
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public StubAiServer withLatency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /** Delay between streamed tokens, to simulate slow generation. */
+    public StubAiServer withTokenDelay(Duration tokenDelay) {
+        this.tokenDelay = tokenDelay;
+        return this;
+    }
+
+    /** Fails a fraction of all calls with {@link #failureStatus}. */
+    public StubAiServer withErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /** Fails exactly the next {@code count} calls with {@code status}. */
+    public StubAiServer failNext(int count, int status) {
+        this.failureStatus = status;
+        this.failuresRemaining.set(count);
+        return this;
+    }
+
+    public int getProcessCalls() {
+        return processCalls.get();
+    }
+
+    public int getQueryCalls() {
+        return queryCalls.get();
+    }
+
+    /** Collection names received by {@code /collections/delete}, in order. */
+    public List<String> getDeletedCollections() {
+        return deletedCollections;
+    }
+
+    public void reset() {
+        latency = Duration.ZERO;
+        tokenDelay = Duration.ZERO;
+        errorRate = 0;
+        failureStatus = 503;
+        failuresRemaining.set(0);
+        processCalls.set(0);
+        queryCalls.set(0);
+        deletedCollections.clear();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleProcessDocument(HttpExchange exchange) throws IOException {
+        processCalls.incrementAndGet();
+        Map<?, ?> request = readBody(exchange);
+        if (injectFailure(exchange)) {
+            return;
+        }
+        respond(exchange, 200, Map.of(
+            "status", "success",
+            "chunkCount", 3,
+            "processingTime", 0.01,
+            "message", "Processed " + request.get("documentId")
+        ));
+    }
+
+    private void handleProcessStream(HttpExchange exchange) throws IOException {
+        processCalls.incrementAndGet();
+        Map<?, ?> request = readBody(exchange);
+        if (injectFailure(exchange)) {
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (double progress : new double[] {0.3, 0.6, 0.9, 1.0}) {
+                sleep(tokenDelay);
+                writeLine(out, Map.of("type", "progress", "progress", progress));
+            }
+            if (Boolean.TRUE.equals(request.get("includeEmbeddings"))) {
+                ChunkFile.Reader chunks = ChunkFile.Reader.open(Paths.get(String.valueOf(request.get("chunksPath"))));
+                List<float[]> embeddings = new ArrayList<>(chunks.count());
+                for (int i = 0; i < chunks.count(); i++) {
+                    embeddings.add(embed(chunks.get(i).text()));
+                }
+                writeLine(out, Map.of("type", "embeddings", "start", 0, "embeddings", embeddings));
+            }
+            writeLine(out, Map.of("type", "done", "status", "success", "chunkCount", 3, "processingTime", 0.01));
+        }
+    }
+
+    private void handleQuery(HttpExchange exchange) throws IOException {
+        queryCalls.incrementAndGet();
+        Map<?, ?> request = readBody(exchange);
+        if (injectFailure(exchange)) {
+            return;
+        }
+        respond(exchange, 200, Map.of(
+            "answer", "Stub answer to: " + request.get("query"),
+            "sources", List.of(Map.of("chunkId", "chunk_0", "page", 1, "snippet", "stub snippet", "relevance", 0.9)),
+            "processingTime", 0.01,
+            "confidence", 0.9
+        ));
+    }
+
+    private void handleRetrieve(HttpExchange exchange) throws IOException {
+        queryCalls.incrementAndGet();
+        Map<?, ?> request = readBody(exchange);
+        if (injectFailure(exchange)) {
+            return;
+        }
+        // Deterministic per-document relevance so merged rankings are predictable
+        double relevance = 0.5 + Math.floorMod(String.valueOf(request.get("documentId")).hashCode(), 50) / 100.0;
+        respond(exchange, 200, Map.of(
+            "sources", List.of(
+                Map.of("chunkId", "chunk_0", "page", 1, "snippet", "stub snippet", "relevance", relevance, "text", "stub text"),
+                Map.of("chunkId", "chunk_1", "page", 2, "snippet", "stub snippet", "relevance", relevance / 2, "text", "stub text")
+            ),
+            "processingTime", 0.01
+        ));
+    }
+
+    private void handleGenerate(HttpExchange exchange) throws IOException {
+        queryCalls.incrementAndGet();
+        Map<?, ?> request = readBody(exchange);
+        if (injectFailure(exchange)) {
+            return;
+        }
+        respond(exchange, 200, Map.of(
+            "answer", "Stub answer to: " + request.get("query") + " from " + ((List<?>) request.get("contexts")).size() + " chunks",
+            "processingTime", 0.01
+        ));
+    }
+
+    private void handleEmbed(HttpExchange exchange) throws IOException {
+        Map<?, ?> request = readBody(exchange);
+        if (injectFailure(exchange)) {
+            return;
+        }
+        List<float[]> embeddings = new ArrayList<>();
+        for (Object text : (List<?>) request.get("texts")) {
+            embeddings.add(embed(String.valueOf(text)));
+        }
+        respond(exchange, 200, Map.of("embeddings", embeddings, "dimensions", DIMENSIONS, "processingTime", 0.01));
+    }
+
+    /** Hashed bag of words: texts sharing words get similar vectors. */
+    public static float[] embed(String text) {
+        float[] vector = new float[DIMENSIONS];
+        vector[0] = 0.01f;
+        for (String word : text.toLowerCase().split("\\W+")) {
+            if (!word.isEmpty()) {
+                vector[Math.floorMod(word.hashCode(), DIMENSIONS)] += 1;
+            }
+        }
+        return vector;
+    }
+
+    private void handleDeleteCollections(HttpExchange exchange) throws IOException {
+        Map<?, ?> request = readBody(exchange);
+        if (injectFailure(exchange)) {
+            return;
+        }
+        List<?> names = (List<?>) request.get("collectionNames");
+        names.forEach(name -> deletedCollections.add(String.valueOf(name)));
+        respond(exchange, 200, Map.of("deleted", names.size(), "missing", 0, "processingTime", 0.01));
+    }
+
+    private void handleQueryStream(HttpExchange exchange) throws IOException {
+        queryCalls.incrementAndGet();
+        Map<?, ?> request = readBody(exchange);
+        if (injectFailure(exchange)) {
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            writeLine(out, Map.of(
+                "type", "sources",
+                "sources", List.of(Map.of("chunkId", "chunk_0", "page", 1, "snippet", "stub snippet", "relevance", 0.9)),
+                "confidence", 0.9
+            ));
+            for (String token : ("Stub answer to: " + request.get("query")).split("(?<= )")) {
+                sleep(tokenDelay);
+                writeLine(out, Map.of("type", "token", "text", token));
+            }
+            writeLine(out, Map.of("type", "done", "processingTime", 0.01));
+        }
+    }
+
+    private static void writeLine(OutputStream out, Object event) throws IOException {
+        out.write((MAPPER.writeValueAsString(event) + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private boolean injectFailure(HttpExchange exchange) throws IOException {
+        sleep(latency);
+        boolean fail = failuresRemaining.getAndUpdate(n -> Math.max(0, n - 1)) > 0
+            || ThreadLocalRandom.current().nextDouble() < errorRate;
+        if (fail) {
+            respond(exchange, failureStatus, Map.of("detail", "stub failure"));
+        }
+        return fail;
+    }
+
+    private static Map<?, ?> readBody(HttpExchange exchange) throws IOException {
+        return MAPPER.readValue(exchange.getRequestBody().readAllBytes(), Map.class);
+    }
+
+    private static void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsString(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}